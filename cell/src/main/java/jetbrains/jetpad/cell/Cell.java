@@ -77,8 +77,12 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   private CellTrait[] myCellTraits = CellTrait.EMPTY_ARRAY;
+  private CellTrait[][] myTraitsBySpec;
+  private KeyDispatchTable myKeyDispatchTable;
+  private ListMap<CellPropertySpec<?>, CellTrait[]> myPropertyProviders;
+  private ListMap<CellTraitPropertySpec<?>, CellTrait[]> myTraitPropertyProviders;
 
-  private List<Cell> myChildren;
+  private ChildList myChildren;
   private CellContainer myContainer;
   private Cell myParent;
   private Cell myNext;
@@ -100,6 +104,71 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     return new ExternalChildList();
   }
 
+  /**
+   * Replaces the children from {@code from} inclusive to {@code to} exclusive with the cells. Listeners get one
+   * {@link ChildRangeEvent} instead of an event per removed and added child.
+   */
+  public void replaceChildren(int from, int to, List<? extends Cell> cells) {
+    if (myContainer != null) {
+      myContainer.checkMutation();
+    }
+    int size = myChildren == null ? 0 : myChildren.size();
+    if (from < 0 || to > size || from > to) {
+      throw new IndexOutOfBoundsException("from = " + from + ", to = " + to + ", size = " + size);
+    }
+    Set<Cell> added = new HashSet<>();
+    for (Cell c : cells) {
+      if (c.getParent() != null || !added.add(c)) {
+        throw new IllegalStateException();
+      }
+    }
+    if (from == to && cells.isEmpty()) return;
+
+    List<Cell> oldItems = from == to ? Collections.<Cell>emptyList() : myChildren.subList(from, to);
+    final ChildRangeEvent event = new ChildRangeEvent(from, oldItems, cells);
+    onBeforeChildrenReplaced(event);
+
+    if (myChildren == null) {
+      myChildren = new ChildList();
+    }
+    myChildren.myReplacing = true;
+    try {
+      for (int i = to - 1; i >= from; i--) {
+        myChildren.remove(i);
+      }
+      for (int i = 0; i < cells.size(); i++) {
+        myChildren.add(from + i, cells.get(i));
+      }
+    } finally {
+      myChildren.myReplacing = false;
+    }
+    if (myChildren.isEmpty()) {
+      myChildren = null;
+    }
+
+    onChildrenReplaced(event);
+    if (myContainer != null) {
+      myContainer.cellChildrenReplaced(this, event);
+    }
+    if (myListeners != null) {
+      myListeners.fire(new ListenerCaller<CellListener>() {
+        @Override
+        public void call(CellListener l) {
+          if (l instanceof CellRangeListener) {
+            ((CellRangeListener) l).onChildrenReplaced(event);
+            return;
+          }
+          for (CollectionItemEvent<Cell> e : event.toRemoveEvents()) {
+            l.onChildRemoved(e);
+          }
+          for (CollectionItemEvent<Cell> e : event.toAddEvents()) {
+            l.onChildAdded(e);
+          }
+        }
+      });
+    }
+  }
+
   @Override
   public Cell nextSibling() {
     return myNext;
@@ -192,21 +261,24 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   private <EventT extends Event> void dispatchStep(EventT e, CellEventSpec<EventT> spec) {
-    if (spec == CellEventSpec.KEY_PRESSED || spec == CellEventSpec.KEY_RELEASED || spec == CellEventSpec.KEY_TYPED) {
+    if (spec == CellEventSpec.KEY_PRESSED) {
+      if (myCellTraits.length == 0) return;
+      if (myKeyDispatchTable == null) {
+        myKeyDispatchTable = KeyDispatchTable.compile(this, myCellTraits);
+      }
+      myKeyDispatchTable.dispatch(this, (KeyEvent) e);
+    } else if (spec == CellEventSpec.KEY_RELEASED || spec == CellEventSpec.KEY_TYPED) {
+      CellTrait[] traits = traitsFor(spec);
       for (EventPriority p : EventPriority.values()) {
-        for (CellTrait t : myCellTraits) {
+        for (CellTrait t : traits) {
           if (p == EventPriority.LOW) {
-            if (spec == CellEventSpec.KEY_PRESSED) {
-              t.onKeyPressedLowPriority(this, (KeyEvent) e);
-            } else if (spec == CellEventSpec.KEY_RELEASED) {
+            if (spec == CellEventSpec.KEY_RELEASED) {
               t.onKeyReleasedLowPriority(this, (KeyEvent) e);
             } else {
               t.onKeyTypedLowPriority(this, (KeyEvent) e);
             }
           } else {
-            if (spec == CellEventSpec.KEY_PRESSED) {
-              t.onKeyPressed(this, (KeyEvent) e);
-            } else if (spec == CellEventSpec.KEY_RELEASED) {
+            if (spec == CellEventSpec.KEY_RELEASED) {
               t.onKeyReleased(this, (KeyEvent) e);
             } else {
               t.onKeyTyped(this, (KeyEvent) e);
@@ -216,13 +288,93 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
         }
       }
     } else {
-      for (CellTrait t : myCellTraits) {
+      for (CellTrait t : traitsFor(spec)) {
         spec.dispatch(this, e, t);
         if (e.isConsumed()) return;
       }
     }
   }
 
+  private CellTrait[] traitsFor(CellEventSpec<?> spec) {
+    if (myCellTraits.length == 0) return myCellTraits;
+
+    if (myTraitsBySpec == null) {
+      myTraitsBySpec = new CellTrait[CellEventSpec.getCount()][];
+    }
+    CellTrait[] result = myTraitsBySpec[spec.getIndex()];
+    if (result == null) {
+      int mask = spec.getMask();
+      int count = 0;
+      for (CellTrait t : myCellTraits) {
+        if ((t.getEventMask() & mask) != 0) {
+          count++;
+        }
+      }
+      if (count == myCellTraits.length) {
+        result = myCellTraits;
+      } else {
+        result = new CellTrait[count];
+        int i = 0;
+        for (CellTrait t : myCellTraits) {
+          if ((t.getEventMask() & mask) != 0) {
+            result[i++] = t;
+          }
+        }
+      }
+      myTraitsBySpec[spec.getIndex()] = result;
+    }
+    return result;
+  }
+
+  private void invalidateTraitCaches() {
+    myTraitsBySpec = null;
+    myKeyDispatchTable = null;
+    myPropertyProviders = null;
+    myTraitPropertyProviders = null;
+  }
+
+  private CellTrait[] propertyProviders(CellPropertySpec<?> prop) {
+    if (myCellTraits.length == 0) return null;
+
+    if (myPropertyProviders == null) {
+      myPropertyProviders = new ListMap<>();
+      for (CellTrait t : myCellTraits) {
+        for (CellPropertySpec<?> p : t.getChangedProperties(this)) {
+          CellTrait[] providers = myPropertyProviders.get(p);
+          if (providers == null) {
+            providers = new CellTrait[] { t };
+          } else {
+            providers = Arrays.copyOf(providers, providers.length + 1);
+            providers[providers.length - 1] = t;
+          }
+          myPropertyProviders.put(p, providers);
+        }
+      }
+    }
+    return myPropertyProviders.get(prop);
+  }
+
+  private CellTrait[] traitPropertyProviders(CellTraitPropertySpec<?> prop) {
+    if (myCellTraits.length == 0) return myCellTraits;
+
+    if (myTraitPropertyProviders == null) {
+      myTraitPropertyProviders = new ListMap<>();
+    }
+    CellTrait[] result = myTraitPropertyProviders.get(prop);
+    if (result == null) {
+      List<CellTrait> providers = new ArrayList<>(myCellTraits.length);
+      for (CellTrait t : myCellTraits) {
+        Set<CellTraitPropertySpec<?>> specs = t.getTraitPropertySpecs();
+        if (specs == null || specs.contains(prop)) {
+          providers.add(t);
+        }
+      }
+      result = providers.size() == myCellTraits.length ? myCellTraits : providers.toArray(new CellTrait[providers.size()]);
+      myTraitPropertyProviders.put(prop, result);
+    }
+    return result;
+  }
+
   public <EventT extends Event> void dispatch(EventT e, CellTraitEventSpec<EventT> spec) {
     for (CellTrait t : myCellTraits) {
       t.onCellTraitEvent(this, spec, e);
@@ -240,6 +392,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     newTraits[0] = trait;
     System.arraycopy(myCellTraits, 0, newTraits, 1, myCellTraits.length);
     myCellTraits = newTraits;
+    invalidateTraitCaches();
     r.run();
     return new Registration() {
       @Override
@@ -250,6 +403,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
         System.arraycopy(myCellTraits, 0, newTraits, 0, index);
         System.arraycopy(myCellTraits, index + 1, newTraits, index, myCellTraits.length - index - 1);
         myCellTraits = newTraits;
+        invalidateTraitCaches();
         r.run();
       }
     };
@@ -397,6 +551,9 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   public <ValueT> Registration set(final CellPropertySpec<ValueT> prop, ValueT value) {
+    if (myContainer != null) {
+      myContainer.checkMutation();
+    }
     final ValueT old = get(prop);
 
     if (Objects.equal(value, old)) return Registration.EMPTY;
@@ -427,7 +584,18 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     };
   }
 
-  private <ValueT> void firePropertyChange(final CellPropertySpec<ValueT> prop, final PropertyChangeEvent<ValueT> event) {
+  private <ValueT> void firePropertyChange(CellPropertySpec<ValueT> prop, PropertyChangeEvent<ValueT> event) {
+    if (myContainer != null && myContainer.journalPropertyChange(this, prop, event)) return;
+    doFirePropertyChange(prop, event);
+  }
+
+  void fireJournaledPropertyChange(CellPropertySpec<?> prop, Object oldValue) {
+    Object value = get(prop);
+    if (Objects.equal(oldValue, value)) return;
+    doFirePropertyChange((CellPropertySpec<Object>) prop, new PropertyChangeEvent<>(oldValue, value));
+  }
+
+  private <ValueT> void doFirePropertyChange(final CellPropertySpec<ValueT> prop, final PropertyChangeEvent<ValueT> event) {
     propertySet(prop, event);
     onPropertySet(prop, event);
 
@@ -450,11 +618,14 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   private <ValueT> ValueT getDefaultValue(CellPropertySpec<ValueT> prop) {
-    for (CellTrait t : myCellTraits) {
-      Object result = t.get(this, prop);
-      if (result == CellTrait.NULL) return null;
-      if (result != null) {
-        return (ValueT) result;
+    CellTrait[] providers = propertyProviders(prop);
+    if (providers != null) {
+      for (CellTrait t : providers) {
+        Object result = t.get(this, prop);
+        if (result == CellTrait.NULL) return null;
+        if (result != null) {
+          return (ValueT) result;
+        }
       }
     }
 
@@ -468,7 +639,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   public <ValueT> ValueT getRaw(CellTraitPropertySpec<ValueT> prop) {
-    for (CellTrait t : myCellTraits) {
+    for (CellTrait t : traitPropertyProviders(prop)) {
       Object result = t.get(this, prop);
       if (result == CellTrait.NULL) return null;
       if (result != null) {
@@ -673,8 +844,39 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   protected void onChildRemoved(CollectionItemEvent<? extends Cell> event) {
   }
 
+  /**
+   * Called before the children are replaced by {@link #replaceChildren}, which doesn't call the item hooks itself
+   */
+  protected void onBeforeChildrenReplaced(ChildRangeEvent event) {
+    for (CollectionItemEvent<Cell> e : event.toRemoveEvents()) {
+      onBeforeChildRemoved(e);
+    }
+    for (CollectionItemEvent<Cell> e : event.toAddEvents()) {
+      onBeforeChildAdded(e);
+    }
+  }
+
+  protected void onChildrenReplaced(ChildRangeEvent event) {
+    for (CollectionItemEvent<Cell> e : event.toRemoveEvents()) {
+      onChildRemoved(e);
+    }
+    for (CollectionItemEvent<Cell> e : event.toAddEvents()) {
+      onChildAdded(e);
+    }
+  }
+
   public <ValueT> Registration set(final CellTraitPropertySpec<ValueT> spec, final ValueT value) {
     return addTrait(new CellTrait() {
+      @Override
+      public int getEventMask() {
+        return 0;
+      }
+
+      @Override
+      public Set<CellTraitPropertySpec<?>> getTraitPropertySpecs() {
+        return Collections.<CellTraitPropertySpec<?>>singleton(spec);
+      }
+
       @Override
       public Object get(Cell cell, CellTraitPropertySpec<?> propSpec) {
         if (spec == propSpec) {
@@ -694,6 +896,8 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
   }
 
   private class ChildList extends ObservableArrayList<Cell> {
+    private boolean myReplacing;
+
     public ChildList() {
       addListener(new CollectionAdapter<Cell>() {
         @Override
@@ -701,6 +905,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
           if (isAttached()) {
             ((Cell) event.getNewItem()).attach(myContainer);
           }
+          if (myReplacing) return;
           onChildAdded(event);
           if (myContainer != null) {
             myContainer.cellChildAdded(Cell.this, event);
@@ -720,6 +925,7 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
           if (isAttached()) {
             ((Cell) event.getOldItem()).detach();
           }
+          if (myReplacing) return;
           onChildRemoved(event);
           if (myContainer != null) {
             myContainer.cellChildRemoved(Cell.this, event);
@@ -742,6 +948,17 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
       if (item.getParent() != null) {
         throw new IllegalStateException();
       }
+      if (myContainer != null && !myReplacing) {
+        myContainer.checkMutation();
+      }
+    }
+
+    @Override
+    protected void checkRemove(int index, Cell item) {
+      super.checkRemove(index, item);
+      if (myContainer != null && !myReplacing) {
+        myContainer.checkMutation();
+      }
     }
 
     @Override
@@ -767,7 +984,9 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
     }
 
     private void attachItem(Cell item, int prevIndex, int index, int nextIndex) {
-      onBeforeChildAdded(new CollectionItemEvent<>(null, item, index, CollectionItemEvent.EventType.ADD));
+      if (!myReplacing) {
+        onBeforeChildAdded(new CollectionItemEvent<>(null, item, index, CollectionItemEvent.EventType.ADD));
+      }
 
       item.changeParent(Cell.this);
 
@@ -788,7 +1007,9 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
         myContainer.focusedCell.set(null);
       }
 
-      onBeforeChildRemoved(new CollectionItemEvent<>(item, null, index, CollectionItemEvent.EventType.REMOVE));
+      if (!myReplacing) {
+        onBeforeChildRemoved(new CollectionItemEvent<>(item, null, index, CollectionItemEvent.EventType.REMOVE));
+      }
 
       item.changeParent(null);
       final Cell prev = item.myPrev;
@@ -833,6 +1054,23 @@ public abstract class Cell implements NavComposite<Cell>, HasVisibility, HasFocu
       myChildren.add(index, element);
     }
 
+    @Override
+    public boolean addAll(Collection<? extends Cell> c) {
+      return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Cell> c) {
+      List<Cell> cells = new ArrayList<>(c);
+      replaceChildren(index, index, cells);
+      return !cells.isEmpty();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      replaceChildren(fromIndex, toIndex, Collections.<Cell>emptyList());
+    }
+
     private void ensureChildrenInitialized() {
       if (myChildren == null) {
         myChildren = new ChildList();
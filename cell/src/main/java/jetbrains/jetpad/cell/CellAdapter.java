@@ -18,7 +18,7 @@ package jetbrains.jetpad.cell;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 
-public class CellAdapter implements CellListener {
+public class CellAdapter implements CellRangeListener {
   @Override
   public void onPropertyChanged(CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
   }
@@ -31,6 +31,16 @@ public class CellAdapter implements CellListener {
   public void onChildRemoved(CollectionItemEvent<? extends Cell> event) {
   }
 
+  @Override
+  public void onChildrenReplaced(ChildRangeEvent event) {
+    for (CollectionItemEvent<Cell> e : event.toRemoveEvents()) {
+      onChildRemoved(e);
+    }
+    for (CollectionItemEvent<Cell> e : event.toAddEvents()) {
+      onChildAdded(e);
+    }
+  }
+
   @Override
   public void onParentChanged(PropertyChangeEvent<Cell> event) {
   }
@@ -33,7 +33,9 @@ import jetbrains.jetpad.model.property.ReadableProperty;
 import jetbrains.jetpad.model.property.ValueProperty;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CellContainer {
   public final Property<Cell> focusedCell;
@@ -45,6 +47,9 @@ public class CellContainer {
   private List<Cell> myPopups = new ArrayList<>();
   private Listeners<CellContainerListener> myListeners = new Listeners<>();
   private boolean myInCommand;
+  private boolean myPropertyChangesJournaled;
+  private Map<Cell, Map<CellPropertySpec<?>, Object>> myPropertyJournal;
+  private Runnable myMutationChecker;
   private CellContainerPeer myCellContainerPeer = CellContainerPeer.NULL;
 
   private String myLastSeenText;
@@ -304,7 +309,11 @@ public class CellContainer {
         }
       });
       try {
-        r.run();
+        try {
+          r.run();
+        } finally {
+          flushPropertyJournal();
+        }
       } finally {
         myListeners.fire(new ListenerCaller<CellContainerListener>() {
           @Override
@@ -317,6 +326,83 @@ public class CellContainer {
     }
   }
 
+  public boolean isPropertyChangesJournaled() {
+    return myPropertyChangesJournaled;
+  }
+
+  /**
+   * In journaled mode, property changes made inside of a command are coalesced per cell and property, and are delivered
+   * once at the end of the command, before {@link CellContainerListener#onAfterCommand()}. The delivered event goes from
+   * the value before the first change to the final value, and changes reverted by the end of the command aren't delivered
+   * at all. Changes of popup, visibility and focusability properties are always delivered immediately: popups attach and
+   * detach cells, and layout and structural handlers, e.g. of indent cells, rely on the current visibility and
+   * focusability of the cells when children are added or removed.
+   */
+  public void setPropertyChangesJournaled(boolean journaled) {
+    myPropertyChangesJournaled = journaled;
+  }
+
+  boolean journalPropertyChange(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> change) {
+    if (!myPropertyChangesJournaled || !myInCommand) return false;
+    if (Cell.isPopupProp(prop) || prop == Cell.VISIBLE || prop == Cell.FOCUSABLE) return false;
+
+    if (myPropertyJournal == null) {
+      myPropertyJournal = new LinkedHashMap<>();
+    }
+    Map<CellPropertySpec<?>, Object> cellChanges = myPropertyJournal.get(cell);
+    if (cellChanges == null) {
+      cellChanges = new LinkedHashMap<>();
+      myPropertyJournal.put(cell, cellChanges);
+    }
+    if (!cellChanges.containsKey(prop)) {
+      cellChanges.put(prop, change.getOldValue());
+    }
+    return true;
+  }
+
+  private void flushPropertyJournal() {
+    // handlers of the delivered changes might change properties again, their changes go to a new journal
+    while (myPropertyJournal != null) {
+      Map<Cell, Map<CellPropertySpec<?>, Object>> journal = myPropertyJournal;
+      myPropertyJournal = null;
+      for (Map.Entry<Cell, Map<CellPropertySpec<?>, Object>> cellChanges : journal.entrySet()) {
+        for (Map.Entry<CellPropertySpec<?>, Object> change : cellChanges.getValue().entrySet()) {
+          cellChanges.getKey().fireJournaledPropertyChange(change.getKey(), change.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Inserts detached cells into the children of an attached cell in one command. The cells might be built, together with
+   * their mappers, outside of the event dispatch thread since detached cells don't notify the container.
+   */
+  public void attachChildren(final Cell parent, final int index, final List<? extends Cell> cells) {
+    if (parent.getContainer() != this) {
+      throw new IllegalArgumentException("Parent isn't attached to this container: " + parent);
+    }
+    executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        parent.replaceChildren(index, index, cells);
+      }
+    });
+  }
+
+  /**
+   * The checker is run before every change of properties or children of the cells attached to this container,
+   * and can reject the change by throwing an exception, e.g. when it's made outside of the event dispatch thread.
+   */
+  public void setMutationChecker(Runnable checker) {
+    myMutationChecker = checker;
+  }
+
+  void checkMutation() {
+    if (myMutationChecker != null) {
+      myMutationChecker.run();
+    }
+  }
+
   void cellAdded(Cell c) {
     for (Cell p : c.popups()) {
       myPopups.add(p);
@@ -356,6 +442,24 @@ public class CellContainer {
     });
   }
 
+  void cellChildrenReplaced(final Cell cell, final ChildRangeEvent change) {
+    myListeners.fire(new ListenerCaller<CellContainerListener>() {
+      @Override
+      public void call(CellContainerListener l) {
+        if (l instanceof CellContainerRangeListener) {
+          ((CellContainerRangeListener) l).onChildrenReplaced(cell, change);
+          return;
+        }
+        for (CollectionItemEvent<Cell> e : change.toRemoveEvents()) {
+          l.onChildRemoved(cell, e);
+        }
+        for (CollectionItemEvent<Cell> e : change.toAddEvents()) {
+          l.onChildAdded(cell, e);
+        }
+      }
+    });
+  }
+
   void popupAdded(Cell c) {
     myPopups.add(c);
   }
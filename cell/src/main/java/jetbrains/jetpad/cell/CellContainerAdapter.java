@@ -18,7 +18,7 @@ package jetbrains.jetpad.cell;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 
-public class CellContainerAdapter implements CellContainerListener {
+public class CellContainerAdapter implements CellContainerRangeListener {
   @Override
   public void onBeforeCommand() {
   }
@@ -38,4 +38,14 @@ public class CellContainerAdapter implements CellContainerListener {
   @Override
   public void onChildRemoved(Cell parent, CollectionItemEvent<? extends Cell> change) {
   }
+
+  @Override
+  public void onChildrenReplaced(Cell parent, ChildRangeEvent change) {
+    for (CollectionItemEvent<Cell> e : change.toRemoveEvents()) {
+      onChildRemoved(parent, e);
+    }
+    for (CollectionItemEvent<Cell> e : change.toAddEvents()) {
+      onChildAdded(parent, e);
+    }
+  }
 }
\ No newline at end of file
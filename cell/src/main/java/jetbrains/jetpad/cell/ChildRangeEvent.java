@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell;
+
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replacement of consecutive children of a cell with other cells, fired once for the whole range.
+ * Listeners which don't handle ranges can process it as {@link #toRemoveEvents()} followed by {@link #toAddEvents()}.
+ */
+public final class ChildRangeEvent {
+  private final int myIndex;
+  private final List<Cell> myOldItems;
+  private final List<Cell> myNewItems;
+
+  public ChildRangeEvent(int index, List<? extends Cell> oldItems, List<? extends Cell> newItems) {
+    myIndex = index;
+    myOldItems = Collections.unmodifiableList(new ArrayList<>(oldItems));
+    myNewItems = Collections.unmodifiableList(new ArrayList<>(newItems));
+  }
+
+  public int getIndex() {
+    return myIndex;
+  }
+
+  public List<Cell> getOldItems() {
+    return myOldItems;
+  }
+
+  public List<Cell> getNewItems() {
+    return myNewItems;
+  }
+
+  /**
+   * Removal events of the equivalent sequence of item changes, starting from the last old item
+   */
+  public List<CollectionItemEvent<Cell>> toRemoveEvents() {
+    List<CollectionItemEvent<Cell>> result = new ArrayList<>(myOldItems.size());
+    for (int i = myOldItems.size() - 1; i >= 0; i--) {
+      result.add(new CollectionItemEvent<>(myOldItems.get(i), null, myIndex + i, CollectionItemEvent.EventType.REMOVE));
+    }
+    return result;
+  }
+
+  /**
+   * Addition events of the equivalent sequence of item changes, which follow the removals
+   */
+  public List<CollectionItemEvent<Cell>> toAddEvents() {
+    List<CollectionItemEvent<Cell>> result = new ArrayList<>(myNewItems.size());
+    for (int i = 0; i < myNewItems.size(); i++) {
+      result.add(new CollectionItemEvent<>(null, myNewItems.get(i), myIndex + i, CollectionItemEvent.EventType.ADD));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell;
+
+import jetbrains.jetpad.cell.event.CellEventSpec;
+import jetbrains.jetpad.cell.event.EventPriority;
+import jetbrains.jetpad.cell.trait.CellKeymap;
+import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyStroke;
+
+import java.util.*;
+
+/**
+ * Key pressed handlers of a cell's traits compiled into a lookup by key stroke. For every stroke it contains the sequence
+ * of handlers in trait order: keymap handlers of traits which declare a keymap, and onKeyPressed() calls for traits
+ * which don't but handle key pressed events according to their event mask. Strokes absent from all keymaps dispatch
+ * only to the latter.
+ */
+class KeyDispatchTable {
+  private static final EventPriority[] PRIORITIES = EventPriority.values();
+
+  static KeyDispatchTable compile(Cell cell, CellTrait[] traits) {
+    CellKeymap[] keymaps = new CellKeymap[traits.length];
+    for (int i = 0; i < traits.length; i++) {
+      keymaps[i] = traits[i].getKeymap(cell);
+    }
+
+    KeyDispatchTable result = new KeyDispatchTable();
+    for (EventPriority p : PRIORITIES) {
+      Set<KeyStroke> keyStrokes = new HashSet<>();
+      List<Step> opaque = new ArrayList<>();
+      for (int i = 0; i < traits.length; i++) {
+        if (keymaps[i] == null) {
+          if (handlesKeyPressed(traits[i])) {
+            opaque.add(new Step(traits[i], null));
+          }
+        } else {
+          keyStrokes.addAll(keymaps[i].getKeyStrokes(p));
+        }
+      }
+
+      Map<KeyStroke, Step[]> steps = new HashMap<>();
+      for (KeyStroke ks : keyStrokes) {
+        List<Step> forStroke = new ArrayList<>();
+        for (int i = 0; i < traits.length; i++) {
+          if (keymaps[i] == null) {
+            if (handlesKeyPressed(traits[i])) {
+              forStroke.add(new Step(traits[i], null));
+            }
+          } else {
+            for (KeyStrokeHandler h : keymaps[i].getHandlers(p, ks)) {
+              forStroke.add(new Step(traits[i], h));
+            }
+          }
+        }
+        steps.put(ks, forStroke.toArray(new Step[forStroke.size()]));
+      }
+
+      result.myOpaqueSteps[p.ordinal()] = opaque.toArray(new Step[opaque.size()]);
+      result.mySteps.add(steps);
+    }
+    return result;
+  }
+
+  private static boolean handlesKeyPressed(CellTrait trait) {
+    return (trait.getEventMask() & CellEventSpec.KEY_PRESSED.getMask()) != 0;
+  }
+
+  private final Step[][] myOpaqueSteps = new Step[PRIORITIES.length][];
+  private final List<Map<KeyStroke, Step[]>> mySteps = new ArrayList<>(PRIORITIES.length);
+
+  private KeyDispatchTable() {
+  }
+
+  void dispatch(Cell cell, KeyEvent event) {
+    KeyStroke keyStroke = event.getKeyStroke();
+    for (EventPriority p : PRIORITIES) {
+      Step[] steps = mySteps.get(p.ordinal()).get(keyStroke);
+      if (steps == null) {
+        steps = myOpaqueSteps[p.ordinal()];
+      }
+      for (Step s : steps) {
+        s.run(cell, event, p);
+        if (event.isConsumed()) return;
+      }
+    }
+  }
+
+  private static class Step {
+    private final CellTrait myTrait;
+    private final KeyStrokeHandler myHandler;
+
+    Step(CellTrait trait, KeyStrokeHandler handler) {
+      myTrait = trait;
+      myHandler = handler;
+    }
+
+    void run(Cell cell, KeyEvent event, EventPriority priority) {
+      if (myHandler != null) {
+        myHandler.handle(cell, event);
+      } else if (priority == EventPriority.LOW) {
+        myTrait.onKeyPressedLowPriority(cell, event);
+      } else {
+        myTrait.onKeyPressed(cell, event);
+      }
+    }
+  }
+}
@@ -73,7 +73,9 @@ public final class CellCompletionController implements CompletionController {
     };
     CompletionSupport.showCompletion(
         myCell.get(CompletionSupport.EDITOR),
-        Completion.allCompletion(myCell, menuCompletionParameters()),
+        myCell.get(Completion.COMPLETION),
+        menuCompletionParameters(),
+        myCell.getContainer().getEdt(),
         deactivate,
         Runnables.seq(state, restoreFocus));
   }
@@ -93,7 +93,17 @@ class CompletionMenu {
             }
           }));
 
-      conf.add(Synchronizers.forPropsOneWay(getSource().loading, Properties.ifProp(myEmptyCell.text(), "Loading...", "<no completion items>")));
+      final CompletionMenuModel model = getSource();
+      ReadableProperty<String> emptyText = new DerivedProperty<String>(model.loading, model.failure) {
+        @Override
+        public String doGet() {
+          if (model.loading.get()) {
+            return "Loading...";
+          }
+          return model.failure.get() == null ? "<no completion items>" : "<completion failed>";
+        }
+      };
+      conf.add(Synchronizers.forPropsOneWay(emptyText, myEmptyCell.text()));
       conf.add(Synchronizers.forPropsOneWay(getSource().loading, Properties.ifProp(myEmptyCell.textColor(), Color.GRAY, Color.RED)));
       conf.add(Synchronizers.forPropsOneWay(Properties.isEmpty(getSource().visibleItems), myEmptyCell.visible()));
     }
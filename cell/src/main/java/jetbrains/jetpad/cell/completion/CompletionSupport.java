@@ -19,17 +19,22 @@ import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import jetbrains.jetpad.base.*;
+import jetbrains.jetpad.base.edt.EventDispatchThread;
 import jetbrains.jetpad.cell.*;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.text.TextEditing;
 import jetbrains.jetpad.cell.text.TextEditingTrait;
 import jetbrains.jetpad.cell.text.TextEditor;
+import jetbrains.jetpad.cell.trait.CellKeymap;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
 import jetbrains.jetpad.completion.*;
 import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyStroke;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.model.event.CompositeRegistration;
 import jetbrains.jetpad.model.event.EventHandler;
@@ -111,7 +116,10 @@ public class CompletionSupport {
     };
   }
 
-  static void showCompletion(final TextEditor editor, Async<List<CompletionItem>> items,
+  /**
+   * Items are streamed into the menu as the supplier delivers them. Loading is cancelled when the menu is closed.
+   */
+  static void showCompletion(final TextEditor editor, CompletionSupplier supplier, CompletionParameters cp, EventDispatchThread edt,
                              final Runnable restoreCompletionState, final Runnable restoreFocusState) {
 
     if (!editor.focused().get()) {
@@ -119,7 +127,7 @@ public class CompletionSupport {
     }
 
     final CompletionMenuModel menuModel = new CompletionMenuModel();
-    menuModel.loading.set(true);
+    final CompletionLoader loader = new CompletionLoader(menuModel, edt, 0);
 
     final CompositeRegistration completionReg = new CompositeRegistration();
 
@@ -195,25 +203,14 @@ public class CompletionSupport {
     completionReg.add(new Registration() {
       @Override
       protected void doRemove() {
+        loader.cancel();
         completionCell.removeFromParent();
         disposeMenuMapper.remove();
         restoreCompletionState.run();
       }
     });
 
-    items.onSuccess(new Handler<List<CompletionItem>>() {
-      @Override
-      public void handle(List<CompletionItem> items) {
-        menuModel.loading.set(false);
-        menuModel.items.addAll(items);
-      }
-    });
-    items.onFailure(new Handler<Throwable>() {
-      @Override
-      public void handle(Throwable item) {
-        menuModel.loading.set(true);
-      }
-    });
+    loader.load(cp, Collections.singletonList(supplier));
 
     editor.setCompletionItems(completionCell);
     completionCell.scrollTo();
@@ -280,6 +277,26 @@ public class CompletionSupport {
                 }
               });
             }
+
+            @Override
+            public Registration getStream(CompletionParameters cp, final CompletionStreamHandler handler) {
+              return supplier.getStream(wrap(cp), new CompletionStreamHandler() {
+                @Override
+                public void onBatch(List<CompletionItem> items) {
+                  handler.onBatch(Lists.transform(items, wrap));
+                }
+
+                @Override
+                public void onFinished() {
+                  handler.onFinished();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                  handler.onFailure(t);
+                }
+              });
+            }
           };
         }
 
@@ -299,14 +316,14 @@ public class CompletionSupport {
       }
 
       @Override
-      public void onKeyPressed(Cell cell, KeyEvent event) {
-        if (event.is(Key.ESCAPE)) {
-          dismiss.get().handle(false);
-          event.consume();
-          return;
-        }
-
-        super.onKeyPressed(cell, event);
+      protected CellKeymap createKeymap() {
+        return new CellKeymap().onKeyPressed(new KeyStroke(Key.ESCAPE), new KeyStrokeHandler() {
+          @Override
+          public void handle(Cell cell, KeyEvent event) {
+            dismiss.get().handle(false);
+            event.consume();
+          }
+        }).addAll(super.createKeymap());
       }
 
       @Override
@@ -335,6 +352,11 @@ public class CompletionSupport {
         return true;
       }
 
+      @Override
+      public int getEventMask() {
+        return super.getEventMask() | CellEventSpec.FOCUS_LOST.getMask();
+      }
+
       @Override
       public void onFocusLost(Cell cell, FocusEvent event) {
         super.onFocusLost(cell, event);
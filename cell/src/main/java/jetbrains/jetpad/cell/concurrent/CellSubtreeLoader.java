@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.concurrent;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds cell subtrees outside of the event dispatch thread and attaches them in one command on it.
+ * The builder creates detached cells, e.g. by attaching root mappers with cell targets, and must not touch the cells
+ * which are attached to a container. Model bindings of such mappers are created on the worker thread, so the model
+ * shouldn't be changed until the cells are attached.
+ */
+public class CellSubtreeLoader {
+  private final CellContainer myContainer;
+  private final Executor myWorker;
+  private final Executor myEdt;
+
+  /**
+   * @param worker executor for building the cells, e.g. a pool of virtual threads
+   * @param edt executor which runs tasks on the container's event dispatch thread
+   */
+  public CellSubtreeLoader(CellContainer container, Executor worker, Executor edt) {
+    myContainer = container;
+    myWorker = worker;
+    myEdt = edt;
+  }
+
+  /**
+   * Rejects changes of the attached cells made on other threads than the current one, which should be the
+   * event dispatch thread of the container.
+   */
+  public static Registration confineToCurrentThread(final CellContainer container) {
+    final Thread owner = Thread.currentThread();
+    container.setMutationChecker(new Runnable() {
+      @Override
+      public void run() {
+        Thread current = Thread.currentThread();
+        if (current != owner) {
+          throw new IllegalStateException("Attached cells can only be changed on " + owner + ", but were changed on " + current);
+        }
+      }
+    });
+    return new Registration() {
+      @Override
+      protected void doRemove() {
+        container.setMutationChecker(null);
+      }
+    };
+  }
+
+  public ListenableFuture<List<Cell>> load(final Cell parent, final int index, final Callable<? extends List<? extends Cell>> builder) {
+    final SettableFuture<List<Cell>> result = SettableFuture.create();
+    myWorker.execute(new Runnable() {
+      @Override
+      public void run() {
+        final List<Cell> cells;
+        try {
+          cells = new ArrayList<>(builder.call());
+        } catch (Throwable t) {
+          result.setException(t);
+          return;
+        }
+        myEdt.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              myContainer.attachChildren(parent, index, cells);
+              result.set(cells);
+            } catch (Throwable t) {
+              result.setException(t);
+            }
+          }
+        });
+      }
+    });
+    return result;
+  }
+}
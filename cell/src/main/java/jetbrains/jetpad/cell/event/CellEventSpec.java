@@ -20,6 +20,10 @@ import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.event.*;
 
 public class CellEventSpec<EventT extends Event> {
+  private static int ourCount;
+
+  public static final int ALL_EVENTS_MASK = ~0;
+
   public static final CellEventSpec<KeyEvent> KEY_PRESSED = new CellEventSpec<>("keyPressed");
   public static final CellEventSpec<KeyEvent> KEY_RELEASED = new CellEventSpec<>("keyReleased");
   public static final CellEventSpec<KeyEvent> KEY_TYPED = new CellEventSpec<>("keyTyped");
@@ -42,10 +46,32 @@ public class CellEventSpec<EventT extends Event> {
 
   public static final CellEventSpec<CompletionEvent> COMPLETE = new CellEventSpec<>("complete");
 
+  public static int getCount() {
+    return ourCount;
+  }
+
+  public static int mask(CellEventSpec<?>... specs) {
+    int result = 0;
+    for (CellEventSpec<?> spec : specs) {
+      result |= spec.getMask();
+    }
+    return result;
+  }
+
   private String myName;
+  private int myIndex;
 
   private CellEventSpec(String name) {
     myName = name;
+    myIndex = ourCount++;
+  }
+
+  public int getIndex() {
+    return myIndex;
+  }
+
+  public int getMask() {
+    return 1 << myIndex;
   }
 
   public void dispatch(Cell c, EventT e, CellTrait ct) {
@@ -18,6 +18,7 @@ package jetbrains.jetpad.cell.indent;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.ChildRangeEvent;
 import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.event.ListenerCaller;
@@ -96,6 +97,25 @@ public class IndentCell extends Cell {
     container.handleChildRemove(event);
   }
 
+  /**
+   * The range is passed to the container as a whole rather than item by item
+   */
+  @Override
+  protected void onBeforeChildrenReplaced(ChildRangeEvent event) {
+    IndentCell container = indentContainer();
+    if (container == null) return;
+
+    container.handleChildrenRemove(event);
+  }
+
+  @Override
+  protected void onChildrenReplaced(ChildRangeEvent event) {
+    IndentCell container = indentContainer();
+    if (container == null) return;
+
+    container.handleChildrenAdd(event);
+  }
+
   void handleChildAdd(final CollectionItemEvent<? extends Cell> event) {
     checkRootIndent();
 
@@ -120,6 +140,42 @@ public class IndentCell extends Cell {
     });
   }
 
+  void handleChildrenAdd(final ChildRangeEvent event) {
+    checkRootIndent();
+
+    if (myListeners == null || event.getNewItems().isEmpty()) return;
+    myListeners.fire(new ListenerCaller<IndentContainerCellListener>() {
+      @Override
+      public void call(IndentContainerCellListener l) {
+        if (l instanceof IndentContainerCellRangeListener) {
+          ((IndentContainerCellRangeListener) l).childrenAdded(event);
+          return;
+        }
+        for (CollectionItemEvent<Cell> e : event.toAddEvents()) {
+          l.childAdded(e);
+        }
+      }
+    });
+  }
+
+  void handleChildrenRemove(final ChildRangeEvent event) {
+    checkRootIndent();
+
+    if (myListeners == null || event.getOldItems().isEmpty()) return;
+    myListeners.fire(new ListenerCaller<IndentContainerCellListener>() {
+      @Override
+      public void call(IndentContainerCellListener l) {
+        if (l instanceof IndentContainerCellRangeListener) {
+          ((IndentContainerCellRangeListener) l).childrenRemoved(event);
+          return;
+        }
+        for (CollectionItemEvent<Cell> e : event.toRemoveEvents()) {
+          l.childRemoved(e);
+        }
+      }
+    });
+  }
+
   void handlePropertyChanged(final Cell cell, final CellPropertySpec<?> prop, final PropertyChangeEvent<?> event) {
     checkRootIndent();
 
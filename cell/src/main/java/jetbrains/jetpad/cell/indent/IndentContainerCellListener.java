@@ -23,5 +23,6 @@ import jetbrains.jetpad.cell.CellPropertySpec;
 public interface IndentContainerCellListener {
   void childAdded(CollectionItemEvent<? extends Cell> event);
   void childRemoved(CollectionItemEvent<? extends Cell> event);
+
   void propertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event);
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.indent;
+
+import jetbrains.jetpad.cell.ChildRangeEvent;
+
+/**
+ * Listeners which implement this interface get consecutive children which are added or removed at once
+ * as one event. Other listeners get them item by item.
+ */
+public interface IndentContainerCellRangeListener extends IndentContainerCellListener {
+  void childrenAdded(ChildRangeEvent event);
+
+  /**
+   * Like {@link #childRemoved}, it's called before the old items of the event are removed
+   */
+  void childrenRemoved(ChildRangeEvent event);
+}
@@ -16,6 +16,7 @@
 package jetbrains.jetpad.cell.indent;
 
 import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.ChildRangeEvent;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 
 public class NewLineCell extends IndentCell {
@@ -24,4 +25,11 @@ public class NewLineCell extends IndentCell {
   protected void onChildAdded(CollectionItemEvent<? extends Cell> event) {
     throw new IllegalStateException("You shouldn't add anything to new line cells");
   }
+
+  @Override
+  protected void onChildrenReplaced(ChildRangeEvent event) {
+    if (!event.getNewItems().isEmpty()) {
+      throw new IllegalStateException("You shouldn't add anything to new line cells");
+    }
+  }
 }
\ No newline at end of file
@@ -34,7 +34,7 @@ public class IndentUpdater<TargetT> {
   private Map<Cell, Registration> myChildRegistrations = new HashMap<>();
   private boolean myInitialized;
 
-  private Set<Cell> myAttached = new HashSet<>();
+  private PositionIndex myIndex = new PositionIndex();
 
   public IndentUpdater(
       Cell root,
@@ -56,7 +56,42 @@ public class IndentUpdater<TargetT> {
   }
 
   public void childAdded(Cell child) {
-    childAdded(child, true);
+    if (child instanceof NewLineCell || isCell(child)) {
+      childAdded(child, true);
+    } else {
+      childrenAdded(Collections.singletonList(child));
+    }
+  }
+
+  /**
+   * Handles consecutive siblings which were added at once. If they contain new lines, the cells which follow
+   * them on the same line are moved to the last added line only once rather than on every added new line.
+   */
+  public void childrenAdded(List<? extends Cell> children) {
+    if (children.isEmpty()) return;
+
+    Cell first = children.get(0);
+    if (!isVisible(first.getParent()) || !hasVisibleNewLine(children)) {
+      for (Cell c : children) {
+        childAdded(c, true);
+      }
+      return;
+    }
+
+    List<Cell> tail = detachTail(first);
+    for (Cell c : children) {
+      childAdded(c, true);
+    }
+    attachTail(tail);
+  }
+
+  private boolean hasVisibleNewLine(List<? extends Cell> cells) {
+    for (Cell c : cells) {
+      if (!c.get(Cell.VISIBLE)) continue;
+      if (c instanceof NewLineCell) return true;
+      if (!isCell(c) && hasVisibleNewLine(c.children())) return true;
+    }
+    return false;
   }
 
   private void childAdded(Cell child, boolean real) {
@@ -81,6 +116,15 @@ public class IndentUpdater<TargetT> {
     childRemoved(child, true);
   }
 
+  /**
+   * Handles consecutive siblings which are about to be removed at once
+   */
+  public void childrenRemoved(List<? extends Cell> children) {
+    for (int i = children.size() - 1; i >= 0; i--) {
+      childRemoved(children.get(i), true);
+    }
+  }
+
   private void childRemoved(Cell child, boolean real) {
     List<Cell> children = child.children();
 
@@ -98,7 +142,7 @@ public class IndentUpdater<TargetT> {
   }
 
   public void visibilityChanged(Cell item, PropertyChangeEvent<Boolean> change) {
-    if (item == root()) return;
+    if (item == myRoot) return;
 
     if (change.getNewValue()) {
       childAdded(item, false);
@@ -121,23 +165,21 @@ public class IndentUpdater<TargetT> {
 
     setAttached(child, true);
 
-    Position insertAt = new Position(this, child);
-    Position prevNewLinePos = prevNewLine(insertAt.prev());
+    Cell prevNewLine = prevNewLine(child);
 
     if (isCell(child)) {
       CellWrapper<TargetT> wrapper = myIndentUpdaterTarget.wrap(child);
       myWrappers.put(child, wrapper);
 
-      if (prevNewLinePos == null) {
-        Position first = new Position(this, firstLeaf(myRoot));
-        children(children(myTarget).get(0)).add(first.deltaTo(insertAt), wrapper.item());
+      if (prevNewLine == null) {
+        children(children(myTarget).get(0)).add(myIndex.cellsBefore(child), wrapper.item());
       } else {
-        TargetT targetLine = myNewLineToLine.get(prevNewLinePos.get());
-        int indentDelta = indent(prevNewLinePos.get()) > 0 ? 1 : 0;
-        children(targetLine).add(prevNewLinePos.deltaTo(insertAt) - 1 + indentDelta, wrapper.item());
+        TargetT targetLine = myNewLineToLine.get(prevNewLine);
+        int indentDelta = indent(prevNewLine) > 0 ? 1 : 0;
+        children(targetLine).add(cellsBetween(prevNewLine, child) + indentDelta, wrapper.item());
       }
     } else if (child instanceof NewLineCell) {
-      Position nextNewLinePos = nextNewLine(insertAt.next());
+      Cell nextNewLine = nextNewLine(child);
 
       TargetT newLine = myIndentUpdaterTarget.newLine();
       int indent = indent(child);
@@ -149,19 +191,10 @@ public class IndentUpdater<TargetT> {
 
       myNewLineToLine.put(child, newLine);
 
-      if (prevNewLinePos == null) {
-        children(myTarget).add(1, newLine);
-      } else {
-        TargetT prevLine = myNewLineToLine.get(prevNewLinePos.get());
-
-        //this is optimization for the initalization case
-        int prevLineIndex = children(myTarget).lastIndexOf(prevLine);
-        children(myTarget).add(prevLineIndex + 1, newLine);
-      }
+      //the first line is the one before all the new lines
+      children(myTarget).add(myIndex.newLinesBefore(child) + 1, newLine);
 
-      Iterator<Position> positions = nextNewLinePos == null ? toEnd(insertAt.next()) : range(insertAt.next(), nextNewLinePos);
-      while (positions.hasNext()) {
-        Cell part = positions.next().get();
+      for (Cell part = myIndex.next(child); part != null && part != nextNewLine; part = myIndex.next(part)) {
         if (!isCell(part)) continue;
         CellWrapper<TargetT> wrapper = myWrappers.get(part);
         TargetT item = wrapper.item();
@@ -183,19 +216,17 @@ public class IndentUpdater<TargetT> {
       throw new IllegalStateException("child " + child + " is already detached");
     }
 
-    Position removeAt = new Position(this, child);
-    Position prevNewLinePos = prevNewLine(removeAt.prev());
+    Cell prevNewLine = prevNewLine(child);
 
     if (isCell(child)) {
       TargetT line;
       int index;
-      if (prevNewLinePos == null) {
-        Position first = new Position(this, firstLeaf(myRoot));
+      if (prevNewLine == null) {
         line = children(myTarget).get(0);
-        index = first.deltaTo(removeAt);
+        index = myIndex.cellsBefore(child);
       } else {
-        line = myNewLineToLine.get(prevNewLinePos.get());
-        index = prevNewLinePos.deltaTo(removeAt) - 1 + (indent(prevNewLinePos.get()) > 0 ? 1 : 0);
+        line = myNewLineToLine.get(prevNewLine);
+        index = cellsBetween(prevNewLine, child) + (indent(prevNewLine) > 0 ? 1 : 0);
       }
 
       TargetT toRemove = children(line).get(index);
@@ -221,10 +252,10 @@ public class IndentUpdater<TargetT> {
       removeFromParent(lineCell);
 
       TargetT mergeWith;
-      if (prevNewLinePos == null) {
+      if (prevNewLine == null) {
         mergeWith = children(myTarget).get(0);
       } else {
-        mergeWith = myNewLineToLine.get(prevNewLinePos.get());
+        mergeWith = myNewLineToLine.get(prevNewLine);
       }
 
       for (TargetT c : new ArrayList<>(children(lineCell))) {
@@ -236,76 +267,62 @@ public class IndentUpdater<TargetT> {
     setAttached(child, false);
   }
 
-  private void removeFromParent(TargetT c) {
-    children(myIndentUpdaterTarget.parent(c)).remove(c);
-  }
-
-  private Position prevNewLine(Position from) {
-    Position current = from;
-    while (current != null) {
-      if (current.get() instanceof NewLineCell) {
-        return current;
-      }
-      current = current.prev();
+  /**
+   * Unindexes the attached cells from the position of this one to the next new line. Their items stay in the
+   * line, after the items of the cells which are added before them.
+   */
+  private List<Cell> detachTail(Cell cell) {
+    Cell prev = prevAttached(cell);
+    List<Cell> tail = new ArrayList<>();
+    for (Cell part = prev == null ? myIndex.first() : myIndex.next(prev);
+         part != null && !(part instanceof NewLineCell); part = myIndex.next(part)) {
+      tail.add(part);
     }
-    return null;
-  }
-
-  private Position nextNewLine(Position from) {
-    Position current = from;
-    while (current != null) {
-      if (current.get() instanceof NewLineCell) {
-        return current;
-      }
-      current = current.next();
+    for (Cell part : tail) {
+      myIndex.remove(part);
     }
-    return null;
+    return tail;
   }
 
-  private Iterator<Position> toEnd(final Position pos) {
-    return new Iterator<Position>() {
-      private Position myCurrent = pos;
-
-      @Override
-      public boolean hasNext() {
-        return myCurrent != null;
-      }
+  private void attachTail(List<Cell> tail) {
+    for (Cell part : tail) {
+      myIndex.insertAfter(prevAttached(part), part);
+    }
 
-      @Override
-      public Position next() {
-        Position result = myCurrent;
-        myCurrent = myCurrent.next();
-        return result;
+    TargetT line = null;
+    for (Cell part : tail) {
+      if (!isCell(part)) continue;
+      if (line == null) {
+        Cell prevNewLine = prevNewLine(part);
+        line = prevNewLine == null ? children(myTarget).get(0) : myNewLineToLine.get(prevNewLine);
       }
 
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    };
+      TargetT item = myWrappers.get(part).item();
+      if (myIndentUpdaterTarget.parent(item) == line) return;
+      removeFromParent(item);
+      children(line).add(item);
+    }
   }
 
-  private Iterator<Position> range(final Position from, final Position to) {
-    return new Iterator<Position>() {
-      private Position myCurrent = from;
+  private void removeFromParent(TargetT c) {
+    children(myIndentUpdaterTarget.parent(c)).remove(c);
+  }
 
-      @Override
-      public boolean hasNext() {
-        return !myCurrent.equals(to);
-      }
+  /**
+   * The last new line before the cell, which is also before all the cell's children
+   */
+  private Cell prevNewLine(Cell cell) {
+    int index = myIndex.newLinesBefore(cell);
+    return index == 0 ? null : myIndex.newLine(index - 1);
+  }
 
-      @Override
-      public Position next() {
-        Position result = myCurrent;
-        myCurrent = myCurrent.next();
-        return result;
-      }
+  private Cell nextNewLine(Cell cell) {
+    int index = myIndex.newLinesBefore(cell) + (cell instanceof NewLineCell ? 1 : 0);
+    return index < myIndex.newLineCount() ? myIndex.newLine(index) : null;
+  }
 
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    };
+  private int cellsBetween(Cell from, Cell to) {
+    return myIndex.cellsBefore(to) - myIndex.cellsBefore(from) - (isCell(from) ? 1 : 0);
   }
 
   private int indent(Cell part) {
@@ -313,8 +330,8 @@ public class IndentUpdater<TargetT> {
     Cell current = part.getParent();
     Cell prevCurrent = part;
     while (current != myRoot) {
-      Position prevNewLine = prevNewLine(new Position(this, prevCurrent));
-      if (isIndented(current) && prevNewLine != null && prevNewLine.get().getParent() == current) {
+      Cell prevNewLine = prevCurrent instanceof NewLineCell ? prevCurrent : prevNewLine(prevCurrent);
+      if (isIndented(current) && prevNewLine != null && prevNewLine.getParent() == current) {
         result++;
       }
 
@@ -324,21 +341,32 @@ public class IndentUpdater<TargetT> {
     return result;
   }
 
-  private Cell firstLeaf(Cell item) {
-    if (isCell(item)) return item;
-    for (Cell child : item.children()) {
-      if (isVisible(child) && !isEmptyIndent(child)) {
-        return firstLeaf(child);
-      }
+  /**
+   * The attached cell which precedes this one in document order, i.e. the last attached descendant of
+   * the previous attached sibling, or the parent
+   */
+  private Cell prevAttached(Cell cell) {
+    Cell prev = cell.prevSibling();
+    while (prev != null && !isAttached(prev)) {
+      prev = prev.prevSibling();
+    }
+    if (prev == null) {
+      Cell parent = cell.getParent();
+      return parent == myRoot ? null : parent;
     }
-    return item;
-  }
 
-  Cell root() {
-    return myRoot;
+    while (!isCell(prev)) {
+      Cell last = prev.lastChild();
+      while (last != null && !isAttached(last)) {
+        last = last.prevSibling();
+      }
+      if (last == null) break;
+      prev = last;
+    }
+    return prev;
   }
 
-  boolean isVisible(Cell source) {
+  private boolean isVisible(Cell source) {
     Cell current = source;
     while (current != myRoot) {
       if (current == null) {
@@ -356,33 +384,22 @@ public class IndentUpdater<TargetT> {
     return myIndentUpdaterTarget.children(target);
   }
 
-  boolean isAttached(Cell src) {
-    return myAttached.contains(src);
+  private boolean isAttached(Cell src) {
+    return myIndex.contains(src);
   }
 
   private void setAttached(final Cell src, boolean value) {
     if (value) {
-      myAttached.add(src);
+      myIndex.insertAfter(prevAttached(src), src);
     } else {
-      myAttached.remove(src);
+      myIndex.remove(src);
     }
   }
 
-  boolean isCell(Cell source) {
+  private boolean isCell(Cell source) {
     return !(source instanceof IndentCell);
   }
 
-  boolean isEmptyIndent(Cell source) {
-    if (!(source instanceof IndentCell)) return false;
-
-    for (Cell c : source.children()) {
-      if (!isVisible(c)) continue;
-      if (!isEmptyIndent(c)) return false;
-    }
-
-    return true;
-  }
-
   private Registration watch(final Cell child) {
     if (isCell(child)) {
       return child.visible().addHandler(new EventHandler<PropertyChangeEvent<Boolean>>() {
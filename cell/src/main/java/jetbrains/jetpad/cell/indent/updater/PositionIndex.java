@@ -0,0 +1,244 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.indent.updater;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.indent.IndentCell;
+import jetbrains.jetpad.cell.indent.NewLineCell;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Attached cells of an indent tree in document order, i.e. every indent cell comes before its children.
+ * It is a treap with subtree counts of entries, of cells which aren't indent cells, and of new lines,
+ * so that the offset of a cell and the n-th new line are found in logarithmic time.
+ */
+class PositionIndex {
+  private final Map<Cell, Node> myNodes = new HashMap<>();
+  private final Random myRandom = new Random(0);
+  private Node myRoot;
+
+  boolean contains(Cell cell) {
+    return myNodes.containsKey(cell);
+  }
+
+  /**
+   * @param prev the entry after which the cell is inserted, or null to insert it first
+   */
+  void insertAfter(Cell prev, Cell cell) {
+    if (myNodes.containsKey(cell)) {
+      throw new IllegalStateException("cell " + cell + " is already indexed");
+    }
+    Node node = new Node(cell, myRandom.nextInt());
+    myNodes.put(cell, node);
+    Node[] split = split(myRoot, prev == null ? 0 : entriesBefore(getNode(prev)) + 1);
+    setRoot(merge(merge(split[0], node), split[1]));
+  }
+
+  void remove(Cell cell) {
+    Node node = getNode(cell);
+    myNodes.remove(cell);
+    int index = entriesBefore(node);
+    Node[] right = split(myRoot, index + 1);
+    Node[] left = split(right[0], index);
+    setRoot(merge(left[0], right[1]));
+  }
+
+  /**
+   * Number of cells which aren't indent cells before this one
+   */
+  int cellsBefore(Cell cell) {
+    Node node = getNode(cell);
+    int result = cells(node.left);
+    for (Node n = node; n.parent != null; n = n.parent) {
+      if (n.parent.right == n) {
+        result += cells(n.parent.left) + n.parent.cellWeight;
+      }
+    }
+    return result;
+  }
+
+  int newLinesBefore(Cell cell) {
+    Node node = getNode(cell);
+    int result = newLines(node.left);
+    for (Node n = node; n.parent != null; n = n.parent) {
+      if (n.parent.right == n) {
+        result += newLines(n.parent.left) + n.parent.newLineWeight;
+      }
+    }
+    return result;
+  }
+
+  int newLineCount() {
+    return newLines(myRoot);
+  }
+
+  /**
+   * @return the new line with this index counting from 0
+   */
+  Cell newLine(int index) {
+    if (index < 0 || index >= newLineCount()) {
+      throw new IndexOutOfBoundsException("index = " + index);
+    }
+    Node current = myRoot;
+    while (true) {
+      int left = newLines(current.left);
+      if (index < left) {
+        current = current.left;
+      } else if (index == left && current.newLineWeight == 1) {
+        return current.value;
+      } else {
+        index -= left + current.newLineWeight;
+        current = current.right;
+      }
+    }
+  }
+
+  Cell first() {
+    if (myRoot == null) return null;
+    Node current = myRoot;
+    while (current.left != null) {
+      current = current.left;
+    }
+    return current.value;
+  }
+
+  Cell next(Cell cell) {
+    Node node = getNode(cell);
+    if (node.right != null) {
+      Node current = node.right;
+      while (current.left != null) {
+        current = current.left;
+      }
+      return current.value;
+    }
+    Node current = node;
+    while (current.parent != null && current.parent.right == current) {
+      current = current.parent;
+    }
+    return current.parent == null ? null : current.parent.value;
+  }
+
+  private Node getNode(Cell cell) {
+    Node node = myNodes.get(cell);
+    if (node == null) {
+      throw new IllegalStateException("cell " + cell + " isn't indexed");
+    }
+    return node;
+  }
+
+  private int entriesBefore(Node node) {
+    int result = size(node.left);
+    for (Node n = node; n.parent != null; n = n.parent) {
+      if (n.parent.right == n) {
+        result += size(n.parent.left) + 1;
+      }
+    }
+    return result;
+  }
+
+  private void setRoot(Node root) {
+    myRoot = root;
+    if (root != null) {
+      root.parent = null;
+    }
+  }
+
+  /**
+   * @return the treap of the first {@code count} entries and the treap of the rest
+   */
+  private Node[] split(Node node, int count) {
+    if (node == null) {
+      return new Node[2];
+    }
+    Node[] result;
+    if (size(node.left) >= count) {
+      result = split(node.left, count);
+      node.left = result[1];
+      result[1] = node;
+    } else {
+      result = split(node.right, count - size(node.left) - 1);
+      node.right = result[0];
+      result[0] = node;
+    }
+    update(node);
+    return result;
+  }
+
+  private Node merge(Node left, Node right) {
+    if (left == null) return right;
+    if (right == null) return left;
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      update(left);
+      return left;
+    } else {
+      right.left = merge(left, right.left);
+      update(right);
+      return right;
+    }
+  }
+
+  private void update(Node node) {
+    node.size = 1 + size(node.left) + size(node.right);
+    node.cells = node.cellWeight + cells(node.left) + cells(node.right);
+    node.newLines = node.newLineWeight + newLines(node.left) + newLines(node.right);
+    if (node.left != null) {
+      node.left.parent = node;
+    }
+    if (node.right != null) {
+      node.right.parent = node;
+    }
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int cells(Node node) {
+    return node == null ? 0 : node.cells;
+  }
+
+  private static int newLines(Node node) {
+    return node == null ? 0 : node.newLines;
+  }
+
+  private static class Node {
+    private final Cell value;
+    private final int priority;
+    private final int cellWeight;
+    private final int newLineWeight;
+
+    private Node left;
+    private Node right;
+    private Node parent;
+
+    private int size = 1;
+    private int cells;
+    private int newLines;
+
+    private Node(Cell value, int priority) {
+      this.value = value;
+      this.priority = priority;
+      cellWeight = value instanceof IndentCell ? 0 : 1;
+      newLineWeight = value instanceof NewLineCell ? 1 : 0;
+      cells = cellWeight;
+      newLines = newLineWeight;
+    }
+  }
+}
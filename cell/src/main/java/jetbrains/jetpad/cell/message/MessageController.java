@@ -93,6 +93,7 @@ public final class MessageController {
 
 
   private CellContainer myContainer;
+  private MessageTrait myTrait;
   private MyChildrenListener myChildrenListener;
 
   private MessageController(CellContainer container) {
@@ -102,8 +103,41 @@ public final class MessageController {
     myContainer = container;
   }
 
+  /**
+   * Replaces all broken messages in the container with the given ones in one command. Only the cells whose messages
+   * differ from the given ones are updated.
+   */
+  public void replaceBroken(Map<Cell, String> messages) {
+    replace(BROKEN, messages);
+  }
+
+  public void replaceErrors(Map<Cell, String> messages) {
+    replace(ERROR, messages);
+  }
+
+  public void replaceWarnings(Map<Cell, String> messages) {
+    replace(WARNING, messages);
+  }
+
+  private void replace(final CellPropertySpec<String> prop, final Map<Cell, String> messages) {
+    myContainer.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        for (Cell cell : myTrait.getMessageCells(prop)) {
+          if (!messages.containsKey(cell)) {
+            cell.set(prop, null);
+          }
+        }
+        for (Map.Entry<Cell, String> entry : messages.entrySet()) {
+          set(entry.getKey(), entry.getValue(), prop);
+        }
+      }
+    });
+  }
+
   private CompositeRegistration install(MessageTrait trait) {
     CompositeRegistration result = new CompositeRegistration();
+    myTrait = trait;
 
     result.add(myContainer.root.addTrait(new CellTrait() {
       @Override
@@ -146,6 +180,7 @@ public final class MessageController {
           throw new IllegalStateException();
         }
         final Registration decorationReg = cell.addTrait(myTrait);
+        myTrait.attach(cell);
         if (myRegistrations == null) {
           myRegistrations = new HashMap<>();
         }
@@ -20,21 +20,32 @@ import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellContainer;
 import jetbrains.jetpad.cell.CellPropertySpec;
 import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
 import jetbrains.jetpad.event.KeyStrokeSpecs;
 import jetbrains.jetpad.event.MouseEvent;
+import jetbrains.jetpad.model.composite.Composites;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.values.Color;
 import jetbrains.jetpad.values.FontFamily;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Messages are stored in the cell properties only. A popup cell for a message is created when the cell or one of its
+ * descendants is focused or hovered, so that the cells which the user doesn't look at don't have popup cells.
+ */
 class MessageTrait extends CellTrait {
   static final CellPropertySpec<Cell> POPUP_POSITION = Cell.TOP_POPUP;
   static final CellPropertySpec<Boolean> POPUP_ACTIVE = new CellPropertySpec<>("isMessagePopupActive", false);
@@ -55,14 +66,30 @@ class MessageTrait extends CellTrait {
   private Map<Cell, LowPriorityPopupSupport> myRegistrations = null;
   private StyleApplicator myStyler;
 
+  private Map<CellPropertySpec<String>, Set<Cell>> myMessageCells = new HashMap<>();
+  private MouseEvent myLastMouseEvent;
+  private Cell myHoveredCell;
+
   MessageTrait(CellContainer container, StyleApplicator styleApplicator) {
     myContainer = container;
     myStyler = styleApplicator;
   }
 
+  @Override
+  public int getEventMask() {
+    return CellEventSpec.mask(CellEventSpec.KEY_PRESSED, CellEventSpec.KEY_TYPED, CellEventSpec.FOCUS_GAINED, CellEventSpec.FOCUS_LOST,
+        CellEventSpec.MOUSE_ENTERED, CellEventSpec.MOUSE_LEFT, CellEventSpec.MOUSE_MOVED);
+  }
+
+  @Override
+  public Set<CellTraitPropertySpec<?>> getTraitPropertySpecs() {
+    return Collections.emptySet();
+  }
+
   @Override
   public void onPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
     if (ERROR_PROPS_PRIORITY.contains(prop)) {
+      updateMessageCells(cell, (CellPropertySpec<String>) prop, (PropertyChangeEvent<String>) event);
       updateDecorations(cell, (CellPropertySpec<String>) prop, (PropertyChangeEvent<String>) event);
       updatePopup(cell, (CellPropertySpec<String>) prop, (PropertyChangeEvent<String>) event);
 
@@ -71,17 +98,30 @@ class MessageTrait extends CellTrait {
       if (change.getOldValue() != null && cell.get(POPUP_ACTIVE)) {
         removePopup(cell, change.getOldValue());
       }
-      if (change.getNewValue() == null) {
-        CellPropertySpec<String> message = getFirstNotNullProp(cell);
-        if (message != null) {
-          setPopup(cell, cell.get(message));
-        }
+      if (change.getNewValue() == null && isLookedAt(cell)) {
+        materializePopup(cell);
       }
     }
 
     super.onPropertyChanged(cell, prop, event);
   }
 
+  private void materializePopup(Cell cell) {
+    if (cell.get(POPUP_ACTIVE) || cell.get(POPUP_POSITION) != null) return;
+    CellPropertySpec<String> message = getFirstNotNullProp(cell);
+    if (message != null) {
+      setPopup(cell, cell.get(message));
+    }
+  }
+
+  private boolean isLookedAt(Cell cell) {
+    if (myHoveredCell != null && (myHoveredCell == cell || Composites.isDescendant(cell, myHoveredCell))) {
+      return true;
+    }
+    Cell focused = myContainer.focusedCell.get();
+    return focused != null && (focused == cell || Composites.isDescendant(cell, focused));
+  }
+
   private void setPopup(Cell cell, String message) {
     TextCell popup = new TextCell();
     popup.visible().set(false);
@@ -162,6 +202,11 @@ class MessageTrait extends CellTrait {
     super.onKeyPressed(cell, event);
   }
 
+  @Override
+  public void onFocusGained(Cell cell, FocusEvent event) {
+    materializePopup(cell);
+  }
+
   @Override
   public void onFocusLost(Cell cell, FocusEvent event) {
     hidePopup(cell);
@@ -169,6 +214,7 @@ class MessageTrait extends CellTrait {
 
   @Override
   public void onMouseEntered(Cell cell, MouseEvent event) {
+    setHovered(cell, event);
     if (showPopup(cell)) {
       event.consume();
     }
@@ -176,17 +222,31 @@ class MessageTrait extends CellTrait {
 
   @Override
   public void onMouseLeft(Cell cell, MouseEvent event) {
+    if (event != myLastMouseEvent) {
+      myLastMouseEvent = event;
+      myHoveredCell = null;
+    }
     hidePopup(cell);
   }
 
   @Override
   public void onMouseMoved(Cell cell, MouseEvent event) {
+    setHovered(cell, event);
     if (showPopup(cell)) {
       event.consume();
     }
   }
 
+  private void setHovered(Cell cell, MouseEvent event) {
+    // mouse events bubble, so the first cell which gets an event is the one under the mouse
+    if (event != myLastMouseEvent) {
+      myLastMouseEvent = event;
+      myHoveredCell = cell;
+    }
+  }
+
   private boolean showPopup(Cell cell) {
+    materializePopup(cell);
     Cell popup = getMessagePopup(cell);
     return popup != null && show(popup);
   }
@@ -260,7 +320,7 @@ class MessageTrait extends CellTrait {
         if (priority(prop, withHighestPriority)) {
           updateMessage(popup, change.getNewValue());
         }
-      } else if (cell.get(POPUP_POSITION) == null) {
+      } else if (cell.get(POPUP_POSITION) == null && isLookedAt(cell)) {
         setPopup(cell, cell.get(prop));
       }
       return;
@@ -275,6 +335,45 @@ class MessageTrait extends CellTrait {
     }
   }
 
+  private void updateMessageCells(Cell cell, CellPropertySpec<String> prop, PropertyChangeEvent<String> change) {
+    if (change.getOldValue() == null && change.getNewValue() != null) {
+      addMessageCell(cell, prop);
+    } else if (change.getOldValue() != null && change.getNewValue() == null) {
+      removeMessageCell(cell, prop);
+    }
+  }
+
+  private void addMessageCell(Cell cell, CellPropertySpec<String> prop) {
+    Set<Cell> cells = myMessageCells.get(prop);
+    if (cells == null) {
+      cells = new HashSet<>();
+      myMessageCells.put(prop, cells);
+    }
+    cells.add(cell);
+  }
+
+  private void removeMessageCell(Cell cell, CellPropertySpec<String> prop) {
+    Set<Cell> cells = myMessageCells.get(prop);
+    if (cells == null) return;
+    cells.remove(cell);
+    if (cells.isEmpty()) {
+      myMessageCells.remove(prop);
+    }
+  }
+
+  List<Cell> getMessageCells(CellPropertySpec<String> prop) {
+    Set<Cell> cells = myMessageCells.get(prop);
+    return cells == null ? new ArrayList<Cell>() : new ArrayList<>(cells);
+  }
+
+  void attach(Cell cell) {
+    for (CellPropertySpec<String> prop : ERROR_PROPS_PRIORITY) {
+      if (cell.get(prop) != null) {
+        addMessageCell(cell, prop);
+      }
+    }
+  }
+
   private boolean priority(CellPropertySpec<String> p1, CellPropertySpec<String> p2) {
     return ERROR_PROPS_PRIORITY.indexOf(p1) <= ERROR_PROPS_PRIORITY.indexOf(p2);
   }
@@ -301,6 +400,12 @@ class MessageTrait extends CellTrait {
 
   void detach(Cell cell) {
     myStyler.detach(cell);
+    for (CellPropertySpec<String> prop : ERROR_PROPS_PRIORITY) {
+      removeMessageCell(cell, prop);
+    }
+    if (myHoveredCell == cell) {
+      myHoveredCell = null;
+    }
 
     if (myRegistrations == null) return;
     Registration registration = myRegistrations.remove(cell);
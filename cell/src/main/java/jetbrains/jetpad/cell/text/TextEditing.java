@@ -30,6 +30,7 @@ import jetbrains.jetpad.cell.trait.DerivedCellTrait;
 import jetbrains.jetpad.cell.util.CellState;
 import jetbrains.jetpad.cell.util.CellStateDifference;
 import jetbrains.jetpad.cell.util.CellStateHandler;
+import jetbrains.jetpad.cell.util.WeightedCellState;
 import jetbrains.jetpad.values.Color;
 
 public class TextEditing {
@@ -263,7 +264,7 @@ public class TextEditing {
     }
   }
 
-  private static class TextEditorCellState implements CellState {
+  private static class TextEditorCellState implements WeightedCellState {
     private int myCaretPosition;
     private String myText;
     private boolean myValid = true;
@@ -286,6 +287,11 @@ public class TextEditing {
       return result;
     }
 
+    @Override
+    public int getWeight() {
+      return myText == null ? 1 : myText.length() + 1;
+    }
+
     @Override
     public CellStateDifference getDifference(CellState state) {
       if (!(state instanceof TextEditorCellState)) {
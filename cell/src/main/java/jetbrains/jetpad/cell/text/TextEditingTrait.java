@@ -23,8 +23,11 @@ import jetbrains.jetpad.cell.completion.CellCompletionController;
 import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.completion.CompletionItems;
 import jetbrains.jetpad.cell.completion.CompletionSupport;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
+import jetbrains.jetpad.cell.trait.CellKeymap;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
 import jetbrains.jetpad.cell.util.Cells;
 import jetbrains.jetpad.completion.*;
 import jetbrains.jetpad.event.*;
@@ -35,6 +38,11 @@ public class TextEditingTrait extends TextNavigationTrait {
   public TextEditingTrait() {
   }
 
+  @Override
+  public int getEventMask() {
+    return super.getEventMask() | CellEventSpec.mask(CellEventSpec.PASTE, CellEventSpec.CUT, CellEventSpec.COPY);
+  }
+
   @Override
   public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
     if (spec == Completion.COMPLETION_CONTROLLER) {
@@ -51,40 +59,63 @@ public class TextEditingTrait extends TextNavigationTrait {
   }
 
   @Override
-  public void onKeyPressed(Cell cell, KeyEvent event) {
-    CellTextEditor editor = TextEditing.cellTextEditor(cell);
-    String currentText = TextEditing.text(editor);
-    int caret = editor.caretPosition().get();
-    int textLen = currentText.length();
-
-    if (editor.selectionVisible().get() && (event.is(Key.BACKSPACE) || event.is(Key.DELETE))) {
-      clearSelection(editor);
-      event.consume();
-      return;
-    }
-
-    if (event.is(Key.BACKSPACE) && caret > 0) {
-      editor.caretPosition().set(caret - 1);
-      setText(editor, currentText.substring(0, caret - 1) + currentText.substring(caret));
-      onAfterDelete(editor);
-      event.consume();
-      return;
-    }
+  protected CellKeymap createKeymap() {
+    CellKeymap keymap = new CellKeymap();
+
+    keymap.onKeyPressed(new KeyStroke(Key.BACKSPACE), new KeyStrokeHandler() {
+      @Override
+      public void handle(Cell cell, KeyEvent event) {
+        CellTextEditor editor = TextEditing.cellTextEditor(cell);
+        if (editor.selectionVisible().get()) {
+          clearSelection(editor);
+          event.consume();
+          return;
+        }
 
-    if (event.is(Key.DELETE) && caret < textLen) {
-      setText(editor, currentText.substring(0, caret) + currentText.substring(caret + 1));
-      onAfterDelete(editor);
-      event.consume();
-      return;
-    }
+        String currentText = TextEditing.text(editor);
+        int caret = editor.caretPosition().get();
+        if (caret > 0) {
+          editor.caretPosition().set(caret - 1);
+          setText(editor, currentText.substring(0, caret - 1) + currentText.substring(caret));
+          onAfterDelete(editor);
+          event.consume();
+        }
+      }
+    });
+
+    keymap.onKeyPressed(new KeyStroke(Key.DELETE), new KeyStrokeHandler() {
+      @Override
+      public void handle(Cell cell, KeyEvent event) {
+        CellTextEditor editor = TextEditing.cellTextEditor(cell);
+        if (editor.selectionVisible().get()) {
+          clearSelection(editor);
+          event.consume();
+          return;
+        }
 
-    if (event.is(KeyStrokeSpecs.DELETE_CURRENT) && cell.get(TextEditing.CLEAR_ON_DELETE) && !Strings.isNullOrEmpty(editor.text().get())) {
-      setText(editor, "");
-      onAfterDelete(editor);
-      event.consume();
-    }
+        String currentText = TextEditing.text(editor);
+        int caret = editor.caretPosition().get();
+        if (caret < currentText.length()) {
+          setText(editor, currentText.substring(0, caret) + currentText.substring(caret + 1));
+          onAfterDelete(editor);
+          event.consume();
+        }
+      }
+    });
+
+    keymap.onKeyPressed(KeyStrokeSpecs.DELETE_CURRENT, new KeyStrokeHandler() {
+      @Override
+      public void handle(Cell cell, KeyEvent event) {
+        CellTextEditor editor = TextEditing.cellTextEditor(cell);
+        if (cell.get(TextEditing.CLEAR_ON_DELETE) && !Strings.isNullOrEmpty(editor.text().get())) {
+          setText(editor, "");
+          onAfterDelete(editor);
+          event.consume();
+        }
+      }
+    });
 
-    super.onKeyPressed(cell, event);
+    return keymap.addAll(super.createKeymap());
   }
 
   @Override
@@ -21,9 +21,12 @@ import jetbrains.jetpad.cell.TextCell;
 import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.completion.CompletionItems;
 import jetbrains.jetpad.cell.completion.CompletionSupport;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
+import jetbrains.jetpad.cell.trait.CellKeymap;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
 import jetbrains.jetpad.completion.CompletionController;
 import jetbrains.jetpad.completion.CompletionParameters;
 import jetbrains.jetpad.completion.CompletionSupplier;
@@ -34,6 +37,11 @@ import jetbrains.jetpad.model.property.PropertyChangeEvent;
 class TextNavigationTrait extends CellTrait {
   static final CellTraitPropertySpec<Boolean> SELECTION_AVAILABLE = new CellTraitPropertySpec<>("selectionAvailable", true);
 
+  static final int EVENT_MASK = CellEventSpec.mask(CellEventSpec.KEY_PRESSED, CellEventSpec.KEY_TYPED, CellEventSpec.COMPLETE,
+      CellEventSpec.MOUSE_PRESSED, CellEventSpec.MOUSE_DRAGGED);
+
+  private CellKeymap myKeymap;
+
   static int getMinPos(TextEditor t) {
     return t.isFirstAllowed() ? 0 : 1;
   }
@@ -58,76 +66,137 @@ class TextNavigationTrait extends CellTrait {
     return event.is(key, mods);
   }
 
+  /**
+   * Subclasses which override handlers of other events add these events to the mask
+   */
   @Override
-  public void onKeyPressed(Cell cell, KeyEvent event) {
-    CellTextEditor editor = TextEditing.cellTextEditor(cell);
-    String currentText = TextEditing.text(editor);
-    int caret = editor.caretPosition().get();
-    int minCaret = getMinPos(editor);
-    int textLen = currentText.length();
-    int maxCaret = editor.isLastAllowed() ? textLen : textLen - 1;
-
-    boolean selectionAvailable = isSelectionAvailable(editor);
-
-    boolean selection = event.has(ModifierKey.SHIFT);
-    try {
-      if (isCaretKey(selectionAvailable, event, Key.LEFT) && caret > minCaret) {
-        editor.caretPosition().set(caret - 1);
-        editor.scrollToCaret();
-        event.consume();
-        return;
-      }
+  public int getEventMask() {
+    return EVENT_MASK;
+  }
 
-      if (isCaretKey(selectionAvailable, event, Key.RIGHT) && caret < maxCaret) {
-        editor.caretPosition().set(caret + 1);
-        editor.scrollToCaret();
-        event.consume();
-        return;
-      }
+  /**
+   * Key presses are handled by the keymap, which is created once per trait instance
+   */
+  @Override
+  public CellKeymap getKeymap(Cell cell) {
+    if (myKeymap == null) {
+      myKeymap = createKeymap();
+    }
+    return myKeymap;
+  }
 
-      if ((isCaretKey(selectionAvailable, event, Key.LEFT, ModifierKey.ALT) ||
-          event.is(KeyStrokeSpecs.HOME) ||
-          (event.is(KeyStrokeSpecs.SELECT_HOME) && selectionAvailable) ||
-          event.is(KeyStrokeSpecs.PREV_WORD)) && caret > 0) {
-        editor.caretPosition().set(0);
+  /**
+   * Subclasses add the handlers of their key strokes before or after the ones of the super class. Handlers of one key
+   * stroke run in order until the event is consumed.
+   */
+  protected CellKeymap createKeymap() {
+    CellKeymap keymap = new CellKeymap();
+
+    keymap.onKeyPressed(KeyStrokeSpecs.composite(new KeyStroke(Key.LEFT), new KeyStroke(Key.LEFT, ModifierKey.SHIFT)),
+        new CaretHandler() {
+          @Override
+          protected int moveCaret(CellTextEditor editor, KeyEvent event, boolean selectionAvailable, int caret, int maxCaret) {
+            if (isCaretKey(selectionAvailable, event, Key.LEFT) && caret > getMinPos(editor)) {
+              return caret - 1;
+            }
+            return -1;
+          }
+        });
+
+    keymap.onKeyPressed(KeyStrokeSpecs.composite(new KeyStroke(Key.RIGHT), new KeyStroke(Key.RIGHT, ModifierKey.SHIFT)),
+        new CaretHandler() {
+          @Override
+          protected int moveCaret(CellTextEditor editor, KeyEvent event, boolean selectionAvailable, int caret, int maxCaret) {
+            if (isCaretKey(selectionAvailable, event, Key.RIGHT) && caret < maxCaret) {
+              return caret + 1;
+            }
+            return -1;
+          }
+        });
+
+    keymap.onKeyPressed(KeyStrokeSpecs.composite(
+        new KeyStroke(Key.LEFT, ModifierKey.ALT), new KeyStroke(Key.LEFT, ModifierKey.ALT, ModifierKey.SHIFT),
+        KeyStrokeSpecs.HOME, KeyStrokeSpecs.SELECT_HOME, KeyStrokeSpecs.PREV_WORD),
+        new CaretHandler() {
+          @Override
+          protected int moveCaret(CellTextEditor editor, KeyEvent event, boolean selectionAvailable, int caret, int maxCaret) {
+            if ((isCaretKey(selectionAvailable, event, Key.LEFT, ModifierKey.ALT) ||
+                event.is(KeyStrokeSpecs.HOME) ||
+                (event.is(KeyStrokeSpecs.SELECT_HOME) && selectionAvailable) ||
+                event.is(KeyStrokeSpecs.PREV_WORD)) && caret > 0) {
+              return 0;
+            }
+            return -1;
+          }
+        });
+
+    keymap.onKeyPressed(KeyStrokeSpecs.composite(
+        new KeyStroke(Key.RIGHT, ModifierKey.ALT), new KeyStroke(Key.RIGHT, ModifierKey.ALT, ModifierKey.SHIFT),
+        KeyStrokeSpecs.END, KeyStrokeSpecs.SELECT_END, KeyStrokeSpecs.NEXT_WORD_ALT,
+        KeyStrokeSpecs.NEXT_WORD_CONTROL.with(ModifierKey.SHIFT)),
+        new CaretHandler() {
+          @Override
+          protected int moveCaret(CellTextEditor editor, KeyEvent event, boolean selectionAvailable, int caret, int maxCaret) {
+            if ((isCaretKey(selectionAvailable, event, Key.RIGHT, ModifierKey.ALT) ||
+                event.is(KeyStrokeSpecs.END) ||
+                (event.is(KeyStrokeSpecs.SELECT_END) && selectionAvailable) ||
+                event.is(KeyStrokeSpecs.NEXT_WORD_ALT)) && caret < maxCaret ||
+                event.is(KeyStrokeSpecs.NEXT_WORD_CONTROL.with(ModifierKey.SHIFT))) {
+              return maxCaret;
+            }
+            return -1;
+          }
+        });
+
+    keymap.onKeyPressed(KeyStrokeSpecs.SELECT_ALL, new KeyStrokeHandler() {
+      @Override
+      public void handle(Cell cell, KeyEvent event) {
+        CellTextEditor editor = TextEditing.cellTextEditor(cell);
+        editor.selectionStart().set(0);
+        editor.caretPosition().set(maxCaret(editor));
+        editor.selectionVisible().set(true);
         editor.scrollToCaret();
         event.consume();
-        return;
       }
+    });
 
-      if ((isCaretKey(selectionAvailable, event, Key.RIGHT, ModifierKey.ALT) ||
-          event.is(KeyStrokeSpecs.END) ||
-          (event.is(KeyStrokeSpecs.SELECT_END) && selectionAvailable) ||
-          event.is(KeyStrokeSpecs.NEXT_WORD_ALT)) && caret < maxCaret ||
-          event.is(KeyStrokeSpecs.NEXT_WORD_CONTROL.with(ModifierKey.SHIFT))) {
-        editor.caretPosition().set(maxCaret);
-        editor.scrollToCaret();
-        event.consume();
-        return;
-      }
+    return keymap;
+  }
 
-    } finally {
-      if (event.isConsumed()) {
-        if (editor.selectionVisible().get() && !selection) {
-          editor.selectionVisible().set(false);
-        }
-        if (!editor.selectionVisible().get() && selection) {
-          editor.selectionStart().set(caret);
-          editor.selectionVisible().set(true);
-        }
-      }
-    }
+  private static int maxCaret(CellTextEditor editor) {
+    int textLen = TextEditing.text(editor).length();
+    return editor.isLastAllowed() ? textLen : textLen - 1;
+  }
+
+  /**
+   * Moves the caret and updates the selection, which is extended when shift is pressed and hidden otherwise
+   */
+  private abstract class CaretHandler implements KeyStrokeHandler {
+    @Override
+    public void handle(Cell cell, KeyEvent event) {
+      CellTextEditor editor = TextEditing.cellTextEditor(cell);
+      int caret = editor.caretPosition().get();
+      int newCaret = moveCaret(editor, event, isSelectionAvailable(editor), caret, maxCaret(editor));
+      if (newCaret < 0) return;
 
-    if (event.is(KeyStrokeSpecs.SELECT_ALL)) {
-      editor.selectionStart().set(0);
-      editor.caretPosition().set(maxCaret);
-      editor.selectionVisible().set(true);
+      editor.caretPosition().set(newCaret);
       editor.scrollToCaret();
       event.consume();
-      return;
+
+      boolean selection = event.has(ModifierKey.SHIFT);
+      if (editor.selectionVisible().get() && !selection) {
+        editor.selectionVisible().set(false);
+      }
+      if (!editor.selectionVisible().get() && selection) {
+        editor.selectionStart().set(caret);
+        editor.selectionVisible().set(true);
+      }
     }
 
-    super.onKeyPressed(cell, event);
+    /**
+     * Returns the new caret position, or -1 if the event isn't handled
+     */
+    protected abstract int moveCaret(CellTextEditor editor, KeyEvent event, boolean selectionAvailable, int caret, int maxCaret);
   }
 
   @Override
@@ -25,11 +25,14 @@ import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.completion.CompletionItems;
 import jetbrains.jetpad.cell.completion.Side;
 import jetbrains.jetpad.cell.message.MessageController;
+import jetbrains.jetpad.cell.trait.CellKeymap;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
 import jetbrains.jetpad.completion.CompletionItem;
 import jetbrains.jetpad.completion.CompletionParameters;
 import jetbrains.jetpad.event.Key;
 import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyStroke;
 import jetbrains.jetpad.event.ModifierKey;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.values.Color;
@@ -51,19 +54,21 @@ class ValidTextEditingTrait extends TextEditingTrait {
   }
 
   @Override
-  public void onKeyPressed(Cell cell, KeyEvent event) {
-    CellTextEditor editor = TextEditing.cellTextEditor(cell);
-    if (event.is(Key.ENTER) && !TextEditing.isEmpty(editor) && !isValid(editor)) {
-      CompletionItems completionItems = new CompletionItems(cell.get(Completion.COMPLETION).get(CompletionParameters.EMPTY));
-      String prefixText = TextEditing.getPrefixText(editor);
-      if (completionItems.hasSingleMatch(prefixText, true)) {
-        completionItems.completeFirstMatch(prefixText);
-        event.consume();
-        return;
+  protected CellKeymap createKeymap() {
+    return new CellKeymap().onKeyPressed(new KeyStroke(Key.ENTER), new KeyStrokeHandler() {
+      @Override
+      public void handle(Cell cell, KeyEvent event) {
+        CellTextEditor editor = TextEditing.cellTextEditor(cell);
+        if (TextEditing.isEmpty(editor) || isValid(editor)) return;
+
+        CompletionItems completionItems = new CompletionItems(cell.get(Completion.COMPLETION).get(CompletionParameters.EMPTY));
+        String prefixText = TextEditing.getPrefixText(editor);
+        if (completionItems.hasSingleMatch(prefixText, true)) {
+          completionItems.completeFirstMatch(prefixText);
+          event.consume();
+        }
       }
-    }
-
-    super.onKeyPressed(cell, event);
+    }).addAll(super.createKeymap());
   }
 
   @Override
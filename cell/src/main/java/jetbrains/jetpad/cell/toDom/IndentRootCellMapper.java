@@ -23,8 +23,9 @@ import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.ChildRangeEvent;
 import jetbrains.jetpad.cell.indent.IndentCell;
-import jetbrains.jetpad.cell.indent.IndentContainerCellListener;
+import jetbrains.jetpad.cell.indent.IndentContainerCellRangeListener;
 import jetbrains.jetpad.cell.indent.IndentUtil;
 import jetbrains.jetpad.cell.indent.updater.CellWrapper;
 import jetbrains.jetpad.cell.indent.updater.IndentUpdater;
@@ -133,12 +134,10 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
   protected void onAttach(MappingContext ctx) {
     super.onAttach(ctx);
 
-    for (Cell child : getSource().children()) {
-      myIndentUpdater.childAdded(child);
-    }
+    myIndentUpdater.childrenAdded(getSource().children());
     myIndentUpdater.initialized();
 
-    myRegistration = getSource().addListener(new IndentContainerCellListener() {
+    myRegistration = getSource().addListener(new IndentContainerCellRangeListener() {
       @Override
       public void childAdded(CollectionItemEvent<? extends Cell> event) {
         myIndentUpdater.childAdded(event.getNewItem());
@@ -149,6 +148,16 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell> {
         myIndentUpdater.childRemoved(event.getOldItem());
       }
 
+      @Override
+      public void childrenAdded(ChildRangeEvent event) {
+        myIndentUpdater.childrenAdded(event.getNewItems());
+      }
+
+      @Override
+      public void childrenRemoved(ChildRangeEvent event) {
+        myIndentUpdater.childrenRemoved(event.getOldItems());
+      }
+
       @Override
       public void propertyChanged(final Cell cell, final CellPropertySpec<?> prop, final PropertyChangeEvent<?> event) {
         if (CounterUtil.isCounterProp(prop)) {
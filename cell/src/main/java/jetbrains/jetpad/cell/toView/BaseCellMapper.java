@@ -20,11 +20,14 @@ import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
 import jetbrains.jetpad.cell.mappersUtil.*;
 import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.mapper.Mapper;
 import jetbrains.jetpad.mapper.MappingContext;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
+import jetbrains.jetpad.projectional.view.RectView;
+import jetbrains.jetpad.projectional.view.ScrollView;
 import jetbrains.jetpad.projectional.view.View;
 import jetbrains.jetpad.values.Color;
 
@@ -32,10 +35,15 @@ import java.util.Collection;
 import java.util.List;
 
 class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<SourceT, TargetT> implements HasCounters, EventHandler<PropertyChangeEvent<Cell>> {
+  private static final Vector ESTIMATED_LINE = new Vector(100, 16);
+
   private CellToViewContext myContext;
   private Counters myCounters;
   private PopupManager myPopupManager;
   private List<Mapper<?, ?>> myChildMappers = null;
+  private boolean myChildrenMapped;
+  private ScrollView myScrollView;
+  private RectView myPlaceholder;
   private Color myAncestorBackground;
 
   BaseCellMapper(SourceT source, TargetT target, CellToViewContext ctx) {
@@ -56,13 +64,14 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
 
     myContext.register(this);
 
-    if (isAutoChildManagement()) {
-      myChildMappers = createChildList();
-      ObservableList<Cell> children = getSource().children();
-      for (int i = 0; i < children.size(); i++) {
-        childAdded(i, children.get(i));
+    if (myContext.lazy && !getSource().isPopup()) {
+      if (getParent() instanceof ScrollCellMapper) {
+        myScrollView = ((ScrollCellMapper) getParent()).getTarget();
+      } else if (getParent() instanceof BaseCellMapper) {
+        myScrollView = ((BaseCellMapper<?, ?>) getParent()).myScrollView;
       }
     }
+    updateChildren();
 
     myPopupManager = createPopupManager();
     myPopupManager.attach(getSource());
@@ -72,12 +81,75 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
 
   @Override
   protected void onDetach() {
+    if (myPlaceholder != null) {
+      myContext.deferred.remove(this);
+      myPlaceholder = null;
+    }
     getTarget().children().clear();
     myPopupManager.dispose();
     myContext.unregister(this);
     super.onDetach();
   }
 
+  /**
+   * In lazy mode, children of invisible cells aren't mapped, and children of cells inside of a scroll cell are replaced
+   * with a placeholder of the estimated size until the cell is in the viewport
+   */
+  private void updateChildren() {
+    if (!isAutoChildManagement() || myChildrenMapped || myPlaceholder != null) return;
+    if (myContext.lazy) {
+      if (!getSource().get(Cell.VISIBLE)) return;
+      if (myScrollView != null && !getSource().children().isEmpty()) {
+        myPlaceholder = new RectView();
+        myPlaceholder.background().set(null);
+        myPlaceholder.dimension().set(estimatedSize());
+        getTarget().children().add(myPlaceholder);
+        myContext.deferred.add(this);
+        return;
+      }
+    }
+    mapChildren();
+  }
+
+  boolean isDeferred() {
+    return myPlaceholder != null;
+  }
+
+  boolean isInViewport(Rectangle visibleRect) {
+    Rectangle bounds = getTarget().bounds().get();
+    if (!overlap(bounds, visibleRect)) return false;
+    return !myScrollView.scroll().get() || overlap(bounds, myScrollView.bounds().get());
+  }
+
+  void mapDeferred() {
+    getTarget().children().remove(myPlaceholder);
+    myPlaceholder = null;
+    myContext.deferred.remove(this);
+    mapChildren();
+  }
+
+  /**
+   * Size of the placeholder which stands for the children until they are mapped
+   */
+  protected Vector estimatedSize() {
+    return ESTIMATED_LINE;
+  }
+
+  private void refreshPlaceholder() {
+    if (myPlaceholder != null) {
+      myPlaceholder.dimension().set(estimatedSize());
+    }
+  }
+
+  private void mapChildren() {
+    myChildrenMapped = true;
+    myChildMappers = createChildList();
+    ObservableList<Cell> children = getSource().children();
+    for (int i = 0; i < children.size(); i++) {
+      childAdded(i, children.get(i));
+    }
+  }
+
   protected boolean isLeaf() {
     return false;
   }
@@ -108,18 +180,44 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
   }
 
   void childAdded(int index, Cell child) {
-    if (!isAutoChildManagement()) return;
+    if (!myChildrenMapped) {
+      refreshPlaceholder();
+      return;
+    }
     BaseCellMapper<? extends Cell, ? extends View> mapper = myContext.apply(child);
     myChildMappers.add(index, mapper);
     getTarget().children().add(index, mapper.getTarget());
   }
 
   void childRemoved(int index, Cell child) {
-    if (!isAutoChildManagement()) return;
+    if (!myChildrenMapped) {
+      refreshPlaceholder();
+      return;
+    }
     myChildMappers.remove(index);
     getTarget().children().remove(index);
   }
 
+  /**
+   * Child mappers and views don't support range operations, so they are still replaced item by item
+   */
+  void childrenReplaced(int index, int removedCount, List<Cell> added) {
+    if (!myChildrenMapped) {
+      refreshPlaceholder();
+      return;
+    }
+    List<View> targetChildren = getTarget().children();
+    for (int i = index + removedCount - 1; i >= index; i--) {
+      myChildMappers.remove(i);
+      targetChildren.remove(i);
+    }
+    for (int i = 0; i < added.size(); i++) {
+      BaseCellMapper<? extends Cell, ? extends View> mapper = myContext.apply(added.get(i));
+      myChildMappers.add(index + i, mapper);
+      targetChildren.add(index + i, mapper.getTarget());
+    }
+  }
+
   @Override
   public final void onEvent(PropertyChangeEvent<Cell> event) {
     myPopupManager.onEvent(event);
@@ -139,6 +237,8 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
     boolean focusHighlighted = getSource().get(Cell.FOCUS_HIGHLIGHTED) || getCounter(Counters.HIGHLIGHT_COUNT) > 0;
     Color background = getSource().get(Cell.BACKGROUND);
     applyStyle(selected, focusHighlighted, (background == null ? myAncestorBackground : background));
+
+    updateChildren();
   }
 
   private void applyStyle(boolean selected, boolean focusHighlighted, Color background) {
@@ -163,6 +263,11 @@ class BaseCellMapper<SourceT extends Cell, TargetT extends View> extends Mapper<
     getTarget().hasShadow().set(getSource().get(Cell.HAS_SHADOW));
   }
 
+  private static boolean overlap(Rectangle r1, Rectangle r2) {
+    return r1.origin.x <= r2.origin.x + r2.dimension.x && r2.origin.x <= r1.origin.x + r1.dimension.x
+        && r1.origin.y <= r2.origin.y + r2.dimension.y && r2.origin.y <= r1.origin.y + r1.dimension.y;
+  }
+
   protected PopupManager createPopupManager() {
     return new BasePopupManager<View>() {
       @Override
@@ -39,7 +39,9 @@ import jetbrains.jetpad.model.property.WritableProperty;
 import jetbrains.jetpad.projectional.view.*;
 import jetbrains.jetpad.values.Color;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
@@ -51,14 +53,25 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
   private CellToViewContext myContext;
   private Set<TextCell> myWithCaret = new HashSet<>();
   private Set<Cell> myHighlighted = new HashSet<>();
+  private boolean myMappingVisible;
 
   public CellContainerToViewMapper(CellContainer source, View target, View targetView, View popupView) {
+    this(source, target, targetView, popupView, false);
+  }
+
+  /**
+   * In lazy mode, children of invisible cells are mapped only when the cells become visible. Inside of a ScrollCell,
+   * children of a cell are mapped only when the cell gets into the visible rect, and until then a placeholder of
+   * the estimated size stands for them. Cells without views get the bounds of their closest mapped ancestor,
+   * and they are mapped on demand when they are scrolled to or asked for a caret.
+   */
+  public CellContainerToViewMapper(CellContainer source, View target, View targetView, View popupView, boolean lazy) {
     super(source, target);
 
     myTargetView = targetView;
     myPopupView = popupView;
 
-    myContext = new CellToViewContext(getTarget(), myTargetView, myPopupView);
+    myContext = new CellToViewContext(getTarget(), myTargetView, myPopupView, lazy);
   }
 
   @Override
@@ -115,12 +128,10 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
             public void onEvent(PropertyChangeEvent<Boolean> event) {
               myContext.focused.set(event.getNewValue());
               for (TextCell cell : myWithCaret) {
-                BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
-                mapper.refreshProperties();
+                refreshProperties(cell);
               }
               for (Cell cell : myHighlighted) {
-                BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
-                mapper.refreshProperties();
+                refreshProperties(cell);
               }
             }
           }),
@@ -129,6 +140,69 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
         );
       }
     }));
+    if (myContext.lazy) {
+      conf.add(Synchronizers.forRegistration(new Supplier<Registration>() {
+        @Override
+        public Registration get() {
+          return getTarget().valid().addHandler(new EventHandler<PropertyChangeEvent<Boolean>>() {
+            @Override
+            public void onEvent(PropertyChangeEvent<Boolean> event) {
+              if (event.getNewValue()) {
+                mapVisible();
+              }
+            }
+          });
+        }
+      }));
+    }
+  }
+
+  /**
+   * Maps the children of the deferred cells which have got into the visible rect. The layout of their children
+   * can bring more deferred cells there, so it's repeated until there are none.
+   */
+  private void mapVisible() {
+    if (myMappingVisible || getTarget().container() == null) return;
+    myMappingVisible = true;
+    try {
+      while (true) {
+        Rectangle visibleRect = getTarget().container().visibleRect();
+        List<BaseCellMapper<?, ?>> visible = new ArrayList<>();
+        for (BaseCellMapper<?, ?> mapper : myContext.deferred) {
+          if (mapper.isInViewport(visibleRect)) {
+            visible.add(mapper);
+          }
+        }
+        if (visible.isEmpty()) return;
+
+        for (BaseCellMapper<?, ?> mapper : visible) {
+          mapper.mapDeferred();
+        }
+        getTarget().validate();
+      }
+    } finally {
+      myMappingVisible = false;
+    }
+  }
+
+  /**
+   * The mapper of the cell, which maps the deferred ancestors of the cell if there are any
+   */
+  private BaseCellMapper<?, ?> mapPath(Cell cell) {
+    BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+    if (mapper != null || !myContext.lazy || cell.getParent() == null) return mapper;
+
+    BaseCellMapper<?, ?> parentMapper = mapPath(cell.getParent());
+    if (parentMapper == null || !parentMapper.isDeferred()) return null;
+    parentMapper.mapDeferred();
+    return (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+  }
+
+  private void refreshProperties(Cell cell) {
+    BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
+    // cells inside of invisible cells aren't mapped in lazy mode
+    if (mapper == null) return;
+    mapper.refreshProperties();
   }
 
   private CellContainerPeer createContainerPeer() {
@@ -136,14 +210,17 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
     return new CellContainerPeer() {
       @Override
       public int getCaretAt(TextCell tv, int x) {
-        TextView textView = (TextView) rootMapper.getDescendantMapper(tv).getTarget();
+        BaseCellMapper<?, ?> mapper = mapPath(tv);
+        if (mapper == null && myContext.lazy) return 0;
+        TextView textView = (TextView) mapper.getTarget();
         return textView.getCaretAt(x);
       }
 
       @Override
       public int getCaretOffset(TextCell tv, int caret) {
-        Mapper<? super TextCell, ?> mapper = rootMapper.getDescendantMapper(tv);
+        BaseCellMapper<?, ?> mapper = mapPath(tv);
         if (mapper == null) {
+          if (myContext.lazy) return 0;
           throw new IllegalStateException("Can't find a mapper for " + tv);
         }
         return ((TextView) mapper.getTarget()).getCaretOffset(caret);
@@ -165,6 +242,8 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
           } else if (cell instanceof IndentCell) {
             IndentCell indentCell = (IndentCell) cell;
             return Cells.indentBounds(indentCell);
+          } else if (myContext.lazy && cell.getParent() != null) {
+            return calculateBounds(cell.getParent());
           } else {
             throw new IllegalStateException("Can't find a mapper for " + cell);
           }
@@ -174,8 +253,15 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
 
       @Override
       public void scrollTo(Rectangle rect, Cell cell) {
-        BaseCellMapper<?, ? extends View> mapper = (BaseCellMapper<?, ? extends View>) rootMapper.getDescendantMapper(cell);
-        if (mapper == null) return;
+        BaseCellMapper<?, ?> mapper = (BaseCellMapper<?, ?>) rootMapper.getDescendantMapper(cell);
+        if (mapper == null) {
+          mapper = mapPath(cell);
+          if (mapper == null) return;
+          // the rect is relative to the placeholder bounds, so the whole cell is scrolled to once it's mapped
+          getTarget().container().root().validate();
+          mapper.getTarget().scrollTo();
+          return;
+        }
         mapper.getTarget().scrollTo(rect);
       }
 
@@ -329,6 +415,24 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
     return new CellContainerAdapter() {
       @Override
       public void onCellPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
+        // the caches are kept for the cells without mappers too, so that they are right once the cells are mapped
+        if (prop == TextCell.CARET_VISIBLE) {
+          TextCell text = (TextCell) cell;
+          if (text.caretVisible().get()) {
+            myWithCaret.add(text);
+          } else {
+            myWithCaret.remove(text);
+          }
+        }
+
+        if (prop == Cell.FOCUS_HIGHLIGHTED) {
+          if (cell.focusHighlighted().get()) {
+            myHighlighted.add(cell);
+          } else {
+            myHighlighted.remove(cell);
+          }
+        }
+
         BaseCellMapper<?, ?> target = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(cell);
         if (target == null) return;
 
@@ -349,31 +453,14 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
             target.onPopupPropertyChanged(prop, event);
           }
         }
-
-        if (prop == TextCell.CARET_VISIBLE) {
-          TextCell text = (TextCell) cell;
-          if (text.caretVisible().get()) {
-            myWithCaret.add(text);
-          } else {
-            myWithCaret.remove(text);
-          }
-        }
-
-        if (prop == Cell.FOCUS_HIGHLIGHTED) {
-          if (cell.focusHighlighted().get()) {
-            myHighlighted.add(cell);
-          } else {
-            myHighlighted.remove(cell);
-          }
-        }
       }
 
       @Override
       public void onChildAdded(Cell parent, CollectionItemEvent<? extends Cell> change) {
         BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
-        if (parentMapper == null) return;
-
-        parentMapper.childAdded(change.getIndex(), change.getNewItem());
+        if (parentMapper != null) {
+          parentMapper.childAdded(change.getIndex(), change.getNewItem());
+        }
 
         updateCachesOnAdd(change.getNewItem());
       }
@@ -381,13 +468,28 @@ public class CellContainerToViewMapper extends Mapper<CellContainer, View> {
       @Override
       public void onChildRemoved(Cell parent, CollectionItemEvent<? extends Cell> change) {
         BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
-        if (parentMapper == null) return;
-
-        parentMapper.childRemoved(change.getIndex(), change.getOldItem());
+        if (parentMapper != null) {
+          parentMapper.childRemoved(change.getIndex(), change.getOldItem());
+        }
 
         updateCachesOnRemove(change.getOldItem());
       }
 
+      @Override
+      public void onChildrenReplaced(Cell parent, ChildRangeEvent change) {
+        BaseCellMapper<?, ?> parentMapper = (BaseCellMapper<?, ?>) rootMapper().getDescendantMapper(parent);
+        if (parentMapper != null) {
+          parentMapper.childrenReplaced(change.getIndex(), change.getOldItems().size(), change.getNewItems());
+        }
+
+        for (Cell cell : change.getOldItems()) {
+          updateCachesOnRemove(cell);
+        }
+        for (Cell cell : change.getNewItems()) {
+          updateCachesOnAdd(cell);
+        }
+      }
+
       private void updateCachesOnAdd(Cell cell) {
         if (cell instanceof TextCell) {
           TextCell text = (TextCell) cell;
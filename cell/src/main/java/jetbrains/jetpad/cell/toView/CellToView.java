@@ -28,4 +28,14 @@ public class CellToView {
   public static Registration map(final CellContainer cellContainer, ViewContainer container) {
     return map(cellContainer, container.root(), container.contentRoot(), container.decorationRoot());
   }
+
+  /**
+   * Children of invisible cells aren't mapped until the cells become visible. Inside of a ScrollCell, children of
+   * the cells out of the visible rect are replaced with placeholders of the estimated size, and they are mapped
+   * when the cells get into the visible rect after a layout, e.g. when the ScrollCell is scrolled.
+   */
+  public static Registration mapLazily(final CellContainer cellContainer, ViewContainer container) {
+    return Mappers.attachRoot(new CellContainerToViewMapper(
+        cellContainer, container.root(), container.contentRoot(), container.decorationRoot(), true));
+  }
 }
\ No newline at end of file
@@ -19,14 +19,20 @@ import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.mappersUtil.CellMapperContext;
 import jetbrains.jetpad.projectional.view.View;
 
+import java.util.HashSet;
+import java.util.Set;
+
 class CellToViewContext extends CellMapperContext<View> {
   final View targetView;
   final View popupView;
+  final boolean lazy;
+  final Set<BaseCellMapper<?, ?>> deferred = new HashSet<>();
 
-  CellToViewContext(View rootView, View targetView, View popupView) {
+  CellToViewContext(View rootView, View targetView, View popupView, boolean lazy) {
     super(rootView);
     this.targetView = targetView;
     this.popupView = popupView;
+    this.lazy = lazy;
   }
 
   @Override
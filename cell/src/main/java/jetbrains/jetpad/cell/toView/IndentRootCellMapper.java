@@ -20,8 +20,9 @@ import jetbrains.jetpad.base.Handler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.ChildRangeEvent;
 import jetbrains.jetpad.cell.indent.IndentCell;
-import jetbrains.jetpad.cell.indent.IndentContainerCellListener;
+import jetbrains.jetpad.cell.indent.IndentContainerCellRangeListener;
 import jetbrains.jetpad.cell.indent.IndentUtil;
 import jetbrains.jetpad.cell.indent.updater.CellWrapper;
 import jetbrains.jetpad.cell.indent.updater.IndentUpdater;
@@ -130,12 +131,10 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
   protected void onAttach(MappingContext ctx) {
     super.onAttach(ctx);
 
-    for (Cell child : getSource().children()) {
-      myIndentUpdater.childAdded(child);
-    }
+    myIndentUpdater.childrenAdded(getSource().children());
     myIndentUpdater.initialized();
 
-    myRegistration = getSource().addListener(new IndentContainerCellListener() {
+    myRegistration = getSource().addListener(new IndentContainerCellRangeListener() {
       @Override
       public void childAdded(CollectionItemEvent<? extends Cell> event) {
         Cell cell = event.getNewItem();
@@ -148,6 +147,16 @@ class IndentRootCellMapper extends BaseCellMapper<IndentCell, VerticalView> {
         myIndentUpdater.childRemoved(cell);
       }
 
+      @Override
+      public void childrenAdded(ChildRangeEvent event) {
+        myIndentUpdater.childrenAdded(event.getNewItems());
+      }
+
+      @Override
+      public void childrenRemoved(ChildRangeEvent event) {
+        myIndentUpdater.childrenRemoved(event.getOldItems());
+      }
+
       @Override
       public void propertyChanged(Cell cell, final CellPropertySpec<?> prop, final PropertyChangeEvent<?> event) {
         if (CounterUtil.isCounterProp(prop)) {
@@ -16,6 +16,7 @@
 package jetbrains.jetpad.cell.toView;
 
 import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.projectional.view.VerticalView;
 
 class VerticalCellMapper extends BaseCellMapper<VerticalCell, VerticalView> {
@@ -29,4 +30,10 @@ class VerticalCellMapper extends BaseCellMapper<VerticalCell, VerticalView> {
 
     getTarget().indent().set(getSource().indented().get());
   }
+
+  @Override
+  protected Vector estimatedSize() {
+    Vector line = super.estimatedSize();
+    return new Vector(line.x, line.y * getSource().children().size());
+  }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.trait;
+
+import jetbrains.jetpad.cell.event.EventPriority;
+import jetbrains.jetpad.event.KeyStroke;
+import jetbrains.jetpad.event.KeyStrokeSpec;
+
+import java.util.*;
+
+/**
+ * Key press handlers of a trait indexed by key stroke. See {@link CellTrait#getKeymap(jetbrains.jetpad.cell.Cell)}
+ */
+public final class CellKeymap {
+  private final Map<KeyStroke, List<KeyStrokeHandler>> myHandlers = new HashMap<>();
+  private final Map<KeyStroke, List<KeyStrokeHandler>> myLowPriorityHandlers = new HashMap<>();
+
+  public CellKeymap onKeyPressed(KeyStrokeSpec spec, KeyStrokeHandler handler) {
+    return add(myHandlers, spec, handler);
+  }
+
+  public CellKeymap onKeyPressedLowPriority(KeyStrokeSpec spec, KeyStrokeHandler handler) {
+    return add(myLowPriorityHandlers, spec, handler);
+  }
+
+  /**
+   * Adds all handlers of the other keymap after the handlers of this one
+   */
+  public CellKeymap addAll(CellKeymap keymap) {
+    addAll(myHandlers, keymap.myHandlers);
+    addAll(myLowPriorityHandlers, keymap.myLowPriorityHandlers);
+    return this;
+  }
+
+  public Set<KeyStroke> getKeyStrokes(EventPriority priority) {
+    return Collections.unmodifiableSet(handlers(priority).keySet());
+  }
+
+  public List<KeyStrokeHandler> getHandlers(EventPriority priority, KeyStroke keyStroke) {
+    List<KeyStrokeHandler> result = handlers(priority).get(keyStroke);
+    return result == null ? Collections.<KeyStrokeHandler>emptyList() : Collections.unmodifiableList(result);
+  }
+
+  private Map<KeyStroke, List<KeyStrokeHandler>> handlers(EventPriority priority) {
+    return priority == EventPriority.LOW ? myLowPriorityHandlers : myHandlers;
+  }
+
+  private void addAll(Map<KeyStroke, List<KeyStrokeHandler>> handlers, Map<KeyStroke, List<KeyStrokeHandler>> added) {
+    for (Map.Entry<KeyStroke, List<KeyStrokeHandler>> entry : added.entrySet()) {
+      List<KeyStrokeHandler> list = handlers.get(entry.getKey());
+      if (list == null) {
+        list = new ArrayList<>(entry.getValue().size());
+        handlers.put(entry.getKey(), list);
+      }
+      list.addAll(entry.getValue());
+    }
+  }
+
+  private CellKeymap add(Map<KeyStroke, List<KeyStrokeHandler>> handlers, KeyStrokeSpec spec, KeyStrokeHandler handler) {
+    for (KeyStroke ks : spec.getKeyStrokes()) {
+      List<KeyStrokeHandler> list = handlers.get(ks);
+      if (list == null) {
+        list = new ArrayList<>(1);
+        handlers.put(ks, list);
+      }
+      list.add(handler);
+    }
+    return this;
+  }
+}
@@ -21,6 +21,7 @@ import jetbrains.jetpad.event.*;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
 import jetbrains.jetpad.cell.event.FocusEvent;
 
@@ -33,6 +34,15 @@ public abstract class CellTrait {
   public static final Object NULL = new Object();
   public static final CellTrait[] EMPTY_ARRAY = new CellTrait[0];
 
+  /**
+   * Mask of {@link CellEventSpec#getMask()} values of the events this trait handles. Cells don't dispatch other events
+   * to the trait, so subclasses which narrow the mask have to widen it again when they override more handlers.
+   * Key pressed events are dispatched to traits which declare a keymap regardless of the mask.
+   */
+  public int getEventMask() {
+    return CellEventSpec.ALL_EVENTS_MASK;
+  }
+
   public void onPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
   }
 
@@ -69,6 +79,15 @@ public abstract class CellTrait {
   public void onKeyPressedLowPriority(Cell cell, KeyEvent event) {
   }
 
+  /**
+   * A trait which returns a keymap handles key presses only with it: its onKeyPressed() and onKeyPressedLowPriority()
+   * methods are never called, and the trait is skipped for key strokes which aren't in the keymap. The keymap is
+   * requested when the cell's traits change, so it shouldn't be modified after it was returned.
+   */
+  public CellKeymap getKeymap(Cell cell) {
+    return null;
+  }
+
   public void onKeyReleased(Cell cell, KeyEvent event) {
   }
 
@@ -135,6 +154,15 @@ public abstract class CellTrait {
   protected void provideProperties(Cell cell, PropertyCollector collector) {
   }
 
+  /**
+   * Specs which this trait can answer in {@link #get(Cell, CellTraitPropertySpec)}, or null if it can answer any spec.
+   * Cells cache the traits to ask for each spec, so the result shouldn't change while the trait is added to a cell.
+   * Providing properties with {@link #provideProperties(Cell, PropertyCollector)} has the same requirement.
+   */
+  public Set<CellTraitPropertySpec<?>> getTraitPropertySpecs() {
+    return null;
+  }
+
   public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
     return null;
   }
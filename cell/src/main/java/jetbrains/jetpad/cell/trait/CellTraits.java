@@ -19,6 +19,7 @@ import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.model.composite.Composites;
 
@@ -32,6 +33,11 @@ public class CellTraits {
     }
 
     final Registration rootReg = root.addTrait(new CellTrait() {
+      @Override
+      public int getEventMask() {
+        return CellEventSpec.mask(CellEventSpec.FOCUS_GAINED, CellEventSpec.FOCUS_LOST);
+      }
+
       @Override
       public void onFocusGained(Cell cell, FocusEvent event) {
         super.onFocusGained(cell, event);
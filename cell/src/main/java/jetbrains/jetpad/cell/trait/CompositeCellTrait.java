@@ -17,14 +17,34 @@ package jetbrains.jetpad.cell.trait;
 
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellPropertySpec;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.event.CompletionEvent;
+import jetbrains.jetpad.cell.event.EventPriority;
 import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.event.*;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 
 public abstract class CompositeCellTrait extends CellTrait {
+  /**
+   * Base traits get only the events which their event masks declare, the same way as traits added to a cell directly
+   */
+  private static boolean handles(CellTrait trait, CellEventSpec<?> spec) {
+    return (trait.getEventMask() & spec.getMask()) != 0;
+  }
+
+  private Cell myKeymapsCell;
+  private CellKeymap[] myKeymaps;
+
   protected abstract CellTrait[] getBaseTraits(Cell cell);
 
+  /**
+   * Subclasses which don't override onKeyPressed() and onKeyPressedLowPriority() may return true, so that the keymaps
+   * of the base traits are dispatched by the cell directly, and the composite is skipped for key strokes they don't map.
+   */
+  protected boolean isKeyPressDelegated() {
+    return false;
+  }
+
   @Override
   public void onPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
     for (CellTrait t : getBaseTraits(cell)) {
@@ -35,133 +55,222 @@ public abstract class CompositeCellTrait extends CellTrait {
   @Override
   public void onFocusGained(Cell cell, FocusEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onFocusGained(cell, event);
+      if (handles(t, CellEventSpec.FOCUS_GAINED)) {
+        t.onFocusGained(cell, event);
+      }
     }
   }
 
   @Override
   public void onFocusLost(Cell cell, FocusEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onFocusLost(cell, event);
+      if (handles(t, CellEventSpec.FOCUS_LOST)) {
+        t.onFocusLost(cell, event);
+      }
     }
   }
 
   @Override
   public void onMouseClicked(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMouseClicked(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_CLICKED)) {
+        t.onMouseClicked(cell, event);
+      }
     }
   }
 
   @Override
   public void onMousePressed(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMousePressed(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_PRESSED)) {
+        t.onMousePressed(cell, event);
+      }
     }
   }
 
   @Override
   public void onMouseReleased(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMouseReleased(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_RELEASED)) {
+        t.onMouseReleased(cell, event);
+      }
     }
   }
 
   @Override
   public void onMouseMoved(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMouseMoved(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_MOVED)) {
+        t.onMouseMoved(cell, event);
+      }
     }
   }
 
   @Override
   public void onMouseDragged(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMouseDragged(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_DRAGGED)) {
+        t.onMouseDragged(cell, event);
+      }
     }
   }
 
   @Override
   public void onMouseEntered(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMouseEntered(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_ENTERED)) {
+        t.onMouseEntered(cell, event);
+      }
     }
   }
 
   @Override
   public void onMouseLeft(Cell cell, MouseEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onMouseLeft(cell, event);
+      if (handles(t, CellEventSpec.MOUSE_LEFT)) {
+        t.onMouseLeft(cell, event);
+      }
     }
   }
 
+  /**
+   * If key presses are delegated and every base trait which handles them declares a keymap, returns their keymaps merged
+   * in trait order. Otherwise returns null, and keymaps of the base traits are dispatched from onKeyPressed() and
+   * onKeyPressedLowPriority().
+   */
   @Override
-  public void onKeyPressed(Cell cell, KeyEvent event) {
-    for (CellTrait t : getBaseTraits(cell)) {
-      t.onKeyPressed(cell, event);
+  public CellKeymap getKeymap(Cell cell) {
+    CellTrait[] traits = getBaseTraits(cell);
+    CellKeymap[] keymaps = baseKeymaps(cell, traits, true);
+    if (!isKeyPressDelegated()) return null;
+
+    CellKeymap result = new CellKeymap();
+    for (int i = 0; i < traits.length; i++) {
+      if (keymaps[i] != null) {
+        result.addAll(keymaps[i]);
+      } else if (handles(traits[i], CellEventSpec.KEY_PRESSED)) {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Keymaps of the base traits are requested again only when the cell asks for the keymap of the composite, that is
+   * when its traits change, or when the composite handles keys of another cell
+   */
+  private CellKeymap[] baseKeymaps(Cell cell, CellTrait[] traits, boolean refresh) {
+    if (refresh || myKeymapsCell != cell || myKeymaps.length != traits.length) {
+      myKeymapsCell = cell;
+      myKeymaps = new CellKeymap[traits.length];
+      for (int i = 0; i < traits.length; i++) {
+        myKeymaps[i] = traits[i].getKeymap(cell);
+      }
     }
+    return myKeymaps;
+  }
+
+  @Override
+  public void onKeyPressed(Cell cell, KeyEvent event) {
+    onKeyPressed(cell, event, EventPriority.NORMAL);
   }
 
   @Override
   public void onKeyPressedLowPriority(Cell cell, KeyEvent event) {
-    for (CellTrait t : getBaseTraits(cell)) {
-      t.onKeyReleasedLowPriority(cell, event);
+    onKeyPressed(cell, event, EventPriority.LOW);
+  }
+
+  private void onKeyPressed(Cell cell, KeyEvent event, EventPriority priority) {
+    CellTrait[] traits = getBaseTraits(cell);
+    CellKeymap[] keymaps = baseKeymaps(cell, traits, false);
+    for (int i = 0; i < traits.length; i++) {
+      CellTrait t = traits[i];
+      CellKeymap keymap = keymaps[i];
+      if (keymap != null) {
+        for (KeyStrokeHandler h : keymap.getHandlers(priority, event.getKeyStroke())) {
+          h.handle(cell, event);
+          if (event.isConsumed()) return;
+        }
+      } else if (!handles(t, CellEventSpec.KEY_PRESSED)) {
+        continue;
+      } else if (priority == EventPriority.LOW) {
+        t.onKeyPressedLowPriority(cell, event);
+      } else {
+        t.onKeyPressed(cell, event);
+      }
+      if (event.isConsumed()) return;
     }
   }
 
   @Override
   public void onKeyReleased(Cell cell, KeyEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onKeyReleased(cell, event);
+      if (handles(t, CellEventSpec.KEY_RELEASED)) {
+        t.onKeyReleased(cell, event);
+      }
     }
   }
 
   @Override
   public void onKeyReleasedLowPriority(Cell cell, KeyEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onKeyReleasedLowPriority(cell, event);
+      if (handles(t, CellEventSpec.KEY_RELEASED)) {
+        t.onKeyReleasedLowPriority(cell, event);
+      }
     }
   }
 
   @Override
   public void onKeyTyped(Cell cell, KeyEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onKeyTyped(cell, event);
+      if (handles(t, CellEventSpec.KEY_TYPED)) {
+        t.onKeyTyped(cell, event);
+      }
     }
   }
 
   @Override
   public void onKeyTypedLowPriority(Cell cell, KeyEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onKeyTypedLowPriority(cell, event);
+      if (handles(t, CellEventSpec.KEY_TYPED)) {
+        t.onKeyTypedLowPriority(cell, event);
+      }
     }
   }
 
   @Override
   public void onCopy(Cell cell, CopyCutEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onCopy(cell, event);
+      if (handles(t, CellEventSpec.COPY)) {
+        t.onCopy(cell, event);
+      }
     }
   }
 
   @Override
   public void onCut(Cell cell, CopyCutEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onCut(cell, event);
+      if (handles(t, CellEventSpec.CUT)) {
+        t.onCut(cell, event);
+      }
     }
   }
 
   @Override
   public void onPaste(Cell cell, PasteEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onPaste(cell, event);
+      if (handles(t, CellEventSpec.PASTE)) {
+        t.onPaste(cell, event);
+      }
     }
   }
 
   @Override
   public void onComplete(Cell cell, CompletionEvent event) {
     for (CellTrait t : getBaseTraits(cell)) {
-      t.onComplete(cell, event);
+      if (handles(t, CellEventSpec.COMPLETE)) {
+        t.onComplete(cell, event);
+      }
     }
   }
 
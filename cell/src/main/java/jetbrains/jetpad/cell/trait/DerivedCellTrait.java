@@ -77,6 +77,11 @@ public abstract class DerivedCellTrait extends CellTrait {
     getBase(cell).onMouseLeft(cell, event);
   }
 
+  @Override
+  public CellKeymap getKeymap(Cell cell) {
+    return getBase(cell).getKeymap(cell);
+  }
+
   @Override
   public void onKeyPressed(Cell cell, KeyEvent event) {
     getBase(cell).onKeyPressed(cell, event);
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.util;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.CellContainerAdapter;
+import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyStrokeSpecs;
+import jetbrains.jetpad.model.event.CompositeRegistration;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Undo history of the cell states saved with {@link CellStateHandler}. At command boundaries the state of the cell with
+ * the handler which is closest to the focused cell is saved before and after the command, and the pair is recorded if the
+ * states differ. Consecutive {@link CellStateDifference#NAVIGATION} records of the same cell are merged into one, and when
+ * the state after a command is equal to the state before the next one, the same state object is kept for both records.
+ *
+ * The history is limited by a budget in units of {@link #getWeight(CellState)}: when a new record exceeds the budget,
+ * the oldest records are evicted. A state shared with the previous record is counted once.
+ */
+public class CellStateUndoManager {
+  private final CellContainer myContainer;
+  private final int myBudget;
+
+  private final LinkedList<Record> myUndoStack = new LinkedList<>();
+  private final List<Record> myRedoStack = new ArrayList<>();
+  private int myWeight;
+
+  private Cell myCommandCell;
+  private CellStateHandler<Cell, CellState> myCommandHandler;
+  private CellState myCommandStartState;
+  // set when undo or redo runs, so that the command in which it runs, e.g. the UNDO key press, isn't recorded
+  private boolean myRestoredInCommand;
+
+  public CellStateUndoManager(CellContainer container, int budget) {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("budget = " + budget);
+    }
+    myContainer = container;
+    myBudget = budget;
+  }
+
+  public CompositeRegistration install() {
+    CompositeRegistration result = new CompositeRegistration();
+    result.add(myContainer.addListener(new CellContainerAdapter() {
+      @Override
+      public void onBeforeCommand() {
+        commandStarted();
+      }
+
+      @Override
+      public void onAfterCommand() {
+        commandFinished();
+      }
+    }));
+    result.add(myContainer.root.addTrait(new CellTrait() {
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        if (event.is(KeyStrokeSpecs.UNDO) && canUndo()) {
+          undo();
+          event.consume();
+          return;
+        }
+        if (event.is(KeyStrokeSpecs.REDO) && canRedo()) {
+          redo();
+          event.consume();
+          return;
+        }
+        super.onKeyPressed(cell, event);
+      }
+    }));
+    return result;
+  }
+
+  public boolean canUndo() {
+    dropDetached(myUndoStack);
+    return !myUndoStack.isEmpty();
+  }
+
+  public boolean canRedo() {
+    dropDetached(myRedoStack);
+    return !myRedoStack.isEmpty();
+  }
+
+  public void undo() {
+    if (!canUndo()) {
+      throw new IllegalStateException();
+    }
+    Record record = myUndoStack.removeLast();
+    myWeight -= record.weight;
+    restore(record, record.before);
+    myRedoStack.add(record);
+  }
+
+  public void redo() {
+    if (!canRedo()) {
+      throw new IllegalStateException();
+    }
+    Record record = myRedoStack.remove(myRedoStack.size() - 1);
+    restore(record, record.after);
+    push(record);
+  }
+
+  public void clear() {
+    myUndoStack.clear();
+    myRedoStack.clear();
+    myWeight = 0;
+  }
+
+  /**
+   * Approximate size of a saved state: the weight of a {@link WeightedCellState} and 1 for other states.
+   */
+  protected int getWeight(CellState state) {
+    return state instanceof WeightedCellState ? ((WeightedCellState) state).getWeight() : 1;
+  }
+
+  private void commandStarted() {
+    myCommandCell = null;
+    if (myRestoredInCommand) return;
+
+    for (Cell cell = myContainer.focusedCell.get(); cell != null; cell = cell.getParent()) {
+      CellStateHandler<Cell, CellState> handler = (CellStateHandler<Cell, CellState>) cell.get(CellStateHandler.PROPERTY);
+      if (handler != null) {
+        myCommandCell = cell;
+        myCommandHandler = handler;
+        myCommandStartState = handler.saveState(cell);
+        break;
+      }
+    }
+  }
+
+  private void commandFinished() {
+    if (myRestoredInCommand) {
+      myRestoredInCommand = false;
+      myCommandCell = null;
+      myCommandStartState = null;
+      return;
+    }
+    if (myCommandCell == null) return;
+
+    Cell cell = myCommandCell;
+    CellState before = myCommandStartState;
+    myCommandCell = null;
+    myCommandStartState = null;
+    if (cell.getContainer() != myContainer) return;
+
+    CellState after = myCommandHandler.saveState(cell);
+    CellStateDifference difference = before.getDifference(after);
+    if (difference == CellStateDifference.EQUAL) return;
+
+    Record last = myUndoStack.isEmpty() ? null : myUndoStack.getLast();
+    if (last != null && last.cell == cell) {
+      if (last.after.getDifference(before) == CellStateDifference.EQUAL) {
+        before = last.after;
+      }
+      if (difference == CellStateDifference.NAVIGATION && last.difference == CellStateDifference.NAVIGATION
+          && before == last.after) {
+        myUndoStack.removeLast();
+        myWeight -= last.weight;
+        before = last.before;
+      }
+    }
+
+    myRedoStack.clear();
+    push(new Record(cell, myCommandHandler, before, after, difference));
+  }
+
+  private void push(Record record) {
+    Record last = myUndoStack.isEmpty() ? null : myUndoStack.getLast();
+    record.weight = getWeight(record.after);
+    if (last == null || last.after != record.before) {
+      record.weight += getWeight(record.before);
+    }
+    myUndoStack.add(record);
+    myWeight += record.weight;
+    while (myWeight > myBudget && myUndoStack.size() > 1) {
+      myWeight -= myUndoStack.removeFirst().weight;
+    }
+  }
+
+  private void restore(final Record record, final CellState state) {
+    myRestoredInCommand = true;
+    myContainer.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        if (record.cell.focusable().get() && record.cell.visible().get()) {
+          record.cell.focus();
+        }
+        record.handler.restoreState(record.cell, state);
+      }
+    });
+  }
+
+  private void dropDetached(List<Record> stack) {
+    while (!stack.isEmpty()) {
+      Record last = stack.get(stack.size() - 1);
+      if (last.cell.getContainer() == myContainer) return;
+      stack.remove(stack.size() - 1);
+      if (stack == myUndoStack) {
+        myWeight -= last.weight;
+      }
+    }
+  }
+
+  private static class Record {
+    private final Cell cell;
+    private final CellStateHandler<Cell, CellState> handler;
+    private final CellState before;
+    private final CellState after;
+    private final CellStateDifference difference;
+    private int weight;
+
+    private Record(Cell cell, CellStateHandler<Cell, CellState> handler, CellState before, CellState after,
+        CellStateDifference difference) {
+      this.cell = cell;
+      this.handler = handler;
+      this.before = before;
+      this.after = after;
+      this.difference = difference;
+    }
+  }
+}
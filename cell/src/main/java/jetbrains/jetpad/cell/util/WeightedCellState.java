@@ -0,0 +1,24 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.util;
+
+/**
+ * Cell state which knows approximately how much memory it keeps, e.g. the number of tokens or characters
+ * which aren't shared with other states. {@link CellStateUndoManager} limits its history by the sum of the weights.
+ */
+public interface WeightedCellState extends CellState {
+  int getWeight();
+}
@@ -19,13 +19,18 @@ import jetbrains.jetpad.cell.toView.CellToView;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.event.MouseEvent;
 import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.projectional.view.ViewContainer;
 import jetbrains.jetpad.test.BaseTestCase;
+import jetbrains.jetpad.values.Color;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -69,6 +74,79 @@ public class CellContainerTest extends BaseTestCase {
     assertFalse(cell2.myMouseIn);
   }
 
+  @Test
+  public void propertyChangesDeliveredImmediatelyByDefault() {
+    final List<PropertyChangeEvent<?>> events = listenBackground(cell1);
+
+    container.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        cell1.background().set(Color.RED);
+        cell1.background().set(Color.BLUE);
+        assertEquals(2, events.size());
+      }
+    });
+  }
+
+  @Test
+  public void journaledPropertyChangesCoalesced() {
+    container.setPropertyChangesJournaled(true);
+    final List<PropertyChangeEvent<?>> events = listenBackground(cell1);
+
+    container.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        cell1.background().set(Color.RED);
+        cell1.background().set(Color.GREEN);
+        cell1.background().set(Color.BLUE);
+        assertTrue(events.isEmpty());
+      }
+    });
+
+    assertEquals(1, events.size());
+    assertEquals(null, events.get(0).getOldValue());
+    assertEquals(Color.BLUE, events.get(0).getNewValue());
+  }
+
+  @Test
+  public void revertedJournaledPropertyChangeNotDelivered() {
+    container.setPropertyChangesJournaled(true);
+    final List<PropertyChangeEvent<?>> events = listenBackground(cell1);
+
+    container.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        cell1.background().set(Color.RED);
+        cell1.background().set(null);
+      }
+    });
+
+    assertTrue(events.isEmpty());
+  }
+
+  @Test
+  public void journaledPropertyChangeOutsideOfCommand() {
+    container.setPropertyChangesJournaled(true);
+    List<PropertyChangeEvent<?>> events = listenBackground(cell1);
+
+    cell1.background().set(Color.RED);
+
+    assertEquals(1, events.size());
+  }
+
+  private List<PropertyChangeEvent<?>> listenBackground(Cell cell) {
+    final List<PropertyChangeEvent<?>> events = new ArrayList<>();
+    cell.addListener(new CellAdapter() {
+      @Override
+      public void onPropertyChanged(CellPropertySpec<?> prop, PropertyChangeEvent<?> event) {
+        if (prop == Cell.BACKGROUND) {
+          events.add(event);
+        }
+      }
+    });
+    return events;
+  }
+
   private class TestCell extends TextCell {
     private boolean myMouseIn;
 
@@ -16,9 +16,21 @@
 package jetbrains.jetpad.cell;
 
 import jetbrains.jetpad.base.Value;
+import jetbrains.jetpad.cell.event.CellEventSpec;
+import jetbrains.jetpad.cell.event.EventPriority;
 import jetbrains.jetpad.cell.event.FocusEvent;
+import jetbrains.jetpad.cell.text.TextEditingTrait;
+import jetbrains.jetpad.cell.trait.CellKeymap;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.trait.CompositeCellTrait;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyStroke;
+import jetbrains.jetpad.event.MouseEvent;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.collections.CollectionListener;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.model.property.Property;
@@ -26,7 +38,11 @@ import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.test.BaseTestCase;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -288,6 +304,435 @@ public class CellTest extends BaseTestCase {
     assertNull(popup.cellContainer().get());
   }
 
+  @Test
+  public void keymapHandlesOnlyItsKeyStrokes() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new CellTrait() {
+      @Override
+      public CellKeymap getKeymap(Cell cell) {
+        return new CellKeymap().onKeyPressed(new KeyStroke(Key.ENTER), new KeyStrokeHandler() {
+          @Override
+          public void handle(Cell cell, KeyEvent event) {
+            log.add("enter");
+          }
+        });
+      }
+
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        log.add("onKeyPressed");
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.ENTER), CellEventSpec.KEY_PRESSED);
+    cell.dispatch(new KeyEvent(Key.ESCAPE), CellEventSpec.KEY_PRESSED);
+
+    assertEquals(Arrays.asList("enter"), log);
+  }
+
+  @Test
+  public void keymapDispatchKeepsTraitOrder() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new CellTrait() {
+      @Override
+      public void onKeyPressedLowPriority(Cell cell, KeyEvent event) {
+        log.add("low");
+      }
+    });
+    cell.addTrait(new CellTrait() {
+      @Override
+      public CellKeymap getKeymap(Cell cell) {
+        return new CellKeymap().onKeyPressed(new KeyStroke(Key.ENTER), new KeyStrokeHandler() {
+          @Override
+          public void handle(Cell cell, KeyEvent event) {
+            log.add("keymap");
+          }
+        });
+      }
+    });
+    cell.addTrait(new CellTrait() {
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        log.add("opaque");
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.ENTER), CellEventSpec.KEY_PRESSED);
+
+    assertEquals(Arrays.asList("opaque", "keymap", "low"), log);
+  }
+
+  @Test
+  public void keymapsOfCompositeBaseTraits() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] { new LoggingKeymapTrait(log, "first"), new LoggingKeymapTrait(log, "second") };
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.ENTER), CellEventSpec.KEY_PRESSED);
+
+    assertEquals(Arrays.asList("first", "second"), log);
+  }
+
+  @Test
+  public void keymapOfCompositeBaseTraitWithOpaqueTrait() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] {
+          new LoggingKeymapTrait(log, "keymap"),
+          new CellTrait() {
+            @Override
+            public void onKeyPressed(Cell cell, KeyEvent event) {
+              log.add("opaque");
+            }
+          }
+        };
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.ENTER), CellEventSpec.KEY_PRESSED);
+
+    assertEquals(Arrays.asList("keymap", "opaque"), log);
+  }
+
+  @Test
+  public void ownKeyHandlersOfCompositeCalled() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] { new LoggingKeymapTrait(log, "base") };
+      }
+
+      @Override
+      public void onKeyPressed(Cell cell, KeyEvent event) {
+        log.add("own");
+        super.onKeyPressed(cell, event);
+      }
+    });
+
+    cell.dispatch(new KeyEvent(Key.ESCAPE), CellEventSpec.KEY_PRESSED);
+    cell.dispatch(new KeyEvent(Key.ENTER), CellEventSpec.KEY_PRESSED);
+
+    assertEquals(Arrays.asList("own", "own", "base"), log);
+  }
+
+  @Test
+  public void keymapOfCompositeOnlyWhenKeyPressDelegated() {
+    final CellTrait base = new LoggingKeymapTrait(new ArrayList<String>(), "base");
+    CompositeCellTrait composite = new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] { base };
+      }
+    };
+    CompositeCellTrait delegating = new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] { base };
+      }
+
+      @Override
+      protected boolean isKeyPressDelegated() {
+        return true;
+      }
+    };
+
+    TextCell cell = new TextCell();
+    assertNull(composite.getKeymap(cell));
+    assertEquals(Collections.singleton(new KeyStroke(Key.ENTER)), delegating.getKeymap(cell).getKeyStrokes(EventPriority.NORMAL));
+  }
+
+  @Test
+  public void baseKeymapsOfCompositeNotRebuiltOnKeyPress() {
+    final Value<Integer> requests = new Value<>(0);
+    final CellTrait base = new CellTrait() {
+      @Override
+      public CellKeymap getKeymap(Cell cell) {
+        requests.set(requests.get() + 1);
+        return new CellKeymap();
+      }
+    };
+    TextCell cell = new TextCell();
+    cell.addTrait(new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] { base };
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      cell.dispatch(new KeyEvent(Key.ENTER), CellEventSpec.KEY_PRESSED);
+    }
+
+    assertEquals(1, (int) requests.get());
+  }
+
+  @Test
+  public void textEditingDeclaresItsKeyStrokes() {
+    Set<KeyStroke> keyStrokes = new TextEditingTrait().getKeymap(new TextCell()).getKeyStrokes(EventPriority.NORMAL);
+
+    assertTrue(keyStrokes.contains(new KeyStroke(Key.BACKSPACE)));
+    assertTrue(keyStrokes.contains(new KeyStroke(Key.LEFT)));
+    assertFalse(keyStrokes.contains(new KeyStroke(Key.ENTER)));
+  }
+
+  @Test
+  public void keymapRecompiledOnTraitRemoval() {
+    final Value<Integer> count = new Value<>(0);
+    TextCell cell = new TextCell();
+    Registration reg = cell.addTrait(new CellTrait() {
+      @Override
+      public CellKeymap getKeymap(Cell cell) {
+        return new CellKeymap().onKeyPressed(new KeyStroke(Key.ENTER), new KeyStrokeHandler() {
+          @Override
+          public void handle(Cell cell, KeyEvent event) {
+            count.set(count.get() + 1);
+            event.consume();
+          }
+        });
+      }
+    });
+
+    KeyEvent event = new KeyEvent(Key.ENTER);
+    cell.dispatch(event, CellEventSpec.KEY_PRESSED);
+    assertTrue(event.isConsumed());
+
+    reg.remove();
+    event = new KeyEvent(Key.ENTER);
+    cell.dispatch(event, CellEventSpec.KEY_PRESSED);
+    assertFalse(event.isConsumed());
+    assertEquals(1, (int) count.get());
+  }
+
+  @Test
+  public void eventMaskFiltersDispatch() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new CellTrait() {
+      @Override
+      public int getEventMask() {
+        return CellEventSpec.MOUSE_PRESSED.getMask();
+      }
+
+      @Override
+      public void onMousePressed(Cell cell, MouseEvent event) {
+        log.add("pressed");
+      }
+
+      @Override
+      public void onMouseMoved(Cell cell, MouseEvent event) {
+        log.add("moved");
+      }
+    });
+
+    cell.dispatch(new MouseEvent(0, 0), CellEventSpec.MOUSE_MOVED);
+    cell.dispatch(new MouseEvent(0, 0), CellEventSpec.MOUSE_PRESSED);
+    assertEquals(Arrays.asList("pressed"), log);
+
+    cell.addTrait(new CellTrait() {
+      @Override
+      public void onMouseMoved(Cell cell, MouseEvent event) {
+        log.add("all events");
+      }
+    });
+    cell.dispatch(new MouseEvent(0, 0), CellEventSpec.MOUSE_MOVED);
+    assertEquals(Arrays.asList("pressed", "all events"), log);
+  }
+
+  @Test
+  public void compositeBaseTraitsFilteredByMask() {
+    final List<String> log = new ArrayList<>();
+    final CellTrait pressedOnly = new CellTrait() {
+      @Override
+      public int getEventMask() {
+        return CellEventSpec.MOUSE_PRESSED.getMask();
+      }
+
+      @Override
+      public void onMousePressed(Cell cell, MouseEvent event) {
+        log.add("pressed");
+      }
+
+      @Override
+      public void onMouseMoved(Cell cell, MouseEvent event) {
+        log.add("moved");
+      }
+    };
+    TextCell cell = new TextCell();
+    cell.addTrait(new CompositeCellTrait() {
+      @Override
+      protected CellTrait[] getBaseTraits(Cell cell) {
+        return new CellTrait[] { pressedOnly };
+      }
+    });
+
+    cell.dispatch(new MouseEvent(0, 0), CellEventSpec.MOUSE_MOVED);
+    cell.dispatch(new MouseEvent(0, 0), CellEventSpec.MOUSE_PRESSED);
+    assertEquals(Arrays.asList("pressed"), log);
+  }
+
+  @Test
+  public void textEditingTraitSubclassGetsDeclaredEvents() {
+    final List<String> log = new ArrayList<>();
+    TextCell cell = new TextCell();
+    cell.addTrait(new TextEditingTrait() {
+      @Override
+      public int getEventMask() {
+        return super.getEventMask() | CellEventSpec.FOCUS_LOST.getMask();
+      }
+
+      @Override
+      public void onFocusLost(Cell cell, FocusEvent event) {
+        log.add("focusLost");
+      }
+
+      @Override
+      public void onFocusGained(Cell cell, FocusEvent event) {
+        log.add("focusGained");
+      }
+    });
+
+    cell.dispatch(new FocusEvent(cell, null), CellEventSpec.FOCUS_GAINED);
+    cell.dispatch(new FocusEvent(cell, null), CellEventSpec.FOCUS_LOST);
+    assertEquals(Arrays.asList("focusLost"), log);
+  }
+
+  @Test
+  public void traitNotAskedForUndeclaredSpecs() {
+    final CellTraitPropertySpec<String> declared = new CellTraitPropertySpec<>("declared");
+    CellTraitPropertySpec<String> other = new CellTraitPropertySpec<>("other", "default");
+    final Value<Integer> requests = new Value<>(0);
+
+    TextCell cell = new TextCell();
+    cell.addTrait(new CellTrait() {
+      @Override
+      public Set<CellTraitPropertySpec<?>> getTraitPropertySpecs() {
+        return Collections.<CellTraitPropertySpec<?>>singleton(declared);
+      }
+
+      @Override
+      public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
+        requests.set(requests.get() + 1);
+        if (spec == declared) {
+          return "value";
+        }
+        return super.get(cell, spec);
+      }
+    });
+
+    assertEquals("value", cell.get(declared));
+    assertEquals("default", cell.get(other));
+    assertEquals(1, (int) requests.get());
+  }
+
+  @Test
+  public void providedPropertiesUpdatedOnTraitChange() {
+    TextCell cell = new TextCell();
+    assertNull(cell.get(TestTrait.NAME));
+
+    Registration reg = cell.addTrait(new TestTrait());
+    assertEquals("xxx", cell.get(TestTrait.NAME));
+
+    reg.remove();
+    assertNull(cell.get(TestTrait.NAME));
+  }
+
+  @Test
+  public void replaceChildrenFiresOneEvent() {
+    TextCell a = new TextCell();
+    TextCell b = new TextCell();
+    TextCell c = new TextCell();
+    container.root.children().addAll(Arrays.asList(a, b, c));
+
+    final List<ChildRangeEvent> events = new ArrayList<>();
+    container.addListener(new CellContainerAdapter() {
+      @Override
+      public void onChildrenReplaced(Cell parent, ChildRangeEvent change) {
+        events.add(change);
+      }
+    });
+
+    TextCell x = new TextCell();
+    TextCell y = new TextCell();
+    container.root.replaceChildren(1, 2, Arrays.asList(x, y));
+
+    assertEquals(1, events.size());
+    assertEquals(1, events.get(0).getIndex());
+    assertEquals(Arrays.<Cell>asList(b), events.get(0).getOldItems());
+    assertEquals(Arrays.<Cell>asList(x, y), events.get(0).getNewItems());
+  }
+
+  @Test
+  public void replaceChildrenAsItemEventsForPlainListener() {
+    TextCell a = new TextCell();
+    TextCell b = new TextCell();
+    container.root.children().addAll(Arrays.asList(a, b));
+
+    CellListener listener = mock(CellListener.class);
+    container.root.addListener(listener);
+
+    TextCell x = new TextCell();
+    TextCell y = new TextCell();
+    container.root.replaceChildren(1, 2, Arrays.asList(x, y));
+
+    verify(listener).onChildRemoved(new CollectionItemEvent<Cell>(b, null, 1, CollectionItemEvent.EventType.REMOVE));
+    verify(listener).onChildAdded(new CollectionItemEvent<Cell>(null, x, 1, CollectionItemEvent.EventType.ADD));
+    verify(listener).onChildAdded(new CollectionItemEvent<Cell>(null, y, 2, CollectionItemEvent.EventType.ADD));
+  }
+
+  @Test
+  public void replaceChildrenUpdatesStructure() {
+    TextCell a = new TextCell();
+    TextCell b = new TextCell();
+    TextCell c = new TextCell();
+    container.root.children().addAll(Arrays.asList(a, b, c));
+
+    TextCell x = new TextCell();
+    TextCell y = new TextCell();
+    container.root.replaceChildren(1, 2, Arrays.asList(x, y));
+
+    assertEquals(Arrays.<Cell>asList(a, x, y, c), container.root.children());
+    assertSame(container, x.getContainer());
+    assertNull(b.getContainer());
+    assertNull(b.getParent());
+    assertSame(a, x.prevSibling());
+    assertSame(c, y.nextSibling());
+  }
+
+  @Test
+  public void childrenListenerGetsItemEventsOfRange() {
+    TextCell a = new TextCell();
+    TextCell b = new TextCell();
+    container.root.children().addAll(Arrays.asList(a, b));
+
+    CollectionListener<Cell> listener = mock(CollectionListener.class);
+    container.root.children().addListener(listener);
+    container.root.children().clear();
+
+    verify(listener).onItemRemoved(new CollectionItemEvent<Cell>(b, null, 1, CollectionItemEvent.EventType.REMOVE));
+    verify(listener).onItemRemoved(new CollectionItemEvent<Cell>(a, null, 0, CollectionItemEvent.EventType.REMOVE));
+    assertTrue(container.root.children().isEmpty());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void replaceChildrenWithAttachedCell() {
+    TextCell a = new TextCell();
+    container.root.children().add(a);
+
+    container.root.replaceChildren(0, 0, Arrays.asList(a));
+  }
+
   static class TestTrait extends CellTrait {
     static final CellPropertySpec<String> NAME = new CellPropertySpec<>("name");
 
@@ -298,4 +743,24 @@ public class CellTest extends BaseTestCase {
       super.provideProperties(cell, collector);
     }
   }
-}
\ No newline at end of file
+
+  private static class LoggingKeymapTrait extends CellTrait {
+    private final List<String> myLog;
+    private final String myName;
+
+    LoggingKeymapTrait(List<String> log, String name) {
+      myLog = log;
+      myName = name;
+    }
+
+    @Override
+    public CellKeymap getKeymap(Cell cell) {
+      return new CellKeymap().onKeyPressed(new KeyStroke(Key.ENTER), new KeyStrokeHandler() {
+        @Override
+        public void handle(Cell cell, KeyEvent event) {
+          myLog.add(myName);
+        }
+      });
+    }
+  }
+}
@@ -29,8 +29,16 @@ public class EditableCellContainer {
   private ViewContainer myViewContainer = new ViewContainer();
 
   public EditableCellContainer(CellContainer container) {
+    this(container, false);
+  }
+
+  public EditableCellContainer(CellContainer container, boolean lazy) {
     this.container = container;
-    CellToView.map(container, myViewContainer);
+    if (lazy) {
+      CellToView.mapLazily(container, myViewContainer);
+    } else {
+      CellToView.map(container, myViewContainer);
+    }
   }
 
   public void layout() {
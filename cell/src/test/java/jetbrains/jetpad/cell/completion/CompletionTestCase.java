@@ -17,7 +17,10 @@ package jetbrains.jetpad.cell.completion;
 
 import jetbrains.jetpad.base.Async;
 import jetbrains.jetpad.base.Asyncs;
+import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.base.Runnables;
+import jetbrains.jetpad.base.SimpleAsync;
+import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.EditingTestCase;
 import jetbrains.jetpad.cell.trait.CellTrait;
@@ -76,6 +79,39 @@ public abstract class CompletionTestCase extends EditingTestCase {
     };
   }
 
+  /**
+   * Delivers the items in a single batch and never finishes the request
+   */
+  protected CellTrait createStreamingCompletionTrait(final Value<Boolean> cancelled, final String... items) {
+    final CompletionSupplier supplier = new CompletionSupplier() {
+      @Override
+      public Async<List<CompletionItem>> getAsync(CompletionParameters cp) {
+        return new SimpleAsync<>();
+      }
+
+      @Override
+      public Registration getStream(CompletionParameters cp, CompletionStreamHandler handler) {
+        handler.onBatch(createItems(items));
+        return new Registration() {
+          @Override
+          protected void doRemove() {
+            cancelled.set(true);
+          }
+        };
+      }
+    };
+    return new CellTrait() {
+      @Override
+      public Object get(Cell cell, CellTraitPropertySpec<?> spec) {
+        if (spec == Completion.COMPLETION) {
+          return supplier;
+        }
+
+        return super.get(cell, spec);
+      }
+    };
+  }
+
   private List<CompletionItem> createItems(String... items) {
     List<CompletionItem> result = new ArrayList<>();
     for (String i : items) {
@@ -16,6 +16,7 @@
 package jetbrains.jetpad.cell.completion;
 
 import com.google.common.base.Predicates;
+import jetbrains.jetpad.base.Value;
 import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.HorizontalCell;
 import jetbrains.jetpad.cell.TextCell;
@@ -61,6 +62,31 @@ public class NonTextCellCompletionTest extends CompletionTestCase {
     assertCompleted("xxxx");
   }
 
+  @Test
+  public void streamedItemsAvailableBeforeLoadingFinished() {
+    Value<Boolean> cancelled = new Value<>(false);
+    target.addTrait(createStreamingCompletionTrait(cancelled, "xxxx", "yyyy"));
+
+    complete();
+    type("yyyy");
+    enter();
+
+    assertCompleted("yyyy");
+    assertTrue(cancelled.get());
+  }
+
+  @Test
+  public void loadingCancelledOnDismiss() {
+    Value<Boolean> cancelled = new Value<>(false);
+    target.addTrait(createStreamingCompletionTrait(cancelled, "xxxx"));
+
+    complete();
+    assertFalse(cancelled.get());
+
+    escape();
+    assertTrue(cancelled.get());
+  }
+
   @Test
   public void completionDismissWithEscape() {
     complete();
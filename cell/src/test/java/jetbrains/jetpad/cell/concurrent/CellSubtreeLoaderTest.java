@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.concurrent;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.CellContainerAdapter;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.test.BaseTestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CellSubtreeLoaderTest extends BaseTestCase {
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private CellContainer container = new CellContainer();
+
+  @Test
+  public void loadedCellsAttachedInOneCommand() throws Exception {
+    final int[] commands = new int[1];
+    container.addListener(new CellContainerAdapter() {
+      @Override
+      public void onBeforeCommand() {
+        commands[0]++;
+      }
+    });
+    final TextCell text1 = new TextCell("a");
+    final TextCell text2 = new TextCell("b");
+
+    List<Cell> loaded = new CellSubtreeLoader(container, DIRECT, DIRECT).load(container.root, 0, new Callable<List<Cell>>() {
+      @Override
+      public List<Cell> call() {
+        return Arrays.<Cell>asList(text1, text2);
+      }
+    }).get();
+
+    assertEquals(1, commands[0]);
+    assertEquals(Arrays.<Cell>asList(text1, text2), loaded);
+    assertEquals(Arrays.<Cell>asList(text1, text2), container.root.children());
+    assertSame(container, text2.getContainer());
+  }
+
+  @Test
+  public void detachedCellsChangedOnOtherThread() throws Exception {
+    CellSubtreeLoader.confineToCurrentThread(container);
+    final VerticalCell vertical = new VerticalCell();
+
+    Throwable error = runInThread(new Runnable() {
+      @Override
+      public void run() {
+        vertical.children().add(new TextCell("a"));
+        vertical.visible().set(false);
+      }
+    });
+
+    assertNull(error);
+  }
+
+  @Test
+  public void attachedCellsChangedOnOtherThread() throws Exception {
+    CellSubtreeLoader.confineToCurrentThread(container);
+    final TextCell text = new TextCell("a");
+    container.root.children().add(text);
+
+    Throwable propertyError = runInThread(new Runnable() {
+      @Override
+      public void run() {
+        text.text().set("b");
+      }
+    });
+    Throwable childError = runInThread(new Runnable() {
+      @Override
+      public void run() {
+        container.root.children().add(new TextCell("c"));
+      }
+    });
+
+    assertTrue(propertyError instanceof IllegalStateException);
+    assertTrue(childError instanceof IllegalStateException);
+    assertEquals("a", text.text().get());
+    assertEquals(1, container.root.children().size());
+  }
+
+  private Throwable runInThread(final Runnable r) throws InterruptedException {
+    final Throwable[] error = new Throwable[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          r.run();
+        } catch (Throwable t) {
+          error[0] = t;
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    return error[0];
+  }
+}
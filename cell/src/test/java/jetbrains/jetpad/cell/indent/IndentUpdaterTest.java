@@ -234,6 +234,24 @@ public class IndentUpdaterTest extends BaseTestCase {
     assertTarget("[['b']]");
   }
 
+  @Test
+  public void hideAndRemoveInJournaledCommand() {
+    final Cell ta = text("a");
+    children.addAll(Arrays.asList(ta, text("b")));
+    cellContainer.setPropertyChangesJournaled(true);
+
+    cellContainer.executeCommand(new Runnable() {
+      @Override
+      public void run() {
+        ta.visible().set(false);
+        children.remove(ta);
+      }
+    });
+    children.add(0, text("c"));
+
+    assertTarget("[['c', 'b']]");
+  }
+
   @Test
   public void doubleVisibilityChange() {
     Cell ta = text("a");
@@ -364,6 +382,65 @@ public class IndentUpdaterTest extends BaseTestCase {
     assertTarget("[[], ['  ']]");
   }
 
+  @Test
+  public void rangeWithNewLinesInTheMiddleOfLine() {
+    children.addAll(Arrays.asList(text("a"), text("b"), text("c")));
+
+    children.addAll(1, Arrays.asList(text("x"), newLine(), text("y"), newLine(), text("z")));
+
+    assertTarget("[['a', 'x'], ['y'], ['z', 'b', 'c']]");
+  }
+
+  @Test
+  public void rangeWithIndentInTheMiddleOfLine() {
+    children.addAll(Arrays.asList(text("a"), text("b")));
+
+    children.addAll(1, Arrays.asList(indent(true, newLine(), text("x")), newLine()));
+
+    assertTarget("[['a'], ['  ', 'x'], ['b']]");
+  }
+
+  @Test
+  public void indentWithInvisibleNewLineInTheMiddleOfLine() {
+    children.addAll(Arrays.asList(text("a"), text("b")));
+    NewLineCell newLine = newLine();
+    newLine.visible().set(false);
+
+    children.add(1, indent(text("x"), newLine, text("y")));
+
+    assertTarget("[['a', 'x', 'y', 'b']]");
+  }
+
+  @Test
+  public void rangeRemove() {
+    children.addAll(Arrays.asList(text("a"), newLine(), text("b"), newLine(), text("c"), text("d")));
+
+    children.subList(1, 5).clear();
+
+    assertTarget("[['a', 'd']]");
+  }
+
+  @Test
+  public void rangeReplace() {
+    children.addAll(Arrays.asList(text("a"), newLine(), text("b"), text("c")));
+
+    indentCell.replaceChildren(1, 3, Arrays.asList(text("x"), newLine(), text("y"), newLine()));
+
+    assertTarget("[['a', 'x'], ['y'], ['c']]");
+  }
+
+  @Test
+  public void rangeInInvisibleIndent() {
+    IndentCell list = indent(newLine(), text("b"));
+    children.addAll(Arrays.asList(text("a"), list, text("c")));
+    list.visible().set(false);
+
+    list.children().addAll(Arrays.asList(text("x"), newLine()));
+    list.visible().set(true);
+
+    assertTarget("[['a'], ['b', 'x'], ['c']]");
+  }
+
   private Cell composite(String text) {
     Cell result = new HorizontalCell();
     result.children().addAll(Arrays.asList(text("composite"), text(text)));
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.indent.updater;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.indent.IndentCell;
+import jetbrains.jetpad.cell.indent.NewLineCell;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PositionIndexTest {
+  private PositionIndex myIndex = new PositionIndex();
+  private List<Cell> myExpected = new ArrayList<>();
+
+  @Test
+  public void counts() {
+    Cell indent = new IndentCell();
+    Cell a = new TextCell();
+    Cell newLine = new NewLineCell();
+    Cell b = new TextCell();
+    insert(0, indent);
+    insert(1, b);
+    insert(1, newLine);
+    insert(1, a);
+
+    assertEquals(0, myIndex.cellsBefore(a));
+    assertEquals(1, myIndex.cellsBefore(newLine));
+    assertEquals(1, myIndex.cellsBefore(b));
+    assertEquals(0, myIndex.newLinesBefore(newLine));
+    assertEquals(1, myIndex.newLinesBefore(b));
+    assertEquals(newLine, myIndex.newLine(0));
+    assertEquals(b, myIndex.next(newLine));
+    assertNull(myIndex.next(b));
+  }
+
+  @Test
+  public void randomEdits() {
+    Random random = new Random(42);
+    for (int i = 0; i < 3000; i++) {
+      if (myExpected.isEmpty() || random.nextInt(3) != 0) {
+        int kind = random.nextInt(3);
+        Cell cell = kind == 0 ? new IndentCell() : (kind == 1 ? new NewLineCell() : new TextCell());
+        insert(random.nextInt(myExpected.size() + 1), cell);
+      } else {
+        Cell cell = myExpected.remove(random.nextInt(myExpected.size()));
+        myIndex.remove(cell);
+        assertFalse(myIndex.contains(cell));
+      }
+      if (i % 100 == 0) {
+        check();
+      }
+    }
+    check();
+  }
+
+  private void insert(int index, Cell cell) {
+    myIndex.insertAfter(index == 0 ? null : myExpected.get(index - 1), cell);
+    myExpected.add(index, cell);
+    assertTrue(myIndex.contains(cell));
+  }
+
+  private void check() {
+    int cells = 0;
+    List<Cell> newLines = new ArrayList<>();
+    for (int i = 0; i < myExpected.size(); i++) {
+      Cell cell = myExpected.get(i);
+      assertEquals(cells, myIndex.cellsBefore(cell));
+      assertEquals(newLines.size(), myIndex.newLinesBefore(cell));
+      assertEquals(i + 1 < myExpected.size() ? myExpected.get(i + 1) : null, myIndex.next(cell));
+      if (cell instanceof NewLineCell) {
+        newLines.add(cell);
+      } else if (!(cell instanceof IndentCell)) {
+        cells++;
+      }
+    }
+    assertEquals(newLines.size(), myIndex.newLineCount());
+    for (int i = 0; i < newLines.size(); i++) {
+      assertEquals(newLines.get(i), myIndex.newLine(i));
+    }
+  }
+}
@@ -15,10 +15,16 @@
  */
 package jetbrains.jetpad.cell.message;
 
+import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellContainer;
 import jetbrains.jetpad.cell.HorizontalCell;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 public class MessageControllerTest extends MessageControllerTestCase {
@@ -62,6 +68,38 @@ public class MessageControllerTest extends MessageControllerTestCase {
     assertTrue(MessageController.hasError(child));
   }
 
+  @Test
+  public void replaceErrors() {
+    HorizontalCell first = new HorizontalCell();
+    HorizontalCell second = new HorizontalCell();
+    HorizontalCell third = new HorizontalCell();
+    myCellContainer.root.children().addAll(Arrays.asList(first, second, third));
+    MessageController.setError(first, "a");
+    MessageController.setError(second, "b");
+    MessageController.setWarning(third, "c");
+
+    Map<Cell, String> errors = new HashMap<>();
+    errors.put(second, "d");
+    errors.put(third, "e");
+    MessageController.getController(myCellContainer).replaceErrors(errors);
+
+    assertFalse(MessageController.hasError(first));
+    assertEquals("d", second.get(MessageController.ERROR));
+    assertEquals("e", third.get(MessageController.ERROR));
+    assertTrue(MessageController.hasWarning(third));
+  }
+
+  @Test
+  public void replaceErrorsSetBeforeAttach() {
+    HorizontalCell child = new HorizontalCell();
+    MessageController.setError(child, "a");
+    myCellContainer.root.children().add(child);
+
+    MessageController.getController(myCellContainer).replaceErrors(Collections.<Cell, String>emptyMap());
+
+    assertFalse(MessageController.hasError(child));
+  }
+
   @Test
   public void noErrorSupportForPopup() {
     HorizontalCell popup = new HorizontalCell();
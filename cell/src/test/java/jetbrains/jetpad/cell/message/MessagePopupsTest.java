@@ -36,11 +36,43 @@ public class MessagePopupsTest extends MessageControllerTestCase {
       }
     });
     setError(cell);
+    mouseEntered(cell);
     assertTrue(cell.get(MessageTrait.POPUP_ACTIVE));
     assertNotNull(cell.get(MessageTrait.POPUP_POSITION));
     assertTrue(errorPopupChanged.get());
   }
 
+  @Test
+  public void noPopupUntilCellIsLookedAt() {
+    setError(cell);
+    assertFalse(cell.get(MessageTrait.POPUP_ACTIVE));
+    assertNull(cell.get(MessageTrait.POPUP_POSITION));
+  }
+
+  @Test
+  public void popupForFocusedCell() {
+    TextCell child = new TextCell("child");
+    child.set(Cell.FOCUSABLE, true);
+    cell.children().add(child);
+    setError(cell);
+    setError(child);
+
+    myCellContainer.focusedCell.set(child);
+
+    assertDecorationPopupVisible(child, false);
+    assertDecorationPopupVisible(cell, false);
+  }
+
+  @Test
+  public void errorSetToFocusedCell() {
+    cell.set(Cell.FOCUSABLE, true);
+    myCellContainer.focusedCell.set(cell);
+
+    setError(cell);
+
+    assertDecorationPopupVisible(cell, false);
+  }
+
   @Test
   public void setBroken() {
     MessageController.setBroken(cell, "");
@@ -218,7 +250,10 @@ public class MessagePopupsTest extends MessageControllerTestCase {
     assertFalse(cell.get(MessageTrait.POPUP_ACTIVE));
 
     cell.set(MessageTrait.POPUP_POSITION, null);
-    assertDecorationPopupVisible(cell, false);
+    assertFalse(cell.get(MessageTrait.POPUP_ACTIVE));
+
+    mouseEntered(cell);
+    assertDecorationPopupVisible(cell, true);
   }
 
   @Test
@@ -229,7 +264,7 @@ public class MessagePopupsTest extends MessageControllerTestCase {
     child.frontPopup().set(popup);
 
     setError(cell);
-    assertDecorationPopupVisible(cell, false);
+    assertFalse(cell.get(MessageTrait.POPUP_ACTIVE));
     mouseEntered(cell);
     assertDecorationPopupVisible(cell, false);
 
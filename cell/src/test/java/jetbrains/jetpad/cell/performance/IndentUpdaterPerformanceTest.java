@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.performance;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.indent.IndentCell;
+import jetbrains.jetpad.cell.toView.CellContainerToViewMapper;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+
+import java.util.List;
+
+import static jetbrains.jetpad.cell.util.CellFactory.indent;
+import static jetbrains.jetpad.cell.util.CellFactory.newLine;
+import static jetbrains.jetpad.cell.util.CellFactory.text;
+
+/**
+ * Maps an indent cell of 100k lines, grouped into indented blocks, and then inserts and removes cells and new lines
+ * in the middle of it.
+ */
+public class IndentUpdaterPerformanceTest {
+  private static final int LINES = 100000;
+  private static final int LINES_PER_BLOCK = 10;
+  private static final int EDITS = 1000;
+
+  public static void main(String[] args) {
+    IndentCell root = new IndentCell();
+    for (int i = 0; i < LINES / LINES_PER_BLOCK; i++) {
+      IndentCell block = indent(true);
+      for (int j = 0; j < LINES_PER_BLOCK; j++) {
+        block.children().add(text("line" + j));
+        block.children().add(newLine());
+      }
+      root.children().add(block);
+    }
+
+    ViewContainer viewContainer = new ViewContainer();
+    CellContainer cellContainer = new CellContainer();
+    CellContainerToViewMapper rootMapper = new CellContainerToViewMapper(
+        cellContainer, viewContainer.root(), viewContainer.contentRoot(), viewContainer.decorationRoot());
+    rootMapper.attachRoot();
+
+    long time = System.currentTimeMillis();
+    cellContainer.root.children().add(root);
+    System.out.println("attach " + LINES + " lines: " + (System.currentTimeMillis() - time) + " ms");
+
+    List<Cell> middle = root.children().get(root.children().size() / 2).children();
+
+    time = System.currentTimeMillis();
+    for (int i = 0; i < EDITS; i++) {
+      middle.add(LINES_PER_BLOCK, text("inserted"));
+    }
+    System.out.println("insert " + EDITS + " cells: " + (System.currentTimeMillis() - time) + " ms");
+
+    time = System.currentTimeMillis();
+    for (int i = 0; i < EDITS; i++) {
+      middle.add(LINES_PER_BLOCK, newLine());
+    }
+    System.out.println("insert " + EDITS + " new lines: " + (System.currentTimeMillis() - time) + " ms");
+
+    time = System.currentTimeMillis();
+    for (int i = 0; i < 2 * EDITS; i++) {
+      middle.remove(LINES_PER_BLOCK);
+    }
+    System.out.println("remove " + 2 * EDITS + " cells: " + (System.currentTimeMillis() - time) + " ms");
+  }
+}
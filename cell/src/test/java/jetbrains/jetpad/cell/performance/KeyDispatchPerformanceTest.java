@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.performance;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.HorizontalCell;
+import jetbrains.jetpad.cell.event.CellEventSpec;
+import jetbrains.jetpad.cell.trait.CellKeymap;
+import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
+import jetbrains.jetpad.event.Key;
+import jetbrains.jetpad.event.KeyEvent;
+import jetbrains.jetpad.event.KeyStroke;
+import jetbrains.jetpad.event.KeyStrokeSpecs;
+import jetbrains.jetpad.event.ModifierKey;
+
+/**
+ * Measures dispatch of an unhandled key press from the deepest cell of a chain of cells up to the root.
+ * Every level has several traits with keymaps and, optionally, one trait which overrides onKeyPressed.
+ */
+public class KeyDispatchPerformanceTest {
+  private static final int TRAITS_PER_LEVEL = 4;
+  private static final int EVENTS = 10000;
+
+  public static void main(String[] args) {
+    for (boolean withOpaqueTrait : new boolean[] { false, true }) {
+      for (int depth : new int[] { 10, 100, 1000 }) {
+        run(depth, withOpaqueTrait);
+      }
+    }
+  }
+
+  private static void run(int depth, boolean withOpaqueTrait) {
+    CellContainer container = new CellContainer();
+    Cell current = container.root;
+    for (int i = 0; i < depth; i++) {
+      Cell child = new HorizontalCell();
+      for (int j = 0; j < TRAITS_PER_LEVEL; j++) {
+        child.addTrait(new KeymapTrait());
+      }
+      if (withOpaqueTrait) {
+        child.addTrait(new OpaqueTrait());
+      }
+      current.children().add(child);
+      current = child;
+    }
+
+    //warm up
+    dispatch(current, EVENTS);
+
+    long time = System.currentTimeMillis();
+    dispatch(current, EVENTS);
+    long total = System.currentTimeMillis() - time;
+    System.out.println("depth " + depth + (withOpaqueTrait ? " with opaque trait" : "") + ": " + total + " ms per " + EVENTS + " events");
+  }
+
+  private static void dispatch(Cell target, int count) {
+    for (int i = 0; i < count; i++) {
+      target.dispatch(new KeyEvent(Key.A), CellEventSpec.KEY_PRESSED);
+    }
+  }
+
+  private static class KeymapTrait extends CellTrait {
+    private final CellKeymap myKeymap;
+
+    KeymapTrait() {
+      KeyStrokeHandler handler = new KeyStrokeHandler() {
+        @Override
+        public void handle(Cell cell, KeyEvent event) {
+          event.consume();
+        }
+      };
+      myKeymap = new CellKeymap()
+          .onKeyPressed(KeyStrokeSpecs.composite(KeyStrokeSpecs.HOME, KeyStrokeSpecs.END, KeyStrokeSpecs.SELECT_UP, KeyStrokeSpecs.SELECT_DOWN), handler)
+          .onKeyPressed(KeyStrokeSpecs.composite(KeyStrokeSpecs.INSERT, KeyStrokeSpecs.DELETE_CURRENT), handler)
+          .onKeyPressedLowPriority(new KeyStroke(Key.A, ModifierKey.CONTROL), handler);
+    }
+
+    @Override
+    public CellKeymap getKeymap(Cell cell) {
+      return myKeymap;
+    }
+  }
+
+  private static class OpaqueTrait extends CellTrait {
+    @Override
+    public void onKeyPressed(Cell cell, KeyEvent event) {
+      if (event.is(KeyStrokeSpecs.HOME, KeyStrokeSpecs.END, KeyStrokeSpecs.SELECT_UP, KeyStrokeSpecs.SELECT_DOWN)) {
+        event.consume();
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.toView;
+
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.HorizontalCell;
+import jetbrains.jetpad.cell.ScrollCell;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.view.RectView;
+import jetbrains.jetpad.projectional.view.TextView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.test.BaseTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LazyCellToViewTest extends BaseTestCase {
+  private CellContainer cellContainer = new CellContainer();
+  private ViewContainer viewContainer = new ViewContainer();
+  private VerticalCell vertical = new VerticalCell();
+  private TextCell text = new TextCell("text");
+
+  @Before
+  public void init() {
+    vertical.visible().set(false);
+    vertical.children().add(text);
+    cellContainer.root.children().add(vertical);
+
+    CellToView.mapLazily(cellContainer, viewContainer);
+  }
+
+  @Test
+  public void invisibleCellChildrenNotMapped() {
+    assertEquals(0, verticalView().children().size());
+  }
+
+  @Test
+  public void childrenMappedWhenShown() {
+    vertical.visible().set(true);
+
+    assertEquals(1, verticalView().children().size());
+    assertTrue(text.getBounds().dimension.x > 0);
+  }
+
+  @Test
+  public void childAddedToInvisibleCell() {
+    vertical.children().add(new TextCell("other"));
+    vertical.visible().set(true);
+
+    assertEquals(2, verticalView().children().size());
+  }
+
+  @Test
+  public void boundsOfNotMappedCell() {
+    assertEquals(vertical.getBounds(), text.getBounds());
+  }
+
+  @Test
+  public void linesOutOfViewportNotMapped() {
+    addScrolledLines(100);
+    viewContainer.root().validate();
+
+    assertTrue(lineView(0).children().get(0) instanceof TextView);
+    assertTrue(lineView(99).children().get(0) instanceof RectView);
+  }
+
+  @Test
+  public void boundsOfLineOutOfViewport() {
+    List<TextCell> texts = addScrolledLines(100);
+
+    assertEquals(texts.get(99).getParent().getBounds(), texts.get(99).getBounds());
+  }
+
+  @Test
+  public void lineMappedWhenScrolledTo() {
+    List<TextCell> texts = addScrolledLines(100);
+    viewContainer.root().validate();
+
+    texts.get(99).scrollTo();
+    viewContainer.root().validate();
+
+    assertTrue(lineView(99).children().get(0) instanceof TextView);
+    assertTrue(lineView(98).children().get(0) instanceof TextView);
+    assertTrue(texts.get(99).getBounds().dimension.x > 0);
+  }
+
+  private List<TextCell> addScrolledLines(int count) {
+    ScrollCell scroll = new ScrollCell();
+    scroll.scroll().set(true);
+    scroll.maxDimension().set(new Vector(200, 50));
+    VerticalCell lines = new VerticalCell();
+    List<TextCell> texts = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      HorizontalCell line = new HorizontalCell();
+      TextCell lineText = new TextCell("line " + i);
+      line.children().add(lineText);
+      lines.children().add(line);
+      texts.add(lineText);
+    }
+    scroll.children().add(lines);
+    cellContainer.root.children().add(scroll);
+    return texts;
+  }
+
+  private View lineView(int index) {
+    return viewContainer.contentRoot().children().get(0).children().get(1).children().get(0).children().get(index);
+  }
+
+  private View verticalView() {
+    return viewContainer.contentRoot().children().get(0).children().get(0);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.cell.util;
+
+import com.google.common.base.Predicates;
+import jetbrains.jetpad.cell.EditingTestCase;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.text.TextEditing;
+import jetbrains.jetpad.event.KeyStrokeSpecs;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CellStateUndoManagerTest extends EditingTestCase {
+  private TextCell textCell = new TextCell();
+
+  @Before
+  public void init() {
+    myCellContainer.root.children().add(textCell);
+    textCell.text().set("");
+    textCell.focusable().set(true);
+    textCell.addTrait(TextEditing.validTextEditing(Predicates.<String>alwaysTrue()));
+    textCell.focus();
+  }
+
+  @Test
+  public void undoRedoTyping() {
+    new CellStateUndoManager(myCellContainer, 100).install();
+    type("abc");
+
+    press(KeyStrokeSpecs.UNDO);
+    assertText("ab", 2);
+
+    press(KeyStrokeSpecs.REDO);
+    assertText("abc", 3);
+  }
+
+  @Test
+  public void repeatedUndoRedoKeys() {
+    new CellStateUndoManager(myCellContainer, 100).install();
+    type("abc");
+
+    press(KeyStrokeSpecs.UNDO);
+    press(KeyStrokeSpecs.UNDO);
+    assertText("a", 1);
+
+    press(KeyStrokeSpecs.REDO);
+    press(KeyStrokeSpecs.REDO);
+    assertText("abc", 3);
+  }
+
+  @Test
+  public void consecutiveNavigationMerged() {
+    new CellStateUndoManager(myCellContainer, 100).install();
+    type("abc");
+    left();
+    left();
+
+    press(KeyStrokeSpecs.UNDO);
+    assertText("abc", 3);
+
+    press(KeyStrokeSpecs.UNDO);
+    assertText("ab", 2);
+  }
+
+  @Test
+  public void editClearsRedo() {
+    CellStateUndoManager undoManager = new CellStateUndoManager(myCellContainer, 100);
+    undoManager.install();
+    type("ab");
+
+    undoManager.undo();
+    type("c");
+
+    assertFalse(undoManager.canRedo());
+    assertText("ac", 2);
+  }
+
+  @Test
+  public void oldHistoryEvicted() {
+    CellStateUndoManager undoManager = new CellStateUndoManager(myCellContainer, 7);
+    undoManager.install();
+    type("abc");
+
+    undoManager.undo();
+    undoManager.undo();
+
+    assertText("a", 1);
+    assertFalse(undoManager.canUndo());
+  }
+
+  @Test
+  public void longStatesEvictedFirst() {
+    textCell.text().set("0123456789");
+    textCell.caretPosition().set(10);
+    CellStateUndoManager undoManager = new CellStateUndoManager(myCellContainer, 25);
+    undoManager.install();
+    type("ab");
+
+    undoManager.undo();
+
+    assertText("0123456789a", 11);
+    assertFalse(undoManager.canUndo());
+  }
+
+  private void assertText(String text, int caretPosition) {
+    assertEquals(text, textCell.text().get());
+    assertEquals(caretPosition, (int) textCell.caretPosition().get());
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.base.edt.EventDispatchThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams items of several suppliers into {@link CompletionMenuModel#items}. Each {@link #load} call cancels the requests
+ * of the previous one, and the new requests are started only after no other load was requested during the debounce delay.
+ * {@link CompletionMenuModel#loading} is true while there is a scheduled or outstanding request. A failed request is
+ * reported through {@link CompletionMenuModel#failure}, and the items of the other requests are still delivered.
+ */
+public class CompletionLoader {
+  private final CompletionMenuModel myModel;
+  private final EventDispatchThread myEdt;
+  private final int myDebounceDelay;
+
+  private Registration myScheduled = Registration.EMPTY;
+  private final List<Request> myRequests = new ArrayList<>();
+  private int myOutstanding;
+
+  public CompletionLoader(CompletionMenuModel model, EventDispatchThread edt, int debounceDelay) {
+    myModel = model;
+    myEdt = edt;
+    myDebounceDelay = debounceDelay;
+  }
+
+  public void load(final CompletionParameters cp, final List<CompletionSupplier> suppliers) {
+    cancel();
+    myModel.failure.set(null);
+    myModel.loading.set(true);
+
+    if (myDebounceDelay <= 0) {
+      start(cp, suppliers);
+      return;
+    }
+
+    myScheduled = myEdt.schedule(myDebounceDelay, new Runnable() {
+      @Override
+      public void run() {
+        myScheduled = Registration.EMPTY;
+        start(cp, suppliers);
+      }
+    });
+  }
+
+  public void cancel() {
+    myScheduled.remove();
+    myScheduled = Registration.EMPTY;
+
+    for (Request r : myRequests) {
+      r.cancel();
+    }
+    myRequests.clear();
+    myOutstanding = 0;
+    myModel.loading.set(false);
+  }
+
+  private void start(CompletionParameters cp, List<CompletionSupplier> suppliers) {
+    myModel.items.clear();
+    myOutstanding = suppliers.size();
+    if (myOutstanding == 0) {
+      myModel.loading.set(false);
+      return;
+    }
+
+    List<Request> requests = new ArrayList<>(suppliers.size());
+    for (int i = 0; i < suppliers.size(); i++) {
+      requests.add(new Request());
+    }
+    myRequests.addAll(requests);
+    for (int i = 0; i < suppliers.size(); i++) {
+      Request request = requests.get(i);
+      Registration registration = suppliers.get(i).getStream(cp, request);
+      if (request.myCancelled) {
+        registration.remove();
+        return;
+      }
+      request.myRegistration = registration;
+    }
+  }
+
+  private void requestDone() {
+    if (--myOutstanding == 0) {
+      myRequests.clear();
+      myModel.loading.set(false);
+    }
+  }
+
+  private class Request implements CompletionStreamHandler {
+    private Registration myRegistration;
+    private boolean myDone;
+    private boolean myCancelled;
+
+    @Override
+    public void onBatch(List<CompletionItem> items) {
+      if (myDone || myCancelled) return;
+      myModel.items.addAll(items);
+    }
+
+    @Override
+    public void onFinished() {
+      if (myDone || myCancelled) return;
+      myDone = true;
+      requestDone();
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      if (myDone || myCancelled) return;
+      myDone = true;
+      myModel.failure.set(t);
+      requestDone();
+    }
+
+    private void cancel() {
+      if (myDone || myCancelled) return;
+      myCancelled = true;
+      if (myRegistration != null) {
+        myRegistration.remove();
+      }
+    }
+  }
+}
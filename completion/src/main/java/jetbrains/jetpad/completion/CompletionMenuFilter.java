@@ -0,0 +1,241 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Maintains the first {@code limit} items which match the current text, sorted in completion menu order.
+ *
+ * Matching is done in one pass over the items per text change. When the new text extends the previous one, only previously
+ * matched items are checked: according to {@link CompletionItem#isStrictMatchPrefix(String)} contract an item matching a longer
+ * prefix also matches all of its prefixes. Instead of sorting all matched items, only the first {@code limit} are selected
+ * with a bounded heap, and the target list is updated with a linear merge, so that unchanged items don't produce events.
+ */
+class CompletionMenuFilter {
+  private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry e1, Entry e2) {
+      int delta = e2.priority - e1.priority;
+      if (delta != 0) {
+        return delta;
+      }
+      if (e1.match != e2.match) {
+        return e1.match ? -1 : 1;
+      }
+      int textDelta = e1.text.compareTo(e2.text);
+      if (textDelta != 0) {
+        return textDelta;
+      }
+      return e1.order < e2.order ? -1 : (e1.order == e2.order ? 0 : 1);
+    }
+  };
+
+  private final List<CompletionItem> myTarget;
+  private final List<Entry> myEntries = new ArrayList<>();
+  private final List<Entry> myVisible = new ArrayList<>();
+  private List<Entry> myMatched = new ArrayList<>();
+  private int myStaleMatched;
+  private String myText = "";
+  private int myLimit;
+  private long myNextOrder;
+
+  CompletionMenuFilter(List<CompletionItem> target, int limit) {
+    myTarget = target;
+    myLimit = limit;
+  }
+
+  void add(int index, CompletionItem item) {
+    Entry entry = new Entry(item, myNextOrder++);
+    myEntries.add(index, entry);
+    if (!item.isMatchPrefix(myText)) return;
+
+    entry.matched = true;
+    myMatched.add(entry);
+
+    int pos = insertionIndex(entry);
+    if (pos >= myLimit) return;
+    if (myVisible.size() == myLimit) {
+      hide(myVisible.size() - 1);
+    }
+    show(pos, entry);
+  }
+
+  void remove(int index) {
+    Entry entry = myEntries.remove(index);
+    if (!entry.matched) return;
+
+    entry.matched = false;
+    myStaleMatched++;
+    if (entry.visible) {
+      hide(myVisible.indexOf(entry));
+      fill();
+    }
+  }
+
+  void setText(String text) {
+    if (text == null) {
+      text = "";
+    }
+    if (text.equals(myText)) return;
+
+    boolean narrow = text.startsWith(myText);
+    List<Entry> source = narrow ? myMatched : myEntries;
+    List<Entry> matched = new ArrayList<>();
+    for (Entry e : source) {
+      if (narrow && !e.matched) continue;
+      e.matched = e.item.isMatchPrefix(text);
+      if (e.matched) {
+        matched.add(e);
+      }
+    }
+    myText = text;
+    myMatched = matched;
+    myStaleMatched = 0;
+
+    update(selectFirst(myMatched, myLimit, false));
+  }
+
+  void setLimit(int limit) {
+    myLimit = limit;
+    while (myVisible.size() > myLimit) {
+      hide(myVisible.size() - 1);
+    }
+    fill();
+  }
+
+  private void fill() {
+    int missing = myLimit - myVisible.size();
+    if (missing <= 0) return;
+
+    compactMatched();
+    if (myMatched.size() == myVisible.size()) return;
+
+    for (Entry e : selectFirst(myMatched, missing, true)) {
+      show(myVisible.size(), e);
+    }
+  }
+
+  private void compactMatched() {
+    if (myStaleMatched * 2 <= myMatched.size()) return;
+    List<Entry> matched = new ArrayList<>();
+    for (Entry e : myMatched) {
+      if (e.matched) {
+        matched.add(e);
+      }
+    }
+    myMatched = matched;
+    myStaleMatched = 0;
+  }
+
+  private void update(List<Entry> newVisible) {
+    int i = 0;
+    int j = 0;
+    while (i < myVisible.size() || j < newVisible.size()) {
+      if (j == newVisible.size()) {
+        hide(i);
+        continue;
+      }
+
+      Entry next = newVisible.get(j);
+      if (i == myVisible.size()) {
+        show(i++, next);
+        j++;
+        continue;
+      }
+
+      Entry current = myVisible.get(i);
+      if (current == next) {
+        i++;
+        j++;
+      } else if (ORDER.compare(current, next) < 0) {
+        hide(i);
+      } else {
+        show(i++, next);
+        j++;
+      }
+    }
+  }
+
+  private void show(int index, Entry entry) {
+    entry.visible = true;
+    myVisible.add(index, entry);
+    myTarget.add(index, entry.item);
+  }
+
+  private void hide(int index) {
+    myVisible.remove(index).visible = false;
+    myTarget.remove(index);
+  }
+
+  private int insertionIndex(Entry entry) {
+    int low = 0;
+    int high = myVisible.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (ORDER.compare(myVisible.get(mid), entry) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static List<Entry> selectFirst(List<Entry> entries, int count, boolean skipVisible) {
+    if (count <= 0) {
+      return Collections.emptyList();
+    }
+
+    PriorityQueue<Entry> worstFirst = new PriorityQueue<>(count, Collections.reverseOrder(ORDER));
+    for (Entry e : entries) {
+      if (!e.matched || (skipVisible && e.visible)) continue;
+      if (worstFirst.size() < count) {
+        worstFirst.add(e);
+      } else if (ORDER.compare(e, worstFirst.peek()) < 0) {
+        worstFirst.poll();
+        worstFirst.add(e);
+      }
+    }
+
+    List<Entry> result = new ArrayList<>(worstFirst);
+    Collections.sort(result, ORDER);
+    return result;
+  }
+
+  private static class Entry {
+    private final CompletionItem item;
+    private final int priority;
+    private final boolean match;
+    private final String text;
+    private final long order;
+
+    private boolean matched;
+    private boolean visible;
+
+    private Entry(CompletionItem item, long order) {
+      this.item = item;
+      this.order = order;
+      priority = item.getSortPriority();
+      match = item.isMatch("");
+      text = item.visibleText("");
+    }
+  }
+}
@@ -15,15 +15,12 @@
  */
 package jetbrains.jetpad.completion;
 
-import com.google.common.base.Function;
+import jetbrains.jetpad.model.collections.CollectionAdapter;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.*;
-import jetbrains.jetpad.model.transform.Transformers;
-
-import java.util.Comparator;
 
 public class CompletionMenuModel {
   private static final int CHUNK_SIZE = 60;
@@ -33,6 +30,7 @@ public class CompletionMenuModel {
   public final ObservableList<CompletionItem> items = new ObservableArrayList<>();
   public final Property<CompletionItem> selectedItem = new ValueProperty<>();
   public final Property<Boolean> loading = new ValueProperty<>(false);
+  public final Property<Throwable> failure = new ValueProperty<>();
 
   private final Property<Integer> visibleCount;
 
@@ -53,51 +51,32 @@ public class CompletionMenuModel {
     myDistanceFromEndToLoad = distanceFromEnd;
     visibleCount = new ValueProperty<>(myChunkSize);
 
-    visibleItems = Transformers.filter(new Function<CompletionItem, ReadableProperty<Boolean>>() {
-      @Override
-      public ReadableProperty<Boolean> apply(final CompletionItem input) {
-        return new DerivedProperty<Boolean>(text) {
-          @Override
-          public Boolean doGet() {
-            return input.isMatchPrefix(text.get() == null ? "" : text.get());
-          }
+    visibleItems = new ObservableArrayList<>();
+    final CompletionMenuFilter filter = new CompletionMenuFilter(visibleItems, myChunkSize);
 
-          @Override
-          public String getPropExpr() {
-            return "isMatchPrefix(" + text.getPropExpr() + ", " + input + ")";
-          }
-        };
+    items.addListener(new CollectionAdapter<CompletionItem>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<? extends CompletionItem> event) {
+        filter.add(event.getIndex(), event.getNewItem());
       }
-    }).andThen(
-      Transformers.sortBy(new Function<CompletionItem, ReadableProperty<CompletionItem>>() {
-        @Override
-        public ReadableProperty<CompletionItem> apply(final CompletionItem input) {
-          return Properties.constant(input);
-        }
-      }, new Comparator<CompletionItem>() {
-        @Override
-        public int compare(CompletionItem c1, CompletionItem c2) {
-          String text = "";
-
-          int delta = c2.getSortPriority() - c1.getSortPriority();
-          if (delta != 0) {
-            return delta;
-          }
 
-          String t1 = c1.visibleText(text);
-          String t2 = c2.visibleText(text);
-          if (c1.isMatch(text) && !c2.isMatch(text)) {
-            return -1;
-          }
-          if (!c1.isMatch(text) && c2.isMatch(text)) {
-            return 1;
-          }
-          return t1.compareTo(t2);
-        }
-      })
-    ).andThen(
-      Transformers.<CompletionItem>firstN(visibleCount)
-    ).transform(items).getTarget();
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends CompletionItem> event) {
+        filter.remove(event.getIndex());
+      }
+    });
+    text.addHandler(new EventHandler<PropertyChangeEvent<String>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<String> event) {
+        filter.setText(event.getNewValue());
+      }
+    });
+    visibleCount.addHandler(new EventHandler<PropertyChangeEvent<Integer>>() {
+      @Override
+      public void onEvent(PropertyChangeEvent<Integer> event) {
+        filter.setLimit(event.getNewValue());
+      }
+    });
 
     visibleItems.addHandler(new EventHandler<CollectionItemEvent<? extends CompletionItem>>() {
       @Override
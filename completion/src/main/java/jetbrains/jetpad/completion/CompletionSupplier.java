@@ -51,6 +51,33 @@ public abstract class CompletionSupplier {
     return Asyncs.constant(Collections.<CompletionItem>emptyList());
   }
 
+  /**
+   * Delivers items to the handler in batches, possibly after this method returns. Removing the returned registration
+   * cancels the request, after which the handler must not be called. Suppliers which can produce partial results override
+   * this method. The default implementation delivers {@link #get(CompletionParameters)} followed by
+   * {@link #getAsync(CompletionParameters)}.
+   */
+  public Registration getStream(CompletionParameters cp, final CompletionStreamHandler handler) {
+    List<CompletionItem> syncItems = get(cp);
+    if (!syncItems.isEmpty()) {
+      handler.onBatch(syncItems);
+    }
+    return getAsync(cp).onResult(new Handler<List<CompletionItem>>() {
+      @Override
+      public void handle(List<CompletionItem> items) {
+        if (!items.isEmpty()) {
+          handler.onBatch(items);
+        }
+        handler.onFinished();
+      }
+    }, new Handler<Throwable>() {
+      @Override
+      public void handle(Throwable t) {
+        handler.onFailure(t);
+      }
+    });
+  }
+
   public final boolean isAsyncEmpty(CompletionParameters cp) {
     Async<List<CompletionItem>> async = getAsync(cp);
     final Value<Boolean> loaded = new Value<>(false);
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import jetbrains.jetpad.base.Async;
+import jetbrains.jetpad.base.Runnables;
+import jetbrains.jetpad.base.SimpleAsync;
+import jetbrains.jetpad.base.edt.TestEventDispatchThread;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionLoaderTest {
+  private static final int BATCH_DELAY = 10;
+
+  private TestEventDispatchThread edt = new TestEventDispatchThread();
+  private CompletionMenuModel model = new CompletionMenuModel();
+  private SlowCompletionSupplier slow = new SlowCompletionSupplier(edt, createItems("a", "b", "c", "d", "e"), 2, BATCH_DELAY);
+
+  @Test
+  public void batchesArriveIncrementally() {
+    CompletionLoader loader = new CompletionLoader(model, edt, 0);
+    loader.load(CompletionParameters.EMPTY, suppliers(slow));
+
+    assertTrue(model.loading.get());
+    assertEquals(0, model.items.size());
+
+    passTime(BATCH_DELAY);
+    assertEquals(2, model.items.size());
+    assertTrue(model.loading.get());
+
+    passTime(2 * BATCH_DELAY);
+    assertEquals(5, model.items.size());
+    assertFalse(model.loading.get());
+  }
+
+  @Test
+  public void suppliersMerged() {
+    CompletionLoader loader = new CompletionLoader(model, edt, 0);
+    loader.load(CompletionParameters.EMPTY, suppliers(CompletionSupplier.create(createItems("x", "y")), slow));
+
+    assertEquals(2, model.items.size());
+    assertTrue(model.loading.get());
+
+    passTime(3 * BATCH_DELAY);
+    assertEquals(7, model.items.size());
+    assertFalse(model.loading.get());
+  }
+
+  @Test
+  public void newLoadCancelsOutstanding() {
+    CompletionLoader loader = new CompletionLoader(model, edt, 0);
+    loader.load(CompletionParameters.EMPTY, suppliers(slow));
+    passTime(BATCH_DELAY);
+
+    loader.load(CompletionParameters.EMPTY, suppliers(slow));
+    assertEquals(1, slow.cancelCount);
+    assertEquals(0, model.items.size());
+
+    passTime(3 * BATCH_DELAY);
+    assertEquals(5, model.items.size());
+    assertFalse(model.loading.get());
+  }
+
+  @Test
+  public void cancel() {
+    CompletionLoader loader = new CompletionLoader(model, edt, 0);
+    loader.load(CompletionParameters.EMPTY, suppliers(slow));
+    passTime(BATCH_DELAY);
+
+    loader.cancel();
+    passTime(3 * BATCH_DELAY);
+
+    assertEquals(1, slow.cancelCount);
+    assertEquals(2, model.items.size());
+    assertFalse(model.loading.get());
+  }
+
+  @Test
+  public void debounce() {
+    CompletionLoader loader = new CompletionLoader(model, edt, 50);
+    for (int i = 0; i < 3; i++) {
+      loader.load(CompletionParameters.EMPTY, suppliers(slow));
+      passTime(20);
+    }
+
+    assertEquals(0, slow.requestCount);
+    assertTrue(model.loading.get());
+
+    passTime(30);
+    assertEquals(1, slow.requestCount);
+  }
+
+  @Test
+  public void failureReported() {
+    final SimpleAsync<List<CompletionItem>> async = new SimpleAsync<>();
+    CompletionSupplier failing = new CompletionSupplier() {
+      @Override
+      public Async<List<CompletionItem>> getAsync(CompletionParameters cp) {
+        return async;
+      }
+    };
+    CompletionLoader loader = new CompletionLoader(model, edt, 0);
+    loader.load(CompletionParameters.EMPTY, suppliers(failing, slow));
+
+    RuntimeException failure = new RuntimeException();
+    async.failure(failure);
+    assertSame(failure, model.failure.get());
+    assertTrue(model.loading.get());
+
+    passTime(3 * BATCH_DELAY);
+    assertEquals(5, model.items.size());
+    assertFalse(model.loading.get());
+
+    loader.load(CompletionParameters.EMPTY, suppliers(slow));
+    assertNull(model.failure.get());
+  }
+
+  private void passTime(int millis) {
+    for (int i = 0; i < millis; i++) {
+      edt.executeUpdates(1);
+    }
+  }
+
+  private List<CompletionSupplier> suppliers(CompletionSupplier... suppliers) {
+    return Arrays.asList(suppliers);
+  }
+
+  private List<CompletionItem> createItems(String... texts) {
+    List<CompletionItem> result = new ArrayList<>();
+    for (String text : texts) {
+      result.add(new SimpleCompletionItem(text) {
+        @Override
+        public Runnable complete(String text) {
+          return Runnables.EMPTY;
+        }
+      });
+    }
+    return Collections.unmodifiableList(result);
+  }
+}
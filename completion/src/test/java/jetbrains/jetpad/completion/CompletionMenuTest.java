@@ -86,6 +86,45 @@ public class CompletionMenuTest {
     assertEquals(6, model.visibleItems.size());
   }
 
+  @Test
+  public void textNarrowingAndWidening() {
+    model.text.set("a");
+    model.text.set("aaa");
+    assertEquals(1, model.visibleItems.size());
+
+    model.text.set("b");
+    assertEquals(1, model.visibleItems.size());
+    assertSelected("bbb");
+
+    model.text.set("");
+    assertEquals(3, model.visibleItems.size());
+    assertSelected("aa");
+  }
+
+  @Test
+  public void itemsAddedAfterTextSet() {
+    model.text.set("a");
+    model.items.add(createItem("ab"));
+    model.items.add(createItem("b"));
+
+    assertEquals(3, model.visibleItems.size());
+    assertEquals("ab", model.visibleItems.get(2).visibleText(""));
+  }
+
+  @Test
+  public void visibleItemRemovalRefills() {
+    model = new CompletionMenuModel(3, 0);
+    for (int i = 0; i < 10; i++) {
+      model.items.add(createItem("" + i));
+    }
+
+    model.items.remove(0);
+
+    assertEquals(3, model.visibleItems.size());
+    assertSelected("1");
+    assertEquals("3", model.visibleItems.get(2).visibleText(""));
+  }
+
   private void assertSelected(String text) {
     assertEquals(text, model.selectedItem.get().visibleText(""));
   }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.completion;
+
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.base.edt.EventDispatchThread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulates a supplier backed by a slow local process: items are delivered in batches, one batch per delay.
+ */
+class SlowCompletionSupplier extends CompletionSupplier {
+  private final EventDispatchThread myEdt;
+  private final List<CompletionItem> myItems;
+  private final int myBatchSize;
+  private final int myDelay;
+
+  int requestCount;
+  int cancelCount;
+
+  SlowCompletionSupplier(EventDispatchThread edt, List<CompletionItem> items, int batchSize, int delay) {
+    myEdt = edt;
+    myItems = items;
+    myBatchSize = batchSize;
+    myDelay = delay;
+  }
+
+  @Override
+  public Registration getStream(CompletionParameters cp, final CompletionStreamHandler handler) {
+    requestCount++;
+    return new Registration() {
+      private int myDelivered;
+      private Registration myNext = scheduleNext();
+
+      private Registration scheduleNext() {
+        return myEdt.schedule(myDelay, new Runnable() {
+          @Override
+          public void run() {
+            int end = Math.min(myDelivered + myBatchSize, myItems.size());
+            handler.onBatch(new ArrayList<>(myItems.subList(myDelivered, end)));
+            myDelivered = end;
+            if (myDelivered == myItems.size()) {
+              myNext = Registration.EMPTY;
+              handler.onFinished();
+            } else {
+              myNext = scheduleNext();
+            }
+          }
+        });
+      }
+
+      @Override
+      protected void doRemove() {
+        cancelCount++;
+        myNext.remove();
+      }
+    };
+  }
+}
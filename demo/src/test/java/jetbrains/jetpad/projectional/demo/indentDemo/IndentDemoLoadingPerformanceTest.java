@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.demo.indentDemo;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.concurrent.CellSubtreeLoader;
+import jetbrains.jetpad.cell.toView.CellToView;
+import jetbrains.jetpad.projectional.demo.indentDemo.mapper.ContainerMapper;
+import jetbrains.jetpad.projectional.demo.indentDemo.model.AppExpr;
+import jetbrains.jetpad.projectional.demo.indentDemo.model.Container;
+import jetbrains.jetpad.projectional.demo.indentDemo.model.Expr;
+import jetbrains.jetpad.projectional.demo.indentDemo.model.VarExpr;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how long the event dispatch thread is blocked while a large generated lambda model is loaded,
+ * when its cells are built on the event dispatch thread and when they are built on a worker thread and only attached
+ * on the event dispatch thread.
+ */
+public class IndentDemoLoadingPerformanceTest {
+  public static void main(String[] args) throws Exception {
+    ExecutorService edtThread = Executors.newSingleThreadExecutor();
+    ExecutorService worker = Executors.newCachedThreadPool();
+    try {
+      for (int depth : new int[] { 8, 12, 14 }) {
+        run(depth, edtThread, worker);
+      }
+    } finally {
+      edtThread.shutdown();
+      worker.shutdown();
+    }
+  }
+
+  private static void run(final int depth, ExecutorService edtThread, ExecutorService worker) throws Exception {
+    final BlockingTimeExecutor edt = new BlockingTimeExecutor(edtThread);
+
+    final CellContainer onEdt = createContainer(edtThread);
+    edt.submit(new Callable<Void>() {
+      @Override
+      public Void call() {
+        onEdt.root.children().add(createCell(depth));
+        return null;
+      }
+    }).get();
+    long onEdtTime = edt.getBlockingTime();
+
+    edt.reset();
+    CellContainer offEdt = createContainer(edtThread);
+    new CellSubtreeLoader(offEdt, worker, edt).load(offEdt.root, 0, new Callable<List<Cell>>() {
+      @Override
+      public List<Cell> call() {
+        return Collections.singletonList(createCell(depth));
+      }
+    }).get();
+    long offEdtTime = edt.getBlockingTime();
+
+    System.out.println((1 << depth) + " leaves: edt blocked for " + onEdtTime + " ms when built on edt, "
+        + offEdtTime + " ms when built on a worker");
+  }
+
+  private static CellContainer createContainer(ExecutorService edtThread) throws Exception {
+    return edtThread.submit(new Callable<CellContainer>() {
+      @Override
+      public CellContainer call() {
+        CellContainer container = new CellContainer();
+        CellSubtreeLoader.confineToCurrentThread(container);
+        CellToView.map(container, new ViewContainer());
+        return container;
+      }
+    }).get();
+  }
+
+  private static Cell createCell(int depth) {
+    Container model = new Container();
+    model.expr.set(createExpr(depth));
+    ContainerMapper mapper = new ContainerMapper(model);
+    mapper.attachRoot();
+    return mapper.getTarget();
+  }
+
+  private static Expr createExpr(int depth) {
+    if (depth == 0) {
+      VarExpr var = new VarExpr();
+      var.name.set("x");
+      return var;
+    }
+    AppExpr app = new AppExpr();
+    app.fun.set(createExpr(depth - 1));
+    app.arg.set(createExpr(depth - 1));
+    return app;
+  }
+
+  private static class BlockingTimeExecutor implements Executor {
+    private final ExecutorService myThread;
+    private volatile long myBlockingTime;
+
+    private BlockingTimeExecutor(ExecutorService thread) {
+      myThread = thread;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+      myThread.execute(timed(command));
+    }
+
+    private <T> Future<T> submit(final Callable<T> task) {
+      return myThread.submit(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          long start = System.currentTimeMillis();
+          try {
+            return task.call();
+          } finally {
+            myBlockingTime += System.currentTimeMillis() - start;
+          }
+        }
+      });
+    }
+
+    private Runnable timed(final Runnable command) {
+      return new Runnable() {
+        @Override
+        public void run() {
+          long start = System.currentTimeMillis();
+          try {
+            command.run();
+          } finally {
+            myBlockingTime += System.currentTimeMillis() - start;
+          }
+        }
+      };
+    }
+
+    private long getBlockingTime() {
+      return myBlockingTime;
+    }
+
+    private void reset() {
+      myBlockingTime = 0;
+    }
+  }
+}
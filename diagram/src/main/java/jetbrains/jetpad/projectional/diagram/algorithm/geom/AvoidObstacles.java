@@ -37,22 +37,6 @@ public class AvoidObstacles {
       return rect;
     }
 
-    Vector min = new Vector(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2);
-    Vector max = new Vector(Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2);
-    horObs.add(min);
-    horObs.add(max);
-    verObs.add(min);
-    verObs.add(max);
-
-    Comparator<Vector> comparator = new Comparator<Vector>() {
-      @Override
-      public int compare(Vector v1, Vector v2) {
-        if (v1.x < v2.x) return -1;
-        if (v1.x > v2.x) return 1;
-        return 0;
-      }
-    };
-    Collections.sort(horObs, comparator);
     int bestHor = findShift(new Vector(rect.origin.x, rect.origin.x + rect.dimension.x), horObs);
     int bestVer = findShift(new Vector(rect.origin.y, rect.origin.y + rect.dimension.y), verObs);
     Vector shift;
@@ -74,7 +58,7 @@ public class AvoidObstacles {
       }
     };
     Collections.sort(obs, comparator);
-    int res1 = findShift(v.y - v.x, v.x, obs);
+    long res1 = findShift(v.y - v.x, v.x, obs);
 
     List<Vector> invObs = new ArrayList<>(obs.size());
     for (Vector o: obs) {
@@ -82,26 +66,25 @@ public class AvoidObstacles {
     }
     Collections.sort(invObs, comparator);
 
-    int res2 = -findShift(v.y - v.x, -v.y, invObs);
-    if (Math.abs(res1) < Math.abs(res2)) {
-      return res1;
-    } else {
-      return res2;
-    }
+    long res2 = -findShift(v.y - v.x, -v.y, invObs);
+    return (int) (Math.abs(res1) < Math.abs(res2) ? res1 : res2);
   }
 
-  private int findShift(int len, int pos, List<Vector> obs) {
+  //the space after the last obstacle is unbounded, so there is always a position to move to
+  private long findShift(int len, int pos, List<Vector> obs) {
     Vector cur = obs.get(0);
-    int best = Integer.MAX_VALUE;
+    long best = Long.MAX_VALUE;
     for (Vector v: obs) {
       if (v.y <= cur.y) continue;
-      if (v.x >= cur.y + len) {
-        if (Math.abs(cur.y - pos) < Math.abs(best)) {
-          best = cur.y - pos;
-        }
+      if (v.x >= (long) cur.y + len) {
+        best = closest(best, (long) cur.y - pos);
       }
       cur = v;
     }
-    return best;
+    return closest(best, (long) cur.y - pos);
+  }
+
+  private long closest(long best, long shift) {
+    return Math.abs(shift) < Math.abs(best) ? shift : best;
   }
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.geom;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.util.SpatialGrid;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Pushes nodes away from a moved node, so that they are at least {@code minDist} away from it and from each other.
+ *
+ * Nodes are processed in the order of the distance of their centers from the moved node's center. A node is checked
+ * only against the nodes processed before it. It returns to the first free position it had while the same node
+ * is being moved, or is shifted by {@link AvoidObstacles} if there is none. Only the nodes near the moved one
+ * and near the pushed ones are processed: a worklist is fed by queries to a spatial grid,
+ * so a drag step costs about the size of the affected neighbourhood rather than of the whole diagram.
+ */
+public class OverlapResolver<NodeT> {
+  private final int myMinDist;
+
+  private NodeT myMoving;
+  private final Map<NodeT, List<Vector>> myOldPositions = new HashMap<>();
+
+  private List<NodeT> myNodes;
+  private Rectangle[] myBounds;
+  private double[] myDist;
+  private boolean[] myPlaced;
+  private int myMoved;
+  private SpatialGrid<Integer> myGrid;
+
+  public OverlapResolver(int minDist) {
+    myMinDist = minDist;
+  }
+
+  /**
+   * @param moved the node being moved or null if there is none
+   * @return new origins of the nodes which have to be moved, in the order they were processed
+   */
+  public Map<NodeT, Vector> resolve(NodeT moved, List<NodeT> nodes, List<Rectangle> bounds) {
+    if (moved != myMoving) {
+      myMoving = moved;
+      myOldPositions.clear();
+    }
+    Map<NodeT, Vector> result = new LinkedHashMap<>();
+    if (moved == null) {
+      return result;
+    }
+
+    init(moved, nodes, bounds);
+    PriorityQueue<Integer> queue = new PriorityQueue<>(16, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return before(i1, i2) ? -1 : (i1.equals(i2) ? 0 : 1);
+      }
+    });
+    for (int i = 0; i < myNodes.size(); i++) {
+      if (i != myMoved && myOldPositions.containsKey(myNodes.get(i))) {
+        queue.add(i);
+      }
+    }
+    addNeighbours(myMoved, queue);
+
+    while (!queue.isEmpty()) {
+      int i = queue.poll();
+      if (myPlaced[i]) continue;
+
+      Vector position = findPosition(i);
+      if (!position.equals(myBounds[i].origin)) {
+        myBounds[i] = new Rectangle(position, myBounds[i].dimension);
+        myGrid.add(i, myBounds[i]);
+        result.put(myNodes.get(i), position);
+      }
+      myPlaced[i] = true;
+      addNeighbours(i, queue);
+    }
+
+    myNodes = null;
+    myBounds = null;
+    myDist = null;
+    myPlaced = null;
+    myGrid = null;
+    return result;
+  }
+
+  private void init(NodeT moved, List<NodeT> nodes, List<Rectangle> bounds) {
+    int n = nodes.size();
+    myNodes = nodes;
+    myBounds = bounds.toArray(new Rectangle[n]);
+    myMoved = nodes.indexOf(moved);
+    myDist = new double[n];
+    myPlaced = new boolean[n];
+
+    long size = 0;
+    for (Rectangle r : myBounds) {
+      size += r.dimension.x + r.dimension.y;
+    }
+    myGrid = new SpatialGrid<>((int) Math.max(1, Math.min(Integer.MAX_VALUE, size / Math.max(1, 2 * n) + 2 * myMinDist)));
+
+    Rectangle movedBounds = myBounds[myMoved];
+    double centerX = movedBounds.origin.x + movedBounds.dimension.x / 2;
+    double centerY = movedBounds.origin.y + movedBounds.dimension.y / 2;
+    for (int i = 0; i < n; i++) {
+      Rectangle r = myBounds[i];
+      double dx = r.origin.x + r.dimension.x / 2 - centerX;
+      double dy = r.origin.y + r.dimension.y / 2 - centerY;
+      myDist[i] = dx * dx + dy * dy;
+      myGrid.add(i, r);
+    }
+    myPlaced[myMoved] = true;
+  }
+
+  private boolean before(int i1, int i2) {
+    if (i1 == myMoved || i2 == myMoved) {
+      return i1 == myMoved && i2 != myMoved;
+    }
+    return myDist[i1] < myDist[i2] || (myDist[i1] == myDist[i2] && i1 < i2);
+  }
+
+  private Vector findPosition(int i) {
+    NodeT node = myNodes.get(i);
+    Rectangle bounds = myBounds[i];
+    List<Vector> oldPos = myOldPositions.get(node);
+    if (oldPos == null) {
+      oldPos = new ArrayList<>();
+      oldPos.add(bounds.origin);
+      myOldPositions.put(node, oldPos);
+    }
+    for (int k = 0; k < oldPos.size(); k++) {
+      Vector pos = oldPos.get(k);
+      if (getObstacles(i, new Rectangle(pos, bounds.dimension)).isEmpty()) {
+        oldPos.subList(k + 1, oldPos.size()).clear();
+        return pos;
+      }
+    }
+
+    Vector newOrigin = new AvoidObstacles().findNewPosition(bounds, getObstacles(i, bounds)).origin;
+    oldPos.add(newOrigin);
+    return newOrigin;
+  }
+
+  private List<Rectangle> getObstacles(int i, Rectangle rect) {
+    Set<Integer> near = new HashSet<>();
+    myGrid.find(grow(rect, myMinDist + 1), near);
+    List<Rectangle> obstacles = new ArrayList<>();
+    for (int j : near) {
+      if (j == i || !before(j, i)) continue;
+      Rectangle obstacle = grow(myBounds[j], myMinDist);
+      if (rect.innerIntersects(obstacle)) {
+        obstacles.add(obstacle);
+      }
+    }
+    return obstacles;
+  }
+
+  private void addNeighbours(int i, PriorityQueue<Integer> queue) {
+    Rectangle area = grow(myBounds[i], myMinDist);
+    Set<Integer> near = new HashSet<>();
+    myGrid.find(area, near);
+    for (int j : near) {
+      if (myPlaced[j] || !before(i, j)) continue;
+      if (myBounds[j].innerIntersects(area)) {
+        queue.add(j);
+      }
+    }
+  }
+
+  private Rectangle grow(Rectangle rect, int dist) {
+    return new Rectangle(rect.origin.sub(new Vector(dist, dist)), rect.dimension.add(new Vector(2 * dist + 1, 2 * dist + 1)));
+  }
+}
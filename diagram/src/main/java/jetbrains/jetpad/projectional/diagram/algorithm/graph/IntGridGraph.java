@@ -0,0 +1,25 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.graph;
+
+/**
+ * Graph whose nodes are points of an integer grid and whose edges are horizontal or vertical.
+ * Weight of an edge must not be less than the Manhattan distance between its ends.
+ */
+public interface IntGridGraph extends IntWeightedGraph {
+  int getX(int node);
+  int getY(int node);
+}
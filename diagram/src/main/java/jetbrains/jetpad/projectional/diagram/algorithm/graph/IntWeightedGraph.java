@@ -0,0 +1,26 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.graph;
+
+/**
+ * Weighted graph with int nodes and no boxing on traversal.
+ * {@link #getEdgeCount(int)} is always called before edges of a node are queried, so it may be used to build the graph lazily.
+ */
+public interface IntWeightedGraph {
+  int getEdgeCount(int node);
+  int getEdgeTarget(int node, int index);
+  int getEdgeWeight(int node, int index);
+}
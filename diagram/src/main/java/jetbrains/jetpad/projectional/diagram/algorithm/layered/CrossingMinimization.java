@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.layered;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Orders the nodes in the layers by the barycenter heuristic with alternating down and up sweeps.
+ * The order with the least crossings is kept. Crossings between two layers are counted in O(e log v)
+ * by counting inversions with a Fenwick tree.
+ */
+class CrossingMinimization {
+  private CrossingMinimization() {
+  }
+
+  static long minimize(ProperGraph g, int sweeps) {
+    long best = countCrossings(g);
+    int[][] bestOrder = copy(g.layers);
+    for (int i = 0; i < sweeps && best > 0; i++) {
+      for (int l = 1; l < g.layers.length; l++) {
+        sortByBarycenter(g, l, g.upStart, g.up);
+      }
+      for (int l = g.layers.length - 2; l >= 0; l--) {
+        sortByBarycenter(g, l, g.downStart, g.down);
+      }
+      long crossings = countCrossings(g);
+      if (crossings < best) {
+        best = crossings;
+        bestOrder = copy(g.layers);
+      }
+    }
+    for (int l = 0; l < bestOrder.length; l++) {
+      g.setOrder(l, bestOrder[l]);
+    }
+    return best;
+  }
+
+  static long countCrossings(ProperGraph g) {
+    long crossings = 0;
+    for (int l = 0; l + 1 < g.layers.length; l++) {
+      crossings += countCrossings(g, l);
+    }
+    return crossings;
+  }
+
+  private static long countCrossings(ProperGraph g, int l) {
+    int size = g.layers[l + 1].length;
+    int[] tree = new int[size + 1];
+    int inserted = 0;
+    long crossings = 0;
+    int[] targets = new int[0];
+    for (int v : g.layers[l]) {
+      int count = g.downStart[v + 1] - g.downStart[v];
+      if (targets.length < count) {
+        targets = new int[count];
+      }
+      for (int i = 0; i < count; i++) {
+        targets[i] = g.pos[g.down[g.downStart[v] + i]];
+      }
+      Arrays.sort(targets, 0, count);
+      for (int i = 0; i < count; i++) {
+        int p = targets[i] + 1;
+        int notGreater = 0;
+        for (int j = p; j > 0; j -= j & -j) {
+          notGreater += tree[j];
+        }
+        crossings += inserted - notGreater;
+        for (int j = p; j <= size; j += j & -j) {
+          tree[j]++;
+        }
+        inserted++;
+      }
+    }
+    return crossings;
+  }
+
+  private static void sortByBarycenter(ProperGraph g, int l, int[] start, int[] neighbours) {
+    int[] layer = g.layers[l];
+    final double[] barycenter = new double[layer.length];
+    Integer[] order = new Integer[layer.length];
+    for (int i = 0; i < layer.length; i++) {
+      int v = layer[i];
+      order[i] = i;
+      int count = start[v + 1] - start[v];
+      if (count == 0) {
+        barycenter[i] = i;
+        continue;
+      }
+      double sum = 0;
+      for (int j = start[v]; j < start[v + 1]; j++) {
+        sum += g.pos[neighbours[j]];
+      }
+      barycenter[i] = sum / count * (layer.length - 1) / Math.max(1, neighbourLayerSize(g, l, neighbours == g.up) - 1);
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return Double.compare(barycenter[i1], barycenter[i2]);
+      }
+    });
+    int[] newOrder = new int[layer.length];
+    for (int i = 0; i < layer.length; i++) {
+      newOrder[i] = layer[order[i]];
+    }
+    g.setOrder(l, newOrder);
+  }
+
+  private static int neighbourLayerSize(ProperGraph g, int l, boolean up) {
+    return g.layers[up ? l - 1 : l + 1].length;
+  }
+
+  private static int[][] copy(int[][] layers) {
+    int[][] result = new int[layers.length][];
+    for (int l = 0; l < layers.length; l++) {
+      result[l] = Arrays.copyOf(layers[l], layers[l].length);
+    }
+    return result;
+  }
+}
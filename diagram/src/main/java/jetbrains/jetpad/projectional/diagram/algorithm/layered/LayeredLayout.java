@@ -0,0 +1,332 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.layered;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.util.SpatialGrid;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sugiyama style layered layout with layers going from left to right: cycle breaking and layering
+ * ({@link Layering}), crossing minimization ({@link CrossingMinimization}) and coordinate assignment.
+ *
+ * Vertical coordinates are assigned layer by layer with alternating sweeps: every node is pulled to the average
+ * center of its neighbours in the previous layer, and the closest positions which keep the order of the layer
+ * and the spacing are found by isotonic regression (pool adjacent violators), which is linear in the size of the layer.
+ *
+ * When some nodes are pinned, they keep their positions. The other nodes are moved by the same offset as the closest
+ * pinned node of their component, and then pushed down until they don't overlap the nodes placed before them.
+ */
+public class LayeredLayout {
+  public static final int DEFAULT_LAYER_SPACING = 60;
+  public static final int DEFAULT_NODE_SPACING = 30;
+  public static final int DEFAULT_SWEEPS = 8;
+
+  private static final int COORDINATE_SWEEPS = 4;
+
+  private int myLayerSpacing = DEFAULT_LAYER_SPACING;
+  private int myNodeSpacing = DEFAULT_NODE_SPACING;
+  private int mySweeps = DEFAULT_SWEEPS;
+
+  private long myCrossings;
+
+  public int getLayerSpacing() {
+    return myLayerSpacing;
+  }
+
+  public void setLayerSpacing(int layerSpacing) {
+    if (layerSpacing < 0) {
+      throw new IllegalArgumentException("layerSpacing = " + layerSpacing);
+    }
+    myLayerSpacing = layerSpacing;
+  }
+
+  public int getNodeSpacing() {
+    return myNodeSpacing;
+  }
+
+  public void setNodeSpacing(int nodeSpacing) {
+    if (nodeSpacing < 0) {
+      throw new IllegalArgumentException("nodeSpacing = " + nodeSpacing);
+    }
+    myNodeSpacing = nodeSpacing;
+  }
+
+  public int getSweeps() {
+    return mySweeps;
+  }
+
+  public void setSweeps(int sweeps) {
+    if (sweeps < 0) {
+      throw new IllegalArgumentException("sweeps = " + sweeps);
+    }
+    mySweeps = sweeps;
+  }
+
+  /**
+   * Number of crossings between the layers, long edges included, in the last computed layout
+   */
+  public long getCrossings() {
+    return myCrossings;
+  }
+
+  public Vector[] layout(int[] widths, int[] heights, int[] sources, int[] targets) {
+    return layout(widths, heights, sources, targets, null);
+  }
+
+  /**
+   * @param pinned origins of the nodes which must stay in place and nulls for the other nodes, or null if there are none
+   * @return origins of the nodes
+   */
+  public Vector[] layout(int[] widths, int[] heights, int[] sources, int[] targets, Vector[] pinned) {
+    int n = widths.length;
+    if (heights.length != n || sources.length != targets.length || (pinned != null && pinned.length != n)) {
+      throw new IllegalArgumentException();
+    }
+    for (int e = 0; e < sources.length; e++) {
+      if (sources[e] < 0 || sources[e] >= n || targets[e] < 0 || targets[e] >= n) {
+        throw new IllegalArgumentException("Edge " + sources[e] + " -> " + targets[e]);
+      }
+    }
+
+    ProperGraph g = Layering.build(n, sources, targets);
+    myCrossings = CrossingMinimization.minimize(g, mySweeps);
+
+    int[] x = assignX(g, widths);
+    double[] center = assignY(g, heights);
+    Vector[] result = new Vector[n];
+    int minY = Integer.MAX_VALUE;
+    for (int v = 0; v < n; v++) {
+      result[v] = new Vector(x[v], (int) Math.round(center[v] - heights[v] / 2.0));
+      minY = Math.min(minY, result[v].y);
+    }
+    for (int v = 0; v < n; v++) {
+      result[v] = new Vector(result[v].x, result[v].y - minY);
+    }
+
+    if (pinned != null && hasPinned(pinned)) {
+      placeAroundPinned(g, widths, heights, sources, targets, pinned, result);
+    }
+    return result;
+  }
+
+  private int[] assignX(ProperGraph g, int[] widths) {
+    int[] x = new int[g.realCount];
+    int layerX = 0;
+    for (int[] layer : g.layers) {
+      int layerWidth = 0;
+      for (int v : layer) {
+        if (!g.isDummy(v)) {
+          layerWidth = Math.max(layerWidth, widths[v]);
+        }
+      }
+      for (int v : layer) {
+        if (!g.isDummy(v)) {
+          x[v] = layerX + (layerWidth - widths[v]) / 2;
+        }
+      }
+      layerX += layerWidth + myLayerSpacing;
+    }
+    return x;
+  }
+
+  private double[] assignY(ProperGraph g, int[] heights) {
+    double[] center = new double[g.nodeCount];
+    for (int[] layer : g.layers) {
+      double y = 0;
+      for (int i = 0; i < layer.length; i++) {
+        double h = height(g, heights, layer[i]);
+        center[layer[i]] = y + h / 2;
+        y += h + myNodeSpacing;
+      }
+    }
+
+    for (int i = 0; i < COORDINATE_SWEEPS; i++) {
+      for (int l = 1; l < g.layers.length; l++) {
+        align(g, heights, center, g.layers[l], g.upStart, g.up);
+      }
+      for (int l = g.layers.length - 2; l >= 0; l--) {
+        align(g, heights, center, g.layers[l], g.downStart, g.down);
+      }
+    }
+    return center;
+  }
+
+  private void align(ProperGraph g, int[] heights, double[] center, int[] layer, int[] start, int[] neighbours) {
+    int k = layer.length;
+    if (k == 0) return;
+
+    //with offsets the spacing constraints become center[i] - offset[i] <= center[i + 1] - offset[i + 1]
+    double[] offset = new double[k];
+    double[] target = new double[k];
+    for (int i = 0; i < k; i++) {
+      int v = layer[i];
+      if (i > 0) {
+        offset[i] = offset[i - 1] + (height(g, heights, layer[i - 1]) + height(g, heights, v)) / 2 + myNodeSpacing;
+      }
+      double desired = center[v];
+      int count = start[v + 1] - start[v];
+      if (count > 0) {
+        double sum = 0;
+        for (int j = start[v]; j < start[v + 1]; j++) {
+          sum += center[neighbours[j]];
+        }
+        desired = sum / count;
+      }
+      target[i] = desired - offset[i];
+    }
+
+    double[] blockSum = new double[k];
+    int[] blockSize = new int[k];
+    int blocks = 0;
+    for (int i = 0; i < k; i++) {
+      blockSum[blocks] = target[i];
+      blockSize[blocks] = 1;
+      blocks++;
+      while (blocks > 1 && blockSum[blocks - 2] / blockSize[blocks - 2] > blockSum[blocks - 1] / blockSize[blocks - 1]) {
+        blockSum[blocks - 2] += blockSum[blocks - 1];
+        blockSize[blocks - 2] += blockSize[blocks - 1];
+        blocks--;
+      }
+    }
+    int i = 0;
+    for (int b = 0; b < blocks; b++) {
+      double value = blockSum[b] / blockSize[b];
+      for (int j = 0; j < blockSize[b]; j++, i++) {
+        center[layer[i]] = value + offset[i];
+      }
+    }
+  }
+
+  private double height(ProperGraph g, int[] heights, int v) {
+    return g.isDummy(v) ? 0 : heights[v];
+  }
+
+  private boolean hasPinned(Vector[] pinned) {
+    for (Vector p : pinned) {
+      if (p != null) return true;
+    }
+    return false;
+  }
+
+  private void placeAroundPinned(ProperGraph g, int[] widths, int[] heights, int[] sources, int[] targets,
+      Vector[] pinned, Vector[] result) {
+    int n = widths.length;
+    Vector[] shift = shiftsOfClosestPinned(n, sources, targets, pinned, result);
+
+    int pinnedBottom = Integer.MIN_VALUE;
+    int unshiftedTop = Integer.MAX_VALUE;
+    long size = 0;
+    for (int v = 0; v < n; v++) {
+      if (pinned[v] != null) {
+        pinnedBottom = Math.max(pinnedBottom, pinned[v].y + heights[v]);
+      } else if (shift[v] == null) {
+        unshiftedTop = Math.min(unshiftedTop, result[v].y);
+      }
+      size += widths[v] + heights[v];
+    }
+    Vector componentShift = new Vector(0, unshiftedTop == Integer.MAX_VALUE ? 0 : pinnedBottom + myLayerSpacing - unshiftedTop);
+
+    SpatialGrid<Integer> placed = new SpatialGrid<>((int) Math.max(1, Math.min(Integer.MAX_VALUE, size / (2 * n) + myNodeSpacing)));
+    for (int v = 0; v < n; v++) {
+      if (pinned[v] != null) {
+        result[v] = pinned[v];
+        placed.add(v, new Rectangle(pinned[v], new Vector(widths[v], heights[v])));
+      }
+    }
+
+    Set<Integer> near = new HashSet<>();
+    for (int[] layer : g.layers) {
+      for (int v : layer) {
+        if (g.isDummy(v) || pinned[v] != null) continue;
+        Vector origin = result[v].add(shift[v] != null ? shift[v] : componentShift);
+        Vector dimension = new Vector(widths[v], heights[v]);
+        while (true) {
+          near.clear();
+          Rectangle rect = new Rectangle(origin, dimension);
+          placed.find(grow(rect, myNodeSpacing), near);
+          int bottom = Integer.MIN_VALUE;
+          for (int w : near) {
+            Rectangle other = placed.get(w);
+            if (tooClose(rect, other)) {
+              bottom = Math.max(bottom, other.origin.y + other.dimension.y);
+            }
+          }
+          if (bottom == Integer.MIN_VALUE) break;
+          origin = new Vector(origin.x, bottom + myNodeSpacing);
+        }
+        result[v] = origin;
+        placed.add(v, new Rectangle(origin, dimension));
+      }
+    }
+  }
+
+  /**
+   * Breadth first search from all the pinned nodes at once over the edges in both directions
+   */
+  private Vector[] shiftsOfClosestPinned(int n, int[] sources, int[] targets, Vector[] pinned, Vector[] layout) {
+    int[] start = new int[n + 1];
+    for (int e = 0; e < sources.length; e++) {
+      start[sources[e] + 1]++;
+      start[targets[e] + 1]++;
+    }
+    for (int v = 0; v < n; v++) {
+      start[v + 1] += start[v];
+    }
+    int[] adjacent = new int[2 * sources.length];
+    int[] fill = Arrays.copyOf(start, n);
+    for (int e = 0; e < sources.length; e++) {
+      adjacent[fill[sources[e]]++] = targets[e];
+      adjacent[fill[targets[e]]++] = sources[e];
+    }
+
+    Vector[] shift = new Vector[n];
+    int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    for (int v = 0; v < n; v++) {
+      if (pinned[v] != null) {
+        shift[v] = pinned[v].sub(layout[v]);
+        queue[tail++] = v;
+      }
+    }
+    while (head < tail) {
+      int v = queue[head++];
+      for (int i = start[v]; i < start[v + 1]; i++) {
+        int w = adjacent[i];
+        if (shift[w] == null) {
+          shift[w] = shift[v];
+          queue[tail++] = w;
+        }
+      }
+    }
+    return shift;
+  }
+
+  private boolean tooClose(Rectangle rect, Rectangle other) {
+    int gap = myNodeSpacing;
+    return other.origin.x < rect.origin.x + rect.dimension.x + gap && rect.origin.x < other.origin.x + other.dimension.x + gap
+        && other.origin.y < rect.origin.y + rect.dimension.y + gap && rect.origin.y < other.origin.y + other.dimension.y + gap;
+  }
+
+  private Rectangle grow(Rectangle rect, int dist) {
+    return new Rectangle(rect.origin.sub(new Vector(dist, dist)), rect.dimension.add(new Vector(2 * dist, 2 * dist)));
+  }
+}
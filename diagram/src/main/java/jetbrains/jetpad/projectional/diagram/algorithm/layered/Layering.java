@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.layered;
+
+import java.util.Arrays;
+
+/**
+ * Breaks cycles, assigns layers and splits long edges, all in linear time.
+ *
+ * Cycles are broken by reversing the back edges of a depth first search. Layers are assigned by the longest path
+ * from the sources, after which every source is moved to the layer right before its closest successor,
+ * so that sources don't produce long edges to the far layers.
+ */
+class Layering {
+  private Layering() {
+  }
+
+  static ProperGraph build(int nodeCount, int[] sources, int[] targets) {
+    int edgeCount = 0;
+    int[] from = new int[sources.length];
+    int[] to = new int[sources.length];
+    for (int e = 0; e < sources.length; e++) {
+      if (sources[e] == targets[e]) continue;
+      from[edgeCount] = sources[e];
+      to[edgeCount] = targets[e];
+      edgeCount++;
+    }
+
+    reverseBackEdges(nodeCount, from, to, edgeCount);
+    int[] layer = assignLayers(nodeCount, from, to, edgeCount);
+
+    int dummyCount = 0;
+    for (int e = 0; e < edgeCount; e++) {
+      dummyCount += layer[to[e]] - layer[from[e]] - 1;
+    }
+    int[] layerOf = Arrays.copyOf(layer, nodeCount + dummyCount);
+    int properCount = edgeCount + dummyCount;
+    int[] properFrom = new int[properCount];
+    int[] properTo = new int[properCount];
+    int next = nodeCount;
+    int p = 0;
+    for (int e = 0; e < edgeCount; e++) {
+      int prev = from[e];
+      for (int l = layer[from[e]] + 1; l < layer[to[e]]; l++) {
+        layerOf[next] = l;
+        properFrom[p] = prev;
+        properTo[p++] = next;
+        prev = next++;
+      }
+      properFrom[p] = prev;
+      properTo[p++] = to[e];
+    }
+    return new ProperGraph(nodeCount, layerOf, properFrom, properTo, properCount);
+  }
+
+  private static void reverseBackEdges(int nodeCount, int[] from, int[] to, int edgeCount) {
+    int[] outStart = new int[nodeCount + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      outStart[from[e] + 1]++;
+    }
+    for (int v = 0; v < nodeCount; v++) {
+      outStart[v + 1] += outStart[v];
+    }
+    int[] out = new int[edgeCount];
+    int[] fill = Arrays.copyOf(outStart, nodeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      out[fill[from[e]]++] = e;
+    }
+
+    //0 - not visited, 1 - on the stack, 2 - finished
+    int[] state = new int[nodeCount];
+    int[] stack = new int[nodeCount];
+    int[] next = new int[nodeCount];
+    boolean[] reversed = new boolean[edgeCount];
+    for (int root = 0; root < nodeCount; root++) {
+      if (state[root] != 0) continue;
+      int size = 0;
+      stack[size++] = root;
+      state[root] = 1;
+      next[root] = outStart[root];
+      while (size > 0) {
+        int v = stack[size - 1];
+        if (next[v] == outStart[v + 1]) {
+          state[v] = 2;
+          size--;
+          continue;
+        }
+        int e = out[next[v]++];
+        int w = to[e];
+        if (state[w] == 1) {
+          reversed[e] = true;
+        } else if (state[w] == 0) {
+          state[w] = 1;
+          next[w] = outStart[w];
+          stack[size++] = w;
+        }
+      }
+    }
+
+    for (int e = 0; e < edgeCount; e++) {
+      if (reversed[e]) {
+        int t = from[e];
+        from[e] = to[e];
+        to[e] = t;
+      }
+    }
+  }
+
+  private static int[] assignLayers(int nodeCount, int[] from, int[] to, int edgeCount) {
+    int[] outStart = new int[nodeCount + 1];
+    int[] inDegree = new int[nodeCount];
+    for (int e = 0; e < edgeCount; e++) {
+      outStart[from[e] + 1]++;
+      inDegree[to[e]]++;
+    }
+    for (int v = 0; v < nodeCount; v++) {
+      outStart[v + 1] += outStart[v];
+    }
+    int[] out = new int[edgeCount];
+    int[] fill = Arrays.copyOf(outStart, nodeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      out[fill[from[e]]++] = to[e];
+    }
+
+    int[] layer = new int[nodeCount];
+    int[] queue = new int[nodeCount];
+    int[] remaining = Arrays.copyOf(inDegree, nodeCount);
+    int head = 0;
+    int tail = 0;
+    for (int v = 0; v < nodeCount; v++) {
+      if (remaining[v] == 0) {
+        queue[tail++] = v;
+      }
+    }
+    while (head < tail) {
+      int v = queue[head++];
+      for (int i = outStart[v]; i < outStart[v + 1]; i++) {
+        int w = out[i];
+        layer[w] = Math.max(layer[w], layer[v] + 1);
+        if (--remaining[w] == 0) {
+          queue[tail++] = w;
+        }
+      }
+    }
+
+    for (int v = 0; v < nodeCount; v++) {
+      if (inDegree[v] != 0 || outStart[v] == outStart[v + 1]) continue;
+      int closest = Integer.MAX_VALUE;
+      for (int i = outStart[v]; i < outStart[v + 1]; i++) {
+        closest = Math.min(closest, layer[out[i]]);
+      }
+      layer[v] = closest - 1;
+    }
+    return layer;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.layered;
+
+import java.util.Arrays;
+
+/**
+ * Proper layered graph: every edge connects nodes of adjacent layers, long edges are split by dummy nodes.
+ * Nodes {@code 0..realCount - 1} are the nodes of the original graph, the rest are dummies.
+ */
+class ProperGraph {
+  final int nodeCount;
+  final int realCount;
+  final int[] layerOf;
+  final int[][] layers;
+  final int[] pos;
+
+  //neighbours in the next (down) and in the previous (up) layer, compressed sparse rows
+  final int[] downStart;
+  final int[] down;
+  final int[] upStart;
+  final int[] up;
+
+  ProperGraph(int realCount, int[] layerOf, int[] edgeFrom, int[] edgeTo, int edgeCount) {
+    this.realCount = realCount;
+    this.layerOf = layerOf;
+    nodeCount = layerOf.length;
+
+    int layerCount = 0;
+    for (int l : layerOf) {
+      layerCount = Math.max(layerCount, l + 1);
+    }
+    int[] sizes = new int[layerCount];
+    for (int l : layerOf) {
+      sizes[l]++;
+    }
+    layers = new int[layerCount][];
+    for (int l = 0; l < layerCount; l++) {
+      layers[l] = new int[sizes[l]];
+    }
+    pos = new int[nodeCount];
+    Arrays.fill(sizes, 0);
+    for (int v = 0; v < nodeCount; v++) {
+      int l = layerOf[v];
+      pos[v] = sizes[l];
+      layers[l][sizes[l]++] = v;
+    }
+
+    downStart = new int[nodeCount + 1];
+    upStart = new int[nodeCount + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      downStart[edgeFrom[e] + 1]++;
+      upStart[edgeTo[e] + 1]++;
+    }
+    for (int v = 0; v < nodeCount; v++) {
+      downStart[v + 1] += downStart[v];
+      upStart[v + 1] += upStart[v];
+    }
+    down = new int[edgeCount];
+    up = new int[edgeCount];
+    int[] downFill = Arrays.copyOf(downStart, nodeCount);
+    int[] upFill = Arrays.copyOf(upStart, nodeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      down[downFill[edgeFrom[e]]++] = edgeTo[e];
+      up[upFill[edgeTo[e]]++] = edgeFrom[e];
+    }
+  }
+
+  boolean isDummy(int v) {
+    return v >= realCount;
+  }
+
+  void setOrder(int layer, int[] order) {
+    layers[layer] = order;
+    for (int i = 0; i < order.length; i++) {
+      pos[order[i]] = i;
+    }
+  }
+}
@@ -17,58 +17,51 @@ package jetbrains.jetpad.projectional.diagram.algorithm.orthogonal;
 
 import jetbrains.jetpad.geometry.*;
 import jetbrains.jetpad.geometry.Vector;
-import jetbrains.jetpad.projectional.diagram.algorithm.graph.WeightedGraph;
-import jetbrains.jetpad.projectional.diagram.algorithm.path.ShortestPath;
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.IntGridGraph;
+import jetbrains.jetpad.projectional.diagram.algorithm.path.AStarPath;
 import jetbrains.jetpad.projectional.diagram.algorithm.util.FreeSegmentsUtil;
 import jetbrains.jetpad.projectional.diagram.algorithm.util.IntGeomUtil;
+import jetbrains.jetpad.projectional.diagram.algorithm.util.IntervalTree;
 
 import java.util.*;
 
 public class OrthogonalRouteWithObstacles {
   private final static boolean DEBUG = false;
-  private final static int INF = 10000;
   private static final boolean LAZY_GRAPH_BUILD = true;
 
   private int myMinDistToForbiddenSegment = 0;
+  private final AStarPath myPathFinder = new AStarPath();
 
   private List<Rectangle> myObstacles;
+
+  //bounding box of obstacles, forbidden segments, additional lines and route endpoints; lines span across it
+  private boolean myEmptyExtent = true;
+  private int myMinX;
+  private int myMinY;
+  private int myMaxX;
+  private int myMaxY;
+
   private Map<MyLine, List<Segment>> mySegmentsMap = new LinkedHashMap<>();
-  private List<Segment> myForbiddenSegments = new ArrayList<>();
+  private NavigableMap<Integer, MyLine> myVerticalLines = new TreeMap<>();
+  private NavigableMap<Integer, MyLine> myHorizontalLines = new TreeMap<>();
+
+  //obstacles spans along the other axis, keyed by the obstacle's open span along the axis of a line
+  private IntervalTree<Vector> myVerticalLineObstacles;
+  private IntervalTree<Vector> myHorizontalLineObstacles;
+
+  //forbidden segments spans keyed by their line coordinate
+  private NavigableMap<Integer, List<Vector>> myVerticalForbidden = new TreeMap<>();
+  private NavigableMap<Integer, List<Vector>> myHorizontalForbidden = new TreeMap<>();
 
   private Vector myStart;
   private Vector myEnd;
   private List<Segment> myEndpointSegments;
   private Set<MyLine> myEndpointLines;
 
-  private long myBuildInitTime = 0;
-  private long myBuildLazyTime = 0;
-  private long myInitRoutingTime = 0;
-  private long myForbiddenSegmentsTime = 0;
-  private long myAdditionalLinesTime = 0;
-  private long myInitTime = 0;
-
-  public long getBuildInitTime() {
-    return myBuildInitTime;
-  }
-
-  public long getBuildLazyTime() {
-    return myBuildLazyTime;
-  }
-
-  public long getInitRoutingTime() {
-    return myInitRoutingTime;
-  }
-
-  public long getForbiddenSegmentsTime() {
-    return myForbiddenSegmentsTime;
-  }
-
-  public long getAdditionalLinesTime() {
-    return myAdditionalLinesTime;
-  }
+  private final RoutingMetrics myMetrics = new RoutingMetrics();
 
-  public long getInitTime() {
-    return myInitTime;
+  public RoutingMetrics getMetrics() {
+    return myMetrics;
   }
 
   public OrthogonalRouteWithObstacles() {
@@ -87,6 +80,7 @@ public class OrthogonalRouteWithObstacles {
       path.add(start);
       return path;
     }
+    extendTo(start.x, start.y, end.x, end.y);
     initRouting(start, end);
     if (DEBUG) {
       validateLines();
@@ -97,6 +91,7 @@ public class OrthogonalRouteWithObstacles {
   public void addAdditionalLines(List<Segment> additionalLines) {
     long time = System.currentTimeMillis();
 
+    extendTo(additionalLines);
     for (Segment s: additionalLines) {
       if (s.start.x == s.end.x) {
         addLine(s.start.x, true);
@@ -105,27 +100,138 @@ public class OrthogonalRouteWithObstacles {
       }
     }
 
-    myAdditionalLinesTime += System.currentTimeMillis() - time;
+    myMetrics.additionalLinesTime += System.currentTimeMillis() - time;
   }
 
   public void addForbiddenSegments(List<Segment> forbiddenSegments) {
     long time = System.currentTimeMillis();
 
+    extendTo(forbiddenSegments);
     for (Segment fs: forbiddenSegments) {
       removeForbiddenSegment(fs);
     }
-    myForbiddenSegments.addAll(forbiddenSegments);
+    for (Segment fs: forbiddenSegments) {
+      boolean ver = isVertical(fs);
+      NavigableMap<Integer, List<Vector>> forbidden = ver ? myVerticalForbidden : myHorizontalForbidden;
+      int coord = ver ? fs.start.x : fs.start.y;
+      List<Vector> spans = forbidden.get(coord);
+      if (spans == null) {
+        spans = new ArrayList<>();
+        forbidden.put(coord, spans);
+      }
+      spans.add(ver ? getYVector(fs) : getXVector(fs));
+    }
+    myMetrics.forbiddenSegments += forbiddenSegments.size();
+
+    myMetrics.forbiddenSegmentsTime += System.currentTimeMillis() - time;
+  }
 
-    myForbiddenSegmentsTime += System.currentTimeMillis() - time;
+  /**
+   * Whether a route runs along one of the forbidden segments, so that it can't be found by this router any more.
+   * Crossing a forbidden segment or touching it by an endpoint is allowed.
+   */
+  public boolean isForbidden(List<Vector> route) {
+    for (int i = 1; i < route.size(); i++) {
+      Vector p1 = route.get(i - 1);
+      Vector p2 = route.get(i);
+      if (p1.equals(p2)) continue;
+
+      boolean ver = p1.x == p2.x;
+      int coord = ver ? p1.x : p1.y;
+      int lower = ver ? Math.min(p1.y, p2.y) : Math.min(p1.x, p2.x);
+      int upper = ver ? Math.max(p1.y, p2.y) : Math.max(p1.x, p2.x);
+      NavigableMap<Integer, List<Vector>> forbidden = ver ? myVerticalForbidden : myHorizontalForbidden;
+      int minDist = myMinDistToForbiddenSegment;
+      int from = IntGeomUtil.saturatedAdd(coord, -minDist);
+      int to = IntGeomUtil.saturatedAdd(coord, minDist);
+      for (List<Vector> spans: forbidden.subMap(from, true, to, true).values()) {
+        for (Vector span: spans) {
+          if (span.x < upper && lower < span.y) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
   }
 
   public void setMinDistToForbiddenSegment(int minDistToForbiddenSegment) {
     myMinDistToForbiddenSegment = minDistToForbiddenSegment;
   }
 
+  public void setBendCost(int bendCost) {
+    myPathFinder.setBendCost(bendCost);
+  }
+
+  public void setLengthCost(int lengthCost) {
+    myPathFinder.setLengthCost(lengthCost);
+  }
+
+  private void extendTo(List<Segment> segments) {
+    if (segments.isEmpty()) return;
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (Segment s: segments) {
+      minX = Math.min(minX, Math.min(s.start.x, s.end.x));
+      minY = Math.min(minY, Math.min(s.start.y, s.end.y));
+      maxX = Math.max(maxX, Math.max(s.start.x, s.end.x));
+      maxY = Math.max(maxY, Math.max(s.start.y, s.end.y));
+    }
+    extendTo(minX, minY, maxX, maxY);
+  }
+
+  private void extendTo(int x1, int y1, int x2, int y2) {
+    int minX = Math.min(x1, x2);
+    int minY = Math.min(y1, y2);
+    int maxX = Math.max(x1, x2);
+    int maxY = Math.max(y1, y2);
+    if (myEmptyExtent) {
+      myEmptyExtent = false;
+      myMinX = minX;
+      myMinY = minY;
+      myMaxX = maxX;
+      myMaxY = maxY;
+      return;
+    }
+    if (minX >= myMinX && minY >= myMinY && maxX <= myMaxX && maxY <= myMaxY) return;
+
+    myMinX = Math.min(myMinX, minX);
+    myMinY = Math.min(myMinY, minY);
+    myMaxX = Math.max(myMaxX, maxX);
+    myMaxY = Math.max(myMaxY, maxY);
+
+    //everything which blocks lines is inside of the extent, so the outer segments of each line always reach its bounds
+    for (Map.Entry<MyLine, List<Segment>> entry: mySegmentsMap.entrySet()) {
+      MyLine line = entry.getKey();
+      List<Segment> segments = entry.getValue();
+      Vector first = getSpan(line, segments.get(0));
+      segments.set(0, createSegment(line, new Vector(getLower(line), first.y)));
+      int last = segments.size() - 1;
+      segments.set(last, createSegment(line, new Vector(getSpan(line, segments.get(last)).x, getUpper(line))));
+    }
+  }
+
+  private int getLower(MyLine line) {
+    return line.ver ? myMinY : myMinX;
+  }
+
+  private int getUpper(MyLine line) {
+    return line.ver ? myMaxY : myMaxX;
+  }
+
+  private Vector getSpan(MyLine line, Segment s) {
+    return line.ver ? getYVector(s) : getXVector(s);
+  }
+
   private void validateLines() {
     for (MyLine l: mySegmentsMap.keySet()) {
-      for (Segment s: mySegmentsMap.get(l)) {
+      List<Segment> segments = mySegmentsMap.get(l);
+      if (getSpan(l, segments.get(0)).x != getLower(l) || getSpan(l, segments.get(segments.size() - 1)).y != getUpper(l)) {
+        throw new RuntimeException();
+      }
+      for (Segment s: segments) {
         if (l.ver) {
           if (s.start.x != s.end.x || s.start.x != l.coord || s.start.y > s.end.y) {
             throw new RuntimeException();
@@ -152,7 +258,7 @@ public class OrthogonalRouteWithObstacles {
     addEndpointLine(myEnd.x, true);
     addEndpointLine(myEnd.y, false);
 
-    myInitRoutingTime += System.currentTimeMillis() - time;
+    myMetrics.initRoutingTime += System.currentTimeMillis() - time;
   }
 
   private void addEndpointLine(int coord, boolean ver) {
@@ -160,63 +266,42 @@ public class OrthogonalRouteWithObstacles {
     if (myEndpointLines.contains(line)) return;
     myEndpointLines.add(line);
 
-    List<Vector> freeSegments = getFreeSegments(line);
-
-    ArrayList<Segment> segments = new ArrayList<>(freeSegments.size());
-    if (ver) {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(coord, seg.x), new Vector(coord, seg.y)));
-      }
-    } else {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(seg.x, coord), new Vector(seg.y, coord)));
-      }
+    for (Vector seg: getFreeSegments(line)) {
+      myEndpointSegments.add(createSegment(line, seg));
     }
-    myEndpointSegments.addAll(segments);
   }
 
   private void removeForbiddenSegment(Segment fs) {
-    for (MyLine line: mySegmentsMap.keySet()) {
-      if (isVertical(fs) && line.ver && fitsMinDist(fs.start.x, line.coord)) {
-        List<Segment> newSegments = new ArrayList<>();
-        for (Segment s: mySegmentsMap.get(line)) {
-          Vector vs = getYVector(s);
-          ArrayList<Vector> list = new ArrayList<>();
-          list.add(vs);
-          Vector vfs = getYVector(fs);
-          for (Vector v: FreeSegmentsUtil.removeSegment(list, vfs)) {
-            newSegments.add(new Segment(new Vector(s.start.x, v.x), new Vector(s.start.x, v.y)));
-          }
+    boolean ver = isVertical(fs);
+    int coord = ver ? fs.start.x : fs.start.y;
+    Vector span = ver ? getYVector(fs) : getXVector(fs);
+    for (MyLine line: nearLines(ver, coord).values()) {
+      List<Segment> newSegments = new ArrayList<>();
+      for (Segment s: mySegmentsMap.get(line)) {
+        List<Vector> list = new ArrayList<>(1);
+        list.add(ver ? getYVector(s) : getXVector(s));
+        for (Vector v: FreeSegmentsUtil.removeSegment(list, span)) {
+          newSegments.add(createSegment(line, v));
         }
-        mySegmentsMap.put(line, newSegments);
-      } else if (!isVertical(fs) && !line.ver && fitsMinDist(fs.start.y, line.coord)) {
-        List<Segment> newSegments = new ArrayList<>();
-        for (Segment s: mySegmentsMap.get(line)) {
-          Vector vs = getXVector(s);
-          ArrayList<Vector> list = new ArrayList<>();
-          list.add(vs);
-          Vector vfs = getXVector(fs);
-          for (Vector v: FreeSegmentsUtil.removeSegment(list, vfs)) {
-            newSegments.add(new Segment(new Vector(v.x, s.start.y), new Vector(v.y, s.start.y)));
-          }
-        }
-        mySegmentsMap.put(line, newSegments);
       }
+      mySegmentsMap.put(line, newSegments);
     }
   }
 
-  private boolean intersects(MyLine line, Segment forbiddenSegment) {
+  private NavigableMap<Integer, MyLine> nearLines(boolean ver, int coord) {
+    NavigableMap<Integer, MyLine> lines = ver ? myVerticalLines : myHorizontalLines;
+    int minDist = myMinDistToForbiddenSegment;
+    return lines.subMap(IntGeomUtil.saturatedAdd(coord, -minDist), true, IntGeomUtil.saturatedAdd(coord, minDist), true);
+  }
+
+  private Segment createSegment(MyLine line, Vector span) {
     if (line.ver) {
-      return isVertical(forbiddenSegment) && fitsMinDist(forbiddenSegment.start.x, line.coord);
+      return new Segment(new Vector(line.coord, span.x), new Vector(line.coord, span.y));
     } else {
-      return !isVertical(forbiddenSegment) && fitsMinDist(forbiddenSegment.start.y, line.coord);
+      return new Segment(new Vector(span.x, line.coord), new Vector(span.y, line.coord));
     }
   }
 
-  private boolean fitsMinDist(int x1, int x2) {
-    return Math.abs(x1 - x2) <= myMinDistToForbiddenSegment;
-  }
-
   private Vector getXVector(Segment s) {
     return new Vector(Math.min(s.start.x, s.end.x), Math.max(s.start.x, s.end.x));
   }
@@ -230,51 +315,101 @@ public class OrthogonalRouteWithObstacles {
   }
 
   private List<Vector> findPath() {
+    long time = System.currentTimeMillis();
+    long lazyTime = myMetrics.buildLazyTime;
+
     final GraphBuilder builder = new GraphBuilder();
-    final Set<MyLine> addedLines = new HashSet<>();
+    final Map<Segment, Boolean> addedSegments = new IdentityHashMap<>();
     builder.buildGraph();
-    List<Integer> numPath = new ShortestPath().getPathMinWeight(new WeightedGraph<Integer>() {
+    int[] numPath = myPathFinder.findPath(new IntGridGraph() {
       @Override
-      public Iterable<Integer> getEdgeWeights(Integer node) {
+      public int getEdgeCount(int node) {
         addLine(node);
-        return builder.segmentsGraphLen.get(node);
+        return builder.edgeCounts[node];
       }
 
       @Override
-      public Iterable<Integer> getEdges(Integer node) {
-        addLine(node);
-        return builder.segmentsGraph.get(node);
+      public int getEdgeTarget(int node, int index) {
+        return builder.edges[node][index];
+      }
+
+      @Override
+      public int getEdgeWeight(int node, int index) {
+        return builder.edgeLengths[node][index];
+      }
+
+      @Override
+      public int getX(int node) {
+        return builder.points.get(node).x;
+      }
+
+      @Override
+      public int getY(int node) {
+        return builder.points.get(node).y;
       }
 
-      private void addLine(Integer node) {
+      private void addLine(int node) {
         if (!LAZY_GRAPH_BUILD) return;
 
         long time = System.currentTimeMillis();
 
-        MyLine line = builder.pointsToLine.get(builder.points.get(node));
-        if (line != null && !addedLines.contains(line)) {
-          builder.addLineToGraph(line);
-          addedLines.add(line);
+        Vector point = builder.points.get(node);
+        MyLine line = builder.pointLines.get(node);
+        if (line != null) {
+          Segment lineSeg = builder.getIntersectingSegment(line, line.ver ? point.y : point.x);
+          if (lineSeg != null && addedSegments.put(lineSeg, Boolean.TRUE) == null) {
+            builder.addLineSegmentToGraph(line, lineSeg);
+          }
         }
 
-        myBuildLazyTime += System.currentTimeMillis() - time;
+        myMetrics.buildLazyTime += System.currentTimeMillis() - time;
       }
     }, 0, 1);
 
-    if (numPath == null) return null;
-    List<Vector> path = new ArrayList<>(numPath.size());
-    for (Integer num: numPath) {
-      path.add(builder.points.get(num));
+    myMetrics.routes++;
+    myMetrics.graphNodes += builder.points.size();
+    myMetrics.searchTime += System.currentTimeMillis() - time - (myMetrics.buildLazyTime - lazyTime);
+    if (numPath == null) {
+      myMetrics.failedRoutes++;
+      return null;
+    }
+    List<Vector> path = new ArrayList<>(numPath.length);
+    for (int num: numPath) {
+      Vector p = builder.points.get(num);
+      int size = path.size();
+      if (size >= 2 && isStraight(path.get(size - 2), path.get(size - 1), p)) {
+        path.set(size - 1, p);
+      } else {
+        path.add(p);
+      }
     }
     return path;
   }
 
+  private boolean isStraight(Vector v1, Vector v2, Vector v3) {
+    return (v1.x == v2.x && v2.x == v3.x) || (v1.y == v2.y && v2.y == v3.y);
+  }
+
   private void initObstaclesSegments() {
     long time = System.currentTimeMillis();
 
     if (!mySegmentsMap.isEmpty()) {
       throw new IllegalStateException();
     }
+
+    List<Vector> xSpans = new ArrayList<>(myObstacles.size());
+    List<Vector> ySpans = new ArrayList<>(myObstacles.size());
+    for (Rectangle r: myObstacles) {
+      Vector xSpan = new Vector(r.origin.x, r.origin.x + r.dimension.x);
+      Vector ySpan = new Vector(r.origin.y, r.origin.y + r.dimension.y);
+      xSpans.add(xSpan);
+      ySpans.add(ySpan);
+      extendTo(xSpan.x, ySpan.x, xSpan.y, ySpan.y);
+    }
+    myVerticalLineObstacles = new IntervalTree<>(xSpans, ySpans);
+    myHorizontalLineObstacles = new IntervalTree<>(ySpans, xSpans);
+    myMetrics.obstacles = myObstacles.size();
+
     for (Rectangle r: myObstacles) {
       addLine(r.origin.x, true);
       addLine(r.origin.y, false);
@@ -282,7 +417,7 @@ public class OrthogonalRouteWithObstacles {
       addLine(r.origin.y + r.dimension.y, false);
     }
 
-    myInitTime += System.currentTimeMillis() - time;
+    myMetrics.initTime += System.currentTimeMillis() - time;
   }
 
   private void addLine(int c, boolean vertical) {
@@ -292,43 +427,26 @@ public class OrthogonalRouteWithObstacles {
     List<Vector> freeSegments = getFreeSegments(line);
 
     ArrayList<Segment> segments = new ArrayList<>(freeSegments.size());
-    if (vertical) {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(c, seg.x), new Vector(c, seg.y)));
-      }
-    } else {
-      for (Vector seg: freeSegments) {
-        segments.add(new Segment(new Vector(seg.x, c), new Vector(seg.y, c)));
-      }
+    for (Vector seg: freeSegments) {
+      segments.add(createSegment(line, seg));
     }
     mySegmentsMap.put(line, segments);
+    (vertical ? myVerticalLines : myHorizontalLines).put(c, line);
+    myMetrics.lines++;
   }
 
   private List<Vector> getFreeSegments(MyLine line) {
-    List<Vector> freeSegments = new ArrayList<>();
-    freeSegments.add(new Vector(-INF, INF));
-    for (Rectangle r: myObstacles) {
-      if (line.ver) {
-        if (r.origin.x < line.coord && line.coord < r.origin.x + r.dimension.x) {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, new Vector(r.origin.y, r.origin.y + r.dimension.y));
-        }
-      } else {
-        if (r.origin.y < line.coord && line.coord < r.origin.y + r.dimension.y) {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, new Vector(r.origin.x, r.origin.x + r.dimension.x));
-        }
-      }
-    }
-
-    for (Segment fs: myForbiddenSegments) {
-      if (intersects(line, fs)) {
-        if (line.ver) {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, getYVector(fs));
-        } else {
-          freeSegments = FreeSegmentsUtil.removeSegment(freeSegments, getXVector(fs));
-        }
-      }
+    List<Vector> occupied = new ArrayList<>();
+    (line.ver ? myVerticalLineObstacles : myHorizontalLineObstacles).stab(line.coord, occupied);
+
+    NavigableMap<Integer, List<Vector>> forbidden = line.ver ? myVerticalForbidden : myHorizontalForbidden;
+    int minDist = myMinDistToForbiddenSegment;
+    int from = IntGeomUtil.saturatedAdd(line.coord, -minDist);
+    int to = IntGeomUtil.saturatedAdd(line.coord, minDist);
+    for (List<Vector> spans: forbidden.subMap(from, true, to, true).values()) {
+      occupied.addAll(spans);
     }
-    return freeSegments;
+    return FreeSegmentsUtil.getFreeSegments(new Vector(getLower(line), getUpper(line)), occupied);
   }
 
   //test method
@@ -368,27 +486,41 @@ public class OrthogonalRouteWithObstacles {
   }
 
   private class GraphBuilder {
-    private List<List<Integer>> segmentsGraph = new ArrayList<>();
-    private List<List<Integer>> segmentsGraphLen = new ArrayList<>();
-    Map<Vector, Integer> pointToNum = new HashMap<>();
-    List<Vector> points = new ArrayList<>();
+    private int[][] edges = new int[16][];
+    private int[][] edgeLengths = new int[16][];
+    private int[] edgeCounts = new int[16];
+    private Map<Vector, Integer> pointToNum = new HashMap<>();
+    private List<Vector> points = new ArrayList<>();
+
+    //line which should be added to the graph when a node is visited
+    private List<MyLine> pointLines = new ArrayList<>();
 
-    Map<Vector, MyLine> pointsToLine = new HashMap<>();
+    private final Comparator<Integer> myAlongSegment = new Comparator<Integer>() {
+      @Override
+      public int compare(Integer n1, Integer n2) {
+        Vector v1 = points.get(n1);
+        Vector v2 = points.get(n2);
+        if (v1.x != v2.x) {
+          return v1.x < v2.x ? -1 : 1;
+        }
+        return v1.y < v2.y ? -1 : (v1.y == v2.y ? 0 : 1);
+      }
+    };
 
     private void buildGraph() {
       long time = System.currentTimeMillis();
 
-      put(myStart);
-      put(myEnd);
+      int start = put(myStart, null);
+      int end = put(myEnd, null);
       for (Segment seg: myEndpointSegments) {
-        Set<Vector> p = new LinkedHashSet<>();
+        List<Integer> nodes = new ArrayList<>();
         if (seg.contains(myStart)) {
-          p.add(myStart);
+          nodes.add(start);
         }
         if (seg.contains(myEnd)) {
-          p.add(myEnd);
+          nodes.add(end);
         }
-        addSegmentToGraph(seg, p);
+        addSegmentToGraph(seg, nodes);
       }
       if (!LAZY_GRAPH_BUILD) {
         for (MyLine line: mySegmentsMap.keySet()) {
@@ -396,37 +528,39 @@ public class OrthogonalRouteWithObstacles {
         }
       }
 
-      myBuildInitTime += System.currentTimeMillis() - time;
+      myMetrics.buildInitTime += System.currentTimeMillis() - time;
     }
 
     private void addLineToGraph(MyLine line) {
-      Map<Segment, List<Vector>> mySegmentPoints = new HashMap<>();
       for (Segment lineSeg: mySegmentsMap.get(line)) {
-        ArrayList<Vector> points = new ArrayList<>();
-        mySegmentPoints.put(lineSeg, points);
-        for (Segment s: myEndpointSegments) {
-          addVertex(lineSeg, points, s, null);
-        }
+        addLineSegmentToGraph(line, lineSeg);
       }
-      for (MyLine otherLine: mySegmentsMap.keySet()) {
-        if (otherLine.ver == line.ver) continue;
-        Segment lineSeg = getIntersectingSegment(line, otherLine.coord);
-        if (lineSeg != null && getIntersectingSegment(otherLine, line.coord) != null) {
-          Vector intersectingPoint;
-          if (line.ver) {
-            intersectingPoint = new Vector(line.coord, otherLine.coord);
-          } else {
-            intersectingPoint = new Vector(otherLine.coord, line.coord);
-          }
-          mySegmentPoints.get(lineSeg).add(intersectingPoint);
-          put(intersectingPoint);
-          if (!pointsToLine.containsKey(intersectingPoint)) {
-            pointsToLine.put(intersectingPoint, otherLine);
-          }
+    }
+
+    private void addLineSegmentToGraph(MyLine line, Segment lineSeg) {
+      List<Integer> nodes = new ArrayList<>();
+      for (Segment s: myEndpointSegments) {
+        addVertex(lineSeg, nodes, s);
+      }
+      for (MyLine otherLine: crossingLines(lineSeg).values()) {
+        if (getIntersectingSegment(line, otherLine.coord) != lineSeg) continue;
+        if (getIntersectingSegment(otherLine, line.coord) == null) continue;
+        Vector intersectingPoint;
+        if (line.ver) {
+          intersectingPoint = new Vector(line.coord, otherLine.coord);
+        } else {
+          intersectingPoint = new Vector(otherLine.coord, line.coord);
         }
+        nodes.add(put(intersectingPoint, otherLine));
       }
-      for (Segment lineSeg: mySegmentPoints.keySet()) {
-        connectList(mySegmentPoints.get(lineSeg));
+      connectList(nodes);
+    }
+
+    private NavigableMap<Integer, MyLine> crossingLines(Segment seg) {
+      if (isVertical(seg)) {
+        return myHorizontalLines.subMap(seg.start.y, true, seg.end.y, true);
+      } else {
+        return myVerticalLines.subMap(seg.start.x, true, seg.end.x, true);
       }
     }
 
@@ -440,9 +574,9 @@ public class OrthogonalRouteWithObstacles {
         int compare = compare(line.ver, segments.get(mid), otherCoord);
         if (compare == 0) return segments.get(mid);
         if (compare > 0) {
-          left = mid + 1;
-        } else {
           right = mid;
+        } else {
+          left = mid + 1;
         }
       }
       return null;
@@ -460,74 +594,86 @@ public class OrthogonalRouteWithObstacles {
       }
     }
 
-    private void addSegmentToGraph(Segment seg, Set<Vector> points) {
+    private void addSegmentToGraph(Segment seg, List<Integer> nodes) {
       for (Segment s: myEndpointSegments) {
-        addVertex(seg, points, s, null);
+        addVertex(seg, nodes, s);
       }
-      boolean ver = seg.start.x == seg.end.x;
+      boolean ver = isVertical(seg);
       int coord = ver ? seg.start.x : seg.start.y;
-      for (MyLine l: mySegmentsMap.keySet()) {
-        if (l.ver == ver) continue;
-        boolean segIntersectsLine;
-        if (ver) {
-          segIntersectsLine = seg.start.y <= l.coord && l.coord <= seg.end.y;
-        } else {
-          segIntersectsLine = seg.start.x <= l.coord && l.coord <= seg.end.x;
-        }
-        if (!segIntersectsLine) continue;
+      for (MyLine l: crossingLines(seg).values()) {
         Segment s = getIntersectingSegment(l, coord);
         if (s != null) {
-         Vector intersectingPoint;
+          Vector intersectingPoint;
           if (ver) {
             intersectingPoint = new Vector(coord, l.coord);
           } else {
             intersectingPoint = new Vector(l.coord, coord);
           }
-          points.add(intersectingPoint);
-          put(intersectingPoint);
-          if (!pointsToLine.containsKey(intersectingPoint)) {
-            pointsToLine.put(intersectingPoint, l);
-          }
+          nodes.add(put(intersectingPoint, l));
         }
       }
-      connectList(new ArrayList<>(points));
+      connectList(nodes);
     }
 
-    private void connectList(List<Vector> points) {
-      for (int i = 0; i < points.size(); i++) {
-        for (int j = i + 1; j < points.size(); j++) {
-          int numI = pointToNum.get(points.get(i));
-          int numJ = pointToNum.get(points.get(j));
+    private void connectList(List<Integer> nodes) {
+      //a path along the segment goes through all the points on its way, so it's enough to connect the neighbours
+      Collections.sort(nodes, myAlongSegment);
+      for (int i = 1; i < nodes.size(); i++) {
+        int prev = nodes.get(i - 1);
+        int cur = nodes.get(i);
+        if (prev == cur) continue;
+
+        Vector prevPoint = points.get(prev);
+        Vector curPoint = points.get(cur);
+        if (prevPoint.x != curPoint.x && prevPoint.y != curPoint.y) {
+          throw new IllegalStateException();
+        }
 
-          if (points.get(i).x != points.get(j).x && points.get(i).y != points.get(j).y) {
-            throw new IllegalStateException();
-          }
+        int len = IntGeomUtil.distance(prevPoint, curPoint);
+        addEdge(prev, cur, len);
+        addEdge(cur, prev, len);
+      }
+    }
 
-          segmentsGraph.get(numI).add(numJ);
-          segmentsGraph.get(numJ).add(numI);
-          int len = (int) points.get(i).sub(points.get(j)).length();
-          segmentsGraphLen.get(numI).add(len);
-          segmentsGraphLen.get(numJ).add(len);
-        }
+    private void addEdge(int from, int to, int len) {
+      int count = edgeCounts[from];
+      if (edges[from] == null) {
+        edges[from] = new int[4];
+        edgeLengths[from] = new int[4];
+      } else if (count == edges[from].length) {
+        edges[from] = Arrays.copyOf(edges[from], count * 2);
+        edgeLengths[from] = Arrays.copyOf(edgeLengths[from], count * 2);
       }
+      edges[from][count] = to;
+      edgeLengths[from][count] = len;
+      edgeCounts[from] = count + 1;
     }
 
-    private void addVertex(Segment seg, Collection<Vector> points, Segment s, MyLine line) {
+    private void addVertex(Segment seg, List<Integer> nodes, Segment s) {
       if (seg == s || !IntGeomUtil.intersects(seg, s)) return;
-      Vector v = IntGeomUtil.findAxisIntersection(seg, s);
-      put(v);
-      points.add(v);
-      if (line != null && !pointsToLine.containsKey(v)) {
-        pointsToLine.put(v, line);
-      }
+      nodes.add(put(IntGeomUtil.findAxisIntersection(seg, s), null));
     }
 
-    private void put(Vector v) {
-      if (pointToNum.containsKey(v)) return;
-      pointToNum.put(v, pointToNum.size());
+    private int put(Vector v, MyLine line) {
+      Integer num = pointToNum.get(v);
+      if (num != null) {
+        if (line != null && pointLines.get(num) == null) {
+          pointLines.set(num, line);
+        }
+        return num;
+      }
+
+      num = points.size();
+      pointToNum.put(v, num);
       points.add(v);
-      segmentsGraph.add(new ArrayList<Integer>());
-      segmentsGraphLen.add(new ArrayList<Integer>());
+      pointLines.add(line);
+      if (points.size() > edgeCounts.length) {
+        int capacity = edgeCounts.length * 2;
+        edges = Arrays.copyOf(edges, capacity);
+        edgeLengths = Arrays.copyOf(edgeLengths, capacity);
+        edgeCounts = Arrays.copyOf(edgeCounts, capacity);
+      }
+      return num;
     }
   }
-}
\ No newline at end of file
+}
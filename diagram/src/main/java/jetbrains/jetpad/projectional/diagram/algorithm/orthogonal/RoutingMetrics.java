@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.orthogonal;
+
+/**
+ * Time (in milliseconds) and size counters accumulated by {@link OrthogonalRouteWithObstacles} over its lifetime
+ */
+public class RoutingMetrics {
+  long initTime;
+  long initRoutingTime;
+  long buildInitTime;
+  long buildLazyTime;
+  long forbiddenSegmentsTime;
+  long additionalLinesTime;
+  long searchTime;
+
+  int obstacles;
+  int lines;
+  int forbiddenSegments;
+  int routes;
+  int failedRoutes;
+  int graphNodes;
+
+  public long getInitTime() {
+    return initTime;
+  }
+
+  public long getInitRoutingTime() {
+    return initRoutingTime;
+  }
+
+  public long getBuildInitTime() {
+    return buildInitTime;
+  }
+
+  public long getBuildLazyTime() {
+    return buildLazyTime;
+  }
+
+  public long getForbiddenSegmentsTime() {
+    return forbiddenSegmentsTime;
+  }
+
+  public long getAdditionalLinesTime() {
+    return additionalLinesTime;
+  }
+
+  public long getSearchTime() {
+    return searchTime;
+  }
+
+  public int getObstacles() {
+    return obstacles;
+  }
+
+  public int getLines() {
+    return lines;
+  }
+
+  public int getForbiddenSegments() {
+    return forbiddenSegments;
+  }
+
+  public int getRoutes() {
+    return routes;
+  }
+
+  public int getFailedRoutes() {
+    return failedRoutes;
+  }
+
+  public int getGraphNodes() {
+    return graphNodes;
+  }
+
+  @Override
+  public String toString() {
+    return "init time =                  " + initTime + "\n"
+        + "init routing time =          " + initRoutingTime + "\n"
+        + "init build graph time =      " + buildInitTime + "\n"
+        + "lazy build graph time =      " + buildLazyTime + "\n"
+        + "search time =                " + searchTime + "\n"
+        + "add lines time =             " + additionalLinesTime + "\n"
+        + "forbid segments time =       " + forbiddenSegmentsTime + "\n"
+        + "obstacles = " + obstacles + ", lines = " + lines + ", forbidden segments = " + forbiddenSegments + "\n"
+        + "routes = " + routes + ", failed = " + failedRoutes + ", graph nodes = " + graphNodes;
+  }
+}
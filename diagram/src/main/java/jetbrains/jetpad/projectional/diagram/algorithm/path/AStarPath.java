@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.path;
+
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.IntGridGraph;
+
+import java.util.Arrays;
+
+/**
+ * A* search over {@link IntGridGraph} which minimizes {@code lengthCost * length + bendCost * bends}.
+ *
+ * A search state is a node together with the axis of the edge it was entered by, so that bends are accounted for exactly.
+ * The heuristic is the Manhattan distance to the target plus a bend when the target can't be reached without turning.
+ * It is consistent for grid graphs, so every state is expanded at most once.
+ * All the working arrays are kept between searches and are invalidated with a search stamp instead of clearing,
+ * so an instance should be reused for routing several paths on the same or on different graphs.
+ */
+public class AStarPath {
+  public static final int DEFAULT_LENGTH_COST = 1;
+  public static final int DEFAULT_BEND_COST = 100;
+
+  private static final int NO_AXIS = 0;
+  private static final int HORIZONTAL = 1;
+  private static final int VERTICAL = 2;
+  private static final int AXES = 3;
+
+  private int myLengthCost = DEFAULT_LENGTH_COST;
+  private int myBendCost = DEFAULT_BEND_COST;
+
+  private int mySearch;
+  private int[] myStamp = new int[0];
+  private int[] myClosed = new int[0];
+  private int[] myCost = new int[0];
+  private int[] myParent = new int[0];
+
+  private int myHeapSize;
+  private int[] myHeapState = new int[16];
+  private int[] myHeapPriority = new int[16];
+  private int[] myHeapEstimate = new int[16];
+  private int[] myHeapOrder = new int[16];
+  private int myNextOrder;
+
+  public int getLengthCost() {
+    return myLengthCost;
+  }
+
+  public void setLengthCost(int lengthCost) {
+    if (lengthCost < 0) {
+      throw new IllegalArgumentException("lengthCost = " + lengthCost);
+    }
+    myLengthCost = lengthCost;
+  }
+
+  public int getBendCost() {
+    return myBendCost;
+  }
+
+  public void setBendCost(int bendCost) {
+    if (bendCost < 0) {
+      throw new IllegalArgumentException("bendCost = " + bendCost);
+    }
+    myBendCost = bendCost;
+  }
+
+  /**
+   * @return nodes of a path from {@code from} to {@code to} of minimal cost, or null if there is no such path
+   */
+  public int[] findPath(IntGridGraph graph, int from, int to) {
+    if (from == to) {
+      return new int[] { from };
+    }
+    startSearch();
+
+    int targetX = graph.getX(to);
+    int targetY = graph.getY(to);
+
+    int start = state(from, NO_AXIS);
+    ensureCapacity(start + 1);
+    myStamp[start] = mySearch;
+    myCost[start] = 0;
+    myParent[start] = -1;
+    int startEstimate = saturate(heuristic(graph.getX(from), graph.getY(from), NO_AXIS, targetX, targetY));
+    push(start, startEstimate, startEstimate);
+
+    while (myHeapSize > 0) {
+      int cur = pop();
+      if (myClosed[cur] == mySearch) continue;
+      myClosed[cur] = mySearch;
+
+      int node = cur / AXES;
+      if (node == to) {
+        return restorePath(cur);
+      }
+
+      int axis = cur % AXES;
+      int x = graph.getX(node);
+      int y = graph.getY(node);
+      int curCost = myCost[cur];
+      int edgeCount = graph.getEdgeCount(node);
+      for (int i = 0; i < edgeCount; i++) {
+        int next = graph.getEdgeTarget(node, i);
+        int nextX = graph.getX(next);
+        int nextY = graph.getY(next);
+        int nextAxis;
+        if (nextY == y) {
+          nextAxis = HORIZONTAL;
+        } else if (nextX == x) {
+          nextAxis = VERTICAL;
+        } else {
+          throw new IllegalStateException("Edge " + node + " - " + next + " is not axis parallel");
+        }
+
+        long cost = (long) curCost + (long) myLengthCost * graph.getEdgeWeight(node, i);
+        if (axis != NO_AXIS && axis != nextAxis) {
+          cost += myBendCost;
+        }
+
+        int nextState = state(next, nextAxis);
+        ensureCapacity(nextState + 1);
+        if (myClosed[nextState] == mySearch) continue;
+        if (myStamp[nextState] == mySearch && myCost[nextState] <= cost) continue;
+
+        myStamp[nextState] = mySearch;
+        myCost[nextState] = saturate(cost);
+        myParent[nextState] = cur;
+        long estimate = heuristic(nextX, nextY, nextAxis, targetX, targetY);
+        push(nextState, saturate(cost + estimate), saturate(estimate));
+      }
+    }
+    return null;
+  }
+
+  private long heuristic(int x, int y, int axis, int targetX, int targetY) {
+    long result = myLengthCost * (Math.abs((long) targetX - x) + Math.abs((long) targetY - y));
+    boolean alignedHorizontally = y == targetY;
+    boolean alignedVertically = x == targetX;
+    if (alignedHorizontally && alignedVertically) return result;
+    if ((!alignedHorizontally && !alignedVertically)
+        || (alignedHorizontally && axis == VERTICAL)
+        || (alignedVertically && axis == HORIZONTAL)) {
+      result += myBendCost;
+    }
+    return result;
+  }
+
+  //costs are compared as ints, very long paths on huge canvases become equally bad instead of overflowing
+  private int saturate(long cost) {
+    return (int) Math.min(cost, Integer.MAX_VALUE);
+  }
+
+  private int state(int node, int axis) {
+    return node * AXES + axis;
+  }
+
+  private void startSearch() {
+    myHeapSize = 0;
+    myNextOrder = 0;
+    if (mySearch == Integer.MAX_VALUE) {
+      Arrays.fill(myStamp, 0);
+      Arrays.fill(myClosed, 0);
+      mySearch = 0;
+    }
+    mySearch++;
+  }
+
+  private void ensureCapacity(int size) {
+    if (myStamp.length >= size) return;
+    int capacity = Math.max(size, myStamp.length * 2);
+    myStamp = Arrays.copyOf(myStamp, capacity);
+    myClosed = Arrays.copyOf(myClosed, capacity);
+    myCost = Arrays.copyOf(myCost, capacity);
+    myParent = Arrays.copyOf(myParent, capacity);
+  }
+
+  private int[] restorePath(int state) {
+    int length = 0;
+    for (int cur = state; cur != -1; cur = myParent[cur]) {
+      length++;
+    }
+    int[] path = new int[length];
+    for (int cur = state; cur != -1; cur = myParent[cur]) {
+      path[--length] = cur / AXES;
+    }
+    return path;
+  }
+
+  private void push(int state, int priority, int estimate) {
+    if (myHeapSize == myHeapState.length) {
+      int capacity = myHeapSize * 2;
+      myHeapState = Arrays.copyOf(myHeapState, capacity);
+      myHeapPriority = Arrays.copyOf(myHeapPriority, capacity);
+      myHeapEstimate = Arrays.copyOf(myHeapEstimate, capacity);
+      myHeapOrder = Arrays.copyOf(myHeapOrder, capacity);
+    }
+    int order = myNextOrder++;
+    int i = myHeapSize++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!less(priority, estimate, order, parent)) break;
+      move(parent, i);
+      i = parent;
+    }
+    set(i, state, priority, estimate, order);
+  }
+
+  private int pop() {
+    int result = myHeapState[0];
+    int last = --myHeapSize;
+    int state = myHeapState[last];
+    int priority = myHeapPriority[last];
+    int estimate = myHeapEstimate[last];
+    int order = myHeapOrder[last];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= last) break;
+      if (child + 1 < last && less(myHeapPriority[child + 1], myHeapEstimate[child + 1], myHeapOrder[child + 1], child)) {
+        child++;
+      }
+      if (less(priority, estimate, order, child)) break;
+      move(child, i);
+      i = child;
+    }
+    if (last > 0) {
+      set(i, state, priority, estimate, order);
+    }
+    return result;
+  }
+
+  /**
+   * Among states with equal priority the ones closer to the target go first: otherwise on ties, which are very common
+   * on grids, the search spreads over the whole rectangle between the endpoints before reaching the target.
+   */
+  private boolean less(int priority, int estimate, int order, int i) {
+    if (priority != myHeapPriority[i]) {
+      return priority < myHeapPriority[i];
+    }
+    if (estimate != myHeapEstimate[i]) {
+      return estimate < myHeapEstimate[i];
+    }
+    return order < myHeapOrder[i];
+  }
+
+  private void move(int from, int to) {
+    set(to, myHeapState[from], myHeapPriority[from], myHeapEstimate[from], myHeapOrder[from]);
+  }
+
+  private void set(int i, int state, int priority, int estimate, int order) {
+    myHeapState[i] = state;
+    myHeapPriority[i] = priority;
+    myHeapEstimate[i] = estimate;
+    myHeapOrder[i] = order;
+  }
+}
@@ -18,9 +18,56 @@ package jetbrains.jetpad.projectional.diagram.algorithm.util;
 import jetbrains.jetpad.geometry.Vector;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class FreeSegmentsUtil {
+  private static final Comparator<Vector> BY_START = new Comparator<Vector>() {
+    @Override
+    public int compare(Vector v1, Vector v2) {
+      if (v1.x != v2.x) {
+        return v1.x < v2.x ? -1 : 1;
+      }
+      boolean point1 = v1.x == v1.y;
+      boolean point2 = v2.x == v2.y;
+      if (point1 == point2) return 0;
+      return point1 ? 1 : -1;
+    }
+  };
+
+  /**
+   * Same as removing all the occupied segments from {@code range} one by one with {@link #removeSegment(List, Vector)},
+   * but in one pass over the occupied segments sorted by start. Unlike the sequential removal, the result doesn't depend
+   * on the order of occupied segments when some of them are points.
+   */
+  public static List<Vector> getFreeSegments(Vector range, List<Vector> occupiedSegments) {
+    List<Vector> occupied = new ArrayList<>(occupiedSegments);
+    Collections.sort(occupied, BY_START);
+
+    List<Vector> res = new ArrayList<>();
+    int cur = range.x;
+    for (Vector seg: occupied) {
+      if (seg.x >= range.y) break;
+      if (seg.x == seg.y) {
+        if (cur < seg.x) {
+          res.add(new Vector(cur, seg.x));
+          cur = seg.x;
+        }
+        continue;
+      }
+      if (seg.y <= cur) continue;
+      if (cur <= seg.x) {
+        res.add(new Vector(cur, seg.x));
+      }
+      cur = seg.y;
+    }
+    if (cur <= range.y) {
+      res.add(new Vector(cur, range.y));
+    }
+    return res;
+  }
+
   public static List<Vector> removeSegment(List<Vector> freeSegments, Vector occupiedSegment) {
     List<Vector> res = new ArrayList<>();
     for (Vector seg: freeSegments) {
@@ -36,12 +36,47 @@ public class IntGeomUtil {
     }
   }
 
+  /**
+   * Manhattan distance, which is the length for axis parallel segments, saturated to {@link Integer#MAX_VALUE}
+   */
+  public static int distance(Vector v1, Vector v2) {
+    long d = Math.abs((long) v1.x - v2.x) + Math.abs((long) v1.y - v2.y);
+    return (int) Math.min(d, Integer.MAX_VALUE);
+  }
+
+  public static int saturatedAdd(int a, int b) {
+    long sum = (long) a + b;
+    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, sum));
+  }
+
   public static Rectangle increase(Rectangle rect, int increaseSize) {
     Vector newOrigin = rect.origin.sub(new Vector(increaseSize / 2, increaseSize / 2));
     Vector newDimension = rect.dimension.add(new Vector(increaseSize, increaseSize));
     return new Rectangle(newOrigin, newDimension);
   }
 
+  /**
+   * Removes repeated points and the points lying on the line through their neighbours, including the ends of
+   * back and forth spurs, so that the polyline goes through the same points with the fewest bends
+   */
+  public static List<Vector> simplify(List<Vector> path) {
+    List<Vector> result = new ArrayList<>(path.size());
+    for (Vector p : path) {
+      int size = result.size();
+      while (size >= 2 && isCollinear(result.get(size - 2), result.get(size - 1), p)) {
+        result.remove(--size);
+      }
+      if (size == 0 || !result.get(size - 1).equals(p)) {
+        result.add(p);
+      }
+    }
+    return result;
+  }
+
+  private static boolean isCollinear(Vector v1, Vector v2, Vector v3) {
+    return (long) (v2.x - v1.x) * (v3.y - v1.y) == (long) (v2.y - v1.y) * (v3.x - v1.x);
+  }
+
   private static Vector endsIntersection(Segment s1, Segment s2) {
     if (s1.contains(s2.start)) return s2.start;
     if (s1.contains(s2.end)) return s2.end;
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.util;
+
+import jetbrains.jetpad.geometry.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Static centered interval tree. Intervals are represented as vectors {@code (start, end)}, {@code start <= end}.
+ * A stabbing query takes O(log n + k) where k is the number of reported values.
+ */
+public class IntervalTree<ValueT> {
+  private final Node<ValueT> myRoot;
+  private final int mySize;
+
+  public IntervalTree(List<Vector> intervals, List<ValueT> values) {
+    if (intervals.size() != values.size()) {
+      throw new IllegalArgumentException();
+    }
+    List<Entry<ValueT>> entries = new ArrayList<>(intervals.size());
+    for (int i = 0; i < intervals.size(); i++) {
+      entries.add(new Entry<>(intervals.get(i), values.get(i)));
+    }
+    mySize = entries.size();
+    myRoot = build(entries);
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * Adds to {@code result} values of all intervals which contain {@code point} strictly inside
+   */
+  public void stab(int point, List<? super ValueT> result) {
+    Node<ValueT> node = myRoot;
+    while (node != null) {
+      if (point < node.center) {
+        for (Entry<ValueT> e : node.byStart) {
+          if (e.start >= point) break;
+          result.add(e.value);
+        }
+        node = node.left;
+      } else if (point > node.center) {
+        for (Entry<ValueT> e : node.byEnd) {
+          if (e.end <= point) break;
+          result.add(e.value);
+        }
+        node = node.right;
+      } else {
+        for (Entry<ValueT> e : node.byStart) {
+          if (e.start >= point) break;
+          if (e.end > point) {
+            result.add(e.value);
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  private static <ValueT> Node<ValueT> build(List<Entry<ValueT>> entries) {
+    if (entries.isEmpty()) return null;
+
+    int[] ends = new int[entries.size() * 2];
+    for (int i = 0; i < entries.size(); i++) {
+      ends[2 * i] = entries.get(i).start;
+      ends[2 * i + 1] = entries.get(i).end;
+    }
+    Arrays.sort(ends);
+    int center = ends[entries.size()];
+
+    List<Entry<ValueT>> left = new ArrayList<>();
+    List<Entry<ValueT>> right = new ArrayList<>();
+    List<Entry<ValueT>> here = new ArrayList<>();
+    for (Entry<ValueT> e : entries) {
+      if (e.end < center) {
+        left.add(e);
+      } else if (e.start > center) {
+        right.add(e);
+      } else {
+        here.add(e);
+      }
+    }
+
+    Node<ValueT> node = new Node<>(center);
+    node.byStart = new ArrayList<>(here);
+    Collections.sort(node.byStart, new Comparator<Entry<ValueT>>() {
+      @Override
+      public int compare(Entry<ValueT> e1, Entry<ValueT> e2) {
+        return Integer.compare(e1.start, e2.start);
+      }
+    });
+    node.byEnd = here;
+    Collections.sort(node.byEnd, new Comparator<Entry<ValueT>>() {
+      @Override
+      public int compare(Entry<ValueT> e1, Entry<ValueT> e2) {
+        return Integer.compare(e2.end, e1.end);
+      }
+    });
+    node.left = build(left);
+    node.right = build(right);
+    return node;
+  }
+
+  private static class Node<ValueT> {
+    private final int center;
+    private List<Entry<ValueT>> byStart;
+    private List<Entry<ValueT>> byEnd;
+    private Node<ValueT> left;
+    private Node<ValueT> right;
+
+    private Node(int center) {
+      this.center = center;
+    }
+  }
+
+  private static class Entry<ValueT> {
+    private final int start;
+    private final int end;
+    private final ValueT value;
+
+    private Entry(Vector interval, ValueT value) {
+      start = interval.x;
+      end = interval.y;
+      this.value = value;
+    }
+  }
+}
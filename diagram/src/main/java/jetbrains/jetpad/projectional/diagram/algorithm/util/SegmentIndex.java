@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.util;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Segment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Polylines of values, e.g. routes of connections, indexed for finding the ones which cross a rectangle's bounds.
+ * Axis parallel segments are kept in maps by their line coordinate, so a query looks only at the segments
+ * whose line passes through the rectangle. Other segments are checked one by one.
+ */
+public class SegmentIndex<ValueT> {
+  private final NavigableMap<Integer, List<Entry<ValueT>>> myHorizontal = new TreeMap<>();
+  private final NavigableMap<Integer, List<Entry<ValueT>>> myVertical = new TreeMap<>();
+  private final List<Entry<ValueT>> myOblique = new ArrayList<>();
+  private final Map<ValueT, List<Entry<ValueT>>> myEntries = new HashMap<>();
+
+  public void add(ValueT value, List<Segment> segments) {
+    remove(value);
+    List<Entry<ValueT>> entries = new ArrayList<>(segments.size());
+    for (Segment s : segments) {
+      Entry<ValueT> entry = new Entry<>(value, s);
+      getList(s).add(entry);
+      entries.add(entry);
+    }
+    myEntries.put(value, entries);
+  }
+
+  public void remove(ValueT value) {
+    List<Entry<ValueT>> entries = myEntries.remove(value);
+    if (entries == null) return;
+    for (Entry<ValueT> entry : entries) {
+      Segment s = entry.segment;
+      List<Entry<ValueT>> list = getList(s);
+      list.remove(entry);
+      if (!list.isEmpty() || list == myOblique) continue;
+      if (isHorizontal(s)) {
+        myHorizontal.remove(s.start.y);
+      } else {
+        myVertical.remove(s.start.x);
+      }
+    }
+  }
+
+  public void retain(Collection<?> values) {
+    for (ValueT value : new ArrayList<>(myEntries.keySet())) {
+      if (!values.contains(value)) {
+        remove(value);
+      }
+    }
+  }
+
+  public void clear() {
+    myHorizontal.clear();
+    myVertical.clear();
+    myOblique.clear();
+    myEntries.clear();
+  }
+
+  public boolean contains(ValueT value) {
+    return myEntries.containsKey(value);
+  }
+
+  public Set<ValueT> values() {
+    return Collections.unmodifiableSet(myEntries.keySet());
+  }
+
+  /**
+   * Adds to the result the values with a segment which intersects one of the rectangle's bound segments.
+   */
+  public void findCrossing(Rectangle rect, Set<? super ValueT> result) {
+    int minX = rect.origin.x;
+    int minY = rect.origin.y;
+    int maxX = rect.origin.x + rect.dimension.x;
+    int maxY = rect.origin.y + rect.dimension.y;
+    Segment[] bounds = rect.getBoundSegments();
+    for (List<Entry<ValueT>> entries : myHorizontal.subMap(minY, true, maxY, true).values()) {
+      for (Entry<ValueT> entry : entries) {
+        Segment s = entry.segment;
+        if (Math.max(s.start.x, s.end.x) < minX || Math.min(s.start.x, s.end.x) > maxX) continue;
+        check(entry, bounds, result);
+      }
+    }
+    for (List<Entry<ValueT>> entries : myVertical.subMap(minX, true, maxX, true).values()) {
+      for (Entry<ValueT> entry : entries) {
+        Segment s = entry.segment;
+        if (Math.max(s.start.y, s.end.y) < minY || Math.min(s.start.y, s.end.y) > maxY) continue;
+        check(entry, bounds, result);
+      }
+    }
+    for (Entry<ValueT> entry : myOblique) {
+      check(entry, bounds, result);
+    }
+  }
+
+  private void check(Entry<ValueT> entry, Segment[] bounds, Set<? super ValueT> result) {
+    if (result.contains(entry.value)) return;
+    for (Segment bound : bounds) {
+      if (IntGeomUtil.intersects(entry.segment, bound)) {
+        result.add(entry.value);
+        return;
+      }
+    }
+  }
+
+  private List<Entry<ValueT>> getList(Segment s) {
+    NavigableMap<Integer, List<Entry<ValueT>>> map;
+    int coord;
+    if (isHorizontal(s)) {
+      map = myHorizontal;
+      coord = s.start.y;
+    } else if (s.start.x == s.end.x) {
+      map = myVertical;
+      coord = s.start.x;
+    } else {
+      return myOblique;
+    }
+    List<Entry<ValueT>> list = map.get(coord);
+    if (list == null) {
+      list = new ArrayList<>();
+      map.put(coord, list);
+    }
+    return list;
+  }
+
+  private boolean isHorizontal(Segment s) {
+    return s.start.y == s.end.y;
+  }
+
+  private static class Entry<ValueT> {
+    private final ValueT value;
+    private final Segment segment;
+
+    private Entry(ValueT value, Segment segment) {
+      this.value = value;
+      this.segment = segment;
+    }
+  }
+}
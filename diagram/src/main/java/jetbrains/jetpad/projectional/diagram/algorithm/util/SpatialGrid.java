@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.util;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Uniform grid of rectangles for finding the ones near a region. A rectangle is registered in all the cells it covers,
+ * so the cell size should be about the size of a typical rectangle.
+ */
+public class SpatialGrid<ValueT> {
+  private final int myCellSize;
+  private final Map<Vector, List<ValueT>> myCells = new HashMap<>();
+  private final Map<ValueT, Rectangle> myRects = new HashMap<>();
+
+  public SpatialGrid(int cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("cellSize = " + cellSize);
+    }
+    myCellSize = cellSize;
+  }
+
+  public void add(ValueT value, Rectangle rect) {
+    remove(value);
+    myRects.put(value, rect);
+    int maxX = cell(rect.origin.x + rect.dimension.x);
+    int maxY = cell(rect.origin.y + rect.dimension.y);
+    for (int x = cell(rect.origin.x); x <= maxX; x++) {
+      for (int y = cell(rect.origin.y); y <= maxY; y++) {
+        Vector key = new Vector(x, y);
+        List<ValueT> values = myCells.get(key);
+        if (values == null) {
+          values = new ArrayList<>(2);
+          myCells.put(key, values);
+        }
+        values.add(value);
+      }
+    }
+  }
+
+  public void remove(ValueT value) {
+    Rectangle rect = myRects.remove(value);
+    if (rect == null) return;
+    int maxX = cell(rect.origin.x + rect.dimension.x);
+    int maxY = cell(rect.origin.y + rect.dimension.y);
+    for (int x = cell(rect.origin.x); x <= maxX; x++) {
+      for (int y = cell(rect.origin.y); y <= maxY; y++) {
+        Vector key = new Vector(x, y);
+        List<ValueT> values = myCells.get(key);
+        values.remove(value);
+        if (values.isEmpty()) {
+          myCells.remove(key);
+        }
+      }
+    }
+  }
+
+  public Rectangle get(ValueT value) {
+    return myRects.get(value);
+  }
+
+  /**
+   * Adds to the result the values whose rectangles share a point with the region, boundaries included.
+   */
+  public void find(Rectangle region, Set<? super ValueT> result) {
+    int minX = region.origin.x;
+    int minY = region.origin.y;
+    int maxX = region.origin.x + region.dimension.x;
+    int maxY = region.origin.y + region.dimension.y;
+    for (int x = cell(minX); x <= cell(maxX); x++) {
+      for (int y = cell(minY); y <= cell(maxY); y++) {
+        List<ValueT> values = myCells.get(new Vector(x, y));
+        if (values == null) continue;
+        for (ValueT value : values) {
+          Rectangle rect = myRects.get(value);
+          if (rect.origin.x <= maxX && minX <= rect.origin.x + rect.dimension.x
+              && rect.origin.y <= maxY && minY <= rect.origin.y + rect.dimension.y) {
+            result.add(value);
+          }
+        }
+      }
+    }
+  }
+
+  private int cell(int coord) {
+    int cell = coord / myCellSize;
+    return coord < 0 && cell * myCellSize != coord ? cell - 1 : cell;
+  }
+}
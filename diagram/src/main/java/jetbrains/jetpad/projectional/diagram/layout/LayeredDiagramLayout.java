@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.layout;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.layered.LayeredLayout;
+import jetbrains.jetpad.projectional.diagram.view.Connection;
+import jetbrains.jetpad.projectional.diagram.view.DiagramView;
+import jetbrains.jetpad.projectional.diagram.view.LineConnection;
+import jetbrains.jetpad.projectional.diagram.view.PolyLineConnection;
+import jetbrains.jetpad.projectional.view.View;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Places the items of a {@link DiagramView} with {@link LayeredLayout}. Connections are edges between the items
+ * which contain their endpoint views. Pinned items, e.g. the ones placed by the user, are not moved.
+ */
+public class LayeredDiagramLayout {
+  private final LayeredLayout myLayout = new LayeredLayout();
+
+  public LayeredLayout getLayout() {
+    return myLayout;
+  }
+
+  public void layout(DiagramView diagramView) {
+    layout(diagramView, Collections.<View>emptySet());
+  }
+
+  public void layout(DiagramView diagramView, Set<View> pinned) {
+    List<View> items = new ArrayList<>(diagramView.itemsView.children());
+    int n = items.size();
+    Map<View, Integer> index = new HashMap<>();
+    int[] widths = new int[n];
+    int[] heights = new int[n];
+    Vector[] pinnedOrigins = pinned.isEmpty() ? null : new Vector[n];
+    for (int i = 0; i < n; i++) {
+      View item = items.get(i);
+      item.validate();
+      Rectangle bounds = item.bounds().get();
+      index.put(item, i);
+      widths[i] = bounds.dimension.x;
+      heights[i] = bounds.dimension.y;
+      if (pinnedOrigins != null && pinned.contains(item)) {
+        pinnedOrigins[i] = bounds.origin;
+      }
+    }
+
+    List<Integer> sources = new ArrayList<>();
+    List<Integer> targets = new ArrayList<>();
+    for (Connection c : diagramView.connections) {
+      Integer from = index.get(getItem(diagramView, getFrom(c)));
+      Integer to = index.get(getItem(diagramView, getTo(c)));
+      if (from != null && to != null) {
+        sources.add(from);
+        targets.add(to);
+      }
+    }
+
+    Vector[] origins = myLayout.layout(widths, heights, toArray(sources), toArray(targets), pinnedOrigins);
+    for (int i = 0; i < n; i++) {
+      View item = items.get(i);
+      if (!origins[i].equals(item.bounds().get().origin)) {
+        item.moveTo(origins[i]);
+        item.invalidate();
+      }
+    }
+  }
+
+  private View getFrom(Connection c) {
+    if (c instanceof PolyLineConnection) {
+      return ((PolyLineConnection) c).fromView().get();
+    }
+    if (c instanceof LineConnection) {
+      return ((LineConnection) c).start().get();
+    }
+    return null;
+  }
+
+  private View getTo(Connection c) {
+    if (c instanceof PolyLineConnection) {
+      return ((PolyLineConnection) c).toView().get();
+    }
+    if (c instanceof LineConnection) {
+      return ((LineConnection) c).end().get();
+    }
+    return null;
+  }
+
+  private View getItem(DiagramView diagramView, View view) {
+    View current = view;
+    while (current != null && current.getParent() != diagramView.itemsView) {
+      current = current.getParent();
+    }
+    return current;
+  }
+
+  private int[] toArray(List<Integer> list) {
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+}
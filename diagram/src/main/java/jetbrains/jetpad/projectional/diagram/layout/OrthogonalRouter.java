@@ -21,6 +21,7 @@ import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.collections.list.ObservableList;
 import jetbrains.jetpad.projectional.diagram.algorithm.orthogonal.OrthogonalRouteWithObstacles;
 import jetbrains.jetpad.projectional.diagram.algorithm.util.IntGeomUtil;
+import jetbrains.jetpad.projectional.diagram.algorithm.util.SegmentIndex;
 import jetbrains.jetpad.projectional.diagram.base.GridDirection;
 import jetbrains.jetpad.projectional.diagram.view.*;
 import jetbrains.jetpad.projectional.view.View;
@@ -33,9 +34,36 @@ public class OrthogonalRouter implements ConnectionRouter {
   private static final int DIST_FROM_OBSTACLE = 20;
   private static final int DIST_BETWEEN_EDGES = 10;
 
+  private final RoutingExecutor myExecutor;
+  private final int myParallelism;
+
+  //routes of the valid connections of the last routed view, for finding the ones damaged by moved items
+  private final SegmentIndex<PolyLineConnection> myRoutes = new SegmentIndex<>();
+  private DiagramView myRoutesView;
+
+  public OrthogonalRouter() {
+    this(RoutingExecutor.SEQUENTIAL, 1);
+  }
+
+  /**
+   * With {@code parallelism > 1} connections are routed by that many tasks run by the executor.
+   */
+  public OrthogonalRouter(RoutingExecutor executor, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism = " + parallelism);
+    }
+    myExecutor = executor;
+    myParallelism = parallelism;
+  }
+
   @Override
   public void findRoutes(DiagramView diagramView) {
-    Set<Rectangle> invalidChildrenRects = new HashSet<>();
+    if (myRoutesView != diagramView) {
+      myRoutes.clear();
+      myRoutesView = diagramView;
+    }
+
+    List<Rectangle> invalidChildrenRects = new ArrayList<>();
     for (View child : getItems(diagramView)) {
       boolean valid = child.valid().get();
       child.validate();
@@ -54,16 +82,30 @@ public class OrthogonalRouter implements ConnectionRouter {
       }
     }
 
+    Set<PolyLineConnection> connections = new HashSet<>();
     for (Connection c: diagramView.connections) {
-      if (!isValid(c)) continue;
-      if (intersects((PolyLineConnection) c, invalidChildrenRects)) {
+      PolyLineConnection connection = (PolyLineConnection) c;
+      connections.add(connection);
+      View input = connection.fromView().get();
+      if (isValid(c) && input != null && invalidInputs.contains(input)) {
         c.view().invalidate();
       }
-      View input = ((PolyLineConnection) c).fromView().get();
-      if (input != null && invalidInputs.contains(input)) {
-        c.view().invalidate();
+      if (!isValid(c)) {
+        myRoutes.remove(connection);
+      } else if (!myRoutes.contains(connection)) {
+        myRoutes.add(connection, connection.getSegments());
       }
     }
+    myRoutes.retain(connections);
+
+    Set<PolyLineConnection> damaged = new HashSet<>();
+    for (Rectangle rect : invalidChildrenRects) {
+      myRoutes.findCrossing(rect, damaged);
+    }
+    for (PolyLineConnection c : damaged) {
+      c.view().invalidate();
+      myRoutes.remove(c);
+    }
 
     reroute(diagramView);
   }
@@ -77,13 +119,29 @@ public class OrthogonalRouter implements ConnectionRouter {
   }
 
   private void reroute(DiagramView diagramView) {
-    List<Segment> forbiddenSegments = new ArrayList<>();
-    List<Segment> additionalLines = new ArrayList<>();
+    List<List<PolyLineConnection>> groups = new ArrayList<>();
+    Map<View,List<Connection>> connMap = ConnectionUtil.getInputToConnectionsMap(diagramView);
+    for (View input: connMap.keySet()) {
+      List<PolyLineConnection> group = new ArrayList<>();
+      for (Connection c: connMap.get(input)) {
+        if (isValid(c)) continue;
+        group.add((PolyLineConnection) c);
+      }
+      if (!group.isEmpty()) {
+        groups.add(group);
+      }
+    }
+    if (groups.isEmpty()) return;
+
+    Set<Segment> routedSegments = new LinkedHashSet<>();
     for (Connection c: diagramView.connections) {
       if (isValid(c)) {
-        getAdditionalInfo(forbiddenSegments, additionalLines, ((PolyLineConnection) c).getSegments());
+        routedSegments.addAll(((PolyLineConnection) c).getSegments());
       }
     }
+    List<Segment> forbiddenSegments = new ArrayList<>();
+    List<Segment> additionalLines = new ArrayList<>();
+    getAdditionalInfo(forbiddenSegments, additionalLines, routedSegments);
 
     List<Rectangle> obstacleRects = new ArrayList<>();
     for(View f: getItems(diagramView)) {
@@ -91,36 +149,108 @@ public class OrthogonalRouter implements ConnectionRouter {
     }
     long totalTime = System.currentTimeMillis();
 
-    OrthogonalRouteWithObstacles router = new OrthogonalRouteWithObstacles(obstacleRects);
-    router.setMinDistToForbiddenSegment(DIST_BETWEEN_EDGES - 1);
-    router.addForbiddenSegments(forbiddenSegments);
-    router.addAdditionalLines(additionalLines);
+    OrthogonalRouteWithObstacles router = createRouter(obstacleRects, forbiddenSegments, additionalLines);
 
-    Map<View,List<Connection>> connMap = ConnectionUtil.getInputToConnectionsMap(diagramView);
-    for (View input: connMap.keySet()) {
-      List<Segment> inputForbiddenSegments = new ArrayList<>();
-      List<Segment> inputAdditionalLines = new ArrayList<>();
-      for (Connection c: connMap.get(input)) {
-        if (isValid(c)) continue;
-        List<Vector> path = routeConnection((PolyLineConnection) c, router);
-        getAdditionalInfo(inputForbiddenSegments, inputAdditionalLines, IntGeomUtil.getSegments(path));
+    if (myParallelism > 1) {
+      rerouteParallel(groups, router, obstacleRects, forbiddenSegments, additionalLines);
+    } else {
+      for (List<PolyLineConnection> group: groups) {
+        List<List<Vector>> bundle = new ArrayList<>();
+        Set<Segment> groupSegments = new LinkedHashSet<>();
+        for (PolyLineConnection c: group) {
+          List<Vector> path = routeConnection(c, router, bundle);
+          addRoute(c, path, groupSegments);
+        }
+        addGroupSegments(router, groupSegments);
       }
-      router.addForbiddenSegments(inputForbiddenSegments);
-      router.addAdditionalLines(inputAdditionalLines);
     }
 
     if (SHOW_INFO) {
       System.out.println("total time =           " + (System.currentTimeMillis() - totalTime));
-      System.out.println("init time =            " + router.getInitTime());
-      System.out.println("init routing time =    " + router.getInitRoutingTime());
-      System.out.println("init build graph time =     " + router.getBuildInitTime());
-      System.out.println("lazy build graph time =     " + router.getBuildLazyTime());
-      System.out.println("add lines time =       " + router.getAdditionalLinesTime());
-      System.out.println("forbid segments time = " + router.getForbiddenSegmentsTime());
+      System.out.println(router.getMetrics());
     }
   }
 
-  private void getAdditionalInfo(List<Segment> forbiddenSegments, List<Segment> additionalLines, List<Segment> path) {
+  /**
+   * Routes all the groups concurrently against copies of the initial routing state, so the result doesn't
+   * depend on how the groups are distributed between the tasks. Then the groups are accepted in the sequential order,
+   * and the routes which run along segments forbidden by the previously accepted groups are found again.
+   */
+  private void rerouteParallel(List<List<PolyLineConnection>> groups, OrthogonalRouteWithObstacles router,
+      final List<Rectangle> obstacleRects, final List<Segment> forbiddenSegments, final List<Segment> additionalLines) {
+    final List<List<RouteRequest>> requests = new ArrayList<>(groups.size());
+    for (List<PolyLineConnection> group: groups) {
+      List<RouteRequest> groupRequests = new ArrayList<>(group.size());
+      for (PolyLineConnection c: group) {
+        groupRequests.add(new RouteRequest(c));
+      }
+      requests.add(groupRequests);
+    }
+
+    List<Runnable> tasks = new ArrayList<>(myParallelism);
+    for (int i = 0; i < myParallelism && i < requests.size(); i++) {
+      final int first = i;
+      tasks.add(new Runnable() {
+        @Override
+        public void run() {
+          OrthogonalRouteWithObstacles taskRouter = createRouter(obstacleRects, forbiddenSegments, additionalLines);
+          for (int j = first; j < requests.size(); j += myParallelism) {
+            List<List<Vector>> bundle = new ArrayList<>();
+            for (RouteRequest request: requests.get(j)) {
+              request.route = findRoute(request, taskRouter, bundle);
+            }
+          }
+        }
+      });
+    }
+    myExecutor.invokeAll(tasks);
+
+    for (int i = 0; i < groups.size(); i++) {
+      List<PolyLineConnection> group = groups.get(i);
+      List<List<Vector>> bundle = new ArrayList<>();
+      Set<Segment> groupSegments = new LinkedHashSet<>();
+      for (int j = 0; j < group.size(); j++) {
+        PolyLineConnection c = group.get(j);
+        RouteRequest request = requests.get(i).get(j);
+        List<Vector> path;
+        if (request.route != null && router.isForbidden(request.route)) {
+          path = routeConnection(c, router, bundle);
+        } else {
+          if (request.route != null) {
+            bundle.add(request.route);
+          }
+          path = updateRoute(c, request.route);
+        }
+        addRoute(c, path, groupSegments);
+      }
+      addGroupSegments(router, groupSegments);
+    }
+  }
+
+  private OrthogonalRouteWithObstacles createRouter(
+      List<Rectangle> obstacleRects, List<Segment> forbiddenSegments, List<Segment> additionalLines) {
+    OrthogonalRouteWithObstacles router = new OrthogonalRouteWithObstacles(obstacleRects);
+    router.setMinDistToForbiddenSegment(DIST_BETWEEN_EDGES - 1);
+    router.addForbiddenSegments(forbiddenSegments);
+    router.addAdditionalLines(additionalLines);
+    return router;
+  }
+
+  private void addRoute(PolyLineConnection c, List<Vector> path, Set<Segment> groupSegments) {
+    List<Segment> segments = IntGeomUtil.getSegments(path);
+    myRoutes.add(c, segments);
+    groupSegments.addAll(segments);
+  }
+
+  private void addGroupSegments(OrthogonalRouteWithObstacles router, Set<Segment> groupSegments) {
+    List<Segment> forbiddenSegments = new ArrayList<>();
+    List<Segment> additionalLines = new ArrayList<>();
+    getAdditionalInfo(forbiddenSegments, additionalLines, groupSegments);
+    router.addForbiddenSegments(forbiddenSegments);
+    router.addAdditionalLines(additionalLines);
+  }
+
+  private void getAdditionalInfo(List<Segment> forbiddenSegments, List<Segment> additionalLines, Collection<Segment> path) {
     for (Segment s: path) {
       forbiddenSegments.add(createForbiddenSegment(s));
       additionalLines.addAll(createAdditionalLines(s));
@@ -153,18 +283,89 @@ public class OrthogonalRouter implements ConnectionRouter {
   }
 
   protected List<Vector> routeConnection(PolyLineConnection connection, OrthogonalRouteWithObstacles router) {
-    Vector startShift = getEndpointShift(connection.fromView().get(), new Vector(DIST_FROM_OBSTACLE, 0));
-    Vector endShift = getEndpointShift(connection.toView().get(), new Vector(-DIST_FROM_OBSTACLE, 0));
-    Vector start = connection.getFrom().add(startShift);
-    Vector e = connection.getTo().add(endShift);
+    RouteRequest request = new RouteRequest(connection);
+    return updateRoute(connection, router.findRoute(request.start, request.end));
+  }
+
+  /**
+   * Branches the connection off the bundle if possible, otherwise routes it with
+   * {@link #routeConnection(PolyLineConnection, OrthogonalRouteWithObstacles)}
+   *
+   * @param bundle routes of the connections of the same group routed before, which the connection may share a trunk with
+   */
+  protected List<Vector> routeConnection(
+      PolyLineConnection connection, OrthogonalRouteWithObstacles router, List<List<Vector>> bundle) {
+    List<Vector> route = findBranch(new RouteRequest(connection), router, bundle);
+    if (route != null) {
+      bundle.add(route);
+      return updateRoute(connection, route);
+    }
 
-    List<Vector> path = router.findRoute(start, e);
-    if (path == null) {
+    List<Vector> path = routeConnection(connection, router);
+    if (path.size() > 2) {
+      bundle.add(new ArrayList<>(path.subList(1, path.size() - 1)));
+    }
+    return path;
+  }
+
+  private List<Vector> findRoute(RouteRequest request, OrthogonalRouteWithObstacles router, List<List<Vector>> bundle) {
+    List<Vector> route = findBranch(request, router, bundle);
+    if (route == null) {
+      route = router.findRoute(request.start, request.end);
+    }
+    if (route != null) {
+      bundle.add(route);
+    }
+    return route;
+  }
+
+  /**
+   * Follows the route of the bundle up to the point nearest to the end of the request, and routes only from that point on.
+   * The shared trunk is drawn once, and doesn't need its own routing lines.
+   */
+  private List<Vector> findBranch(RouteRequest request, OrthogonalRouteWithObstacles router, List<List<Vector>> bundle) {
+    List<Vector> trunk = null;
+    int segment = -1;
+    Vector branch = null;
+    int minDist = Integer.MAX_VALUE;
+    for (List<Vector> route: bundle) {
+      for (int i = 0; i < route.size() - 1; i++) {
+        Vector p = closestPoint(route.get(i), route.get(i + 1), request.end);
+        int dist = IntGeomUtil.distance(p, request.end);
+        if (dist < minDist) {
+          minDist = dist;
+          trunk = route;
+          segment = i;
+          branch = p;
+        }
+      }
+    }
+    if (trunk == null) return null;
+
+    List<Vector> tail = router.findRoute(branch, request.end);
+    if (tail == null) return null;
+
+    List<Vector> route = new ArrayList<>(trunk.subList(0, segment + 1));
+    route.addAll(tail);
+    return IntGeomUtil.simplify(route);
+  }
+
+  private Vector closestPoint(Vector start, Vector end, Vector p) {
+    int x = Math.max(Math.min(start.x, end.x), Math.min(Math.max(start.x, end.x), p.x));
+    int y = Math.max(Math.min(start.y, end.y), Math.min(Math.max(start.y, end.y), p.y));
+    return new Vector(x, y);
+  }
+
+  private List<Vector> updateRoute(PolyLineConnection connection, List<Vector> route) {
+    if (route == null) {
       return simpleLayout(connection);
     }
 
-    path.add(0, connection.getFrom());
+    List<Vector> path = new ArrayList<>(route.size() + 2);
+    path.add(connection.getFrom());
+    path.addAll(route);
     path.add(connection.getTo());
+    path = IntGeomUtil.simplify(path);
     connection.update(path.toArray(new Vector[path.size()]));
     return path;
   }
@@ -212,16 +413,16 @@ public class OrthogonalRouter implements ConnectionRouter {
     return Arrays.asList(points);
   }
 
-  private boolean intersects(PolyLineConnection connection, Set<Rectangle> obstacles) {
-    for (Segment s: connection.getSegments()) {
-      for (Rectangle rect: obstacles) {
-        for (Segment bound: rect.getBoundSegments()) {
-          if (IntGeomUtil.intersects(s, bound)) {
-            return true;
-          }
-        }
-      }
+  private class RouteRequest {
+    private final Vector start;
+    private final Vector end;
+    private List<Vector> route;
+
+    private RouteRequest(PolyLineConnection connection) {
+      Vector startShift = getEndpointShift(connection.fromView().get(), new Vector(DIST_FROM_OBSTACLE, 0));
+      Vector endShift = getEndpointShift(connection.toView().get(), new Vector(-DIST_FROM_OBSTACLE, 0));
+      start = connection.getFrom().add(startShift);
+      end = connection.getTo().add(endShift);
     }
-    return false;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.layout;
+
+import java.util.List;
+
+/**
+ * Runs independent routing tasks for {@link OrthogonalRouter}. An implementation may run the tasks concurrently,
+ * but it has to return only when all of them are finished. The tasks don't access views.
+ */
+public interface RoutingExecutor {
+  RoutingExecutor SEQUENTIAL = new RoutingExecutor() {
+    @Override
+    public void invokeAll(List<Runnable> tasks) {
+      for (Runnable task : tasks) {
+        task.run();
+      }
+    }
+  };
+
+  void invokeAll(List<Runnable> tasks);
+}
@@ -18,7 +18,7 @@ package jetbrains.jetpad.projectional.diagram.view;
 import jetbrains.jetpad.geometry.Rectangle;
 import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.collections.list.ObservableList;
-import jetbrains.jetpad.projectional.diagram.algorithm.geom.AvoidObstacles;
+import jetbrains.jetpad.projectional.diagram.algorithm.geom.OverlapResolver;
 import jetbrains.jetpad.projectional.diagram.layout.ConnectionRouter;
 import jetbrains.jetpad.projectional.diagram.view.decoration.DecorationContainer;
 import jetbrains.jetpad.projectional.view.View;
@@ -28,15 +28,12 @@ import java.util.*;
 
 public class ConnectionRoutingView extends DiagramView implements DecorationContainer<DiagramView> {
   private static final int MIN_DIST = 30;
-  private static final Vector ORIGIN_SHIFT = new Vector(MIN_DIST, MIN_DIST);
-  private static final Vector DIMENSION_GROW = new Vector(2 * MIN_DIST + 1, 2 * MIN_DIST + 1);
 
   private GroupView myDecorationGroup = new GroupView();
 
   private ConnectionRouter myRouter;
 
-  private View myMovingView = null;
-  private Map<View, List<Vector>> myOldPositions = new HashMap<>();
+  private OverlapResolver<View> myOverlapResolver = new OverlapResolver<>(MIN_DIST);
 
   private RoutingViewConfiguration myConfiguration;
 
@@ -73,76 +70,19 @@ public class ConnectionRoutingView extends DiagramView implements DecorationCont
 
   private void preventOverlapping() {
     View moved = getInvalid();
-    if (myMovingView != moved) {
-      myMovingView = moved;
-      myOldPositions.clear();
-    }
-    if (moved == null) {
-      return;
-    }
-    List<Rectangle> viewRects = new ArrayList<>();
-    viewRects.add(getRect(moved));
-    List<View> childrenByDist = new ArrayList<>(getNodes());
-    childrenByDist.remove(moved);
-
-    final Vector movedCenter = moved.bounds().get().center();
-    Collections.sort(childrenByDist, new Comparator<View>() {
-      @Override
-      public int compare(View f1, View f2) {
-        Double d1 = f1.bounds().get().center().sub(movedCenter).length();
-        Double d2 = f2.bounds().get().center().sub(movedCenter).length();
-        return d1.compareTo(d2);
-      }
-    });
-    for (View f: childrenByDist) {
-      List<Vector> oldPos = myOldPositions.get(f);
-      Rectangle bounds = f.bounds().get();
-      if (oldPos != null) {
-        List<Vector> newPos = new ArrayList<>();
-        Vector foundPos = null;
-        for(Vector pos: oldPos) {
-          if (posFree(new Rectangle(pos, bounds.dimension), viewRects)) {
-            foundPos = pos;
-            break;
-          } else {
-            newPos.add(pos);
-          }
-        }
-        if (foundPos != null) {
-          myOldPositions.put(f, newPos);
-          updateView(viewRects, f, foundPos);
-          continue;
-        }
-      }
-      Vector newOrigin = new AvoidObstacles().findNewPosition(bounds, viewRects).origin;
-      if (!myOldPositions.containsKey(f)) {
-        myOldPositions.put(f, new ArrayList<Vector>());
+    List<View> nodes = new ArrayList<>();
+    List<Rectangle> bounds = new ArrayList<>();
+    if (moved != null) {
+      for (View f: getNodes()) {
+        nodes.add(f);
+        bounds.add(f.bounds().get());
       }
-      myOldPositions.get(f).add(newOrigin);
-      updateView(viewRects, f, newOrigin);
     }
-  }
-
-  private void updateView(List<Rectangle> viewRects, View f, Vector newOrigin) {
-    if (!newOrigin.equals(f.bounds().get().origin)) {
-      f.moveTo(newOrigin);
+    for (Map.Entry<View, Vector> e: myOverlapResolver.resolve(moved, nodes, bounds).entrySet()) {
+      View f = e.getKey();
+      f.moveTo(e.getValue());
       f.invalidate();
     }
-    viewRects.add(getRect(f));
-  }
-
-  private boolean posFree(Rectangle rect, List<Rectangle> obstacles) {
-    for (Rectangle obstacle: obstacles) {
-      if (rect.innerIntersects(obstacle)) {
-        return false;
-      }
-    }
-    return true;
-  }
-
-  private Rectangle getRect(View view) {
-    Rectangle bounds = view.bounds().get();
-    return bounds.sub(ORIGIN_SHIFT).changeDimension(bounds.dimension.add(DIMENSION_GROW));
   }
 
   @Override
@@ -26,12 +26,16 @@ import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.projectional.diagram.base.GridDirection;
 import jetbrains.jetpad.projectional.view.*;
+import jetbrains.jetpad.values.Color;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public abstract class DiagramNodeView extends GroupView {
   private static final ViewPropertySpec<Integer> PADDING = new ViewPropertySpec<>("padding", ViewPropertyKind.RELAYOUT, 20);
   private static final ViewPropertySpec<Vector> MINIMAL_SIZE = new ViewPropertySpec<>("minimalSize", ViewPropertyKind.RELAYOUT, new Vector(20, 20));
+  private static final ViewPropertySpec<Boolean> COLLAPSED = new ViewPropertySpec<>("collapsed", ViewPropertyKind.RELAYOUT_AND_REPAINT, false);
 
   public final RectView rect = new RectView();
   public final GroupView inputs = new GroupView();
@@ -40,6 +44,10 @@ public abstract class DiagramNodeView extends GroupView {
   public final View contentView = new GroupView();
 
   private GridDirection myPortsDirection = GridDirection.RIGHT;
+  private boolean myCollapsed;
+  private boolean myLaidOut;
+  private Set<View> myHiddenViews = new HashSet<>();
+  private Color myFill;
 
   public DiagramNodeView() {
     children().add(rect);
@@ -101,6 +109,16 @@ public abstract class DiagramNodeView extends GroupView {
     return getProp(MINIMAL_SIZE);
   }
 
+  /**
+   * A collapsed node is drawn as a filled rectangle of the size it had when it was last laid out with its content,
+   * and the content and ports are hidden. Ports are still laid out, so connections keep their routes.
+   * Expanding shows only the views hidden by collapsing.
+   * A node which has never been laid out with its content isn't collapsed, since its size isn't known yet.
+   */
+  public Property<Boolean> collapsed() {
+    return getProp(COLLAPSED);
+  }
+
   public GridDirection getPortsDirection() {
     return myPortsDirection;
   }
@@ -118,9 +136,21 @@ public abstract class DiagramNodeView extends GroupView {
 
   @Override
   protected void doValidate(ValidationContext ctx) {
+    boolean collapsed = collapsed().get() && myLaidOut;
+    if (collapsed || myCollapsed) {
+      updateDetails(!collapsed);
+    }
+
     //calculate children bounds
     super.doValidate(ctx);
 
+    if (collapsed) {
+      layoutPorts(inputs.children(), myPortsDirection.opposite());
+      layoutPorts(outputs.children(), myPortsDirection);
+      super.doValidate(ctx);
+      return;
+    }
+
     rect.dimension().set(minimalSize().get());
 
     int padding = padding().get();
@@ -140,6 +170,48 @@ public abstract class DiagramNodeView extends GroupView {
 
     //calculate block view bounds
     super.doValidate(ctx);
+    myLaidOut = true;
+  }
+
+  /**
+   * Only the views hidden by collapsing are shown again, and the fill is removed only if nobody changed
+   * the background while the node was collapsed
+   */
+  private void updateDetails(boolean visible) {
+    myCollapsed = !visible;
+    if (visible) {
+      for (View v : myHiddenViews) {
+        View parent = v.getParent();
+        if (parent == contentView || parent == inputs || parent == outputs) {
+          v.visible().set(true);
+        }
+      }
+      myHiddenViews.clear();
+    } else {
+      hide(contentView.children());
+      hide(inputs.children());
+      hide(outputs.children());
+    }
+
+    if (!visible && rect.background().get() == null) {
+      Color border = rect.border().get();
+      myFill = border != null ? border : Color.GRAY;
+      rect.background().set(myFill);
+    } else if (visible && myFill != null) {
+      if (myFill.equals(rect.background().get())) {
+        rect.background().set(null);
+      }
+      myFill = null;
+    }
+  }
+
+  private void hide(List<View> views) {
+    for (View v : views) {
+      if (v.visible().get()) {
+        myHiddenViews.add(v);
+        v.visible().set(false);
+      }
+    }
   }
 
   protected abstract void layoutPorts(List<View> ports, GridDirection dir);
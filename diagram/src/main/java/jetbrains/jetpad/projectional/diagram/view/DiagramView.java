@@ -20,9 +20,21 @@ import jetbrains.jetpad.model.collections.CollectionAdapter;
 import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.model.collections.list.ObservableArrayList;
 import jetbrains.jetpad.model.collections.list.ObservableList;
+import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.projectional.view.GroupView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewPropertyKind;
+import jetbrains.jetpad.projectional.view.ViewPropertySpec;
+
+import java.util.HashSet;
+import java.util.Set;
 
 public class DiagramView extends GroupView {
+  /**
+   * Scale at which the diagram is drawn, e.g. in an overview map, which determines its {@link LevelOfDetail}
+   */
+  public static final ViewPropertySpec<Double> SCALE = new ViewPropertySpec<>("scale", ViewPropertyKind.RELAYOUT, 1.0);
+
   private GroupView myConnectionView = new GroupView();
 
   public final GroupView itemsView = new GroupView();
@@ -31,6 +43,10 @@ public class DiagramView extends GroupView {
   public ObservableList<Connection> connections = new ConnectionsList();
 
   private Registration myConnectionAttachReg;
+  private Registration myLevelOfDetailReg;
+
+  private LevelOfDetail myLevelOfDetail = new LevelOfDetail();
+  private Set<View> myHiddenLabels = new HashSet<>();
 
   public DiagramView() {
     children().add(myConnectionView);
@@ -38,13 +54,71 @@ public class DiagramView extends GroupView {
     children().add(popupView);
   }
 
+  public Property<Double> scale() {
+    return getProp(SCALE);
+  }
+
+  public LevelOfDetail getLevelOfDetail() {
+    return myLevelOfDetail;
+  }
+
+  public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+    if (myLevelOfDetailReg != null) {
+      myLevelOfDetailReg.remove();
+      myLevelOfDetailReg = listenLevelOfDetail(levelOfDetail);
+    }
+    myLevelOfDetail = levelOfDetail;
+    invalidate();
+  }
+
+  private Registration listenLevelOfDetail(LevelOfDetail levelOfDetail) {
+    return levelOfDetail.addChangeHandler(new Runnable() {
+      @Override
+      public void run() {
+        invalidate();
+      }
+    });
+  }
+
+  /**
+   * Blocks are collapsed after they are laid out, so that the decision is made by their actual size
+   */
   @Override
   protected void doValidate(ValidationContext ctx) {
+    updateLabels();
     myConnectionView.validate();
     itemsView.validate();
+    updateBlocks();
+    itemsView.validate();
     super.doValidate(ctx);
   }
 
+  private void updateBlocks() {
+    double scale = scale().get();
+    for (View item : itemsView.children()) {
+      if (item instanceof DiagramNodeView) {
+        DiagramNodeView node = (DiagramNodeView) item;
+        node.collapsed().set(!myLevelOfDetail.isDetailed(node.rect.dimension().get(), scale));
+      }
+    }
+  }
+
+  private void updateLabels() {
+    double scale = scale().get();
+    for (Connection c : connections) {
+      if (!(c instanceof PolyLineConnection)) continue;
+      View label = ((PolyLineConnection) c).label();
+      if (myLevelOfDetail.isVisible(label, scale)) {
+        if (myHiddenLabels.remove(label)) {
+          label.visible().set(true);
+          label.invalidate();
+        }
+      } else if (label.visible().get() && myHiddenLabels.add(label)) {
+        label.visible().set(false);
+      }
+    }
+  }
+
   @Override
   protected void onAttach() {
     super.onAttach();
@@ -53,6 +127,7 @@ public class DiagramView extends GroupView {
       c.attach();
     }
 
+    myLevelOfDetailReg = listenLevelOfDetail(myLevelOfDetail);
     myConnectionAttachReg = connections.addListener(new CollectionAdapter<Connection>() {
       @Override
       public void onItemAdded(CollectionItemEvent<? extends Connection> event) {
@@ -69,6 +144,8 @@ public class DiagramView extends GroupView {
   @Override
   protected void onDetach() {
     myConnectionAttachReg.remove();
+    myLevelOfDetailReg.remove();
+    myLevelOfDetailReg = null;
 
     for (Connection c : connections) {
       c.detach();
@@ -89,12 +166,22 @@ public class DiagramView extends GroupView {
       super.afterItemSet(index, oldItem, newItem, success);
       myConnectionView.children().remove(oldItem.view());
       myConnectionView.children().add(newItem.view());
+      showLabel(oldItem);
     }
 
     @Override
     protected void afterItemRemoved(int index, Connection item, boolean success) {
       super.afterItemRemoved(index, item, success);
       myConnectionView.children().remove(item.view());
+      showLabel(item);
+    }
+
+    private void showLabel(Connection item) {
+      if (!(item instanceof PolyLineConnection)) return;
+      View label = ((PolyLineConnection) item).label();
+      if (myHiddenLabels.remove(label)) {
+        label.visible().set(true);
+      }
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.view;
+
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.model.event.ListenerCaller;
+import jetbrains.jetpad.model.event.Listeners;
+import jetbrains.jetpad.projectional.view.View;
+
+/**
+ * Thresholds in screen pixels below which parts of a {@link DiagramView} drawn with its {@link DiagramView#scale()}
+ * are simplified: blocks collapse to filled rectangles, connection labels are hidden and decorations aren't created.
+ * With the default thresholds nothing is simplified at the scale of 1.
+ * Changes of the thresholds invalidate the attached diagram views which use them.
+ */
+public class LevelOfDetail {
+  public static final int DEFAULT_MIN_BLOCK_SIZE = 16;
+  public static final int DEFAULT_MIN_TEXT_HEIGHT = 6;
+  public static final int DEFAULT_MIN_DECORATION_SIZE = 3;
+
+  private int myMinBlockSize = DEFAULT_MIN_BLOCK_SIZE;
+  private int myMinTextHeight = DEFAULT_MIN_TEXT_HEIGHT;
+  private int myMinDecorationSize = DEFAULT_MIN_DECORATION_SIZE;
+  private Listeners<Runnable> myChangeHandlers;
+
+  public int getMinBlockSize() {
+    return myMinBlockSize;
+  }
+
+  public void setMinBlockSize(int minBlockSize) {
+    if (minBlockSize < 0) {
+      throw new IllegalArgumentException("minBlockSize = " + minBlockSize);
+    }
+    if (myMinBlockSize == minBlockSize) return;
+    myMinBlockSize = minBlockSize;
+    fireChanged();
+  }
+
+  public int getMinTextHeight() {
+    return myMinTextHeight;
+  }
+
+  public void setMinTextHeight(int minTextHeight) {
+    if (minTextHeight < 0) {
+      throw new IllegalArgumentException("minTextHeight = " + minTextHeight);
+    }
+    if (myMinTextHeight == minTextHeight) return;
+    myMinTextHeight = minTextHeight;
+    fireChanged();
+  }
+
+  public int getMinDecorationSize() {
+    return myMinDecorationSize;
+  }
+
+  public void setMinDecorationSize(int minDecorationSize) {
+    if (minDecorationSize < 0) {
+      throw new IllegalArgumentException("minDecorationSize = " + minDecorationSize);
+    }
+    if (myMinDecorationSize == minDecorationSize) return;
+    myMinDecorationSize = minDecorationSize;
+    fireChanged();
+  }
+
+  /**
+   * Whether a block of this dimension is drawn with its content and ports, judging by its smaller side
+   */
+  public boolean isDetailed(Vector dimension, double scale) {
+    return Math.min(dimension.x, dimension.y) * scale >= myMinBlockSize;
+  }
+
+  /**
+   * Whether a label is drawn. Labels which were never laid out are shown, so that their height becomes known.
+   */
+  public boolean isVisible(View label, double scale) {
+    int height = label.bounds().get().dimension.y;
+    return height == 0 || height * scale >= myMinTextHeight;
+  }
+
+  public boolean isDecorationVisible(int size, double scale) {
+    return size * scale >= myMinDecorationSize;
+  }
+
+  public Registration addChangeHandler(Runnable handler) {
+    if (myChangeHandlers == null) {
+      myChangeHandlers = new Listeners<>();
+    }
+    final Registration reg = myChangeHandlers.add(handler);
+    return new Registration() {
+      @Override
+      protected void doRemove() {
+        reg.remove();
+        if (myChangeHandlers.isEmpty()) {
+          myChangeHandlers = null;
+        }
+      }
+    };
+  }
+
+  private void fireChanged() {
+    if (myChangeHandlers == null) return;
+    myChangeHandlers.fire(new ListenerCaller<Runnable>() {
+      @Override
+      public void call(Runnable l) {
+        l.run();
+      }
+    });
+  }
+}
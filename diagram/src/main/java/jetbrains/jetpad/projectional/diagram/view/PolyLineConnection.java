@@ -23,12 +23,14 @@ import jetbrains.jetpad.base.Registration;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.PropertyChangeEvent;
 import jetbrains.jetpad.model.property.ValueProperty;
+import jetbrains.jetpad.projectional.diagram.algorithm.util.IntGeomUtil;
 import jetbrains.jetpad.projectional.view.GroupView;
 import jetbrains.jetpad.projectional.view.LineView;
 import jetbrains.jetpad.projectional.view.PolyLineView;
 import jetbrains.jetpad.projectional.view.View;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -136,7 +138,7 @@ public class PolyLineConnection implements Connection {
   }
 
   private void updateLines(Vector[] points) {
-    List<Vector> vectors = removeParallel(points);
+    List<Vector> vectors = IntGeomUtil.simplify(Arrays.asList(points));
     myLinesView.points.clear();
     myLinesView.points.addAll(vectors);
 
@@ -150,29 +152,6 @@ public class PolyLineConnection implements Connection {
     }
   }
 
-  private List<Vector> removeParallel(Vector... points) {
-    List<Vector> res = new ArrayList<>();
-    Vector last = null;
-    Vector prev = null;
-    for (Vector p: points) {
-      if (prev == null) {
-        res.add(p);
-      } else {
-        if (last == null) {
-          last = p.sub(prev).orthogonal();
-        }
-        if (last.dotProduct(p.sub(prev)) != 0) {
-          last = p.sub(prev).orthogonal();
-          res.add(prev);
-        }
-      }
-      prev = p;
-    }
-    //last point
-    res.add(prev);
-    return res;
-  }
-
   public List<LineView> getLines() {
     List<LineView> res = new ArrayList<>(myLinesView.children().size());
     for (View v: myLinesView.children()) {
@@ -84,7 +84,8 @@ public class LabelView extends CellView {
   protected void doValidate(ValidationContext ctx) {
     super.doValidate(ctx);
 
-    if (myEditing.get()) return;
+    //hidden by the level of detail, placed when it is shown again
+    if (myEditing.get() || !visible().get()) return;
 
     LabelPlacement curLabelPlacement;
     Vector labelDimension = bounds().get().dimension;
@@ -49,7 +49,10 @@ public class ConnectionDivergeDecoration extends GroupView {
 
   private void update() {
     children().clear();
-    for (List<Connection> connections: ConnectionUtil.getInputToConnectionsMap(myContainer.getDecoratedView()).values()) {
+    DiagramView view = myContainer.getDecoratedView();
+    if (!view.getLevelOfDetail().isDecorationVisible(DIVERGE_SIZE * 2 + 1, view.scale().get())) return;
+
+    for (List<Connection> connections: ConnectionUtil.getInputToConnectionsMap(view).values()) {
       Set<List<Vector>> lines = new HashSet<>();
       for (Connection connection: connections) {
         List<Vector> line = new ArrayList<>();
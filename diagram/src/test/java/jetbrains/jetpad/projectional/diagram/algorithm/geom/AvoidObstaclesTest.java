@@ -84,4 +84,14 @@ public class AvoidObstaclesTest {
     Rectangle pos = new AvoidObstacles().findNewPosition(r, obs);
     assertEquals(new Rectangle(0, -11, 100, 10), pos);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void farFromOrigin() {
+    int far = 2000000000;
+    Rectangle r = new Rectangle(far, 0, 10, 100);
+    ArrayList<Rectangle> obs = new ArrayList<>();
+    obs.add(new Rectangle(far - 2, 50, 13, 1));
+    Rectangle pos = new AvoidObstacles().findNewPosition(r, obs);
+    assertEquals(new Rectangle(far + 11, 0, 10, 100), pos);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.geom;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OverlapResolverTest {
+  private static final int MIN_DIST = 30;
+
+  @Test
+  public void noMoved() {
+    OverlapResolver<String> resolver = new OverlapResolver<>(MIN_DIST);
+    assertTrue(resolver.resolve(null, Arrays.asList("a"), Arrays.asList(new Rectangle(0, 0, 10, 10))).isEmpty());
+  }
+
+  @Test
+  public void farNodesNotMoved() {
+    OverlapResolver<String> resolver = new OverlapResolver<>(MIN_DIST);
+    List<Rectangle> bounds = Arrays.asList(new Rectangle(0, 0, 10, 10), new Rectangle(100, 0, 10, 10));
+    assertTrue(resolver.resolve("a", Arrays.asList("a", "b"), bounds).isEmpty());
+  }
+
+  @Test
+  public void pushAndReturn() {
+    OverlapResolver<String> resolver = new OverlapResolver<>(MIN_DIST);
+    List<String> nodes = Arrays.asList("a", "b");
+    Map<String, Vector> moves = resolver.resolve("a", nodes,
+        Arrays.asList(new Rectangle(0, 0, 10, 100), new Rectangle(20, 0, 10, 100)));
+    assertEquals(Collections.singletonMap("b", new Vector(41, 0)), moves);
+
+    moves = resolver.resolve("a", nodes, Arrays.asList(new Rectangle(-100, 0, 10, 100), new Rectangle(41, 0, 10, 100)));
+    assertEquals(Collections.singletonMap("b", new Vector(20, 0)), moves);
+  }
+
+  @Test
+  public void pushPropagates() {
+    OverlapResolver<String> resolver = new OverlapResolver<>(MIN_DIST);
+    List<Rectangle> bounds = Arrays.asList(
+        new Rectangle(0, 0, 10, 100), new Rectangle(20, 0, 10, 100), new Rectangle(71, 0, 10, 100));
+    Map<String, Vector> moves = resolver.resolve("a", Arrays.asList("a", "b", "c"), bounds);
+
+    assertEquals(2, moves.size());
+    assertEquals(new Vector(41, 0), moves.get("b"));
+    assertEquals(new Vector(82, 0), moves.get("c"));
+  }
+
+  @Test
+  public void sameAsSortingAllNodes() {
+    Random random = new Random(5);
+    int gridSize = 15;
+    List<Integer> nodes = new ArrayList<>();
+    List<Rectangle> bounds = new ArrayList<>();
+    for (int i = 0; i < gridSize * gridSize; i++) {
+      nodes.add(i);
+      bounds.add(new Rectangle((i % gridSize) * 100 + random.nextInt(20), (i / gridSize) * 100 + random.nextInt(20),
+          20 + random.nextInt(20), 20 + random.nextInt(20)));
+    }
+    List<Rectangle> expected = new ArrayList<>(bounds);
+
+    OverlapResolver<Integer> resolver = new OverlapResolver<>(MIN_DIST);
+    Map<Integer, List<Vector>> oldPositions = new HashMap<>();
+    int moved = gridSize * gridSize / 2;
+    for (int step = 0; step < 60; step++) {
+      Vector shift = new Vector(random.nextInt(41) - 20, random.nextInt(41) - 20);
+      bounds.set(moved, new Rectangle(bounds.get(moved).origin.add(shift), bounds.get(moved).dimension));
+      expected.set(moved, bounds.get(moved));
+
+      for (Map.Entry<Integer, Vector> e : resolver.resolve(moved, nodes, bounds).entrySet()) {
+        bounds.set(e.getKey(), new Rectangle(e.getValue(), bounds.get(e.getKey()).dimension));
+      }
+      resolveAll(moved, expected, oldPositions);
+      assertEquals(expected, bounds);
+    }
+  }
+
+  private void resolveAll(int moved, final List<Rectangle> bounds, Map<Integer, List<Vector>> oldPositions) {
+    List<Rectangle> viewRects = new ArrayList<>();
+    viewRects.add(grow(bounds.get(moved)));
+    List<Integer> byDist = new ArrayList<>();
+    for (int i = 0; i < bounds.size(); i++) {
+      if (i != moved) {
+        byDist.add(i);
+      }
+    }
+    final Vector movedCenter = center(bounds.get(moved));
+    Collections.sort(byDist, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return Double.compare(center(bounds.get(i1)).sub(movedCenter).length(), center(bounds.get(i2)).sub(movedCenter).length());
+      }
+    });
+    for (int i : byDist) {
+      Rectangle rect = bounds.get(i);
+      Vector found = null;
+      List<Vector> oldPos = oldPositions.get(i);
+      if (oldPos != null) {
+        for (int k = 0; k < oldPos.size() && found == null; k++) {
+          if (isFree(new Rectangle(oldPos.get(k), rect.dimension), viewRects)) {
+            found = oldPos.get(k);
+            oldPos.subList(k + 1, oldPos.size()).clear();
+          }
+        }
+      }
+      if (found == null) {
+        found = new AvoidObstacles().findNewPosition(rect, viewRects).origin;
+        if (!oldPositions.containsKey(i)) {
+          oldPositions.put(i, new ArrayList<Vector>());
+        }
+        oldPositions.get(i).add(found);
+      }
+      bounds.set(i, new Rectangle(found, rect.dimension));
+      viewRects.add(grow(bounds.get(i)));
+    }
+  }
+
+  private boolean isFree(Rectangle rect, List<Rectangle> obstacles) {
+    for (Rectangle obstacle : obstacles) {
+      if (rect.innerIntersects(obstacle)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Vector center(Rectangle rect) {
+    return new Vector(rect.origin.x + rect.dimension.x / 2, rect.origin.y + rect.dimension.y / 2);
+  }
+
+  private Rectangle grow(Rectangle rect) {
+    return new Rectangle(rect.origin.sub(new Vector(MIN_DIST, MIN_DIST)),
+        rect.dimension.add(new Vector(2 * MIN_DIST + 1, 2 * MIN_DIST + 1)));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.layered;
+
+import jetbrains.jetpad.geometry.Vector;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredLayoutTest {
+  private LayeredLayout myLayout = new LayeredLayout();
+
+  @Test
+  public void empty() {
+    assertEquals(0, myLayout.layout(new int[0], new int[0], new int[0], new int[0]).length);
+  }
+
+  @Test
+  public void chainGoesRight() {
+    Vector[] result = myLayout.layout(sizes(3, 20), sizes(3, 20), new int[] {0, 1}, new int[] {1, 2});
+
+    assertEquals(new Vector(0, 0), result[0]);
+    assertEquals(new Vector(20 + LayeredLayout.DEFAULT_LAYER_SPACING, 0), result[1]);
+    assertEquals(new Vector(2 * (20 + LayeredLayout.DEFAULT_LAYER_SPACING), 0), result[2]);
+  }
+
+  @Test
+  public void cycle() {
+    Vector[] result = myLayout.layout(sizes(3, 20), sizes(3, 20), new int[] {0, 1, 2}, new int[] {1, 2, 0});
+
+    assertTrue(result[0].x < result[1].x);
+    assertTrue(result[1].x < result[2].x);
+  }
+
+  @Test
+  public void crossingRemoved() {
+    //0 -> 3, 1 -> 2: nodes 2 and 3 have to be swapped
+    Vector[] result = myLayout.layout(sizes(4, 20), sizes(4, 20), new int[] {0, 1}, new int[] {3, 2});
+
+    assertEquals(0, myLayout.getCrossings());
+    assertEquals(result[0].y < result[1].y, result[3].y < result[2].y);
+  }
+
+  @Test
+  public void sourceNextToSuccessor() {
+    //0 -> 1 -> 2 -> 3 and 4 -> 3: 4 is placed right before 3
+    Vector[] result = myLayout.layout(sizes(5, 20), sizes(5, 20), new int[] {0, 1, 2, 4}, new int[] {1, 2, 3, 3});
+
+    assertEquals(result[2].x, result[4].x);
+  }
+
+  @Test
+  public void randomGraphNoOverlaps() {
+    Random random = new Random(3);
+    int n = 300;
+    int[] widths = new int[n];
+    int[] heights = new int[n];
+    for (int i = 0; i < n; i++) {
+      widths[i] = 10 + random.nextInt(50);
+      heights[i] = 10 + random.nextInt(50);
+    }
+    int[] sources = new int[2 * n];
+    int[] targets = new int[2 * n];
+    for (int e = 0; e < sources.length; e++) {
+      sources[e] = random.nextInt(n);
+      targets[e] = random.nextInt(n);
+    }
+
+    Vector[] result = myLayout.layout(widths, heights, sources, targets);
+    assertNoOverlaps(result, widths, heights);
+
+    Vector[] pinned = new Vector[n];
+    for (int i = 0; i < n; i += 2) {
+      pinned[i] = result[i].add(new Vector(1000, 1000));
+    }
+    pinned[0] = new Vector(-5000, 100);
+    Vector[] incremental = myLayout.layout(widths, heights, sources, targets, pinned);
+    for (int i = 0; i < n; i += 2) {
+      assertEquals(pinned[i], incremental[i]);
+    }
+    assertNoOverlaps(incremental, widths, heights);
+  }
+
+  @Test
+  public void unpinnedComponentBelowPinned() {
+    Vector[] pinned = new Vector[] {new Vector(0, 500), null, null, null};
+    Vector[] result = myLayout.layout(sizes(4, 20), sizes(4, 20), new int[] {0, 2}, new int[] {1, 3}, pinned);
+
+    assertEquals(new Vector(0, 500), result[0]);
+    assertEquals(new Vector(20 + LayeredLayout.DEFAULT_LAYER_SPACING, 500), result[1]);
+    assertTrue(result[2].y >= 520);
+    assertEquals(result[2].y, result[3].y);
+  }
+
+  private void assertNoOverlaps(Vector[] origins, int[] widths, int[] heights) {
+    for (int i = 0; i < origins.length; i++) {
+      for (int j = i + 1; j < origins.length; j++) {
+        boolean overlap = origins[i].x < origins[j].x + widths[j] && origins[j].x < origins[i].x + widths[i]
+            && origins[i].y < origins[j].y + heights[j] && origins[j].y < origins[i].y + heights[i];
+        assertFalse(i + " and " + j + " overlap", overlap);
+      }
+    }
+  }
+
+  private int[] sizes(int n, int size) {
+    int[] result = new int[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = size;
+    }
+    return result;
+  }
+}
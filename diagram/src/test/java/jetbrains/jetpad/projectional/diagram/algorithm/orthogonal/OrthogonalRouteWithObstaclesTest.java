@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class OrthogonalRouteWithObstaclesTest {
@@ -166,6 +167,27 @@ public class OrthogonalRouteWithObstaclesTest {
     assertEquals(e, r.get(3));
   }
 
+  @Test
+  public void forbiddenRoute() {
+    List<Vector> route = new ArrayList<>();
+    route.add(new Vector(0, 0));
+    route.add(new Vector(100, 0));
+    route.add(new Vector(100, 100));
+    assertFalse(o.isForbidden(route));
+
+    o.setMinDistToForbiddenSegment(5);
+    List<Segment> forbidden = new ArrayList<>();
+    forbidden.add(new Segment(new Vector(-10, 50), new Vector(200, 50)));
+    forbidden.add(new Segment(new Vector(100, -50), new Vector(100, 0)));
+    o.addForbiddenSegments(forbidden);
+    assertFalse(o.isForbidden(route));
+
+    forbidden.clear();
+    forbidden.add(new Segment(new Vector(104, 90), new Vector(104, 200)));
+    o.addForbiddenSegments(forbidden);
+    assertTrue(o.isForbidden(route));
+  }
+
   @Test
   public void startEqualsEnd() {
     Vector s = new Vector(0, 0);
@@ -175,4 +197,55 @@ public class OrthogonalRouteWithObstaclesTest {
     assertTrue(r.size() == 1);
     assertEquals(s, r.get(0));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void crossLineWithSeveralSegments() {
+    List<Rectangle> a = new ArrayList<>();
+    a.add(new Rectangle(0, 0, 100, 100));
+    a.add(new Rectangle(200, -50, 100, 200));
+    a.add(new Rectangle(400, -50, 100, 200));
+    o.setObstacles(a);
+    List<Vector> r = o.findRoute(new Vector(100, 50), new Vector(-50, 50));
+
+    assertEquals(Arrays.asList(new Vector(100, 50), new Vector(100, 0), new Vector(-50, 0), new Vector(-50, 50)), r);
+  }
+
+  @Test
+  public void metrics() {
+    List<Rectangle> a = new ArrayList<>();
+    a.add(new Rectangle(110, -1, 80, 80));
+    o.setObstacles(a);
+    o.findRoute(new Vector(100, 0), new Vector(200, 0));
+    o.findRoute(new Vector(100, 0), new Vector(150, 40));
+
+    RoutingMetrics metrics = o.getMetrics();
+    assertEquals(1, metrics.getObstacles());
+    assertEquals(4, metrics.getLines());
+    assertEquals(2, metrics.getRoutes());
+    assertEquals(1, metrics.getFailedRoutes());
+  }
+
+  @Test
+  public void bypassFarObstacle() {
+    int far = 1000000000;
+    List<Rectangle> a = new ArrayList<>();
+    a.add(new Rectangle(far + 110, far - 1, 80, 80));
+    o.setObstacles(a);
+    List<Vector> r = o.findRoute(new Vector(far + 100, far), new Vector(far + 200, far));
+
+    assertEquals(Arrays.asList(new Vector(far + 100, far), new Vector(far + 100, far - 1),
+        new Vector(far + 200, far - 1), new Vector(far + 200, far)), r);
+  }
+
+  @Test
+  public void routeOutsideObstacles() {
+    List<Rectangle> a = new ArrayList<>();
+    a.add(new Rectangle(0, 0, 100, 100));
+    o.setObstacles(a);
+    List<Vector> r = o.findRoute(new Vector(-50000, 50), new Vector(50000, 50));
+
+    assertEquals(4, r.size());
+    assertEquals(new Vector(-50000, 0), r.get(1));
+    assertEquals(new Vector(50000, 0), r.get(2));
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.path;
+
+import jetbrains.jetpad.projectional.diagram.algorithm.graph.IntGridGraph;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class AStarPathTest {
+  private AStarPath path = new AStarPath();
+
+  @Test
+  public void fromEqualsTo() {
+    TestGraph g = new TestGraph();
+    g.add(0, 0);
+    assertArrayEquals(new int[] {0}, path.findPath(g, 0, 0));
+  }
+
+  @Test
+  public void noPath() {
+    TestGraph g = new TestGraph();
+    g.add(0, 0);
+    g.add(10, 0);
+    g.add(20, 0);
+    g.connect(0, 1);
+    assertNull(path.findPath(g, 0, 2));
+  }
+
+  @Test
+  public void shortest() {
+    TestGraph g = new TestGraph();
+    g.add(0, 0);
+    g.add(0, 10);
+    g.add(10, 10);
+    g.add(0, 20);
+    g.add(10, 20);
+    g.connect(0, 1);
+    g.connect(1, 2);
+    g.connect(1, 3);
+    g.connect(3, 4);
+    g.connect(2, 4);
+    assertArrayEquals(new int[] {0, 1, 2}, path.findPath(g, 0, 2));
+  }
+
+  @Test
+  public void bendCostPreferred() {
+    TestGraph g = stairs();
+    path.setBendCost(100);
+    assertArrayEquals(new int[] {0, 5, 4}, path.findPath(g, 0, 4));
+  }
+
+  @Test
+  public void lengthCostPreferred() {
+    TestGraph g = stairs();
+    path.setBendCost(0);
+    assertArrayEquals(new int[] {0, 1, 2, 3, 4}, path.findPath(g, 0, 4));
+  }
+
+  @Test
+  public void reuseForDifferentGraphs() {
+    TestGraph big = new TestGraph();
+    for (int i = 0; i < 100; i++) {
+      big.add(i, 0);
+      if (i > 0) {
+        big.connect(i - 1, i);
+      }
+    }
+    assertArrayEquals(new int[] {0, 1, 2}, path.findPath(big, 0, 2));
+
+    TestGraph small = stairs();
+    path.setBendCost(0);
+    assertArrayEquals(new int[] {0, 1, 2, 3, 4}, path.findPath(small, 0, 4));
+    assertNull(path.findPath(small, 0, 6));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeBendCost() {
+    path.setBendCost(-1);
+  }
+
+  private TestGraph stairs() {
+    TestGraph g = new TestGraph();
+    g.add(0, 0);
+    g.add(10, 0);
+    g.add(10, 10);
+    g.add(20, 10);
+    g.add(20, 20);
+    g.add(0, 20);
+    g.add(100, 100);
+    g.connect(0, 1);
+    g.connect(1, 2);
+    g.connect(2, 3);
+    g.connect(3, 4);
+    g.connect(0, 5, 30);
+    g.connect(5, 4);
+    return g;
+  }
+
+  private static class TestGraph implements IntGridGraph {
+    private List<int[]> myPoints = new ArrayList<>();
+    private List<List<int[]>> myEdges = new ArrayList<>();
+
+    void add(int x, int y) {
+      myPoints.add(new int[] {x, y});
+      myEdges.add(new ArrayList<int[]>());
+    }
+
+    void connect(int i, int j) {
+      connect(i, j, Math.abs(getX(i) - getX(j)) + Math.abs(getY(i) - getY(j)));
+    }
+
+    void connect(int i, int j, int weight) {
+      myEdges.get(i).add(new int[] {j, weight});
+      myEdges.get(j).add(new int[] {i, weight});
+    }
+
+    @Override
+    public int getEdgeCount(int node) {
+      return myEdges.get(node).size();
+    }
+
+    @Override
+    public int getEdgeTarget(int node, int index) {
+      return myEdges.get(node).get(index)[0];
+    }
+
+    @Override
+    public int getEdgeWeight(int node, int index) {
+      return myEdges.get(node).get(index)[1];
+    }
+
+    @Override
+    public int getX(int node) {
+      return myPoints.get(node)[0];
+    }
+
+    @Override
+    public int getY(int node) {
+      return myPoints.get(node)[1];
+    }
+  }
+}
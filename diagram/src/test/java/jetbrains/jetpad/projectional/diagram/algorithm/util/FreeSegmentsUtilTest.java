@@ -19,7 +19,9 @@ import jetbrains.jetpad.geometry.Vector;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -61,4 +63,29 @@ public class FreeSegmentsUtilTest {
     assertEquals(new Vector(0, 1), res.get(0));
     assertEquals(new Vector(9, 10), res.get(1));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void freeSegmentsTouchingOccupied() {
+    List<Vector> res = FreeSegmentsUtil.getFreeSegments(new Vector(0, 20),
+        Arrays.asList(new Vector(5, 10), new Vector(0, 5), new Vector(10, 10), new Vector(12, 12)));
+    assertEquals(Arrays.asList(new Vector(0, 0), new Vector(5, 5), new Vector(10, 12), new Vector(12, 20)), res);
+  }
+
+  @Test
+  public void freeSegmentsSameAsSequentialRemoval() {
+    Random random = new Random(3);
+    for (int test = 0; test < 500; test++) {
+      List<Vector> occupied = new ArrayList<>();
+      List<Vector> expected = new ArrayList<>();
+      expected.add(new Vector(0, 100));
+      int count = random.nextInt(10);
+      for (int i = 0; i < count; i++) {
+        int start = random.nextInt(120) - 10;
+        Vector seg = new Vector(start, start + 1 + random.nextInt(4) * random.nextInt(10));
+        occupied.add(seg);
+        expected = FreeSegmentsUtil.removeSegment(expected, seg);
+      }
+      assertEquals(expected, FreeSegmentsUtil.getFreeSegments(new Vector(0, 100), occupied));
+    }
+  }
+}
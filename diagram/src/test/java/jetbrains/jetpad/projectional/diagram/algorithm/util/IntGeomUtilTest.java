@@ -16,8 +16,11 @@
 package jetbrains.jetpad.projectional.diagram.algorithm.util;
 
 import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 public class IntGeomUtilTest {
@@ -28,4 +31,25 @@ public class IntGeomUtilTest {
 
     assertEquals(inc, IntGeomUtil.increase(rect, 2));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void distanceSaturated() {
+    assertEquals(7, IntGeomUtil.distance(new Vector(1, 2), new Vector(-2, 6)));
+    assertEquals(Integer.MAX_VALUE, IntGeomUtil.distance(new Vector(Integer.MIN_VALUE, 0), new Vector(Integer.MAX_VALUE, 0)));
+  }
+
+  @Test
+  public void simplifyRemovesCollinearPoints() {
+    assertEquals(Arrays.asList(new Vector(0, 0), new Vector(10, 0), new Vector(10, 20)),
+        IntGeomUtil.simplify(Arrays.asList(new Vector(0, 0), new Vector(5, 0), new Vector(10, 0), new Vector(10, 0),
+            new Vector(10, 5), new Vector(10, 20))));
+  }
+
+  @Test
+  public void simplifyRemovesSpurs() {
+    assertEquals(Arrays.asList(new Vector(0, 0), new Vector(10, 0), new Vector(10, 10)),
+        IntGeomUtil.simplify(Arrays.asList(new Vector(0, 0), new Vector(20, 0), new Vector(10, 0), new Vector(10, 10))));
+    assertEquals(Arrays.asList(new Vector(0, 0)),
+        IntGeomUtil.simplify(Arrays.asList(new Vector(0, 0), new Vector(10, 0), new Vector(0, 0))));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.util;
+
+import jetbrains.jetpad.geometry.Vector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntervalTreeTest {
+  @Test
+  public void empty() {
+    IntervalTree<String> tree = new IntervalTree<>(new ArrayList<Vector>(), new ArrayList<String>());
+    List<String> result = new ArrayList<>();
+    tree.stab(0, result);
+    assertTrue(result.isEmpty());
+  }
+
+  @Test
+  public void endsExcluded() {
+    IntervalTree<String> tree = new IntervalTree<>(
+        Arrays.asList(new Vector(0, 10), new Vector(10, 20), new Vector(5, 5)), Arrays.asList("a", "b", "c"));
+
+    assertEquals(Collections.<String>emptyList(), stab(tree, 0));
+    assertEquals(Arrays.asList("a"), stab(tree, 5));
+    assertEquals(Collections.<String>emptyList(), stab(tree, 10));
+    assertEquals(Arrays.asList("b"), stab(tree, 11));
+    assertEquals(Collections.<String>emptyList(), stab(tree, 20));
+  }
+
+  @Test
+  public void randomIntervals() {
+    Random random = new Random(17);
+    List<Vector> intervals = new ArrayList<>();
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      int start = random.nextInt(1000);
+      intervals.add(new Vector(start, start + random.nextInt(100)));
+      values.add(i);
+    }
+    IntervalTree<Integer> tree = new IntervalTree<>(intervals, values);
+
+    for (int point = -10; point < 1110; point++) {
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < intervals.size(); i++) {
+        if (intervals.get(i).x < point && point < intervals.get(i).y) {
+          expected.add(i);
+        }
+      }
+      List<Integer> actual = stab(tree, point);
+      Collections.sort(actual);
+      assertEquals(expected, actual);
+    }
+  }
+
+  private <ValueT> List<ValueT> stab(IntervalTree<ValueT> tree, int point) {
+    List<ValueT> result = new ArrayList<>();
+    tree.stab(point, result);
+    return result;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.algorithm.util;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Segment;
+import jetbrains.jetpad.geometry.Vector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SegmentIndexTest {
+  @Test
+  public void crossingBounds() {
+    SegmentIndex<String> index = new SegmentIndex<>();
+    index.add("through", Arrays.asList(new Segment(new Vector(-100, 50), new Vector(200, 50))));
+    index.add("inside", Arrays.asList(new Segment(new Vector(10, 10), new Vector(10, 90))));
+    index.add("outside", Arrays.asList(new Segment(new Vector(150, 0), new Vector(150, 100))));
+    index.add("oblique", Arrays.asList(new Segment(new Vector(-50, -50), new Vector(50, 50))));
+
+    assertEquals(new HashSet<>(Arrays.asList("through", "oblique")), findCrossing(index, new Rectangle(0, 0, 100, 100)));
+  }
+
+  @Test
+  public void removeAndRetain() {
+    SegmentIndex<String> index = new SegmentIndex<>();
+    index.add("a", Arrays.asList(new Segment(new Vector(-100, 50), new Vector(200, 50))));
+    index.add("b", Arrays.asList(new Segment(new Vector(50, -100), new Vector(50, 200))));
+    index.add("c", Arrays.asList(new Segment(new Vector(-100, 60), new Vector(200, 60))));
+    index.remove("a");
+    index.retain(Arrays.asList("a", "c"));
+
+    assertFalse(index.contains("b"));
+    assertEquals(new HashSet<>(Arrays.asList("c")), findCrossing(index, new Rectangle(0, 0, 100, 100)));
+  }
+
+  @Test
+  public void randomRoutes() {
+    Random random = new Random(7);
+    SegmentIndex<Integer> index = new SegmentIndex<>();
+    List<List<Segment>> routes = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      List<Vector> points = new ArrayList<>();
+      Vector cur = new Vector(random.nextInt(1000), random.nextInt(1000));
+      points.add(cur);
+      for (int j = 0; j < 4; j++) {
+        int d = random.nextInt(200) - 100;
+        cur = cur.add(j % 2 == 0 ? new Vector(d, 0) : new Vector(0, d));
+        points.add(cur);
+      }
+      routes.add(IntGeomUtil.getSegments(points));
+      index.add(i, routes.get(i));
+    }
+
+    for (int i = 0; i < 50; i++) {
+      Rectangle rect = new Rectangle(random.nextInt(1000), random.nextInt(1000), random.nextInt(150), random.nextInt(150));
+      Set<Integer> expected = new HashSet<>();
+      for (int j = 0; j < routes.size(); j++) {
+        for (Segment s : routes.get(j)) {
+          for (Segment bound : rect.getBoundSegments()) {
+            if (IntGeomUtil.intersects(s, bound)) {
+              expected.add(j);
+            }
+          }
+        }
+      }
+      assertEquals(expected, findCrossing(index, rect));
+    }
+  }
+
+  private <ValueT> Set<ValueT> findCrossing(SegmentIndex<ValueT> index, Rectangle rect) {
+    Set<ValueT> result = new HashSet<>();
+    index.findCrossing(rect, result);
+    return result;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.view;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.view.block.BlockView;
+import jetbrains.jetpad.projectional.view.RectView;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.values.Color;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiagramViewLevelOfDetailTest {
+  private ViewContainer myContainer = new ViewContainer();
+  private DiagramView myDiagram = new DiagramView();
+  private BlockView myBlock = new BlockView();
+  private RectView myContent = new RectView();
+
+  @Before
+  public void init() {
+    myContent.dimension().set(new Vector(100, 60));
+    myBlock.contentView.children().add(myContent);
+    myDiagram.itemsView.children().add(myBlock);
+    myContainer.contentRoot().children().add(myDiagram);
+  }
+
+  @Test
+  public void newBlockDetailedAtScaleOne() {
+    myContainer.root().validate();
+
+    assertFalse(myBlock.collapsed().get());
+    assertEquals(new Vector(140, 100), myBlock.rect.dimension().get());
+  }
+
+  @Test
+  public void newBlockLaidOutBeforeCollapse() {
+    myDiagram.scale().set(0.1);
+    myContainer.root().validate();
+
+    assertTrue(myBlock.collapsed().get());
+    assertFalse(myContent.visible().get());
+    assertEquals(new Vector(140, 100), myBlock.rect.dimension().get());
+  }
+
+  @Test
+  public void collapsedBlockExpands() {
+    myDiagram.scale().set(0.1);
+    myContainer.root().validate();
+
+    myDiagram.scale().set(1.0);
+    myContainer.root().validate();
+
+    assertFalse(myBlock.collapsed().get());
+    assertTrue(myContent.visible().get());
+    assertEquals(new Vector(140, 100), myBlock.rect.dimension().get());
+  }
+
+  @Test
+  public void viewsHiddenBeforeCollapseStayHidden() {
+    RectView shown = new RectView();
+    RectView hidden = new RectView();
+    hidden.visible().set(false);
+    myBlock.inputs.children().add(shown);
+    myBlock.inputs.children().add(hidden);
+
+    myDiagram.scale().set(0.1);
+    myContainer.root().validate();
+    assertFalse(shown.visible().get());
+
+    myDiagram.scale().set(1.0);
+    myContainer.root().validate();
+
+    assertTrue(shown.visible().get());
+    assertFalse(hidden.visible().get());
+  }
+
+  @Test
+  public void backgroundSetWhileCollapsedKept() {
+    myDiagram.scale().set(0.1);
+    myContainer.root().validate();
+
+    myBlock.rect.background().set(Color.RED);
+    myDiagram.scale().set(1.0);
+    myContainer.root().validate();
+
+    assertEquals(Color.RED, myBlock.rect.background().get());
+  }
+
+  @Test
+  public void fillRemovedOnExpand() {
+    myDiagram.scale().set(0.1);
+    myContainer.root().validate();
+
+    myDiagram.scale().set(1.0);
+    myContainer.root().validate();
+
+    assertNull(myBlock.rect.background().get());
+  }
+
+  @Test
+  public void thresholdChangeAppliedToAttachedDiagram() {
+    myContainer.root().validate();
+
+    myDiagram.getLevelOfDetail().setMinBlockSize(1000);
+    myContainer.root().validate();
+
+    assertTrue(myBlock.collapsed().get());
+  }
+
+  @Test
+  public void thresholdChangeOfReplacedLevelOfDetailIgnored() {
+    LevelOfDetail old = myDiagram.getLevelOfDetail();
+    myDiagram.setLevelOfDetail(new LevelOfDetail());
+    myContainer.root().validate();
+
+    old.setMinBlockSize(1000);
+    myContainer.root().validate();
+
+    assertFalse(myBlock.collapsed().get());
+  }
+}
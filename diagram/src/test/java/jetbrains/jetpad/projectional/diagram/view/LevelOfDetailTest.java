@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.view;
+
+import jetbrains.jetpad.geometry.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LevelOfDetailTest {
+  private LevelOfDetail myLevelOfDetail = new LevelOfDetail();
+
+  @Test
+  public void detailedAtScaleOne() {
+    assertTrue(myLevelOfDetail.isDetailed(new Vector(20, 20), 1));
+    assertTrue(myLevelOfDetail.isDecorationVisible(7, 1));
+  }
+
+  @Test
+  public void blockCollapsedBySmallerSide() {
+    assertTrue(myLevelOfDetail.isDetailed(new Vector(200, 80), 0.2));
+    assertFalse(myLevelOfDetail.isDetailed(new Vector(200, 75), 0.2));
+  }
+
+  @Test
+  public void decorationCulled() {
+    myLevelOfDetail.setMinDecorationSize(4);
+    assertTrue(myLevelOfDetail.isDecorationVisible(8, 0.5));
+    assertFalse(myLevelOfDetail.isDecorationVisible(7, 0.5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeThreshold() {
+    myLevelOfDetail.setMinBlockSize(-1);
+  }
+}
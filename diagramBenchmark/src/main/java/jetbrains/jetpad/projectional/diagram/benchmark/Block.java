@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.view.RectView;
+import jetbrains.jetpad.projectional.view.View;
+
+class Block extends View {
+  private static final Vector PORT_DIMENSION = new Vector(4, 4);
+
+  private final RectView myBody = new RectView();
+  private final RectView[] myInputs;
+  private final RectView[] myOutputs;
+
+  Block(Vector origin, Vector dimension, int inputs, int outputs) {
+    myInputs = createPorts(inputs);
+    myOutputs = createPorts(outputs);
+    children().add(myBody);
+    for (RectView r : myInputs) {
+      children().add(r);
+    }
+    for (RectView r : myOutputs) {
+      children().add(r);
+    }
+    myBody.moveTo(origin);
+    myBody.dimension().set(dimension);
+    validate();
+  }
+
+  View input(int index) {
+    return myInputs[index];
+  }
+
+  View output(int index) {
+    return myOutputs[index];
+  }
+
+  int inputCount() {
+    return myInputs.length;
+  }
+
+  int outputCount() {
+    return myOutputs.length;
+  }
+
+  @Override
+  protected void doValidate(ValidationContext ctx) {
+    Vector origin = myBody.bounds().get().origin;
+    Vector dim = myBody.dimension().get();
+    for (int i = 0; i < myInputs.length; i++) {
+      int x = dim.x * (i + 1) / (myInputs.length + 1);
+      myInputs[i].moveTo(origin.add(new Vector(x, 0)).sub(PORT_DIMENSION));
+    }
+    for (int i = 0; i < myOutputs.length; i++) {
+      int x = dim.x * (i + 1) / (myOutputs.length + 1);
+      myOutputs[i].moveTo(origin.add(new Vector(x, dim.y)));
+    }
+
+    super.doValidate(ctx);
+  }
+
+  private static RectView[] createPorts(int count) {
+    RectView[] result = new RectView[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = new RectView();
+      result[i].dimension().set(PORT_DIMENSION);
+    }
+    return result;
+  }
+}
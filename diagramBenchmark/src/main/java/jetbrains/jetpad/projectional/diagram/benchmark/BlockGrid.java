@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Square blocks, each placed at a random position within its cell of a square grid covering the canvas.
+ */
+class BlockGrid {
+  static List<Rectangle> generate(int canvasSize, int count, Random random) {
+    int gridSize = (int) Math.ceil(Math.sqrt(count));
+    int cell = canvasSize / gridSize;
+    int blockSize = Math.max(2, cell / 2);
+    int jitter = Math.max(1, cell - blockSize);
+    List<Rectangle> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int x = (i % gridSize) * cell + random.nextInt(jitter);
+      int y = (i / gridSize) * cell + random.nextInt(jitter);
+      result.add(new Rectangle(x, y, blockSize, blockSize));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.view.DiagramView;
+import jetbrains.jetpad.projectional.diagram.view.PolyLineConnection;
+import jetbrains.jetpad.projectional.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Kinds of generated diagrams. The size is the number of blocks; the same size and seed always produce the same diagram.
+ */
+public enum DiagramShape {
+  /**
+   * Square grid where each block is connected to its left, upper and upper left neighbours.
+   */
+  GRID {
+    @Override
+    void generate(DiagramView view, int size, Random random) {
+      int side = side(size);
+      Block[] blocks = new Block[size];
+      for (int i = 0; i < size; i++) {
+        int row = i / side;
+        int column = i % side;
+        blocks[i] = addBlock(view, new Vector(column * 100, row * 100), new Vector(30, 30), 3, 3);
+        if (column > 0) {
+          connect(view, blocks[i - 1].output(2), blocks[i].input(2));
+        }
+        if (row > 0) {
+          connect(view, blocks[i - side].output(0), blocks[i].input(0));
+        }
+        if (row > 0 && column > 0) {
+          connect(view, blocks[i - side - 1].output(1), blocks[i].input(1));
+        }
+      }
+    }
+  },
+
+  /**
+   * Blocks of random sizes scattered over a grid of cells, with one and a half connections per block between random blocks.
+   */
+  RANDOM {
+    @Override
+    void generate(DiagramView view, int size, Random random) {
+      int side = side(size);
+      Block[] blocks = new Block[size];
+      for (int i = 0; i < size; i++) {
+        Vector dim = new Vector(30 + random.nextInt(40), 30 + random.nextInt(40));
+        Vector jitter = new Vector(random.nextInt(130 - dim.x), random.nextInt(130 - dim.y));
+        Vector cell = new Vector(i % side * 150, i / side * 150);
+        blocks[i] = addBlock(view, cell.add(jitter), dim, 2, 2);
+      }
+      if (size < 2) return;
+      for (int i = 0; i < size * 3 / 2; i++) {
+        Block from = blocks[random.nextInt(size)];
+        Block to = blocks[random.nextInt(size)];
+        if (from == to) continue;
+        connect(view, from.output(random.nextInt(from.outputCount())), to.input(random.nextInt(to.inputCount())));
+      }
+    }
+  },
+
+  /**
+   * Layers of blocks with two inputs and one output each, the inputs are fed by the previous layers,
+   * so that outputs have several connections like in data flow diagrams.
+   */
+  DATAFLOW {
+    @Override
+    void generate(DiagramView view, int size, Random random) {
+      int width = side(size);
+      List<Block> previous = new ArrayList<>();
+      List<Block> current = new ArrayList<>();
+      List<Block> beforePrevious = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        int layer = i / width;
+        Block block = addBlock(view, new Vector(i % width * 110, layer * 120), new Vector(60, 30), 2, 1);
+        if (layer > 0) {
+          for (int j = 0; j < block.inputCount(); j++) {
+            List<Block> sources = layer > 1 && random.nextInt(5) == 0 ? beforePrevious : previous;
+            connect(view, sources.get(random.nextInt(sources.size())).output(0), block.input(j));
+          }
+        }
+        current.add(block);
+        if (current.size() == width) {
+          beforePrevious = previous;
+          previous = current;
+          current = new ArrayList<>();
+        }
+      }
+    }
+  };
+
+  abstract void generate(DiagramView view, int size, Random random);
+
+  private static int side(int size) {
+    return Math.max(1, (int) Math.ceil(Math.sqrt(size)));
+  }
+
+  private static Block addBlock(DiagramView view, Vector origin, Vector dimension, int inputs, int outputs) {
+    Block block = new Block(origin, dimension, inputs, outputs);
+    view.itemsView.children().add(block);
+    return block;
+  }
+
+  private static void connect(DiagramView view, View from, View to) {
+    PolyLineConnection connection = new PolyLineConnection();
+    connection.fromView().set(from);
+    connection.toView().set(to);
+    view.connections.add(connection);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.layered.LayeredLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lays out random sparse graphs, with 1.5 edges per node and a few back edges, with {@link LayeredLayout}.
+ * {@link #layout} lays out the whole graph, {@link #incrementalLayout} lays it out again with all but one percent
+ * of the nodes pinned. The number of edge crossings of the full layout is printed at the end of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LayeredLayoutBenchmark {
+  private static final double EDGES_PER_NODE = 1.5;
+
+  @Param({"100", "1000", "5000", "20000"})
+  public int nodes;
+
+  private int[] myWidths;
+  private int[] myHeights;
+  private int[] mySources;
+  private int[] myTargets;
+  private Vector[] myPinned;
+  private long myCrossings;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(nodes);
+    myWidths = new int[nodes];
+    myHeights = new int[nodes];
+    for (int i = 0; i < nodes; i++) {
+      myWidths[i] = 40 + random.nextInt(80);
+      myHeights[i] = 20 + random.nextInt(60);
+    }
+    int edges = (int) (nodes * EDGES_PER_NODE);
+    mySources = new int[edges];
+    myTargets = new int[edges];
+    for (int e = 0; e < edges; e++) {
+      int from = random.nextInt(nodes);
+      int span = 1 + random.nextInt(Math.min(nodes - 1, 20));
+      mySources[e] = from;
+      myTargets[e] = random.nextInt(20) == 0 ? Math.max(0, from - span) : Math.min(nodes - 1, from + span);
+    }
+
+    LayeredLayout layout = new LayeredLayout();
+    Vector[] result = layout.layout(myWidths, myHeights, mySources, myTargets);
+    myCrossings = layout.getCrossings();
+    myPinned = new Vector[nodes];
+    for (int i = 0; i < nodes; i++) {
+      if (random.nextInt(100) != 0) {
+        myPinned[i] = result[i];
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void printCrossings() {
+    System.out.println("nodes = " + nodes + ", edges = " + mySources.length + ", crossings = " + myCrossings);
+  }
+
+  @Benchmark
+  public Vector[] layout() {
+    return new LayeredLayout().layout(myWidths, myHeights, mySources, myTargets);
+  }
+
+  @Benchmark
+  public Vector[] incrementalLayout() {
+    return new LayeredLayout().layout(myWidths, myHeights, mySources, myTargets, myPinned);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.geom.AvoidObstacles;
+import jetbrains.jetpad.projectional.diagram.algorithm.geom.OverlapResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drags a block across a diagram of 5041 blocks and compares {@link OverlapResolver} with checking every block
+ * against all the blocks closer to the dragged one, as ConnectionRoutingView used to do.
+ *
+ * {@link #drag} measures {@link #FRAMES} frames of dragging, each moving the block and resolving the overlaps
+ * it caused, and returns the number of moved blocks. {@link #resolveAll} measures one frame of the old approach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class OverlapResolverBenchmark {
+  private static final int MIN_DIST = 30;
+  private static final int GRID_SIZE = 71;
+  private static final int FRAMES = 200;
+
+  private List<Rectangle> myBounds;
+  private List<Integer> myNodes;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(11);
+    myBounds = new ArrayList<>();
+    myNodes = new ArrayList<>();
+    for (int i = 0; i < GRID_SIZE * GRID_SIZE; i++) {
+      myBounds.add(new Rectangle((i % GRID_SIZE) * 150 + random.nextInt(30), (i / GRID_SIZE) * 150 + random.nextInt(30),
+          40 + random.nextInt(40), 40 + random.nextInt(40)));
+      myNodes.add(i);
+    }
+  }
+
+  @Benchmark
+  public int drag() {
+    List<Rectangle> bounds = new ArrayList<>(myBounds);
+    OverlapResolver<Integer> resolver = new OverlapResolver<>(MIN_DIST);
+    int moved = bounds.size() / 2;
+    int moves = 0;
+    for (int frame = 0; frame < FRAMES; frame++) {
+      Rectangle rect = bounds.get(moved);
+      bounds.set(moved, new Rectangle(rect.origin.add(new Vector(15, 5)), rect.dimension));
+      for (Map.Entry<Integer, Vector> e : resolver.resolve(moved, myNodes, bounds).entrySet()) {
+        bounds.set(e.getKey(), new Rectangle(e.getValue(), bounds.get(e.getKey()).dimension));
+        moves++;
+      }
+    }
+    return moves;
+  }
+
+  @Benchmark
+  public List<Rectangle> resolveAll() {
+    final List<Rectangle> bounds = new ArrayList<>(myBounds);
+    int moved = bounds.size() / 2;
+    List<Rectangle> obstacles = new ArrayList<>();
+    obstacles.add(grow(bounds.get(moved)));
+    List<Integer> byDist = new ArrayList<>();
+    for (int i = 0; i < bounds.size(); i++) {
+      if (i != moved) {
+        byDist.add(i);
+      }
+    }
+    final Rectangle movedRect = bounds.get(moved);
+    Collections.sort(byDist, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return Double.compare(dist(bounds.get(i1), movedRect), dist(bounds.get(i2), movedRect));
+      }
+    });
+    for (int i : byDist) {
+      Rectangle rect = new AvoidObstacles().findNewPosition(bounds.get(i), obstacles);
+      bounds.set(i, rect);
+      obstacles.add(grow(rect));
+    }
+    return bounds;
+  }
+
+  private static double dist(Rectangle r1, Rectangle r2) {
+    double dx = r1.origin.x + r1.dimension.x / 2 - r2.origin.x - r2.dimension.x / 2;
+    double dy = r1.origin.y + r1.dimension.y / 2 - r2.origin.y - r2.dimension.y / 2;
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  private static Rectangle grow(Rectangle rect) {
+    return new Rectangle(rect.origin.sub(new Vector(MIN_DIST, MIN_DIST)),
+        rect.dimension.add(new Vector(2 * MIN_DIST + 1, 2 * MIN_DIST + 1)));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.algorithm.orthogonal.OrthogonalRouteWithObstacles;
+import jetbrains.jetpad.projectional.diagram.algorithm.orthogonal.RoutingMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds {@link #ROUTES} routes between random blocks of a {@link BlockGrid} with {@link OrthogonalRouteWithObstacles}
+ * for growing canvas sizes, which used to be limited by a fixed bound. At the end of each trial the number of failed
+ * routes and the average number of routing graph nodes per route are printed from {@link RoutingMetrics}.
+ *
+ * Block counts stop at 256, like in {@link RoutingBenchmark}: the routing graph is built from the lines of all
+ * the obstacles, so a route between distant blocks of 1024 blocks visits over 10^5 graph nodes and takes about
+ * half a second, and with 10^4 blocks routing runs out of the default heap. Building the router for up to 10^4 blocks
+ * is measured by {@link RouterConstructionBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RouterScalabilityBenchmark {
+  private static final int ROUTES = 20;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int canvasSize;
+
+  @Param({"16", "64", "256"})
+  public int blocks;
+
+  private OrthogonalRouteWithObstacles myRouter;
+  private Vector[] myStarts = new Vector[ROUTES];
+  private Vector[] myEnds = new Vector[ROUTES];
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(canvasSize + blocks);
+    List<Rectangle> obstacles = BlockGrid.generate(canvasSize, blocks, random);
+    myRouter = new OrthogonalRouteWithObstacles(obstacles);
+
+    for (int i = 0; i < ROUTES; i++) {
+      Rectangle from = obstacles.get(random.nextInt(obstacles.size()));
+      Rectangle to = obstacles.get(random.nextInt(obstacles.size()));
+      myStarts[i] = new Vector(from.origin.x + from.dimension.x, from.origin.y + from.dimension.y / 2);
+      myEnds[i] = new Vector(to.origin.x, to.origin.y + to.dimension.y / 2);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void printMetrics() {
+    RoutingMetrics metrics = myRouter.getMetrics();
+    System.out.println("routes = " + metrics.getRoutes() + ", failed = " + metrics.getFailedRoutes()
+        + ", graph nodes/route = " + metrics.getGraphNodes() / Math.max(1, metrics.getRoutes()));
+  }
+
+  @Benchmark
+  public void findRoutes(Blackhole blackhole) {
+    for (int i = 0; i < ROUTES; i++) {
+      blackhole.consume(myRouter.findRoute(myStarts[i], myEnds[i]));
+    }
+  }
+}
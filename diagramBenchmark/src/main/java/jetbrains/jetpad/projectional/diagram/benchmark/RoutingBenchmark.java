@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.projectional.diagram.layout.OrthogonalRouter;
+import jetbrains.jetpad.projectional.diagram.view.Connection;
+import jetbrains.jetpad.projectional.diagram.view.DiagramView;
+import jetbrains.jetpad.projectional.view.View;
+import jetbrains.jetpad.projectional.view.ViewContainer;
+import jetbrains.jetpad.projectional.view.spi.NullViewContainerPeer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes generated diagrams with {@link OrthogonalRouter}. The diagram is attached to a {@link ViewContainer}
+ * with {@link NullViewContainerPeer}, so nothing depends on a display or on font metrics.
+ *
+ * {@link #fullReroute} invalidates and routes all the connections, {@link #incrementalReroute} moves one block
+ * in the middle of the diagram back and forth, so only the connections damaged by the move are routed again.
+ * Diagrams have up to 256 blocks, because a full reroute of larger diagrams takes minutes per invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RoutingBenchmark {
+  private static final Vector SHIFT = new Vector(45, 45);
+
+  @Param({"GRID", "RANDOM", "DATAFLOW"})
+  public DiagramShape shape;
+
+  @Param({"16", "64", "256"})
+  public int size;
+
+  private DiagramView myView;
+  private OrthogonalRouter myRouter;
+  private View myMoved;
+  private Vector myOrigin;
+  private boolean myShifted;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    ViewContainer container = new ViewContainer();
+    container.setPeer(new NullViewContainerPeer());
+    myView = new DiagramView();
+    container.root().children().add(myView);
+    shape.generate(myView, size, new Random(size));
+
+    myRouter = new OrthogonalRouter();
+    myRouter.findRoutes(myView);
+
+    myMoved = myView.itemsView.children().get(size / 2);
+    myOrigin = myMoved.bounds().get().origin;
+    myShifted = false;
+  }
+
+  @Benchmark
+  public DiagramView fullReroute() {
+    for (Connection c : myView.connections) {
+      c.view().invalidate();
+    }
+    myRouter.findRoutes(myView);
+    return myView;
+  }
+
+  @Benchmark
+  public DiagramView incrementalReroute() {
+    myShifted = !myShifted;
+    myMoved.moveTo(myShifted ? myOrigin.add(SHIFT) : myOrigin);
+    myMoved.invalidate();
+    myRouter.findRoutes(myView);
+    return myView;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.diagram.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link RoutingBenchmark}, {@link RouterScalabilityBenchmark} and {@link RouterConstructionBenchmark} with the allocation
+ * profiler and writes the results in JMH JSON format, to {@code target/routing-benchmark.json} or to the file given as the first argument, e.g.
+ * {@code java -jar target/benchmarks.jar target/routing-$(git rev-parse --short HEAD).json}.
+ * Results of different commits can be compared with any tool reading JMH JSON results.
+ *
+ * {@link OverlapResolverBenchmark}, {@link LayeredLayoutBenchmark} and other JMH options are run with {@code java -cp target/benchmarks.jar org.openjdk.jmh.Main}.
+ */
+public class RoutingBenchmarkRunner {
+  private static final String DEFAULT_RESULT = "target/routing-benchmark.json";
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(RoutingBenchmark.class.getName())
+        .include(RouterScalabilityBenchmark.class.getName())
+        .include(RouterConstructionBenchmark.class.getName())
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(args.length > 0 ? args[0] : DEFAULT_RESULT)
+        .build();
+    new Runner(options).run();
+  }
+}
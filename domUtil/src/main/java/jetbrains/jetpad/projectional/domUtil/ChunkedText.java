@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.domUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text split into chunks of bounded length. When the text is changed, the edited span is found by comparing the old
+ * and the new text, and only the chunks which intersect it are replaced. The listener is notified about the replaced
+ * range of chunks, so that renderers and measurement caches can update only the edited part of a long text.
+ */
+public class ChunkedText {
+  public static final int DEFAULT_CHUNK_SIZE = 128;
+
+  private final int myChunkSize;
+  private final Listener myListener;
+  private final List<String> myChunks = new ArrayList<>();
+  private String myText = "";
+
+  public ChunkedText(Listener listener) {
+    this(DEFAULT_CHUNK_SIZE, listener);
+  }
+
+  public ChunkedText(int chunkSize, Listener listener) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize = " + chunkSize);
+    }
+    myChunkSize = chunkSize;
+    myListener = listener;
+  }
+
+  public String getText() {
+    return myText;
+  }
+
+  public int length() {
+    return myText.length();
+  }
+
+  public int getChunkCount() {
+    return myChunks.size();
+  }
+
+  public String getChunk(int index) {
+    return myChunks.get(index);
+  }
+
+  public void setText(String text) {
+    if (text == null) {
+      text = "";
+    }
+    if (text.equals(myText)) return;
+
+    String oldText = myText;
+    int max = Math.min(oldText.length(), text.length());
+    int prefix = 0;
+    while (prefix < max && oldText.charAt(prefix) == text.charAt(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < max - prefix && oldText.charAt(oldText.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+      suffix++;
+    }
+
+    myText = text;
+    replace(prefix, oldText.length() - suffix, text.substring(prefix, text.length() - suffix));
+  }
+
+  private void replace(int from, int to, String inserted) {
+    int first = 0;
+    int firstStart = 0;
+    while (first < myChunks.size() - 1 && firstStart + myChunks.get(first).length() <= from) {
+      firstStart += myChunks.get(first).length();
+      first++;
+    }
+
+    StringBuilder affected = new StringBuilder();
+    int last = first - 1;
+    int lastEnd = firstStart;
+    while (last + 1 < myChunks.size() && (last < first || lastEnd < to)) {
+      last++;
+      affected.append(myChunks.get(last));
+      lastEnd += myChunks.get(last).length();
+    }
+
+    String text = affected.substring(0, from - firstStart) + inserted + affected.substring(to - firstStart);
+    if (text.length() < myChunkSize / 2 && last + 1 < myChunks.size()) {
+      last++;
+      text += myChunks.get(last);
+    }
+
+    int removed = last - first + 1;
+    for (int i = 0; i < removed; i++) {
+      myChunks.remove(first);
+    }
+    List<String> added = split(text);
+    myChunks.addAll(first, added);
+
+    if (myListener != null) {
+      myListener.onChunksReplaced(first, removed, added.size());
+    }
+  }
+
+  private List<String> split(String text) {
+    List<String> result = new ArrayList<>();
+    if (text.isEmpty()) {
+      return result;
+    }
+    int count = (text.length() + myChunkSize - 1) / myChunkSize;
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int end = (int) ((long) text.length() * (i + 1) / count);
+      result.add(text.substring(start, end));
+      start = end;
+    }
+    return result;
+  }
+
+  public interface Listener {
+    void onChunksReplaced(int index, int removedCount, int addedCount);
+  }
+}
@@ -16,7 +16,9 @@
 package jetbrains.jetpad.projectional.domUtil;
 
 import com.google.common.base.Objects;
+import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.user.client.DOM;
 import jetbrains.jetpad.values.Color;
@@ -39,6 +41,21 @@ public class DomTextEditor {
   private TextMetrics myFontMetrics = ourDefaultFontMetrics;
 
   private Element myTextContainer;
+  private boolean myEmptyTextShown;
+  // the text container has a text node per chunk, so that an edit replaces only the nodes of the edited chunks
+  private final ChunkedText myChunks = new ChunkedText(new ChunkedText.Listener() {
+    @Override
+    public void onChunksReplaced(int index, int removedCount, int addedCount) {
+      for (int i = 0; i < removedCount; i++) {
+        myTextContainer.removeChild(myTextContainer.getChild(index));
+      }
+      Node before = index < myTextContainer.getChildCount() ? myTextContainer.getChild(index) : null;
+      for (int i = 0; i < addedCount; i++) {
+        Node chunkNode = Document.get().createTextNode(TextMetricsCalculator.normalize(myChunks.getChunk(index + i)));
+        myTextContainer.insertBefore(chunkNode, before);
+      }
+    }
+  });
   private Element myCaretDiv;
   private Element mySelectionDiv;
   private Element myRoot;
@@ -249,13 +266,21 @@ public class DomTextEditor {
 
   private void updateText() {
     if (myText == null || myText.isEmpty()) {
-      myTextContainer.setInnerText(" ");
+      myChunks.setText("");
+      if (!myEmptyTextShown) {
+        myTextContainer.setInnerText(" ");
+        myEmptyTextShown = true;
+      }
       myTextContainer.getStyle().setWidth(1, Style.Unit.PX);
       myRoot.getStyle().setHeight(getLineHeight(), Style.Unit.PX);
     } else {
       myRoot.getStyle().clearHeight();
       myTextContainer.getStyle().clearWidth();
-      myTextContainer.setInnerText(TextMetricsCalculator.normalize(myText));
+      if (myEmptyTextShown) {
+        myTextContainer.setInnerText("");
+        myEmptyTextShown = false;
+      }
+      myChunks.setText(myText);
     }
   }
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.domUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChunkedTextTest {
+  private final List<String> myEvents = new ArrayList<>();
+  private ChunkedText myText;
+
+  @Before
+  public void init() {
+    myText = new ChunkedText(4, new ChunkedText.Listener() {
+      @Override
+      public void onChunksReplaced(int index, int removedCount, int addedCount) {
+        myEvents.add(index + ":" + removedCount + ":" + addedCount);
+      }
+    });
+  }
+
+  @Test
+  public void initialText() {
+    myText.setText("abcdefghij");
+
+    assertEquals("abcdefghij", myText.getText());
+    assertEquals(10, myText.length());
+    assertChunksMatchText();
+    assertEquals(1, myEvents.size());
+  }
+
+  @Test
+  public void sameTextNoEvents() {
+    myText.setText("abcdefghij");
+    myEvents.clear();
+
+    myText.setText("abcdefghij");
+
+    assertEquals(0, myEvents.size());
+  }
+
+  @Test
+  public void typingAtEndReplacesLastChunksOnly() {
+    myText.setText("abcdefghijklmnop");
+    myEvents.clear();
+
+    myText.setText("abcdefghijklmnopq");
+
+    assertEquals("abcdefghijklmnopq", myText.getText());
+    assertChunksMatchText();
+    assertEquals(1, myEvents.size());
+    assertEquals(3, Integer.parseInt(myEvents.get(0).split(":")[0]));
+  }
+
+  @Test
+  public void deleteInTheMiddle() {
+    myText.setText("abcdefghijklmnop");
+    myEvents.clear();
+
+    myText.setText("abcdefgijklmnop");
+
+    assertEquals("abcdefgijklmnop", myText.getText());
+    assertChunksMatchText();
+    assertEquals(1, myEvents.size());
+    assertEquals(1, Integer.parseInt(myEvents.get(0).split(":")[0]));
+  }
+
+  @Test
+  public void clear() {
+    myText.setText("abcdefghij");
+
+    myText.setText("");
+
+    assertEquals("", myText.getText());
+    assertEquals(0, myText.getChunkCount());
+  }
+
+  private void assertChunksMatchText() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < myText.getChunkCount(); i++) {
+      String chunk = myText.getChunk(i);
+      assertEquals(true, chunk.length() > 0 && chunk.length() <= 4);
+      text.append(chunk);
+    }
+    assertEquals(myText.getText(), text.toString());
+  }
+}
@@ -78,6 +78,7 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
   private TextCell myPlaceholder;
   private MapperFactory<Object, ? extends Cell> myMapperFactory;
   private SelectionSupport<Cell> mySelectionSupport;
+  private TokenSnapshots myTokenSnapshots = new TokenSnapshots();
 
   private String myPlaceHolderText = "empty";
   private boolean myHideTokensInMenu = false;
@@ -109,6 +110,17 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
         mySelectionSupport.clearSelection();
       }
     });
+    myTokenListEditor.tokens.addListener(new CollectionAdapter<Token>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<? extends Token> event) {
+        myTokenSnapshots.onAdded(event.getIndex(), myTokenListEditor.tokens.size());
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends Token> event) {
+        myTokenSnapshots.onRemoved(event.getIndex(), myTokenListEditor.tokens.size());
+      }
+    });
 
     mySelectionSupport = new SelectionSupport<Cell>(myTargetList, myTarget, myTargetList) {
       @Override
@@ -341,17 +353,23 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
         if (valid().get()) {
           return new HybridCellState(null);
         }
-
-        List<Token> result = new ArrayList<>();
-        for (Token t : tokens()) {
-          result.add(t.copy());
-        }
-        return new HybridCellState(result);
+        return new HybridCellState(myTokenSnapshots.save(tokens()));
       }
 
       @Override
       public void restoreState(Cell cell, HybridCellState state) {
-        tokenListEditor().restoreState(state.tokens);
+        if (state.snapshot == null) {
+          tokenListEditor().restoreState(null);
+          return;
+        }
+
+        myTokenSnapshots.reset(state.snapshot);
+        // restored tokens become live, so the saved ones are copied to be restorable again
+        List<Token> tokens = new ArrayList<>();
+        for (Token t : TokenSnapshots.tokens(state.snapshot)) {
+          tokens.add(t.copy());
+        }
+        tokenListEditor().restoreState(tokens);
       }
     };
   }
@@ -750,19 +768,28 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
     myRegistration = null;
   }
 
-  private static class HybridCellState implements CellState {
-    private final List<Token> tokens;
+  /**
+   * States saved one after another refer to the same snapshot when the tokens didn't change, and to different ones
+   * otherwise, so they are compared by the snapshot identity
+   */
+  private static class HybridCellState implements WeightedCellState {
+    private final TokenSnapshots.Snapshot snapshot;
 
-    public HybridCellState(List<Token> tokens) {
-      this.tokens = tokens;
+    public HybridCellState(TokenSnapshots.Snapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public int getWeight() {
+      return snapshot == null ? 1 : snapshot.weight();
     }
 
     @Override
     public CellStateDifference getDifference(CellState state) {
       if (!(state instanceof HybridCellState)) {
-        return tokens == null ? CellStateDifference.NAVIGATION : CellStateDifference.EDIT;
+        return snapshot == null ? CellStateDifference.NAVIGATION : CellStateDifference.EDIT;
       }
-      if (!Objects.equals(tokens, ((HybridCellState) state).tokens)) {
+      if (snapshot != ((HybridCellState) state).snapshot) {
         return CellStateDifference.EDIT;
       }
       return CellStateDifference.EQUAL;
@@ -773,14 +800,13 @@ public class HybridSynchronizer<SourceT> implements Synchronizer {
       if (this == o) return true;
       if (o == null || getClass() != o.getClass()) return false;
 
-      HybridCellState that = (HybridCellState) o;
-
-      return !(tokens != null ? !tokens.equals(that.tokens) : that.tokens != null);
+      return snapshot == ((HybridCellState) o).snapshot;
     }
 
     @Override
     public int hashCode() {
-      return tokens != null ? tokens.hashCode() : 0;
+      return snapshot != null ? snapshot.hashCode() : 0;
     }
   }
+
 }
\ No newline at end of file
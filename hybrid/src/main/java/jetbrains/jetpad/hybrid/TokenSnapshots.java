@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.hybrid;
+
+import jetbrains.jetpad.hybrid.parser.Token;
+import jetbrains.jetpad.hybrid.parser.ValueToken;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves immutable snapshots of a token list. A snapshot keeps only the tokens which differ from the previous snapshot,
+ * i.e. the span between the common prefix and suffix, and refers to the previous snapshot for the rest.
+ * The changed span is tracked with {@link #onAdded(int, int)} and {@link #onRemoved(int, int)}, so saving costs
+ * time proportional to the edited tokens. {@link ValueToken}s can change without list events, so they are compared
+ * with their copies on each save.
+ *
+ * Every {@link #MAX_DEPTH} snapshots, or when the tokens kept since the last full snapshot outnumber the tokens
+ * in the list, a full snapshot is saved instead, which bounds the cost of {@link #tokens(Snapshot)} and lets
+ * older snapshots be collected once nothing refers to them.
+ */
+class TokenSnapshots {
+  private static final int MAX_DEPTH = 32;
+
+  // copies of the tokens of the last snapshot
+  private final List<Token> myTokens = new ArrayList<>();
+  // ascending positions of value tokens in myTokens
+  private final List<Integer> myValuePositions = new ArrayList<>();
+  private Snapshot myLast;
+  // tokens in the list before myChangedFrom and the last myUnchangedSuffix tokens weren't touched since the last save
+  private int myChangedFrom;
+  private int myUnchangedSuffix;
+
+  void onAdded(int index, int size) {
+    myChangedFrom = Math.min(myChangedFrom, index);
+    myUnchangedSuffix = Math.min(myUnchangedSuffix, size - index - 1);
+  }
+
+  void onRemoved(int index, int size) {
+    myChangedFrom = Math.min(myChangedFrom, index);
+    myUnchangedSuffix = Math.min(myUnchangedSuffix, size - index);
+  }
+
+  /**
+   * Returns the last snapshot if the tokens are equal to it
+   */
+  Snapshot save(List<Token> tokens) {
+    int size = tokens.size();
+    int savedSize = myTokens.size();
+    int limit = Math.min(size, savedSize);
+    int prefix = Math.min(myChangedFrom, limit);
+    int suffix = Math.min(myUnchangedSuffix, limit - prefix);
+
+    for (int position : myValuePositions) {
+      if (position < prefix) {
+        if (!tokens.get(position).equals(myTokens.get(position))) {
+          prefix = position;
+        }
+      } else if (position >= savedSize - suffix) {
+        if (!tokens.get(position - savedSize + size).equals(myTokens.get(position))) {
+          suffix = Math.min(suffix, savedSize - 1 - position);
+        }
+      }
+    }
+    suffix = Math.min(suffix, limit - prefix);
+
+    while (prefix < limit - suffix && tokens.get(prefix).equals(myTokens.get(prefix))) {
+      prefix++;
+    }
+    while (suffix < limit - prefix && tokens.get(size - 1 - suffix).equals(myTokens.get(savedSize - 1 - suffix))) {
+      suffix++;
+    }
+
+    myChangedFrom = Integer.MAX_VALUE;
+    myUnchangedSuffix = Integer.MAX_VALUE;
+    if (myLast != null && prefix + suffix == size && size == savedSize) {
+      return myLast;
+    }
+
+    int removed = savedSize - prefix - suffix;
+    List<Token> added = new ArrayList<>(size - prefix - suffix);
+    for (int i = prefix; i < size - suffix; i++) {
+      added.add(tokens.get(i).copy());
+    }
+    replace(prefix, removed, added);
+
+    if (myLast == null || myLast.depth + 1 >= MAX_DEPTH || myLast.keptSinceFull + added.size() > size) {
+      myLast = new Snapshot(null, 0, 0, new ArrayList<>(myTokens));
+    } else {
+      myLast = new Snapshot(myLast, prefix, removed, added);
+    }
+    return myLast;
+  }
+
+  /**
+   * Continues saving from the snapshot, e.g. after it was restored
+   */
+  void reset(Snapshot snapshot) {
+    List<Token> tokens = tokens(snapshot);
+    replace(0, myTokens.size(), tokens);
+    myLast = snapshot;
+    myChangedFrom = 0;
+    myUnchangedSuffix = 0;
+  }
+
+  /**
+   * Tokens of the snapshot. They are shared with the snapshot, so they have to be copied before becoming live.
+   */
+  static List<Token> tokens(Snapshot snapshot) {
+    List<Snapshot> chain = new ArrayList<>(snapshot.depth + 1);
+    for (Snapshot s = snapshot; s != null; s = s.base) {
+      chain.add(s);
+    }
+    List<Token> result = new ArrayList<>(snapshot.size);
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      Snapshot s = chain.get(i);
+      result.subList(s.from, s.from + s.removed).clear();
+      result.addAll(s.from, s.added);
+    }
+    return result;
+  }
+
+  private void replace(int from, int removed, List<Token> added) {
+    myTokens.subList(from, from + removed).clear();
+    myTokens.addAll(from, added);
+
+    int shift = added.size() - removed;
+    List<Integer> positions = new ArrayList<>(myValuePositions.size());
+    for (int position : myValuePositions) {
+      if (position < from) {
+        positions.add(position);
+      }
+    }
+    for (int i = 0; i < added.size(); i++) {
+      if (added.get(i) instanceof ValueToken) {
+        positions.add(from + i);
+      }
+    }
+    for (int position : myValuePositions) {
+      if (position >= from + removed) {
+        positions.add(position + shift);
+      }
+    }
+    myValuePositions.clear();
+    myValuePositions.addAll(positions);
+  }
+
+  static class Snapshot {
+    private final Snapshot base;
+    private final int from;
+    private final int removed;
+    private final List<Token> added;
+    private final int size;
+    private final int depth;
+    private final int keptSinceFull;
+
+    private Snapshot(Snapshot base, int from, int removed, List<Token> added) {
+      this.base = base;
+      this.from = from;
+      this.removed = removed;
+      this.added = added;
+      size = (base == null ? 0 : base.size) - removed + added.size();
+      depth = base == null ? 0 : base.depth + 1;
+      keptSinceFull = base == null ? 0 : base.keptSinceFull + added.size();
+    }
+
+    /**
+     * Number of tokens kept by this snapshot and not by the snapshots it refers to
+     */
+    int weight() {
+      return added.size() + 1;
+    }
+  }
+}
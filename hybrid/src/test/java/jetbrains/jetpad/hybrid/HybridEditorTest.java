@@ -26,6 +26,7 @@ import jetbrains.jetpad.cell.completion.Completion;
 import jetbrains.jetpad.cell.message.MessageController;
 import jetbrains.jetpad.cell.position.Positions;
 import jetbrains.jetpad.cell.util.CellState;
+import jetbrains.jetpad.cell.util.CellStateDifference;
 import jetbrains.jetpad.cell.util.CellStateHandler;
 import jetbrains.jetpad.completion.BaseCompletionParameters;
 import jetbrains.jetpad.completion.CompletionController;
@@ -864,6 +865,33 @@ public class HybridEditorTest extends EditingTestCase {
     assertTokens(Tokens.ID, Tokens.ID, Tokens.ID);
   }
 
+  @Test
+  public void statesWithoutChangesEqual() {
+    CellStateHandler handler = myTargetCell.get(CellStateHandler.PROPERTY);
+    setTokens(Tokens.ID, Tokens.ID);
+
+    CellState state = handler.saveState(myTargetCell);
+
+    assertEquals(CellStateDifference.EQUAL, state.getDifference(handler.saveState(myTargetCell)));
+  }
+
+  @Test
+  public void stateRestoredAfterSeveralEdits() {
+    CellStateHandler handler = myTargetCell.get(CellStateHandler.PROPERTY);
+    setTokens(Tokens.ID, Tokens.ID);
+    handler.saveState(myTargetCell);
+    setTokens(Tokens.ID, Tokens.ID, Tokens.ID);
+    CellState state = handler.saveState(myTargetCell);
+    setTokens(Tokens.ID, Tokens.PLUS, Tokens.ID, Tokens.ID);
+    handler.saveState(myTargetCell);
+    setTokens(Tokens.ID, Tokens.ID, Tokens.ID, Tokens.ID);
+    handler.saveState(myTargetCell);
+
+    handler.restoreState(myTargetCell, state);
+
+    assertTokens(Tokens.ID, Tokens.ID, Tokens.ID);
+  }
+
   @Test
   public void valueTokenStatePersistence() {
     CellStateHandler handler = myTargetCell.get(CellStateHandler.PROPERTY);
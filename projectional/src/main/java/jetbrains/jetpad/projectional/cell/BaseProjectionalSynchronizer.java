@@ -66,6 +66,8 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
   private Function<SourceItemT, SourceItemT> myCloner;
   private Runnable myOnLastItemDeleted;
   private List<Cell> myTargetList;
+  private ListIndex<Cell> myTargetIndex;
+  private ListIndex<SourceItemT> mySourceIndex;
   private List<Registration> myRegistrations;
   private Character mySeparatorChar;
 
@@ -84,10 +86,23 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     myTarget = target;
     myTargetList = targetList;
     myRegistrations = new ArrayList<>(0);
+    SourceList sourceList = new SourceList();
+    myTargetIndex = new ListIndex<>(myTargetList);
+    mySourceIndex = new ListIndex<>(sourceList);
     myTargetCellList = new TargetCellList();
     myRoleSynchronizer = createSubSynchronizer(myMapper, source, myTargetCellList, factory);
 
-    mySelectionSupport = new SelectionSupport<>(new SourceList(), myTarget, myTargetList);
+    mySelectionSupport = new SelectionSupport<SourceItemT>(sourceList, myTarget, myTargetList) {
+      @Override
+      protected int indexOfItem(SourceItemT item) {
+        return BaseProjectionalSynchronizer.this.indexOf(item);
+      }
+
+      @Override
+      protected int indexOfCell(Cell cell) {
+        return myTargetIndex.indexOf(cell);
+      }
+    };
     mySelectedItems = mySelectionSupport.selection();
 
     mySelectedItems.addListener(new CollectionAdapter<SourceItemT>() {
@@ -202,13 +217,8 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     return myRoleSynchronizer.getMappers();
   }
 
-  private int indexOf(SourceItemT item) {
-    List<Mapper<? extends SourceItemT, ? extends Cell>> subMappers = getSubMappers();
-    for (int i = 0; i < subMappers.size(); i++) {
-      Mapper<? extends SourceItemT, ? extends Cell> m = subMappers.get(i);
-      if (m.getSource() == item) return i;
-    }
-    return -1;
+  protected int indexOf(SourceItemT item) {
+    return mySourceIndex.indexOf(item);
   }
 
   private void initChildViews() {
@@ -273,7 +283,7 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     Cell focused = myTarget.getContainer().focusedCell.get();
     if (focused == null) return null;
     if (focused.getParent() == myTarget && !myTargetCellList.myHasPlaceholder) {
-      int index = myTargetList.indexOf(focused);
+      int index = myTargetIndex.indexOf(focused);
       return myRoleSynchronizer.getMappers().get(index).getSource();
     } else {
       return null;
@@ -531,6 +541,12 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
     void initList() {
       myHasPlaceholder = true;
       myTargetList.add(createPlaceholder());
+      invalidateIndices();
+    }
+
+    private void invalidateIndices() {
+      myTargetIndex.invalidate();
+      mySourceIndex.invalidate();
     }
 
     private Cell createPlaceholder() {
@@ -604,20 +620,34 @@ abstract class BaseProjectionalSynchronizer<SourceT, ContextT, SourceItemT> impl
         myHasPlaceholder = false;
       }
       myTargetList.add(index, element);
+      invalidateIndices();
       myRegistrations.add(index, registerChild(getSubMappers().get(index).getSource(), element));
     }
 
     @Override
     public Cell remove(int index) {
       Cell result = myTargetList.remove(index);
+      invalidateIndices();
       myRegistrations.remove(index).remove();
       if (myTargetList.isEmpty()) {
         myTargetList.add(createPlaceholder());
         myHasPlaceholder = true;
+        invalidateIndices();
       }
       return result;
     }
 
+    @Override
+    public int indexOf(Object o) {
+      if (myHasPlaceholder) return -1;
+      return myTargetIndex.indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return indexOf(o) != -1;
+    }
+
     @Override
     public Cell set(int index, Cell element) {
       Cell result = remove(index);
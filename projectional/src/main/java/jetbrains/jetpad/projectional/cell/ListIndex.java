@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.cell;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Identity based positions of items of a list. The index is rebuilt lazily on the first lookup after {@link #invalidate()},
+ * so a sequence of lookups without modifications of the list costs O(1) per lookup. The owner of the list has to call
+ * {@link #invalidate()} on its modifications; changes of the size and stale hits are detected on lookup as well.
+ */
+class ListIndex<ItemT> {
+  private final List<? extends ItemT> myList;
+  private Map<ItemT, Integer> myPositions;
+  private int mySize;
+
+  ListIndex(List<? extends ItemT> list) {
+    myList = list;
+  }
+
+  int indexOf(Object item) {
+    if (myPositions == null || mySize != myList.size()) {
+      rebuild();
+    }
+    Integer index = myPositions.get(item);
+    if (index != null && myList.get(index) != item) {
+      rebuild();
+      index = myPositions.get(item);
+    }
+    return index == null ? -1 : index;
+  }
+
+  void invalidate() {
+    myPositions = null;
+  }
+
+  private void rebuild() {
+    myPositions = new IdentityHashMap<>();
+    mySize = myList.size();
+    for (int i = myList.size() - 1; i >= 0; i--) {
+      myPositions.put(myList.get(i), i);
+    }
+  }
+}
@@ -16,6 +16,8 @@
 package jetbrains.jetpad.projectional.cell;
 
 import jetbrains.jetpad.base.Runnables;
+import jetbrains.jetpad.model.collections.CollectionAdapter;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
 import jetbrains.jetpad.cell.trait.CellTrait;
 import jetbrains.jetpad.cell.util.Cells;
 import jetbrains.jetpad.event.KeyStrokeSpecs;
@@ -29,13 +31,16 @@ import jetbrains.jetpad.cell.event.FocusEvent;
 import jetbrains.jetpad.cell.position.Positions;
 import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SelectionSupport<ItemT> {
   public static final CellTraitPropertySpec<Boolean> LOGICAL_SINGLE_CELL_CONTAINER = new CellTraitPropertySpec<>("logicalSingleCellContainer", false);
   private static final CellTraitPropertySpec<SelectionSupport<?>> SELECTION_SUPPORT = new CellTraitPropertySpec<>("selectionSupport");
 
   private ObservableList<ItemT> mySelectedItems = new ObservableArrayList<>();
+  private Map<ItemT, Integer> mySelectedCounts = new IdentityHashMap<>();
   private Direction myDirection;
   private boolean myChangingSelection;
   private List<ItemT> mySource;
@@ -50,6 +55,26 @@ public class SelectionSupport<ItemT> {
     myTarget = target;
     myTargetList = targetList;
 
+    mySelectedItems.addListener(new CollectionAdapter<ItemT>() {
+      @Override
+      public void onItemAdded(CollectionItemEvent<? extends ItemT> event) {
+        ItemT item = event.getNewItem();
+        Integer count = mySelectedCounts.get(item);
+        mySelectedCounts.put(item, count == null ? 1 : count + 1);
+      }
+
+      @Override
+      public void onItemRemoved(CollectionItemEvent<? extends ItemT> event) {
+        ItemT item = event.getOldItem();
+        int count = mySelectedCounts.get(item);
+        if (count == 1) {
+          mySelectedCounts.remove(item);
+        } else {
+          mySelectedCounts.put(item, count - 1);
+        }
+      }
+    });
+
     myTarget.addTrait(new CellTrait() {
       @Override
       public void onFocusGained(Cell cell, FocusEvent event) {
@@ -103,8 +128,8 @@ public class SelectionSupport<ItemT> {
   }
 
   public void select(ItemT from, ItemT to) {
-    final int start = mySource.indexOf(from);
-    final int end = mySource.indexOf(to);
+    final int start = indexOfItem(from);
+    final int end = indexOfItem(to);
     Cell focusedCell = myTarget.getContainer().focusedCell.get();
 
     if (start == -1 || end == -1) {
@@ -117,7 +142,7 @@ public class SelectionSupport<ItemT> {
       throw new IllegalStateException();
     }
 
-    int currentIndex = myTargetList.indexOf(currentCell());
+    int currentIndex = indexOfCell(currentCell());
     if (currentIndex < start || currentIndex > end) {
       throw new IllegalArgumentException();
     }
@@ -153,7 +178,7 @@ public class SelectionSupport<ItemT> {
   private void handleFocusGain(FocusEvent event) {
     Cell newValue = event.getNewValue();
     Cell expanded = newValue != null ? expand(newValue) : null;
-    if (expanded == null || !myTargetList.contains(expanded)) {
+    if (expanded == null || indexOfCell(expanded) == -1) {
       expand(newValue);
       return;
     }
@@ -161,7 +186,7 @@ public class SelectionSupport<ItemT> {
     if (myChangingSelection) return;
 
     if (!Cells.isLeaf(newValue)) {
-      int index = myTargetList.indexOf(expanded);
+      int index = indexOfCell(expanded);
       select(mySource.get(index), mySource.get(index));
     } else {
       clearSelection();
@@ -178,19 +203,19 @@ public class SelectionSupport<ItemT> {
           Cell currentCell = currentCell();
           if (currentCell == null) return;
 
-          int currentIndex = myTargetList.indexOf(currentCell);
+          int currentIndex = indexOfCell(currentCell);
           ItemT currentItem = mySource.get(currentIndex);
           boolean consumed = false;
 
           if (!Positions.isEndPosition(currentCell) && !isCurrentCompletelySelected()) {
-            if (!mySelectedItems.contains(currentItem)) {
+            if (!isSelected(currentItem)) {
               mySelectedItems.add(currentItem);
               focusAndScrollTo(currentIndex, false).run();
             } else {
               if (myDirection == Direction.FORWARD) {
                 focusAndScrollTo(currentIndex, false).run();
               } else {
-                mySelectedItems.remove(currentItem);
+                deselect(currentItem);
                 if (currentIndex == myTargetList.size() - 1) {
                   focusAndScrollTo(currentIndex, false).run();
                 } else {
@@ -201,15 +226,15 @@ public class SelectionSupport<ItemT> {
 
             consumed = true;
           } else {
-            if (!mySelectedItems.contains(currentItem) && Positions.isHomePosition(currentCell) && Positions.isEndPosition(currentCell)) {
+            if (!isSelected(currentItem) && Positions.isHomePosition(currentCell) && Positions.isEndPosition(currentCell)) {
               mySelectedItems.add(currentItem);
               consumed = true;
             }
 
             if (currentIndex < myTargetList.size() - 1) {
               ItemT nextItem = mySource.get(currentIndex + 1);
-              if (mySelectedItems.contains(nextItem)) {
-                mySelectedItems.remove(currentItem);
+              if (isSelected(nextItem)) {
+                deselect(currentItem);
                 focusAndScrollTo(currentIndex + 1, true).run();
               } else {
                 mySelectedItems.add(nextItem);
@@ -239,19 +264,19 @@ public class SelectionSupport<ItemT> {
           Cell currentCell = currentCell();
           if (currentCell == null) return;
 
-          int currentIndex = myTargetList.indexOf(currentCell);
+          int currentIndex = indexOfCell(currentCell);
           ItemT currentItem = mySource.get(currentIndex);
           boolean consumed = false;
 
           if (!Positions.isHomePosition(currentCell) && !isCurrentCompletelySelected()) {
-            if (!mySelectedItems.contains(currentItem)) {
+            if (!isSelected(currentItem)) {
               mySelectedItems.add(0, currentItem);
               focusAndScrollTo(currentIndex, true).run();
             } else {
               if (myDirection == Direction.BACKWARD) {
                 focusAndScrollTo(currentIndex, true).run();
               } else {
-                mySelectedItems.remove(currentItem);
+                deselect(currentItem);
                 if (currentIndex == 0) {
                   focusAndScrollTo(currentIndex, true).run();
                 } else {
@@ -261,7 +286,7 @@ public class SelectionSupport<ItemT> {
             }
             consumed = true;
           } else {
-            if (!mySelectedItems.contains(currentItem) && Positions.isHomePosition(currentCell) && Positions.isEndPosition(currentCell)) {
+            if (!isSelected(currentItem) && Positions.isHomePosition(currentCell) && Positions.isEndPosition(currentCell)) {
               mySelectedItems.add(currentItem);
               consumed = true;
             }
@@ -269,8 +294,8 @@ public class SelectionSupport<ItemT> {
             if (currentIndex > 0) {
               ItemT prevItem = mySource.get(currentIndex - 1);
 
-              if (mySelectedItems.contains(prevItem)) {
-                mySelectedItems.remove(currentItem);
+              if (isSelected(prevItem)) {
+                deselect(currentItem);
                 focusAndScrollTo(currentIndex - 1, false).run();
               } else {
                 mySelectedItems.add(0, prevItem);
@@ -291,6 +316,46 @@ public class SelectionSupport<ItemT> {
     }
   }
 
+  /**
+   * Position of the item in the source list. Items are compared by identity, like in the selection.
+   * Override it when the source list can provide it faster than with a linear scan.
+   */
+  protected int indexOfItem(ItemT item) {
+    return indexOf(mySource, item);
+  }
+
+  /**
+   * Position of the cell in the target list. Override it when the target list can provide it faster than with a linear scan.
+   */
+  protected int indexOfCell(Cell cell) {
+    return myTargetList.indexOf(cell);
+  }
+
+  private boolean isSelected(ItemT item) {
+    return mySelectedCounts.containsKey(item);
+  }
+
+  private void deselect(ItemT item) {
+    int last = mySelectedItems.size() - 1;
+    if (last >= 0 && mySelectedItems.get(last) == item) {
+      mySelectedItems.remove(last);
+    } else if (last >= 0 && mySelectedItems.get(0) == item) {
+      mySelectedItems.remove(0);
+    } else {
+      int index = indexOf(mySelectedItems, item);
+      if (index != -1) {
+        mySelectedItems.remove(index);
+      }
+    }
+  }
+
+  private static <ItemT> int indexOf(List<ItemT> list, ItemT item) {
+    for (int i = 0; i < list.size(); i++) {
+      if (list.get(i) == item) return i;
+    }
+    return -1;
+  }
+
   private boolean isLowerPrioritySelection() {
     Cell current = myTarget;
     while (true) {
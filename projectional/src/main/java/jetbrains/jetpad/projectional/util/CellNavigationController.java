@@ -21,8 +21,12 @@ import jetbrains.jetpad.cell.Cell;
 import jetbrains.jetpad.cell.CellContainer;
 import jetbrains.jetpad.cell.CellPropertySpec;
 import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.event.CellEventSpec;
 import jetbrains.jetpad.cell.position.PositionHandler;
+import jetbrains.jetpad.cell.trait.CellKeymap;
 import jetbrains.jetpad.cell.trait.CellTrait;
+import jetbrains.jetpad.cell.trait.CellTraitPropertySpec;
+import jetbrains.jetpad.cell.trait.KeyStrokeHandler;
 import jetbrains.jetpad.cell.util.Cells;
 import jetbrains.jetpad.event.*;
 import jetbrains.jetpad.geometry.Rectangle;
@@ -33,6 +37,9 @@ import jetbrains.jetpad.model.event.CompositeRegistration;
 import jetbrains.jetpad.model.event.EventHandler;
 import jetbrains.jetpad.model.property.*;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Stack;
 
 import static jetbrains.jetpad.model.composite.Composites.nextFocusable;
@@ -42,7 +49,9 @@ public class CellNavigationController {
   public static final CellPropertySpec<Cell> PAIR_CELL = new CellPropertySpec<>("pairCell");
 
 
-  private CompositesWithBounds ourWithBounds = new CompositesWithBounds(2);
+  private static final int LINE_THRESHOLD = 2;
+
+  private CompositesWithBounds ourWithBounds = new CompositesWithBounds(LINE_THRESHOLD);
 
   static Registration install(final CellContainer container) {
     final CellNavigationController controller = new CellNavigationController(container);
@@ -53,14 +62,17 @@ public class CellNavigationController {
   private Value<Integer> myPrevXOffset = new Value<>(null);
   private Value<Boolean> myStackResetEnabled = new Value<>(true);
   private Stack<Cell> mySelectionStack = new Stack<>();
+  private FocusableIndex myIndex;
 
 
   private CellNavigationController(final CellContainer container) {
     myContainer = container;
+    myIndex = new FocusableIndex(container, LINE_THRESHOLD);
   }
 
   public CompositeRegistration install() {
     CompositeRegistration result = new CompositeRegistration();
+    result.add(myIndex.install());
     result.add(
       selectedCaretOffset().addHandler(new EventHandler<PropertyChangeEvent<Integer>>() {
         @Override
@@ -78,11 +90,21 @@ public class CellNavigationController {
         }
       }));
     result.add(myContainer.root.addTrait(new CellTrait() {
+      private final CellKeymap myKeymap = createKeymap();
+
       @Override
-      public void onKeyPressed(Cell cell, KeyEvent event) {
-        handleKeyPress(cell, event);
-        if (event.isConsumed()) return;
-        super.onKeyPressed(cell, event);
+      public CellKeymap getKeymap(Cell cell) {
+        return myKeymap;
+      }
+
+      @Override
+      public int getEventMask() {
+        return CellEventSpec.MOUSE_PRESSED.getMask();
+      }
+
+      @Override
+      public Set<CellTraitPropertySpec<?>> getTraitPropertySpecs() {
+        return Collections.emptySet();
       }
 
       @Override
@@ -125,6 +147,175 @@ public class CellNavigationController {
     return result;
   }
 
+  /**
+   * Every key stroke gets the handler of the first branch which declares it, so that overlapping key stroke specs
+   * are resolved in the same order as in a chain of event.is() checks
+   */
+  private CellKeymap createKeymap() {
+    CellKeymap keymap = new CellKeymap();
+    Set<KeyStroke> declared = new HashSet<>();
+
+    NavigationHandler nextHandler = new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = findNext(current);
+        moveToHome(next);
+        return next;
+      }
+    };
+    add(keymap, declared, new KeyStroke(Key.RIGHT), nextHandler);
+    add(keymap, declared, new KeyStroke(Key.TAB), nextHandler);
+
+    add(keymap, declared, KeyStrokeSpecs.NEXT_WORD, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = findNext(current);
+        if (next != null) {
+          moveToHome(next);
+        } else if (!current.get(PositionHandler.PROPERTY).isEnd()) {
+          next = current;
+          moveToEnd(next);
+        }
+        return next;
+      }
+    });
+
+    NavigationHandler prevHandler = new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = findPrev(current);
+        moveToEnd(next);
+        return next;
+      }
+    };
+    add(keymap, declared, new KeyStroke(Key.LEFT), prevHandler);
+    add(keymap, declared, new KeyStroke(Key.TAB, ModifierKey.SHIFT), prevHandler);
+
+    add(keymap, declared, KeyStrokeSpecs.PREV_WORD, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = findPrev(current);
+        moveToHome(next);
+        return next;
+      }
+    });
+
+    add(keymap, declared, new KeyStroke(Key.UP), new VerticalNavigationHandler() {
+      @Override
+      protected Cell navigate(Cell current, int offset) {
+        return findUpper(current, offset);
+      }
+    });
+    add(keymap, declared, new KeyStroke(Key.DOWN), new VerticalNavigationHandler() {
+      @Override
+      protected Cell navigate(Cell current, int offset) {
+        return findLower(current, offset);
+      }
+    });
+    add(keymap, declared, new KeyStroke(Key.PAGE_UP), new VerticalNavigationHandler() {
+      @Override
+      protected Cell navigate(Cell current, int offset) {
+        return new PageUpDown(current, offset, pageHeight()) {
+          @Override
+          protected Cell next(Cell current, int offset) {
+            return findUpper(current, offset);
+          }
+        }.execute();
+      }
+    });
+    add(keymap, declared, new KeyStroke(Key.PAGE_DOWN), new VerticalNavigationHandler() {
+      @Override
+      protected Cell navigate(Cell current, int offset) {
+        return new PageUpDown(current, offset, pageHeight()) {
+          @Override
+          protected Cell next(Cell current, int offset) {
+            return findLower(current, offset);
+          }
+        }.execute();
+      }
+    });
+
+    add(keymap, declared, KeyStrokeSpecs.HOME, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = findHome(current);
+        moveToHome(next);
+        return next;
+      }
+    });
+    add(keymap, declared, KeyStrokeSpecs.END, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = findEnd(current);
+        moveToEnd(next);
+        return next;
+      }
+    });
+    add(keymap, declared, KeyStrokeSpecs.FILE_HOME, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = Composites.firstFocusable(cell, true);
+        moveToHome(next);
+        return next;
+      }
+    });
+    add(keymap, declared, KeyStrokeSpecs.FILE_END, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = Composites.lastFocusable(cell, true);
+        moveToEnd(next);
+        return next;
+      }
+    });
+
+    add(keymap, declared, KeyStrokeSpecs.SELECT_UP, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell focusableParent = Composites.focusableParent(current);
+        if (focusableParent != null) {
+          mySelectionStack.push(current);
+          myStackResetEnabled.set(false);
+        }
+        return focusableParent;
+      }
+    });
+    add(keymap, declared, KeyStrokeSpecs.SELECT_DOWN, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        myStackResetEnabled.set(false);
+        if (mySelectionStack.isEmpty()) {
+          return Composites.firstFocusable(current, false);
+        } else {
+          return mySelectionStack.pop();
+        }
+      }
+    });
+
+    add(keymap, declared, KeyStrokeSpecs.MATCHING_CONSTRUCTS, new NavigationHandler() {
+      @Override
+      protected Cell navigate(Cell cell, Cell current) {
+        Cell next = current.get(PAIR_CELL);
+        if (next == null) return null;
+        if (Composites.isBefore(next, current)) {
+          moveToHome(next);
+        } else {
+          moveToEnd(next);
+        }
+        return next;
+      }
+    });
+
+    return keymap;
+  }
+
+  private void add(CellKeymap keymap, Set<KeyStroke> declared, KeyStrokeSpec spec, KeyStrokeHandler handler) {
+    for (KeyStroke ks : spec.getKeyStrokes()) {
+      if (declared.add(ks)) {
+        keymap.onKeyPressed(ks, handler);
+      }
+    }
+  }
+
   private Property<Cell> focusedCell() {
     return myContainer.focusedCell;
   }
@@ -178,6 +369,30 @@ public class CellNavigationController {
     }
   }
 
+  private Cell findNext(Cell cell) {
+    return myIndex.contains(cell) ? myIndex.nextFocusable(cell) : nextFocusable(cell);
+  }
+
+  private Cell findPrev(Cell cell) {
+    return myIndex.contains(cell) ? myIndex.prevFocusable(cell) : prevFocusable(cell);
+  }
+
+  private Cell findUpper(Cell cell, int xOffset) {
+    return myIndex.contains(cell) ? myIndex.upperFocusable(cell, xOffset) : ourWithBounds.upperFocusable(cell, xOffset);
+  }
+
+  private Cell findLower(Cell cell, int xOffset) {
+    return myIndex.contains(cell) ? myIndex.lowerFocusable(cell, xOffset) : ourWithBounds.lowerFocusable(cell, xOffset);
+  }
+
+  private Cell findHome(Cell cell) {
+    return myIndex.contains(cell) ? myIndex.homeElement(cell) : ourWithBounds.homeElement(cell);
+  }
+
+  private Cell findEnd(Cell cell) {
+    return myIndex.contains(cell) ? myIndex.endElement(cell) : ourWithBounds.endElement(cell);
+  }
+
   private int selectedXOffset() {
     return selectedCaretOffset().get() + focusedCell().get().getBounds().origin.x;
   }
@@ -186,113 +401,60 @@ public class CellNavigationController {
     return Properties.select(focusedCell(), caretPositionSelector());
   }
 
-  protected void handleKeyPress(Cell cell, KeyEvent event) {
-    Cell current = focusedCell().get();
-    Integer currentOffset = null;
+  private int pageHeight() {
+    return focusedCell().get().getContainer().visibleRect().dimension.y;
+  }
 
-    if (event.is(Key.UP) || event.is(Key.DOWN) || event.is(Key.PAGE_UP) || event.is(Key.PAGE_DOWN)) {
-      currentOffset = myPrevXOffset.get();
-      if (currentOffset == null) {
-        currentOffset = selectedXOffset();
-      }
+  private void scrollToFocused(Cell next) {
+    if (next instanceof TextCell) {
+      ((TextCell) next).scrollToCaret();
+    } else {
+      scrollTo(next);
     }
+  }
 
-    Rectangle visibleRect = focusedCell().get().getContainer().visibleRect();
-
-    Cell next = null;
-    boolean restoreOffset = false;
-
-    if (event.is(Key.RIGHT) || event.is(Key.TAB)) {
-      next = nextFocusable(current);
-      moveToHome(next);
-    } else if (event.is(KeyStrokeSpecs.NEXT_WORD)) {
-      next = nextFocusable(current);
+  /**
+   * Focuses the cell returned by navigate() and consumes the event, or leaves the event to other handlers if it's null
+   */
+  private abstract class NavigationHandler implements KeyStrokeHandler {
+    @Override
+    public void handle(Cell cell, KeyEvent event) {
+      Cell next = navigate(cell, focusedCell().get());
       if (next != null) {
-        moveToHome(next);
-      } else if (!current.get(PositionHandler.PROPERTY).isEnd()) {
-        next = current;
-        moveToEnd(next);
-      }
-    } else if (event.is(Key.LEFT) || event.is(Key.TAB, ModifierKey.SHIFT)) {
-      next = prevFocusable(current);
-      moveToEnd(next);
-    } else if (event.is(KeyStrokeSpecs.PREV_WORD)) {
-      next = prevFocusable(current);
-      moveToHome(next);
-    } else if (event.is(Key.UP)) {
-      next = ourWithBounds.upperFocusable(current, currentOffset);
-      restoreOffset = true;
-    } else if (event.is(Key.DOWN)) {
-      next = ourWithBounds.lowerFocusable(current, currentOffset);
-      restoreOffset = true;
-    } else if (event.is(Key.PAGE_UP)) {
-      next = new PageUpDown(current, currentOffset, visibleRect.dimension.y) {
-        @Override
-        protected Cell next(Cell current, int offset) {
-          return ourWithBounds.upperFocusable(current, offset);
-        }
-      }.execute();
-      restoreOffset = true;
-    } else if (event.is(Key.PAGE_DOWN)) {
-      next = new PageUpDown(current, currentOffset, visibleRect.dimension.y) {
-        @Override
-        protected Cell next(Cell current, int offset) {
-          return ourWithBounds.lowerFocusable(current, offset);
-        }
-      }.execute();
-      restoreOffset = true;
-    } else if (event.is(KeyStrokeSpecs.HOME)) {
-      next = ourWithBounds.homeElement(current);
-      moveToHome(next);
-    } else if (event.is(KeyStrokeSpecs.END)) {
-      next = ourWithBounds.endElement(current);
-      moveToEnd(next);
-    } else if (event.is(KeyStrokeSpecs.FILE_HOME)) {
-      next = Composites.firstFocusable(cell, true);
-      moveToHome(next);
-    } else if (event.is(KeyStrokeSpecs.FILE_END)) {
-      next = Composites.lastFocusable(cell, true);
-      moveToEnd(next);
-    } else if (event.is(KeyStrokeSpecs.SELECT_UP)) {
-      Cell focusableParent = Composites.focusableParent(current);
-      if (focusableParent != null) {
-        mySelectionStack.push(current);
-        next = focusableParent;
-        myStackResetEnabled.set(false);
-      }
-    } else if (event.is(KeyStrokeSpecs.SELECT_DOWN)) {
-      if (mySelectionStack.isEmpty()) {
-        next = Composites.firstFocusable(current, false);
-      } else {
-        next = mySelectionStack.pop();
-      }
-      myStackResetEnabled.set(false);
-    } else if (event.is(KeyStrokeSpecs.MATCHING_CONSTRUCTS) && current.get(PAIR_CELL) != null) {
-      next = current.get(PAIR_CELL);
-      if (Composites.isBefore(next, current)) {
-        moveToHome(next);
-      } else {
-        moveToEnd(next);
+        focusedCell().set(next);
+        onFocused(next);
+        scrollToFocused(next);
+        event.consume();
       }
-      restoreOffset = false;
+      myStackResetEnabled.set(true);
     }
-    if (next != null) {
-      focusedCell().set(next);
 
-      if (restoreOffset) {
-        moveCaretTo(next, currentOffset - next.getBounds().origin.x);
-        myPrevXOffset.set(currentOffset);
-      }
+    protected abstract Cell navigate(Cell cell, Cell current);
 
-      if (next instanceof TextCell) {
-        ((TextCell) next).scrollToCaret();
-      } else {
-        scrollTo(next);
-      }
+    protected void onFocused(Cell next) {
+    }
+  }
 
-      event.consume();
+  /**
+   * Keeps the horizontal caret offset of the first of consecutive vertical moves
+   */
+  private abstract class VerticalNavigationHandler extends NavigationHandler {
+    private int myOffset;
+
+    @Override
+    protected final Cell navigate(Cell cell, Cell current) {
+      Integer offset = myPrevXOffset.get();
+      myOffset = offset == null ? selectedXOffset() : offset;
+      return navigate(current, myOffset);
+    }
+
+    protected abstract Cell navigate(Cell current, int offset);
+
+    @Override
+    protected void onFocused(Cell next) {
+      moveCaretTo(next, myOffset - next.getBounds().origin.x);
+      myPrevXOffset.set(myOffset);
     }
-    myStackResetEnabled.set(true);
   }
 
   protected void handleMousePress(MouseEvent event) {
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.util;
+
+import jetbrains.jetpad.cell.Cell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cells of a tree in document order, every cell as an opening entry before its descendants and a closing entry
+ * after them. It is a treap with subtree counts of the entries of counted cells, so that the pre-order and
+ * the post-order of the counted cells are looked up and updated in logarithmic time.
+ */
+class CellOrder {
+  private final Map<Cell, Item> myItems = new HashMap<>();
+  private final Random myRandom = new Random(0);
+  private Node myRoot;
+
+  CellOrder(Cell root) {
+    setRoot(subtree(root));
+  }
+
+  boolean contains(Cell cell) {
+    return myItems.containsKey(cell);
+  }
+
+  /**
+   * Adds the cell with its descendants. Its parent must be in the order already.
+   *
+   * @param index the index of the cell among the children of its parent
+   */
+  void insert(Cell cell, int index) {
+    if (myItems.containsKey(cell)) {
+      throw new IllegalStateException("cell " + cell + " is already ordered");
+    }
+    Cell parent = cell.getParent();
+    List<Cell> siblings = parent.children();
+    while (index > 0 && !myItems.containsKey(siblings.get(index - 1))) {
+      index--;
+    }
+    Node prev = index > 0 ? getItem(siblings.get(index - 1)).closing : getItem(parent).opening;
+    Node[] split = split(myRoot, entriesBefore(prev) + 1);
+    setRoot(merge(merge(split[0], subtree(cell)), split[1]));
+  }
+
+  /**
+   * Removes the cell with its descendants
+   *
+   * @return the removed cells
+   */
+  List<Cell> remove(Cell cell) {
+    Item item = getItem(cell);
+    Node[] right = split(myRoot, entriesBefore(item.closing) + 1);
+    Node[] left = split(right[0], entriesBefore(item.opening));
+    setRoot(merge(left[0], right[1]));
+
+    List<Cell> result = new ArrayList<>();
+    collectOpening(left[1], result);
+    for (Cell c : result) {
+      myItems.remove(c);
+    }
+    return result;
+  }
+
+  boolean isCounted(Cell cell) {
+    return getItem(cell).counted;
+  }
+
+  void setCounted(Cell cell, boolean counted) {
+    Item item = getItem(cell);
+    if (item.counted == counted) return;
+    item.counted = counted;
+    for (Node n = item.opening; n != null; n = n.parent) {
+      update(n);
+    }
+    for (Node n = item.closing; n != null; n = n.parent) {
+      update(n);
+    }
+  }
+
+  /**
+   * Number of counted cells
+   */
+  int size() {
+    return count(myRoot, true);
+  }
+
+  /**
+   * Index of the counted cell in the pre-order of the counted cells
+   */
+  int preIndex(Cell cell) {
+    return countedBefore(getItem(cell).opening, true);
+  }
+
+  /**
+   * Index of the counted cell in the post-order of the counted cells
+   */
+  int postIndex(Cell cell) {
+    return countedBefore(getItem(cell).closing, false);
+  }
+
+  Cell preOrder(int index) {
+    return find(index, true);
+  }
+
+  Cell postOrder(int index) {
+    return find(index, false);
+  }
+
+  private Node subtree(Cell cell) {
+    Item item = new Item(cell);
+    item.opening = new Node(item, true, myRandom.nextInt());
+    item.closing = new Node(item, false, myRandom.nextInt());
+    myItems.put(cell, item);
+
+    Node result = item.opening;
+    for (Cell child : cell.children()) {
+      result = merge(result, subtree(child));
+    }
+    return merge(result, item.closing);
+  }
+
+  private void collectOpening(Node node, List<Cell> result) {
+    if (node == null) return;
+    collectOpening(node.left, result);
+    if (node.opening) {
+      result.add(node.item.cell);
+    }
+    collectOpening(node.right, result);
+  }
+
+  private Cell find(int index, boolean opening) {
+    if (index < 0 || index >= count(myRoot, opening)) {
+      throw new IndexOutOfBoundsException("index = " + index);
+    }
+    Node current = myRoot;
+    while (true) {
+      int left = count(current.left, opening);
+      if (index < left) {
+        current = current.left;
+      } else if (index == left && weight(current, opening) == 1) {
+        return current.item.cell;
+      } else {
+        index -= left + weight(current, opening);
+        current = current.right;
+      }
+    }
+  }
+
+  private Item getItem(Cell cell) {
+    Item item = myItems.get(cell);
+    if (item == null) {
+      throw new IllegalStateException("cell " + cell + " isn't ordered");
+    }
+    return item;
+  }
+
+  private int entriesBefore(Node node) {
+    int result = size(node.left);
+    for (Node n = node; n.parent != null; n = n.parent) {
+      if (n.parent.right == n) {
+        result += size(n.parent.left) + 1;
+      }
+    }
+    return result;
+  }
+
+  private int countedBefore(Node node, boolean opening) {
+    if (!node.item.counted) {
+      throw new IllegalStateException("cell " + node.item.cell + " isn't counted");
+    }
+    int result = count(node.left, opening);
+    for (Node n = node; n.parent != null; n = n.parent) {
+      if (n.parent.right == n) {
+        result += count(n.parent.left, opening) + weight(n.parent, opening);
+      }
+    }
+    return result;
+  }
+
+  private void setRoot(Node root) {
+    myRoot = root;
+    if (root != null) {
+      root.parent = null;
+    }
+  }
+
+  /**
+   * @return the treap of the first {@code count} entries and the treap of the rest
+   */
+  private Node[] split(Node node, int count) {
+    if (node == null) {
+      return new Node[2];
+    }
+    Node[] result;
+    if (size(node.left) >= count) {
+      result = split(node.left, count);
+      node.left = result[1];
+      result[1] = node;
+    } else {
+      result = split(node.right, count - size(node.left) - 1);
+      node.right = result[0];
+      result[0] = node;
+    }
+    update(node);
+    return result;
+  }
+
+  private Node merge(Node left, Node right) {
+    if (left == null) return right;
+    if (right == null) return left;
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      update(left);
+      return left;
+    } else {
+      right.left = merge(left, right.left);
+      update(right);
+      return right;
+    }
+  }
+
+  private void update(Node node) {
+    node.size = 1 + size(node.left) + size(node.right);
+    node.openings = weight(node, true) + count(node.left, true) + count(node.right, true);
+    node.closings = weight(node, false) + count(node.left, false) + count(node.right, false);
+    if (node.left != null) {
+      node.left.parent = node;
+    }
+    if (node.right != null) {
+      node.right.parent = node;
+    }
+  }
+
+  private static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int count(Node node, boolean opening) {
+    if (node == null) return 0;
+    return opening ? node.openings : node.closings;
+  }
+
+  private static int weight(Node node, boolean opening) {
+    return node.opening == opening && node.item.counted ? 1 : 0;
+  }
+
+  private static class Item {
+    private final Cell cell;
+    private boolean counted;
+    private Node opening;
+    private Node closing;
+
+    private Item(Cell cell) {
+      this.cell = cell;
+    }
+  }
+
+  private static class Node {
+    private final Item item;
+    private final boolean opening;
+    private final int priority;
+
+    private Node left;
+    private Node right;
+    private Node parent;
+
+    private int size = 1;
+    private int openings;
+    private int closings;
+
+    private Node(Item item, boolean opening, int priority) {
+      this.item = item;
+      this.opening = opening;
+      this.priority = priority;
+    }
+  }
+}
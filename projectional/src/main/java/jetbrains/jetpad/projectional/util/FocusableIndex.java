@@ -0,0 +1,534 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.util;
+
+import jetbrains.jetpad.base.Registration;
+import jetbrains.jetpad.cell.*;
+import jetbrains.jetpad.geometry.Rectangle;
+import jetbrains.jetpad.geometry.Vector;
+import jetbrains.jetpad.model.collections.CollectionItemEvent;
+import jetbrains.jetpad.model.composite.Composites;
+import jetbrains.jetpad.model.property.PropertyChangeEvent;
+
+import java.util.*;
+
+/**
+ * Visible focusable cells of a container with their bounds, used to navigate without walking the cell tree.
+ *
+ * The focus order is the one of {@link Composites#nextFocusable} and {@link Composites#prevFocusable}: the next
+ * focusable cell follows in post-order, the previous one precedes in pre-order, and ancestors of the start cell
+ * are skipped. Cells are bucketed by the top and by the bottom of their bounds, so the line above or below a cell
+ * is found with a sorted map lookup, and only the cells of that line are compared by horizontal distance.
+ *
+ * The index is built lazily and then maintained from the container events. The orders are kept in a {@link CellOrder}
+ * of all the cells of the container, so added and removed subtrees are put in place by the indices of the events,
+ * and shown or hidden cells only change their counts. Bounds are refreshed only on the lines of the cells which have
+ * changed. If some cell there has moved vertically, the lines below it have moved as well, so the cells which end
+ * below the topmost such line are bucketed anew, while the ones above it are assumed to stay in place.
+ */
+class FocusableIndex {
+  private static final Set<CellPropertySpec<?>> PRESENTATION_PROPS = new HashSet<>(Arrays.<CellPropertySpec<?>>asList(
+      Cell.FOCUSED, Cell.SELECTED, Cell.FOCUS_HIGHLIGHTED, Cell.PAIR_HIGHLIGHTED,
+      Cell.BACKGROUND, Cell.BORDER_COLOR, Cell.HAS_SHADOW, Cell.RED_UNDERLINE, Cell.YELLOW_UNDERLINE,
+      Cell.TOP_POPUP, Cell.BOTTOM_POPUP, Cell.FRONT_POPUP, Cell.LEFT_POPUP, Cell.RIGHT_POPUP,
+      TextCell.TEXT_COLOR, TextCell.CARET_VISIBLE, TextCell.CARET_POSITION, TextCell.SELECTION_VISIBLE, TextCell.SELECTION_START,
+      CellNavigationController.PAIR_CELL));
+
+  private final CellContainer myContainer;
+  private final int myThreshold;
+
+  private CellOrder myOrder;
+  private Map<Cell, Entry> myEntries;
+  private TreeMap<Integer, List<Entry>> myByTop;
+  private TreeMap<Integer, List<Entry>> myByBottom;
+  private Set<Cell> myChangedCells = new HashSet<>();
+  private List<Entry> myUnplaced = new ArrayList<>();
+  private Integer myMovedFrom;
+
+  FocusableIndex(CellContainer container, int threshold) {
+    myContainer = container;
+    myThreshold = threshold;
+  }
+
+  Registration install() {
+    return myContainer.addListener(new CellContainerAdapter() {
+      @Override
+      public void onCellPropertyChanged(Cell cell, CellPropertySpec<?> prop, PropertyChangeEvent<?> change) {
+        if (prop == Cell.FOCUSABLE) {
+          focusabilityChanged(cell);
+        } else if (prop == Cell.VISIBLE) {
+          visibilityChanged(cell);
+        } else if (!PRESENTATION_PROPS.contains(prop)) {
+          layoutChanged(cell);
+        }
+      }
+
+      @Override
+      public void onChildAdded(Cell parent, CollectionItemEvent<? extends Cell> change) {
+        subtreeAdded(parent, change.getIndex(), change.getNewItem());
+      }
+
+      @Override
+      public void onChildRemoved(Cell parent, CollectionItemEvent<? extends Cell> change) {
+        subtreeRemoved(parent, change.getIndex(), change.getOldItem());
+      }
+
+      @Override
+      public void onChildrenReplaced(Cell parent, ChildRangeEvent change) {
+        for (Cell cell : change.getOldItems()) {
+          subtreeRemoved(parent, change.getIndex(), cell);
+        }
+        List<Cell> newItems = change.getNewItems();
+        for (int i = 0; i < newItems.size(); i++) {
+          subtreeAdded(parent, change.getIndex() + i, newItems.get(i));
+        }
+      }
+    });
+  }
+
+  boolean contains(Cell cell) {
+    validateOrder();
+    return myEntries.containsKey(cell);
+  }
+
+  Cell nextFocusable(Cell cell) {
+    return cellOf(next(entry(cell)));
+  }
+
+  Cell prevFocusable(Cell cell) {
+    return cellOf(prev(entry(cell)));
+  }
+
+  /**
+   * The closest to xOffset cell of the nearest line above the cell
+   */
+  Cell upperFocusable(Cell cell, int xOffset) {
+    Entry start = entry(cell);
+    validateBounds(start);
+
+    NavigableMap<Integer, List<Entry>> above = myByBottom.headMap(start.bounds.origin.y + myThreshold, true);
+    Integer lineTop = null;
+    for (List<Entry> bucket : above.descendingMap().values()) {
+      for (Entry e : bucket) {
+        if (isRelated(e, start)) continue;
+        if (lineTop == null || e.bounds.origin.y > lineTop) {
+          lineTop = e.bounds.origin.y;
+        }
+      }
+      if (lineTop != null) break;
+    }
+    if (lineTop == null) return null;
+
+    Entry best = null;
+    double bestDistance = 0;
+    for (List<Entry> bucket : above.tailMap(lineTop + myThreshold, false).values()) {
+      for (Entry e : bucket) {
+        if (isRelated(e, start)) continue;
+        double distance = distance(e, xOffset);
+        if (best == null || distance < bestDistance || (distance == bestDistance && myOrder.preIndex(e.cell) > myOrder.preIndex(best.cell))) {
+          best = e;
+          bestDistance = distance;
+        }
+      }
+    }
+    return cellOf(best);
+  }
+
+  /**
+   * The closest to xOffset cell of the nearest line below the cell
+   */
+  Cell lowerFocusable(Cell cell, int xOffset) {
+    Entry start = entry(cell);
+    validateBounds(start);
+
+    NavigableMap<Integer, List<Entry>> below = myByTop.tailMap(bottom(start) - myThreshold, true);
+    Integer lineBottom = null;
+    for (List<Entry> bucket : below.values()) {
+      for (Entry e : bucket) {
+        if (isRelated(e, start)) continue;
+        if (lineBottom == null || bottom(e) < lineBottom) {
+          lineBottom = bottom(e);
+        }
+      }
+      if (lineBottom != null) break;
+    }
+    if (lineBottom == null) return null;
+
+    Entry best = null;
+    double bestDistance = 0;
+    for (List<Entry> bucket : below.headMap(lineBottom - myThreshold, false).values()) {
+      for (Entry e : bucket) {
+        if (isRelated(e, start)) continue;
+        double distance = distance(e, xOffset);
+        if (best == null || distance < bestDistance || (distance == bestDistance && myOrder.postIndex(e.cell) < myOrder.postIndex(best.cell))) {
+          best = e;
+          bestDistance = distance;
+        }
+      }
+    }
+    return cellOf(best);
+  }
+
+  Cell homeElement(Cell cell) {
+    Entry start = entry(cell);
+    validateBounds(start);
+
+    Entry current = start;
+    while (true) {
+      Entry prev = prev(current);
+      if (prev == null || isAbove(prev, start)) return current.cell;
+      current = prev;
+    }
+  }
+
+  Cell endElement(Cell cell) {
+    Entry start = entry(cell);
+    validateBounds(start);
+
+    Entry current = start;
+    while (true) {
+      Entry next = next(current);
+      if (next == null || isAbove(start, next)) return current.cell;
+      current = next;
+    }
+  }
+
+  private Entry next(Entry entry) {
+    for (int i = myOrder.postIndex(entry.cell) + 1; i < myOrder.size(); i++) {
+      Cell candidate = myOrder.postOrder(i);
+      if (!Composites.isDescendant(candidate, entry.cell)) {
+        return myEntries.get(candidate);
+      }
+    }
+    return null;
+  }
+
+  private Entry prev(Entry entry) {
+    for (int i = myOrder.preIndex(entry.cell) - 1; i >= 0; i--) {
+      Cell candidate = myOrder.preOrder(i);
+      if (!Composites.isDescendant(candidate, entry.cell)) {
+        return myEntries.get(candidate);
+      }
+    }
+    return null;
+  }
+
+  private Entry entry(Cell cell) {
+    validateOrder();
+    Entry result = myEntries.get(cell);
+    if (result == null) {
+      throw new IllegalArgumentException("Cell " + cell + " isn't a visible focusable cell of the container");
+    }
+    return result;
+  }
+
+  private boolean isRelated(Entry e, Entry start) {
+    return e == start || Composites.isDescendant(e.cell, start.cell) || Composites.isDescendant(start.cell, e.cell);
+  }
+
+  private boolean isAbove(Entry upper, Entry lower) {
+    return bottom(upper) - myThreshold <= lower.bounds.origin.y;
+  }
+
+  private double distance(Entry e, int xOffset) {
+    return e.bounds.distance(new Vector(xOffset, e.bounds.origin.y));
+  }
+
+  private void focusabilityChanged(Cell cell) {
+    if (myOrder == null || !myOrder.contains(cell)) return;
+
+    Entry entry = myEntries.get(cell);
+    if (cell.get(Cell.FOCUSABLE)) {
+      if (entry == null && isShown(cell)) {
+        add(cell);
+      }
+    } else if (entry != null) {
+      remove(entry);
+    }
+  }
+
+  private void visibilityChanged(Cell cell) {
+    if (myOrder == null || !myOrder.contains(cell)) return;
+
+    if (cell.get(Cell.VISIBLE)) {
+      if (isShown(cell)) {
+        addShown(cell);
+        layoutChanged(cell);
+      }
+      return;
+    }
+
+    removeShown(cell);
+    layoutChanged(cell.getParent());
+  }
+
+  private void subtreeAdded(Cell parent, int index, Cell cell) {
+    if (myOrder == null || !myOrder.contains(parent)) return;
+
+    //the subtree could be ordered by events which were fired while it was being attached
+    if (myOrder.contains(cell)) {
+      forget(cell);
+    }
+
+    myOrder.insert(cell, index);
+    if (isShown(cell)) {
+      addShown(cell);
+      layoutChanged(cell);
+    }
+  }
+
+  private void subtreeRemoved(Cell parent, int index, Cell cell) {
+    if (myOrder == null || !myOrder.contains(cell)) return;
+
+    forget(cell);
+
+    List<Cell> children = parent.children();
+    if (index < children.size()) {
+      layoutChanged(children.get(index));
+    } else if (index > 0) {
+      layoutChanged(children.get(index - 1));
+    } else {
+      layoutChanged(parent);
+    }
+  }
+
+  private void layoutChanged(Cell cell) {
+    if (myByTop == null || cell == null) return;
+    myChangedCells.add(cell);
+  }
+
+  /**
+   * Counts the focusable cells of a shown subtree
+   */
+  private void addShown(Cell cell) {
+    if (!cell.get(Cell.VISIBLE)) return;
+
+    if (cell.get(Cell.FOCUSABLE) && !myEntries.containsKey(cell)) {
+      add(cell);
+    }
+    for (Cell child : cell.children()) {
+      addShown(child);
+    }
+  }
+
+  /**
+   * Uncounts the cell and its descendants, regardless of the visibility of the cell itself
+   */
+  private void removeShown(Cell cell) {
+    Entry entry = myEntries.get(cell);
+    if (entry != null) {
+      remove(entry);
+    }
+    for (Cell child : cell.children()) {
+      if (child.get(Cell.VISIBLE)) {
+        removeShown(child);
+      }
+    }
+  }
+
+  private void add(Cell cell) {
+    Entry entry = new Entry(cell);
+    myEntries.put(cell, entry);
+    myOrder.setCounted(cell, true);
+    if (myByTop != null) {
+      myUnplaced.add(entry);
+    }
+  }
+
+  private void remove(Entry entry) {
+    myOrder.setCounted(entry.cell, false);
+    unplace(entry);
+  }
+
+  /**
+   * Removes the cell and its descendants from the order
+   */
+  private void forget(Cell cell) {
+    for (Cell removed : myOrder.remove(cell)) {
+      Entry entry = myEntries.get(removed);
+      if (entry != null) {
+        unplace(entry);
+      }
+    }
+  }
+
+  private void unplace(Entry entry) {
+    myEntries.remove(entry.cell);
+    if (myByTop != null && entry.bounds != null) {
+      remove(myByTop, entry.bounds.origin.y, entry);
+      remove(myByBottom, bottom(entry), entry);
+    }
+  }
+
+  /**
+   * Whether the cell is a part of the container's cell tree which the index covers, i.e. it's visible
+   * together with its ancestors, and it isn't in a popup
+   */
+  private boolean isShown(Cell cell) {
+    for (Cell current = cell; current != null; current = current.getParent()) {
+      if (!current.get(Cell.VISIBLE) || current.isPopup()) return false;
+      if (current == myContainer.root) return true;
+    }
+    return false;
+  }
+
+  private void invalidateBounds() {
+    myByTop = null;
+    myByBottom = null;
+    myChangedCells.clear();
+    myUnplaced.clear();
+    myMovedFrom = null;
+  }
+
+  private void validateOrder() {
+    if (myOrder != null) return;
+
+    myOrder = new CellOrder(myContainer.root);
+    myEntries = new HashMap<>();
+    addShown(myContainer.root);
+  }
+
+  /**
+   * Bounds can change without the events we listen to, e.g. when a view inside of a cell is resized,
+   * so they are also recomputed when the bounds of the start cell don't match
+   */
+  private void validateBounds(Entry start) {
+    if (myByTop != null) {
+      refreshBounds();
+      if (start.bounds.equals(start.cell.getBounds())) return;
+    }
+
+    invalidateBounds();
+    myByTop = new TreeMap<>();
+    myByBottom = new TreeMap<>();
+    for (Entry e : myEntries.values()) {
+      place(e);
+    }
+  }
+
+  /**
+   * Places the added entries, updates the bounds on the lines of the changed cells,
+   * and buckets anew the entries below the lines which have moved
+   */
+  private void refreshBounds() {
+    for (Entry e : myUnplaced) {
+      if (myEntries.get(e.cell) == e) {
+        place(e);
+      }
+    }
+    myUnplaced.clear();
+
+    for (Cell cell : myChangedCells) {
+      if (isShown(cell)) {
+        refreshLines(cell);
+      }
+    }
+    myChangedCells.clear();
+
+    if (myMovedFrom != null) {
+      replaceBelow(myMovedFrom);
+      myMovedFrom = null;
+    }
+  }
+
+  private void refreshLines(Cell cell) {
+    Rectangle bounds = cell.getBounds();
+    int top = bounds.origin.y - myThreshold;
+    int bottom = bounds.origin.y + bounds.dimension.y + myThreshold;
+
+    Set<Entry> affected = new HashSet<>();
+    for (List<Entry> bucket : myByTop.subMap(top, true, bottom, true).values()) {
+      affected.addAll(bucket);
+    }
+    for (List<Entry> bucket : myByBottom.subMap(top, true, bottom, true).values()) {
+      affected.addAll(bucket);
+    }
+    for (Cell current = cell; current != null; current = current.getParent()) {
+      Entry e = myEntries.get(current);
+      if (e != null && e.bounds != null) {
+        affected.add(e);
+      }
+    }
+
+    for (Entry e : affected) {
+      Rectangle newBounds = e.cell.getBounds();
+      if (newBounds.origin.y != e.bounds.origin.y || newBounds.dimension.y != e.bounds.dimension.y) {
+        int movedFrom = Math.min(e.bounds.origin.y, newBounds.origin.y);
+        if (myMovedFrom == null || movedFrom < myMovedFrom) {
+          myMovedFrom = movedFrom;
+        }
+      } else {
+        e.bounds = newBounds;
+      }
+    }
+  }
+
+  /**
+   * Buckets anew the entries which end at or below y
+   */
+  private void replaceBelow(int y) {
+    NavigableMap<Integer, List<Entry>> below = myByBottom.tailMap(y, true);
+    List<Entry> moved = new ArrayList<>();
+    for (List<Entry> bucket : below.values()) {
+      moved.addAll(bucket);
+    }
+    below.clear();
+    for (Entry e : moved) {
+      remove(myByTop, e.bounds.origin.y, e);
+      place(e);
+    }
+  }
+
+  private void place(Entry e) {
+    e.bounds = e.cell.getBounds();
+    add(myByTop, e.bounds.origin.y, e);
+    add(myByBottom, bottom(e), e);
+  }
+
+  private static void add(TreeMap<Integer, List<Entry>> buckets, int key, Entry entry) {
+    List<Entry> bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = new ArrayList<>(1);
+      buckets.put(key, bucket);
+    }
+    bucket.add(entry);
+  }
+
+  private static void remove(TreeMap<Integer, List<Entry>> buckets, int key, Entry entry) {
+    List<Entry> bucket = buckets.get(key);
+    bucket.remove(entry);
+    if (bucket.isEmpty()) {
+      buckets.remove(key);
+    }
+  }
+
+  private static int bottom(Entry e) {
+    return e.bounds.origin.y + e.bounds.dimension.y;
+  }
+
+  private static Cell cellOf(Entry e) {
+    return e == null ? null : e.cell;
+  }
+
+  private static class Entry {
+    private final Cell cell;
+    private Rectangle bounds;
+
+    private Entry(Cell cell) {
+      this.cell = cell;
+    }
+  }
+}
@@ -601,6 +601,21 @@ public class ProjectionalListSynchronizerTest extends EditingTestCase {
     assertSelected();
   }
 
+  @Test
+  public void selectAfterItemInsertedBefore() {
+    add3Items();
+    selectChild(0);
+    press(KeyStrokeSpecs.SELECT_AFTER);
+    press(KeyStrokeSpecs.SELECT_BEFORE);
+
+    container.children.add(0, new NonEmptyChild());
+
+    press(KeyStrokeSpecs.SELECT_AFTER);
+    press(KeyStrokeSpecs.SELECT_AFTER);
+
+    assertSelected(get(1), get(2));
+  }
+
   @Test
   public void selectBeforeConsumed() {
     add3Items();
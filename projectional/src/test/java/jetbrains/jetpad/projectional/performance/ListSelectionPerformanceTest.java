@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.performance;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.CellContainer;
+import jetbrains.jetpad.cell.EditableCellContainer;
+import jetbrains.jetpad.cell.TextCell;
+import jetbrains.jetpad.cell.VerticalCell;
+import jetbrains.jetpad.cell.text.TextEditing;
+import jetbrains.jetpad.event.KeyStrokeSpecs;
+import jetbrains.jetpad.mapper.Mapper;
+import jetbrains.jetpad.mapper.MapperFactory;
+import jetbrains.jetpad.model.collections.list.ObservableArrayList;
+import jetbrains.jetpad.model.collections.list.ObservableList;
+import jetbrains.jetpad.projectional.cell.ProjectionalRoleSynchronizer;
+import jetbrains.jetpad.projectional.cell.ProjectionalSynchronizers;
+
+/**
+ * Measures extension of the selection with shift+down through all items of a projectional list, starting from the first one.
+ */
+public class ListSelectionPerformanceTest {
+  public static void main(String[] args) {
+    for (int size : new int[] { 1000, 10000, 50000 }) {
+      run(size);
+    }
+  }
+
+  private static void run(int size) {
+    ObservableList<Item> items = new ObservableArrayList<>();
+    for (int i = 0; i < size; i++) {
+      items.add(new Item());
+    }
+
+    CellContainer container = new CellContainer();
+    ListMapper mapper = new ListMapper(items);
+    mapper.attachRoot();
+    container.root.children().add(mapper.getTarget());
+    EditableCellContainer editableContainer = new EditableCellContainer(container);
+
+    mapper.getTarget().children().get(0).focus();
+
+    long time = System.currentTimeMillis();
+    for (int i = 0; i < size; i++) {
+      editableContainer.press(KeyStrokeSpecs.SELECT_AFTER);
+    }
+    long total = System.currentTimeMillis() - time;
+    System.out.println(size + " items: " + total + " ms, " + mapper.mySynchronizer.getSelectedItems().size() + " selected");
+  }
+
+  private static class Item {
+  }
+
+  private static class ListMapper extends Mapper<ObservableList<Item>, VerticalCell> {
+    private ProjectionalRoleSynchronizer<Object, Item> mySynchronizer;
+
+    ListMapper(ObservableList<Item> source) {
+      super(source, new VerticalCell());
+    }
+
+    @Override
+    protected void registerSynchronizers(SynchronizersConfiguration conf) {
+      super.registerSynchronizers(conf);
+      conf.add(mySynchronizer = ProjectionalSynchronizers.<Object, Item>forRole(this, getSource(), getTarget(), new MapperFactory<Item, Cell>() {
+        @Override
+        public Mapper<? extends Item, ? extends Cell> createMapper(Item source) {
+          return new ItemMapper(source);
+        }
+      }));
+    }
+  }
+
+  private static class ItemMapper extends Mapper<Item, TextCell> {
+    ItemMapper(Item source) {
+      super(source, new TextCell());
+      getTarget().text().set("item");
+      getTarget().addTrait(TextEditing.textEditing());
+    }
+  }
+}
@@ -303,6 +303,137 @@ public class CellNavigationControllerTest extends EditingTestCase {
     assertTrue(c2.focused().get());
   }
 
+  @Test
+  public void downToAddedCell() {
+    c2.focus();
+    down();
+
+    TextCell added = view(true);
+    c2.getParent().children().add(2, added);
+    layout();
+
+    c2.focus();
+    down();
+
+    assertFocused(added);
+  }
+
+  @Test
+  public void downSkipsHiddenCell() {
+    c13.focus();
+    down();
+
+    c2.visible().set(false);
+    layout();
+
+    c13.focus();
+    down();
+
+    assertFocused(c3);
+  }
+
+  @Test
+  public void rightSkipsCellWhichBecameNonFocusable() {
+    c11.focus();
+    right();
+
+    c13.focusable().set(false);
+
+    c11.focus();
+    right();
+
+    assertFocused(c14);
+  }
+
+  @Test
+  public void downToCellWhichBecameVisible() {
+    c2.visible().set(false);
+    layout();
+    c13.focus();
+    down();
+
+    c2.visible().set(true);
+    layout();
+
+    c13.focus();
+    down();
+
+    assertFocused(c2);
+  }
+
+  @Test
+  public void rightToCellWhichBecameFocusable() {
+    c11.focus();
+    right();
+
+    c12.focusable().set(true);
+
+    c11.focus();
+    right();
+
+    assertFocused(c12);
+  }
+
+  @Test
+  public void downAfterTextChangeOnLineBelow() {
+    Cell row = new HorizontalCell();
+    TextCell first = view(true);
+    TextCell second = view(true);
+    row.children().addAll(Arrays.asList(first, second));
+    c4.getParent().children().add(row);
+    layout();
+
+    c42.focus();
+    c42.get(PositionHandler.PROPERTY).end();
+    down();
+    assertFocused(second);
+
+    first.text().set("abcdefabcdefabc");
+    layout();
+
+    c42.focus();
+    c42.get(PositionHandler.PROPERTY).end();
+    down();
+
+    assertFocused(first);
+  }
+
+  @Test
+  public void upFromLinesMovedByAddedCell() {
+    c2.focus();
+    down();
+
+    TextCell inserted = view(true);
+    c2.getParent().children().add(2, inserted);
+    layout();
+
+    c3.focus();
+    up();
+    assertFocused(inserted);
+
+    c41.focus();
+    up();
+    assertFocused(c3);
+  }
+
+  @Test
+  public void rightFromContainerSkipsItsChildren() {
+    c1.focus();
+
+    right();
+
+    assertFocused(c2);
+  }
+
+  @Test
+  public void leftToLastChildOfPrevContainer() {
+    c2.focus();
+
+    left();
+
+    assertFocused(c14);
+  }
+
   private TextCell view(boolean focusable) {
     TextCell result = new TextCell();
     result.text().set("abcdef");
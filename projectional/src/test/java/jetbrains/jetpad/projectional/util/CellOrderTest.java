@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.util;
+
+import jetbrains.jetpad.cell.Cell;
+import jetbrains.jetpad.cell.HorizontalCell;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CellOrderTest {
+  private Cell myRoot = new HorizontalCell();
+  private CellOrder myOrder;
+  private Set<Cell> myCounted = new HashSet<>();
+
+  @Test
+  public void orders() {
+    Cell a = new HorizontalCell();
+    Cell a1 = new HorizontalCell();
+    Cell a2 = new HorizontalCell();
+    Cell b = new HorizontalCell();
+    a.children().addAll(Arrays.asList(a1, a2));
+    myRoot.children().addAll(Arrays.asList(a, b));
+    myOrder = new CellOrder(myRoot);
+    for (Cell cell : Arrays.asList(a, a1, a2, b)) {
+      myOrder.setCounted(cell, true);
+    }
+
+    assertEquals(Arrays.asList(a, a1, a2, b), preOrder());
+    assertEquals(Arrays.asList(a1, a2, a, b), postOrder());
+
+    List<Cell> removed = myOrder.remove(a);
+    myRoot.children().remove(a);
+
+    assertEquals(new HashSet<>(Arrays.asList(a, a1, a2)), new HashSet<>(removed));
+    assertFalse(myOrder.contains(a1));
+    assertEquals(Arrays.asList(b), preOrder());
+  }
+
+  @Test
+  public void randomEdits() {
+    myOrder = new CellOrder(myRoot);
+    List<Cell> cells = new ArrayList<>();
+    cells.add(myRoot);
+    Random random = new Random(42);
+    for (int i = 0; i < 3000; i++) {
+      int action = random.nextInt(4);
+      if (action < 2 || cells.size() == 1) {
+        Cell parent = cells.get(random.nextInt(cells.size()));
+        Cell cell = new HorizontalCell();
+        if (random.nextBoolean()) {
+          cell.children().add(new HorizontalCell());
+        }
+        int index = random.nextInt(parent.children().size() + 1);
+        parent.children().add(index, cell);
+        myOrder.insert(cell, index);
+        collect(cell, cells);
+      } else if (action == 2) {
+        Cell cell = cells.get(1 + random.nextInt(cells.size() - 1));
+        List<Cell> removed = myOrder.remove(cell);
+        cell.getParent().children().remove(cell);
+        cells.removeAll(removed);
+        myCounted.removeAll(removed);
+      } else {
+        Cell cell = cells.get(random.nextInt(cells.size()));
+        boolean counted = !myOrder.isCounted(cell);
+        myOrder.setCounted(cell, counted);
+        if (counted) {
+          myCounted.add(cell);
+        } else {
+          myCounted.remove(cell);
+        }
+      }
+      if (i % 100 == 0) {
+        check();
+      }
+    }
+    check();
+  }
+
+  private void collect(Cell cell, List<Cell> result) {
+    result.add(cell);
+    assertTrue(myOrder.contains(cell));
+    for (Cell child : cell.children()) {
+      collect(child, result);
+    }
+  }
+
+  private void check() {
+    List<Cell> preOrder = new ArrayList<>();
+    List<Cell> postOrder = new ArrayList<>();
+    collectCounted(myRoot, preOrder, postOrder);
+
+    assertEquals(preOrder, preOrder());
+    assertEquals(postOrder, postOrder());
+    for (int i = 0; i < preOrder.size(); i++) {
+      assertEquals(i, myOrder.preIndex(preOrder.get(i)));
+      assertEquals(i, myOrder.postIndex(postOrder.get(i)));
+    }
+  }
+
+  private void collectCounted(Cell cell, List<Cell> preOrder, List<Cell> postOrder) {
+    if (myCounted.contains(cell)) {
+      preOrder.add(cell);
+    }
+    for (Cell child : cell.children()) {
+      collectCounted(child, preOrder, postOrder);
+    }
+    if (myCounted.contains(cell)) {
+      postOrder.add(cell);
+    }
+  }
+
+  private List<Cell> preOrder() {
+    List<Cell> result = new ArrayList<>();
+    for (int i = 0; i < myOrder.size(); i++) {
+      result.add(myOrder.preOrder(i));
+    }
+    return result;
+  }
+
+  private List<Cell> postOrder() {
+    List<Cell> result = new ArrayList<>();
+    for (int i = 0; i < myOrder.size(); i++) {
+      result.add(myOrder.postOrder(i));
+    }
+    return result;
+  }
+}
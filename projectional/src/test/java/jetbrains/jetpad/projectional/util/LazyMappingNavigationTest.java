@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2016 JetBrains s.r.o
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.jetpad.projectional.util;
+
+import jetbrains.jetpad.cell.*;
+import jetbrains.jetpad.cell.position.PositionHandler;
+import jetbrains.jetpad.cell.text.TextEditing;
+import jetbrains.jetpad.test.BaseTestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LazyMappingNavigationTest extends BaseTestCase {
+  private CellContainer myCellContainer = new CellContainer();
+  private EditableCellContainer myEditableCellContainer = new EditableCellContainer(myCellContainer, true);
+
+  private TextCell myTop = navigable();
+  private Cell myHidden = new VerticalCell();
+  private TextCell myInner = navigable();
+
+  @Before
+  public void init() {
+    CellNavigationController.install(myCellContainer);
+
+    Cell row = new HorizontalCell();
+    row.children().add(myInner);
+    myHidden.children().add(row);
+    myHidden.visible().set(false);
+
+    VerticalCell vertical = new VerticalCell();
+    vertical.children().addAll(Arrays.asList(myTop, myHidden));
+    myCellContainer.root.children().add(vertical);
+
+    myEditableCellContainer.layout();
+  }
+
+  @Test
+  public void downToSubtreeWhichBecameVisible() {
+    myTop.focus();
+    myTop.get(PositionHandler.PROPERTY).end();
+    myEditableCellContainer.down();
+    assertFocused(myTop);
+
+    myHidden.visible().set(true);
+    myEditableCellContainer.layout();
+
+    myTop.focus();
+    myTop.get(PositionHandler.PROPERTY).end();
+    myEditableCellContainer.down();
+
+    assertFocused(myInner);
+    assertEquals((Integer) myInner.text().get().length(), myInner.caretPosition().get());
+  }
+
+  @Test
+  public void upFromSubtreeWhichBecameVisible() {
+    myHidden.visible().set(true);
+    myEditableCellContainer.layout();
+
+    myInner.focus();
+    myInner.get(PositionHandler.PROPERTY).end();
+    myEditableCellContainer.up();
+
+    assertFocused(myTop);
+    assertEquals((Integer) myTop.text().get().length(), myTop.caretPosition().get());
+  }
+
+  private void assertFocused(Cell cell) {
+    assertSame(cell, myCellContainer.focusedCell.get());
+  }
+
+  private TextCell navigable() {
+    TextCell result = new TextCell();
+    result.text().set("abcdef");
+    result.addTrait(TextEditing.textEditing());
+    return result;
+  }
+}
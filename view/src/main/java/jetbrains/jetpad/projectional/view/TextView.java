@@ -19,11 +19,16 @@ import jetbrains.jetpad.geometry.Vector;
 import jetbrains.jetpad.model.property.DerivedProperty;
 import jetbrains.jetpad.model.property.Property;
 import jetbrains.jetpad.model.property.ReadableProperty;
+import jetbrains.jetpad.projectional.domUtil.ChunkedText;
 import jetbrains.jetpad.projectional.view.spi.ViewContainerPeer;
 import jetbrains.jetpad.values.Color;
 import jetbrains.jetpad.values.Font;
 import jetbrains.jetpad.values.FontFamily;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class TextView extends View {
   public static final Font DEFAULT_FONT = new Font(FontFamily.MONOSPACED, 15);
 
@@ -41,6 +46,18 @@ public class TextView extends View {
   public static final ViewPropertySpec<Boolean> SELECTION_VISIBLE = new ViewPropertySpec<>("selectionVisible", ViewPropertyKind.REPAINT, false);
   public static final ViewPropertySpec<Integer> SELECTION_START = new ViewPropertySpec<>("selectionStart", ViewPropertyKind.REPAINT, 0);
 
+  // widths of the chunks of a long text are measured separately, so that an edit re-measures only the edited chunks
+  private final List<Integer> myChunkWidths = new ArrayList<>();
+  private final ChunkedText myChunks = new ChunkedText(new ChunkedText.Listener() {
+    @Override
+    public void onChunksReplaced(int index, int removedCount, int addedCount) {
+      myChunkWidths.subList(index, index + removedCount).clear();
+      myChunkWidths.addAll(index, Collections.<Integer>nCopies(addedCount, null));
+    }
+  });
+  private Font myMeasuredFont;
+  private ViewContainerPeer myMeasuredPeer;
+
   public TextView() {
   }
 
@@ -101,9 +118,21 @@ public class TextView extends View {
 
     String text = this.text().get();
     if (text == null) return 0;
-    for (int i = 0; i < text.length(); i++) {
-      int width = (textWidth(text.substring(0, i)) + textWidth(text.substring(0, i + 1))) / 2;
-      if (width >= xOffset) return i;
+    validateChunks();
+
+    int start = 0;
+    int offset = 0;
+    for (int i = 0; i < myChunks.getChunkCount(); i++) {
+      String chunk = myChunks.getChunk(i);
+      int chunkWidth = chunkWidth(i);
+      if (offset + chunkWidth >= xOffset) {
+        for (int j = 0; j < chunk.length(); j++) {
+          int width = offset + (textWidth(chunk.substring(0, j)) + textWidth(chunk.substring(0, j + 1))) / 2;
+          if (width >= xOffset) return start + j;
+        }
+      }
+      start += chunk.length();
+      offset += chunkWidth;
     }
     return text.length();
   }
@@ -114,17 +143,53 @@ public class TextView extends View {
       throw new IllegalStateException();
     }
     if (text().get() == null) return 0;
-    return textWidth(text().get().substring(0, caret));
+    validateChunks();
+
+    int start = 0;
+    int offset = 0;
+    for (int i = 0; i < myChunks.getChunkCount(); i++) {
+      String chunk = myChunks.getChunk(i);
+      if (caret <= start + chunk.length()) {
+        return offset + textWidth(chunk.substring(0, caret - start));
+      }
+      start += chunk.length();
+      offset += chunkWidth(i);
+    }
+    return offset;
   }
 
   @Override
   protected void doValidate(ValidationContext ctx) {
     super.doValidate(ctx);
-    String text = text().get();
-    Vector bounds = new Vector(textWidth(text) + 1, textHeight());
+    validateChunks();
+    int width = 0;
+    for (int i = 0; i < myChunks.getChunkCount(); i++) {
+      width += chunkWidth(i);
+    }
+    Vector bounds = new Vector(width + 1, textHeight());
     ctx.bounds(new Vector(bounds.x, bounds.y), textBaseLine());
   }
 
+  private void validateChunks() {
+    myChunks.setText(text().get());
+    Font font = font().get();
+    ViewContainerPeer peer = container() == null ? null : container().peer();
+    if (!font.equals(myMeasuredFont) || peer != myMeasuredPeer) {
+      Collections.fill(myChunkWidths, null);
+      myMeasuredFont = font;
+      myMeasuredPeer = peer;
+    }
+  }
+
+  private int chunkWidth(int index) {
+    Integer width = myChunkWidths.get(index);
+    if (width == null) {
+      width = textWidth(myChunks.getChunk(index));
+      myChunkWidths.set(index, width);
+    }
+    return width;
+  }
+
   private int textWidth(String text) {
     ViewContainerPeer peer = container().peer();
     return peer.textWidth(font().get(), text);